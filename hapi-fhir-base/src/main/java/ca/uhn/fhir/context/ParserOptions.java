@@ -37,6 +37,7 @@ public class ParserOptions {
 	private boolean myStripVersionsFromReferences = true;
 	private Set<String> myDontStripVersionsFromReferencesAtPaths = Collections.emptySet();
 	private boolean myOverrideResourceIdWithBundleEntryFullUrl = true;
+	private boolean myStreamingJsonParsing = false;
 
 	/**
 	 * If supplied value(s), any resource references at the specified paths will have their
@@ -166,4 +167,44 @@ public class ParserOptions {
 		return this;
 	}
 
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will build resources directly from
+	 * the Jackson token stream instead of first reading the whole document into a Jackson tree model. This roughly halves
+	 * the memory required to parse very large documents (e.g. big Bundles). Objects which need lookahead, such as a
+	 * resource whose <code>resourceType</code> is not its first property or an extension whose <code>url</code> is not
+	 * its first property, are buffered individually and parsed using the tree model.
+	 * <p>
+	 * Note that in this mode, <code>_element</code> properties are only applied to primitive elements (as required by
+	 * the FHIR JSON format) and are ignored if they are supplied for a complex element. Primitive values are processed
+	 * after the complex elements of the same object, so problems may be reported to the
+	 * {@link ca.uhn.fhir.parser.IParserErrorHandler parser error handler} in a different order.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public boolean isStreamingJsonParsing() {
+		return myStreamingJsonParsing;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will build resources directly from
+	 * the Jackson token stream instead of first reading the whole document into a Jackson tree model. This roughly halves
+	 * the memory required to parse very large documents (e.g. big Bundles). Objects which need lookahead, such as a
+	 * resource whose <code>resourceType</code> is not its first property or an extension whose <code>url</code> is not
+	 * its first property, are buffered individually and parsed using the tree model.
+	 * <p>
+	 * Note that in this mode, <code>_element</code> properties are only applied to primitive elements (as required by
+	 * the FHIR JSON format) and are ignored if they are supplied for a complex element. Primitive values are processed
+	 * after the complex elements of the same object, so problems may be reported to the
+	 * {@link ca.uhn.fhir.parser.IParserErrorHandler parser error handler} in a different order.
+	 * </p>
+	 *
+	 * @return Returns a reference to <code>this</code> parser so that method calls can be chained together
+	 * @since 5.4.0
+	 */
+	public ParserOptions setStreamingJsonParsing(boolean theStreamingJsonParsing) {
+		myStreamingJsonParsing = theStreamingJsonParsing;
+		return this;
+	}
+
 }
@@ -42,8 +42,10 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AnnotatedElement;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -66,6 +68,12 @@ public abstract class BaseInterceptorService<POINTCUT extends IPointcut> impleme
 	private final ListMultimap<POINTCUT, BaseInvoker> myAnonymousInvokers = ArrayListMultimap.create();
 	private final Object myRegistryMutex = new Object();
 	private final ThreadLocal<ListMultimap<POINTCUT, BaseInvoker>> myThreadlocalInvokers = new ThreadLocal<>();
+	/**
+	 * Immutable, pre-sorted union of {@link #myGlobalInvokers} and {@link #myAnonymousInvokers}. This is
+	 * rebuilt (while holding {@link #myRegistryMutex}) every time either of those is modified, so that
+	 * the hook invocation path can read it without any locking.
+	 */
+	private volatile Map<POINTCUT, List<BaseInvoker>> myInvokerSnapshot = Collections.emptyMap();
 	private String myName;
 	private boolean myThreadlocalInvokersEnabled = true;
 	private boolean myWarnOnInterceptorWithNoHooks = true;
@@ -126,6 +134,7 @@ public abstract class BaseInterceptorService<POINTCUT extends IPointcut> impleme
 			if (!isInterceptorAlreadyRegistered(theInterceptor)) {
 				myInterceptors.add(theInterceptor);
 			}
+			rebuildInvokerSnapshot();
 		}
 	}
 
@@ -164,8 +173,11 @@ public abstract class BaseInterceptorService<POINTCUT extends IPointcut> impleme
 
 	@Override
 	public void unregisterInterceptorsIf(Predicate<Object> theShouldUnregisterFunction) {
-		unregisterInterceptorsIf(theShouldUnregisterFunction, myGlobalInvokers);
-		unregisterInterceptorsIf(theShouldUnregisterFunction, myAnonymousInvokers);
+		synchronized (myRegistryMutex) {
+			unregisterInterceptorsIf(theShouldUnregisterFunction, myGlobalInvokers);
+			unregisterInterceptorsIf(theShouldUnregisterFunction, myAnonymousInvokers);
+			rebuildInvokerSnapshot();
+		}
 	}
 
 	private void unregisterInterceptorsIf(Predicate<Object> theShouldUnregisterFunction, ListMultimap<POINTCUT, BaseInvoker> theGlobalInvokers) {
@@ -222,6 +234,7 @@ public abstract class BaseInterceptorService<POINTCUT extends IPointcut> impleme
 			// Add to the global list
 			myInterceptors.add(theInterceptor);
 			sortByOrderAnnotation(myInterceptors);
+			rebuildInvokerSnapshot();
 
 			return true;
 		}
@@ -242,10 +255,32 @@ public abstract class BaseInterceptorService<POINTCUT extends IPointcut> impleme
 			boolean removed = myInterceptors.removeIf(t -> t == theInterceptor);
 			removed |= myGlobalInvokers.entries().removeIf(t -> t.getValue().getInterceptor() == theInterceptor);
 			removed |= myAnonymousInvokers.entries().removeIf(t -> t.getValue().getInterceptor() == theInterceptor);
+			if (removed) {
+				rebuildInvokerSnapshot();
+			}
 			return removed;
 		}
 	}
 
+	/**
+	 * Must be called while holding {@link #myRegistryMutex}
+	 */
+	private void rebuildInvokerSnapshot() {
+		Map<POINTCUT, List<BaseInvoker>> snapshot = new HashMap<>();
+		for (POINTCUT nextPointcut : myGlobalInvokers.keySet()) {
+			snapshot.put(nextPointcut, new ArrayList<>(myGlobalInvokers.get(nextPointcut)));
+		}
+		for (POINTCUT nextPointcut : myAnonymousInvokers.keySet()) {
+			snapshot.computeIfAbsent(nextPointcut, t -> new ArrayList<>()).addAll(myAnonymousInvokers.get(nextPointcut));
+		}
+		for (Map.Entry<POINTCUT, List<BaseInvoker>> nextEntry : snapshot.entrySet()) {
+			List<BaseInvoker> invokers = nextEntry.getValue();
+			invokers.sort(Comparator.naturalOrder());
+			nextEntry.setValue(Collections.unmodifiableList(invokers));
+		}
+		myInvokerSnapshot = Collections.unmodifiableMap(snapshot);
+	}
+
 	private void sortByOrderAnnotation(List<Object> theObjects) {
 		IdentityHashMap<Object, Integer> interceptorToOrder = new IdentityHashMap<>();
 		for (Object next : theObjects) {
@@ -271,8 +306,7 @@ public abstract class BaseInterceptorService<POINTCUT extends IPointcut> impleme
 
 	@Override
 	public boolean hasHooks(POINTCUT thePointcut) {
-		return myGlobalInvokers.containsKey(thePointcut)
-			|| myAnonymousInvokers.containsKey(thePointcut)
+		return myInvokerSnapshot.containsKey(thePointcut)
 			|| hasThreadLocalHooks(thePointcut);
 	}
 
@@ -327,29 +361,27 @@ public abstract class BaseInterceptorService<POINTCUT extends IPointcut> impleme
 
 	/**
 	 * Returns an ordered list of invokers for the given pointcut. Note that
-	 * a new and stable list is returned to.. do whatever you want with it.
+	 * the returned list must not be modified.
+	 * <p>
+	 * This method does not lock: the global and anonymous invokers come from an
+	 * immutable snapshot, and thread-local invokers are only ever visible to the
+	 * current thread.
+	 * </p>
 	 */
 	private List<BaseInvoker> getInvokersForPointcut(POINTCUT thePointcut) {
-		List<BaseInvoker> invokers;
-
-		synchronized (myRegistryMutex) {
-			List<BaseInvoker> globalInvokers = myGlobalInvokers.get(thePointcut);
-			List<BaseInvoker> anonymousInvokers = myAnonymousInvokers.get(thePointcut);
-			List<BaseInvoker> threadLocalInvokers = null;
-			if (myThreadlocalInvokersEnabled) {
-				ListMultimap<POINTCUT, BaseInvoker> pointcutToInvokers = myThreadlocalInvokers.get();
-				if (pointcutToInvokers != null) {
-					threadLocalInvokers = pointcutToInvokers.get(thePointcut);
-				}
+		List<BaseInvoker> globalAndAnonymousInvokers = myInvokerSnapshot.get(thePointcut);
+		List<BaseInvoker> threadLocalInvokers = null;
+		if (myThreadlocalInvokersEnabled) {
+			ListMultimap<POINTCUT, BaseInvoker> pointcutToInvokers = myThreadlocalInvokers.get();
+			if (pointcutToInvokers != null) {
+				threadLocalInvokers = pointcutToInvokers.get(thePointcut);
 			}
-			invokers = union(globalInvokers, anonymousInvokers, threadLocalInvokers);
 		}
-
-		return invokers;
+		return union(globalAndAnonymousInvokers, threadLocalInvokers);
 	}
 
 	/**
-	 * First argument must be the global invoker list!!
+	 * First argument must be the (already sorted) snapshot invoker list!!
 	 */
 	@SafeVarargs
 	private final List<BaseInvoker> union(List<BaseInvoker>... theInvokersLists) {
@@ -375,8 +407,8 @@ public abstract class BaseInterceptorService<POINTCUT extends IPointcut> impleme
 
 		if (haveMultiple == false) {
 
-			// The global list doesn't need to be sorted every time since it's sorted on
-			// insertion each time. Doing so is a waste of cycles..
+			// The snapshot list doesn't need to be sorted every time since it's sorted
+			// when it is built. Doing so is a waste of cycles..
 			if (haveOne == theInvokersLists[0]) {
 				retVal = haveOne;
 			} else {
@@ -497,7 +529,9 @@ public abstract class BaseInterceptorService<POINTCUT extends IPointcut> impleme
 	private static class HookInvoker extends BaseInvoker {
 
 		private final Method myMethod;
+		private final MethodHandle myMethodHandle;
 		private final Class<?>[] myParameterTypes;
+		private final boolean[] myParameterIsPointcut;
 		private final int[] myParameterIndexes;
 		private final IPointcut myPointcut;
 
@@ -520,13 +554,35 @@ public abstract class BaseInterceptorService<POINTCUT extends IPointcut> impleme
 			}
 
 			myParameterIndexes = new int[myParameterTypes.length];
+			myParameterIsPointcut = new boolean[myParameterTypes.length];
 			Map<Class<?>, AtomicInteger> typeToCount = new HashMap<>();
 			for (int i = 0; i < myParameterTypes.length; i++) {
 				AtomicInteger counter = typeToCount.computeIfAbsent(myParameterTypes[i], t -> new AtomicInteger(0));
 				myParameterIndexes[i] = counter.getAndIncrement();
+				myParameterIsPointcut[i] = myParameterTypes[i].equals(Pointcut.class);
 			}
 
 			myMethod.setAccessible(true);
+			myMethodHandle = createMethodHandle(theInterceptor, theHookMethod);
+		}
+
+		/**
+		 * Creates a handle bound to the interceptor instance which accepts the hook
+		 * arguments as an <code>Object[]</code> and always returns an <code>Object</code>
+		 * (<code>null</code> for void hooks), so that it can be invoked with
+		 * {@link MethodHandle#invokeExact(Object...)} and no reflection at call time.
+		 */
+		private static MethodHandle createMethodHandle(Object theInterceptor, Method theHookMethod) {
+			MethodHandle retVal;
+			try {
+				retVal = MethodHandles.lookup().unreflect(theHookMethod);
+			} catch (IllegalAccessException e) {
+				throw new InternalErrorException("Unable to access hook method: " + theHookMethod, e);
+			}
+			return retVal
+				.bindTo(theInterceptor)
+				.asSpreader(Object[].class, theHookMethod.getParameterCount())
+				.asType(MethodType.methodType(Object.class, Object[].class));
 		}
 
 		@Override
@@ -548,21 +604,19 @@ public abstract class BaseInterceptorService<POINTCUT extends IPointcut> impleme
 
 			Object[] args = new Object[myParameterTypes.length];
 			for (int i = 0; i < myParameterTypes.length; i++) {
-				Class<?> nextParamType = myParameterTypes[i];
-				if (nextParamType.equals(Pointcut.class)) {
+				if (myParameterIsPointcut[i]) {
 					args[i] = myPointcut;
 				} else {
 					int nextParamIndex = myParameterIndexes[i];
-					Object nextParamValue = theParams.get(nextParamType, nextParamIndex);
+					Object nextParamValue = theParams.get(myParameterTypes[i], nextParamIndex);
 					args[i] = nextParamValue;
 				}
 			}
 
 			// Invoke the method
 			try {
-				return myMethod.invoke(getInterceptor(), args);
-			} catch (InvocationTargetException e) {
-				Throwable targetException = e.getTargetException();
+				return (Object) myMethodHandle.invokeExact(args);
+			} catch (Throwable targetException) {
 				if (myPointcut.isShouldLogAndSwallowException(targetException)) {
 					ourLog.error("Exception thrown by interceptor: " + targetException.toString(), targetException);
 					return null;
@@ -573,8 +627,6 @@ public abstract class BaseInterceptorService<POINTCUT extends IPointcut> impleme
 				} else {
 					throw new InternalErrorException("Failure invoking interceptor for pointcut(s) " + getPointcut(), targetException);
 				}
-			} catch (Exception e) {
-				throw new InternalErrorException(e);
 			}
 
 		}
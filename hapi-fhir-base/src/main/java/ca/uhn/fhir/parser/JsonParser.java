@@ -46,6 +46,12 @@ import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.util.ElementUtil;
 import ca.uhn.fhir.util.FhirTerser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.text.WordUtils;
@@ -57,6 +63,7 @@ import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -190,6 +197,10 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 
 	@Override
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
+		if (getContext().getParserOptions().isStreamingJsonParsing()) {
+			return doParseResourceStreaming(theResourceType, theReader);
+		}
+
 		JsonLikeStructure jsonStructure = new JacksonStructure();
 		jsonStructure.load(theReader);
 
@@ -222,6 +233,251 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		return retVal;
 	}
 
+	/**
+	 * Parses a resource directly from the Jackson token stream, without first
+	 * reading the whole document into a tree model. Objects which can't be
+	 * processed in document order (e.g. a resource whose "resourceType" is not
+	 * its first property) are buffered individually and handed to the tree based
+	 * parsing methods, as are primitive values and their "_element" siblings,
+	 * which are small and need to be paired up with each other.
+	 */
+	private <T extends IBaseResource> T doParseResourceStreaming(Class<T> theResourceType, Reader theReader) {
+		try (com.fasterxml.jackson.core.JsonParser jsonParser = JacksonStructure.createStreamingParser(theReader)) {
+			jsonParser.nextToken();
+			JsonToken token = jsonParser.nextToken();
+
+			T retVal;
+			if (token == JsonToken.FIELD_NAME && "resourceType".equals(jsonParser.getCurrentName())) {
+				if (jsonParser.nextToken() != JsonToken.VALUE_STRING || isBlank(jsonParser.getText())) {
+					throw new DataFormatException("Invalid JSON content detected, missing required element: 'resourceType'");
+				}
+				String resourceType = jsonParser.getText();
+
+				ParserState<? extends IBaseResource> state = ParserState.getPreResourceInstance(this, theResourceType, getContext(), true, getErrorHandler());
+				state.enteringNewElement(null, resourceType);
+
+				jsonParser.nextToken();
+				streamChildren(jsonParser, state, false);
+
+				state.endingElement();
+				state.endingElement();
+
+				@SuppressWarnings("unchecked")
+				T object = (T) state.getObject();
+				retVal = object;
+			} else {
+				JacksonStructure jsonStructure = new JacksonStructure();
+				jsonStructure.setNativeObject(readRemainingObject(jsonParser));
+				retVal = doParseResource(theResourceType, jsonStructure);
+			}
+
+			token = jsonParser.nextToken();
+			if (token != null) {
+				throw new DataFormatException("Failed to parse JSON encoded FHIR content: Trailing token (of type " + token + ") found after value");
+			}
+
+			return retVal;
+		} catch (IOException e) {
+			throw JacksonStructure.toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Streams the properties of the current object into the given state. The parser must be
+	 * positioned on the first remaining property name (or the end of the object), and is left
+	 * positioned on the end of the object.
+	 */
+	private void streamChildren(com.fasterxml.jackson.core.JsonParser theJsonParser, ParserState<?> theState, boolean theInExtension) throws IOException {
+		ObjectNode deferred = null;
+		Set<String> streamedNames = null;
+
+		for (JsonToken token = theJsonParser.currentToken(); token == JsonToken.FIELD_NAME; token = theJsonParser.nextToken()) {
+			String nextName = theJsonParser.getCurrentName();
+			JsonToken valueToken = theJsonParser.nextToken();
+
+			if (theInExtension ? "url".equals(nextName) : "resourceType".equals(nextName)) {
+				theJsonParser.skipChildren();
+				continue;
+			}
+
+			boolean streamable = nextName.charAt(0) != '_' && !"id".equals(nextName) && !"fhir_comments".equals(nextName);
+			if (streamable && valueToken == JsonToken.START_ARRAY && ("extension".equals(nextName) || "modifierExtension".equals(nextName))) {
+				streamExtensions(theJsonParser, theState, "modifierExtension".equals(nextName));
+				continue;
+			}
+
+			if (streamable && valueToken == JsonToken.START_OBJECT && !"extension".equals(nextName) && !"modifierExtension".equals(nextName)) {
+				streamElement(theJsonParser, theState, nextName, false);
+				streamedNames = addStreamedName(streamedNames, nextName);
+				continue;
+			}
+
+			if (streamable && valueToken == JsonToken.START_ARRAY) {
+				JsonToken elementToken = theJsonParser.nextToken();
+				if (elementToken == JsonToken.START_OBJECT) {
+					for (; elementToken != JsonToken.END_ARRAY; elementToken = theJsonParser.nextToken()) {
+						if (elementToken == JsonToken.START_OBJECT) {
+							streamElement(theJsonParser, theState, nextName, true);
+						} else {
+							JsonLikeValue value = toJsonLikeValue(theJsonParser.readValueAsTree());
+							parseChildren(theState, nextName, value, null, '_' + nextName, true);
+						}
+					}
+					streamedNames = addStreamedName(streamedNames, nextName);
+				} else {
+					if (deferred == null) {
+						deferred = createObjectNode(theJsonParser);
+					}
+					deferred.set(nextName, readRemainingArray(theJsonParser));
+				}
+				continue;
+			}
+
+			/*
+			 * Primitive values and their "_element" siblings are buffered until the
+			 * end of the object so that the two can be paired up
+			 */
+			if (deferred == null) {
+				deferred = createObjectNode(theJsonParser);
+			}
+			deferred.set(nextName, theJsonParser.readValueAsTree());
+		}
+
+		if (deferred != null) {
+			if (streamedNames != null) {
+				// Alternates are only defined for primitive elements
+				for (String next : streamedNames) {
+					deferred.remove('_' + next);
+				}
+			}
+			parseChildren(toJsonLikeObject(deferred), theState);
+		}
+	}
+
+	private void streamElement(com.fasterxml.jackson.core.JsonParser theJsonParser, ParserState<?> theState, String theName, boolean theInArray) throws IOException {
+		if (!theInArray && theState.elementIsRepeating(theName)) {
+			getErrorHandler().incorrectJsonType(null, theName, ValueType.ARRAY, null, ValueType.OBJECT, null);
+		}
+
+		theState.enteringNewElement(null, theName);
+		JsonToken token = theJsonParser.nextToken();
+		boolean preResource = false;
+		if (theState.isPreResource()) {
+			if (token == JsonToken.FIELD_NAME && "resourceType".equals(theJsonParser.getCurrentName())) {
+				if (theJsonParser.nextToken() != JsonToken.VALUE_STRING) {
+					throw new DataFormatException("Missing required element 'resourceType' from JSON resource object, unable to parse");
+				}
+				theState.enteringNewElement(null, theJsonParser.getText());
+				preResource = true;
+				theJsonParser.nextToken();
+			} else {
+				// The resource type isn't known yet, so this resource needs to be buffered
+				JsonLikeObject nextObject = toJsonLikeObject(readRemainingObject(theJsonParser));
+				JsonLikeValue resType = nextObject.get("resourceType");
+				if (resType == null || !resType.isString()) {
+					throw new DataFormatException("Missing required element 'resourceType' from JSON resource object, unable to parse");
+				}
+				theState.enteringNewElement(null, resType.getAsString());
+				parseChildren(nextObject, theState);
+				theState.endingElement();
+				theState.endingElement();
+				return;
+			}
+		}
+
+		streamChildren(theJsonParser, theState, false);
+
+		if (preResource) {
+			theState.endingElement();
+		}
+		theState.endingElement();
+	}
+
+	private void streamExtensions(com.fasterxml.jackson.core.JsonParser theJsonParser, ParserState<?> theState, boolean theIsModifier) throws IOException {
+		for (JsonToken token = theJsonParser.nextToken(); token != JsonToken.END_ARRAY; token = theJsonParser.nextToken()) {
+			if (token != JsonToken.START_OBJECT) {
+				parseExtension(theState, JsonLikeValue.asObject(toJsonLikeValue(theJsonParser.readValueAsTree())), theIsModifier);
+				continue;
+			}
+
+			token = theJsonParser.nextToken();
+			if (token != JsonToken.FIELD_NAME || !"url".equals(theJsonParser.getCurrentName()) || !theJsonParser.nextToken().isScalarValue() || theJsonParser.currentToken() == JsonToken.VALUE_NULL) {
+				// The URL isn't known yet (or is invalid), so this extension needs to be buffered
+				ObjectNode extension;
+				if (token == JsonToken.FIELD_NAME && "url".equals(theJsonParser.getCurrentName())) {
+					extension = createObjectNode(theJsonParser);
+					extension.set("url", theJsonParser.readValueAsTree());
+					theJsonParser.nextToken();
+					readRemainingObject(theJsonParser, extension);
+				} else {
+					extension = readRemainingObject(theJsonParser);
+				}
+				parseExtension(theState, toJsonLikeObject(extension), theIsModifier);
+				continue;
+			}
+
+			String url = getExtensionUrl(theJsonParser.getText());
+			theState.enteringNewElementExtension(null, url, theIsModifier, getServerBaseUrl());
+			theJsonParser.nextToken();
+			streamChildren(theJsonParser, theState, true);
+			theState.endingElement();
+		}
+	}
+
+	private static Set<String> addStreamedName(Set<String> theStreamedNames, String theName) {
+		Set<String> retVal = theStreamedNames;
+		if (retVal == null) {
+			retVal = new HashSet<>();
+		}
+		retVal.add(theName);
+		return retVal;
+	}
+
+	private static ObjectNode createObjectNode(com.fasterxml.jackson.core.JsonParser theJsonParser) {
+		return (ObjectNode) theJsonParser.getCodec().createObjectNode();
+	}
+
+	private static ObjectNode readRemainingObject(com.fasterxml.jackson.core.JsonParser theJsonParser) throws IOException {
+		return readRemainingObject(theJsonParser, createObjectNode(theJsonParser));
+	}
+
+	/**
+	 * Reads the remaining properties of the current object into the given node. The parser must
+	 * be positioned on the next property name (or the end of the object).
+	 */
+	private static ObjectNode readRemainingObject(com.fasterxml.jackson.core.JsonParser theJsonParser, ObjectNode theObject) throws IOException {
+		for (JsonToken token = theJsonParser.currentToken(); token == JsonToken.FIELD_NAME; token = theJsonParser.nextToken()) {
+			String name = theJsonParser.getCurrentName();
+			theJsonParser.nextToken();
+			theObject.set(name, theJsonParser.readValueAsTree());
+		}
+		return theObject;
+	}
+
+	/**
+	 * Reads the remaining elements of the current array. The parser must be positioned on
+	 * the next element (or the end of the array).
+	 */
+	private static ArrayNode readRemainingArray(com.fasterxml.jackson.core.JsonParser theJsonParser) throws IOException {
+		ArrayNode retVal = ((ObjectMapper) theJsonParser.getCodec()).createArrayNode();
+		for (JsonToken token = theJsonParser.currentToken(); token != JsonToken.END_ARRAY; token = theJsonParser.nextToken()) {
+			retVal.add((JsonNode) theJsonParser.readValueAsTree());
+		}
+		return retVal;
+	}
+
+	private static JsonLikeObject toJsonLikeObject(ObjectNode theObject) {
+		JacksonStructure jsonStructure = new JacksonStructure();
+		jsonStructure.setNativeObject(theObject);
+		return jsonStructure.getRootObject();
+	}
+
+	private static JsonLikeValue toJsonLikeValue(JsonNode theValue) {
+		ObjectNode wrapper = JsonNodeFactory.instance.objectNode();
+		wrapper.set("value", theValue);
+		return toJsonLikeObject(wrapper).get("value");
+	}
+
 	private void encodeChildElementToStreamWriter(RuntimeResourceDefinition theResDef, IBaseResource theResource, JsonLikeWriter theEventWriter, IBase theNextValue,
 																 BaseRuntimeElementDefinition<?> theChildDef, String theChildName, boolean theContainedResource, CompositeChildElement theChildElem,
 																 boolean theForceEmpty, EncodeContext theEncodeContext) throws IOException {
@@ -1096,76 +1352,80 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 	}
 
 	private void parseExtension(ParserState<?> theState, JsonLikeArray theValues, boolean theIsModifier) {
+		for (int i = 0; i < theValues.size(); i++) {
+			JsonLikeObject nextExtObj = JsonLikeValue.asObject(theValues.get(i));
+			parseExtension(theState, nextExtObj, theIsModifier);
+		}
+	}
+
+	private void parseExtension(ParserState<?> theState, JsonLikeObject theExtObj, boolean theIsModifier) {
 		int allUnderscoreNames = 0;
 		int handledUnderscoreNames = 0;
 
-		for (int i = 0; i < theValues.size(); i++) {
-			JsonLikeObject nextExtObj = JsonLikeValue.asObject(theValues.get(i));
-			JsonLikeValue jsonElement = nextExtObj.get("url");
-			String url;
-			if (null == jsonElement || !(jsonElement.isScalar())) {
-				String parentElementName;
-				if (theIsModifier) {
-					parentElementName = "modifierExtension";
-				} else {
-					parentElementName = "extension";
-				}
-				getErrorHandler().missingRequiredElement(new ParseLocation().setParentElementName(parentElementName), "url");
-				url = null;
+		JsonLikeValue jsonElement = theExtObj.get("url");
+		String url;
+		if (null == jsonElement || !(jsonElement.isScalar())) {
+			String parentElementName;
+			if (theIsModifier) {
+				parentElementName = "modifierExtension";
 			} else {
-				url = getExtensionUrl(jsonElement.getAsString());
+				parentElementName = "extension";
 			}
-			theState.enteringNewElementExtension(null, url, theIsModifier, getServerBaseUrl());
-			for (String next : nextExtObj.keySet()) {
-				if ("url".equals(next)) {
-					continue;
-				} else if ("extension".equals(next)) {
-					JsonLikeArray jsonVal = JsonLikeValue.asArray(nextExtObj.get(next));
-					parseExtension(theState, jsonVal, false);
-				} else if ("modifierExtension".equals(next)) {
-					JsonLikeArray jsonVal = JsonLikeValue.asArray(nextExtObj.get(next));
-					parseExtension(theState, jsonVal, true);
-				} else if (next.charAt(0) == '_') {
-					allUnderscoreNames++;
-					continue;
-				} else {
-					JsonLikeValue jsonVal = nextExtObj.get(next);
-					String alternateName = '_' + next;
-					JsonLikeValue alternateVal = nextExtObj.get(alternateName);
-					if (alternateVal != null) {
-						handledUnderscoreNames++;
-					}
-					parseChildren(theState, next, jsonVal, alternateVal, alternateName, false);
+			getErrorHandler().missingRequiredElement(new ParseLocation().setParentElementName(parentElementName), "url");
+			url = null;
+		} else {
+			url = getExtensionUrl(jsonElement.getAsString());
+		}
+		theState.enteringNewElementExtension(null, url, theIsModifier, getServerBaseUrl());
+		for (String next : theExtObj.keySet()) {
+			if ("url".equals(next)) {
+				continue;
+			} else if ("extension".equals(next)) {
+				JsonLikeArray jsonVal = JsonLikeValue.asArray(theExtObj.get(next));
+				parseExtension(theState, jsonVal, false);
+			} else if ("modifierExtension".equals(next)) {
+				JsonLikeArray jsonVal = JsonLikeValue.asArray(theExtObj.get(next));
+				parseExtension(theState, jsonVal, true);
+			} else if (next.charAt(0) == '_') {
+				allUnderscoreNames++;
+				continue;
+			} else {
+				JsonLikeValue jsonVal = theExtObj.get(next);
+				String alternateName = '_' + next;
+				JsonLikeValue alternateVal = theExtObj.get(alternateName);
+				if (alternateVal != null) {
+					handledUnderscoreNames++;
 				}
+				parseChildren(theState, next, jsonVal, alternateVal, alternateName, false);
 			}
+		}
 
-			/*
-			 * This happens if an element has an extension but no actual value. I.e.
-			 * if a resource has a "_status" element but no corresponding "status"
-			 * element. This could be used to handle a null value with an extension
-			 * for example.
-			 */
-			if (allUnderscoreNames > handledUnderscoreNames) {
-				for (String alternateName : nextExtObj.keySet()) {
-					if (alternateName.startsWith("_") && alternateName.length() > 1) {
-						JsonLikeValue nextValue = nextExtObj.get(alternateName);
-						if (nextValue != null) {
-							if (nextValue.isObject()) {
-								String nextName = alternateName.substring(1);
-								if (nextExtObj.get(nextName) == null) {
-									theState.enteringNewElement(null, nextName);
-									parseAlternates(nextValue, theState, alternateName, alternateName);
-									theState.endingElement();
-								}
-							} else {
-								getErrorHandler().incorrectJsonType(null, alternateName, ValueType.OBJECT, null, nextValue.getJsonType(), null);
+		/*
+		 * This happens if an element has an extension but no actual value. I.e.
+		 * if a resource has a "_status" element but no corresponding "status"
+		 * element. This could be used to handle a null value with an extension
+		 * for example.
+		 */
+		if (allUnderscoreNames > handledUnderscoreNames) {
+			for (String alternateName : theExtObj.keySet()) {
+				if (alternateName.startsWith("_") && alternateName.length() > 1) {
+					JsonLikeValue nextValue = theExtObj.get(alternateName);
+					if (nextValue != null) {
+						if (nextValue.isObject()) {
+							String nextName = alternateName.substring(1);
+							if (theExtObj.get(nextName) == null) {
+								theState.enteringNewElement(null, nextName);
+								parseAlternates(nextValue, theState, alternateName, alternateName);
+								theState.endingElement();
 							}
+						} else {
+							getErrorHandler().incorrectJsonType(null, alternateName, ValueType.OBJECT, null, nextValue.getJsonType(), null);
 						}
 					}
 				}
 			}
-			theState.endingElement();
 		}
+		theState.endingElement();
 	}
 
 	private void parseFhirComments(JsonLikeValue theObject, ParserState<?> theState) {
@@ -53,6 +53,10 @@ import java.util.stream.StreamSupport;
 public class JacksonStructure implements JsonLikeStructure {
 
 	private static final ObjectMapper OBJECT_MAPPER = createObjectMapper();
+	/**
+	 * Values are read from the middle of the document when streaming, so trailing tokens are expected
+	 */
+	private static final ObjectMapper STREAMING_OBJECT_MAPPER = OBJECT_MAPPER.copy().disable(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
 	private JacksonWriter jacksonWriter;
 	private ROOT_TYPE rootType = null;
 	private JsonNode nativeRoot = null;
@@ -81,41 +85,70 @@ public class JacksonStructure implements JsonLikeStructure {
 	@Override
 	public void load(Reader theReader, boolean allowArray) throws DataFormatException {
 		PushbackReader pbr = new PushbackReader(theReader);
-		int nextInt;
 		try {
-			while (true) {
-				nextInt = pbr.read();
-				if (nextInt == -1) {
-					throw new DataFormatException("Did not find any content to parse");
-				}
-				if (nextInt == '{') {
-					pbr.unread(nextInt);
-					break;
-				}
-				if (Character.isWhitespace(nextInt)) {
-					continue;
-				}
-				if (allowArray) {
-					if (nextInt == '[') {
-						pbr.unread(nextInt);
-						break;
-					}
-					throw new DataFormatException("Content does not appear to be FHIR JSON, first non-whitespace character was: '" + (char) nextInt + "' (must be '{' or '[')");
-				}
-				throw new DataFormatException("Content does not appear to be FHIR JSON, first non-whitespace character was: '" + (char) nextInt + "' (must be '{')");
-			}
-
+			int nextInt = skipToRoot(pbr, allowArray);
 			if (nextInt == '{') {
 				setNativeObject((ObjectNode) OBJECT_MAPPER.readTree(pbr));
 			} else {
 				setNativeArray((ArrayNode) OBJECT_MAPPER.readTree(pbr));
 			}
 		} catch (Exception e) {
-			if (e.getMessage().startsWith("Unexpected char 39")) {
-				throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage() + " - " +
-					"This may indicate that single quotes are being used as JSON escapes where double quotes are required", e);
+			throw toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Creates a Jackson token stream over the given reader which uses the same parser
+	 * settings as {@link #load(Reader)}, without building a tree model for the content.
+	 * The returned parser is positioned before the opening <code>{</code> of the root object.
+	 *
+	 * @since 5.4.0
+	 */
+	public static JsonParser createStreamingParser(Reader theReader) throws DataFormatException {
+		PushbackReader pbr = new PushbackReader(theReader);
+		try {
+			skipToRoot(pbr, false);
+			return STREAMING_OBJECT_MAPPER.getFactory().createParser(pbr);
+		} catch (Exception e) {
+			throw toDataFormatException(e);
+		}
+	}
+
+	/**
+	 * Converts an exception raised by Jackson while reading content into the
+	 * exception type thrown by the HAPI parsers
+	 *
+	 * @since 5.4.0
+	 */
+	public static DataFormatException toDataFormatException(Exception theException) {
+		if (theException.getMessage() != null && theException.getMessage().startsWith("Unexpected char 39")) {
+			return new DataFormatException("Failed to parse JSON encoded FHIR content: " + theException.getMessage() + " - " +
+				"This may indicate that single quotes are being used as JSON escapes where double quotes are required", theException);
+		}
+		return new DataFormatException("Failed to parse JSON encoded FHIR content: " + theException.getMessage(), theException);
+	}
+
+	private static int skipToRoot(PushbackReader theReader, boolean theAllowArray) throws IOException {
+		while (true) {
+			int nextInt = theReader.read();
+			if (nextInt == -1) {
+				throw new DataFormatException("Did not find any content to parse");
+			}
+			if (nextInt == '{') {
+				theReader.unread(nextInt);
+				return nextInt;
+			}
+			if (Character.isWhitespace(nextInt)) {
+				continue;
+			}
+			if (theAllowArray) {
+				if (nextInt == '[') {
+					theReader.unread(nextInt);
+					return nextInt;
+				}
+				throw new DataFormatException("Content does not appear to be FHIR JSON, first non-whitespace character was: '" + (char) nextInt + "' (must be '{' or '[')");
 			}
-			throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+			throw new DataFormatException("Content does not appear to be FHIR JSON, first non-whitespace character was: '" + (char) nextInt + "' (must be '{')");
 		}
 	}
 
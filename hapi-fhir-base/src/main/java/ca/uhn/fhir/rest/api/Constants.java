@@ -234,6 +234,12 @@ public class Constants {
 	public static final String POWERED_BY_HEADER = "X-Powered-By";
 	public static final Charset CHARSET_US_ASCII;
 	public static final String PARAM_PAGEID = "_pageId";
+	/**
+	 * Used in keyset paging links
+	 *
+	 * @since 5.4.0
+	 */
+	public static final String PARAM_PAGE_TOKEN = "_pageToken";
 	/**
 	 * This is provided for testing only! Use with caution as this property may change.
 	 */
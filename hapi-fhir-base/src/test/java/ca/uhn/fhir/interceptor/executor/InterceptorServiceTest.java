@@ -179,6 +179,38 @@ public class InterceptorServiceTest {
 		assertFalse(outcome);
 	}
 
+	@Test
+	public void testHasHooksReflectsRegistrationChanges() {
+
+		class MyInterceptor {
+			private int myCount;
+
+			@Hook(Pointcut.TEST_RB)
+			public void testRb(String theString0, String theString1) {
+				myCount++;
+			}
+		}
+
+		InterceptorService svc = new InterceptorService();
+		assertFalse(svc.hasHooks(Pointcut.TEST_RB));
+
+		MyInterceptor interceptor = new MyInterceptor();
+		svc.registerInterceptor(interceptor);
+		assertTrue(svc.hasHooks(Pointcut.TEST_RB));
+		svc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+		assertEquals(1, interceptor.myCount);
+
+		svc.unregisterInterceptorsIf(t -> t == interceptor);
+		assertFalse(svc.hasHooks(Pointcut.TEST_RB));
+		svc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+		assertEquals(1, interceptor.myCount);
+
+		svc.registerAnonymousInterceptor(Pointcut.TEST_RB, (thePointcut, theArgs) -> interceptor.myCount++);
+		assertTrue(svc.hasHooks(Pointcut.TEST_RB));
+		svc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+		assertEquals(2, interceptor.myCount);
+	}
+
 	@Test
 	public void testRegisterHookFails() {
 		InterceptorService svc = new InterceptorService();
@@ -0,0 +1,330 @@
+package ca.uhn.fhir.benchmark;
+
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.FhirVersionEnum;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Address;
+import org.hl7.fhir.r4.model.BooleanType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.CodeType;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.ContactPoint;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DecimalType;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Extension;
+import org.hl7.fhir.r4.model.HumanName;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.Narrative;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Period;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.StringType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Date;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Builds the R4 resources used by the benchmarks. The resources are modelled on the
+ * output of the <a href="https://github.com/synthetichealth/synthea">Synthea</a> patient
+ * generator, so that they contain the same mix of extensions, identifiers, codings and
+ * references that real servers have to deal with.
+ * <p>
+ * All values are derived from the {@link Random} passed in, so a given seed always
+ * produces the same resources.
+ * </p>
+ */
+public class BenchmarkFixtures {
+
+	public static final long DEFAULT_SEED = 20210501L;
+	public static final String LOINC_SYSTEM = "http://loinc.org";
+	public static final String SNOMED_SYSTEM = "http://snomed.info/sct";
+	public static final String UCUM_SYSTEM = "http://unitsofmeasure.org";
+	public static final String SYNTHEA_IDENTIFIER_SYSTEM = "https://github.com/synthetichealth/synthea";
+	public static final String LOINC_HEART_RATE = "8867-4";
+	public static final String LOINC_BLOOD_PRESSURE = "85354-9";
+
+	private static final String[] FAMILY_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez"};
+	private static final String[] GIVEN_NAMES = {"James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael", "Linda", "William", "Elizabeth"};
+	private static final String[] CITIES = {"Boston", "Worcester", "Springfield", "Cambridge", "Lowell", "Brockton", "Quincy", "Lynn"};
+	private static final String[][] VITAL_SIGNS = {
+		// LOINC code, display, UCUM unit, minimum value, maximum value
+		{"8302-2", "Body Height", "cm", "150", "200"},
+		{"29463-7", "Body Weight", "kg", "45", "130"},
+		{"39156-5", "Body Mass Index", "kg/m2", "17", "40"},
+		{LOINC_HEART_RATE, "Heart rate", "/min", "50", "110"},
+		{"9279-1", "Respiratory rate", "/min", "12", "20"},
+	};
+	private static final String[][] LABORATORY = {
+		{"2339-0", "Glucose", "mg/dL", "65", "140"},
+		{"2093-3", "Total Cholesterol", "mg/dL", "150", "280"},
+		{"2571-8", "Triglycerides", "mg/dL", "100", "300"},
+		{"18262-6", "Low Density Lipoprotein Cholesterol", "mg/dL", "70", "190"},
+	};
+
+	/**
+	 * Non instantiable
+	 */
+	private BenchmarkFixtures() {
+		// nothing
+	}
+
+	public static FhirContext getFhirContext() {
+		return FhirContext.forCached(FhirVersionEnum.R4);
+	}
+
+	public static Random newRandom() {
+		return new Random(DEFAULT_SEED);
+	}
+
+	/**
+	 * Creates a fixture by name. Valid names are <code>Patient</code>, <code>Encounter</code>,
+	 * <code>Observation</code> and <code>Bundle</code>.
+	 */
+	public static IBaseResource newResource(String theName) {
+		Random random = newRandom();
+		switch (theName) {
+			case "Patient":
+				return newPatient(random);
+			case "Encounter":
+				return newEncounter(random, "Patient/" + newId(random));
+			case "Observation":
+				return newObservation(random, "Patient/" + newId(random), "Encounter/" + newId(random));
+			case "Bundle":
+				return newTransactionBundle(random, 5, 10);
+			default:
+				throw new IllegalArgumentException("Unknown fixture: " + theName);
+		}
+	}
+
+	public static Patient newPatient(Random theRandom) {
+		String family = pick(theRandom, FAMILY_NAMES) + theRandom.nextInt(1000);
+		String given = pick(theRandom, GIVEN_NAMES) + theRandom.nextInt(1000);
+		boolean male = theRandom.nextBoolean();
+
+		Patient retVal = new Patient();
+		retVal.getMeta().addProfile("http://hl7.org/fhir/us/core/StructureDefinition/us-core-patient");
+		retVal.getText().setStatus(Narrative.NarrativeStatus.GENERATED);
+		retVal.getText().setDivAsString("<div xmlns=\"http://www.w3.org/1999/xhtml\">Generated by <a href=\"https://github.com/synthetichealth/synthea\">Synthea</a>.</div>");
+
+		Extension race = retVal.addExtension().setUrl("http://hl7.org/fhir/us/core/StructureDefinition/us-core-race");
+		race.addExtension("ombCategory", new Coding("urn:oid:2.16.840.1.113883.6.238", "2106-3", "White"));
+		race.addExtension("text", new StringType("White"));
+		Extension ethnicity = retVal.addExtension().setUrl("http://hl7.org/fhir/us/core/StructureDefinition/us-core-ethnicity");
+		ethnicity.addExtension("ombCategory", new Coding("urn:oid:2.16.840.1.113883.6.238", "2186-5", "Not Hispanic or Latino"));
+		ethnicity.addExtension("text", new StringType("Not Hispanic or Latino"));
+		retVal.addExtension("http://hl7.org/fhir/StructureDefinition/patient-mothersMaidenName", new StringType(pick(theRandom, GIVEN_NAMES) + " " + pick(theRandom, FAMILY_NAMES)));
+		retVal.addExtension("http://hl7.org/fhir/us/core/StructureDefinition/us-core-birthsex", new CodeType(male ? "M" : "F"));
+		retVal.addExtension("http://hl7.org/fhir/StructureDefinition/patient-birthPlace", new Address().setCity(pick(theRandom, CITIES)).setState("Massachusetts").setCountry("US"));
+		retVal.addExtension("http://synthetichealth.github.io/synthea/disability-adjusted-life-years", new DecimalType(randomDecimal(theRandom, 0, 5)));
+		retVal.addExtension("http://synthetichealth.github.io/synthea/quality-adjusted-life-years", new DecimalType(randomDecimal(theRandom, 20, 80)));
+
+		retVal.addIdentifier().setSystem(SYNTHEA_IDENTIFIER_SYSTEM).setValue(newId(theRandom));
+		retVal.addIdentifier()
+			.setType(new CodeableConcept(new Coding("http://terminology.hl7.org/CodeSystem/v2-0203", "MR", "Medical Record Number")).setText("Medical Record Number"))
+			.setSystem("http://hospital.smarthealthit.org")
+			.setValue(newId(theRandom));
+		retVal.addIdentifier()
+			.setType(new CodeableConcept(new Coding("http://terminology.hl7.org/CodeSystem/v2-0203", "SS", "Social Security Number")).setText("Social Security Number"))
+			.setSystem("http://hl7.org/fhir/sid/us-ssn")
+			.setValue("999-" + (10 + theRandom.nextInt(90)) + "-" + (1000 + theRandom.nextInt(9000)));
+		retVal.addIdentifier()
+			.setType(new CodeableConcept(new Coding("http://terminology.hl7.org/CodeSystem/v2-0203", "DL", "Driver's License")).setText("Driver's License"))
+			.setSystem("urn:oid:2.16.840.1.113883.4.3.25")
+			.setValue("S999" + (10000 + theRandom.nextInt(90000)));
+
+		retVal.addName()
+			.setUse(HumanName.NameUse.OFFICIAL)
+			.setFamily(family)
+			.addGiven(given)
+			.addPrefix(male ? "Mr." : "Ms.");
+		retVal.addTelecom()
+			.setSystem(ContactPoint.ContactPointSystem.PHONE)
+			.setValue("555-" + (100 + theRandom.nextInt(900)) + "-" + (1000 + theRandom.nextInt(9000)))
+			.setUse(ContactPoint.ContactPointUse.HOME);
+		retVal.setGender(male ? Enumerations.AdministrativeGender.MALE : Enumerations.AdministrativeGender.FEMALE);
+		retVal.setBirthDate(new Date(-631152000000L + (long) theRandom.nextInt(20000) * 86400000L));
+
+		Address address = retVal.addAddress()
+			.addLine((1 + theRandom.nextInt(999)) + " " + pick(theRandom, FAMILY_NAMES) + " Street")
+			.setCity(pick(theRandom, CITIES))
+			.setState("MA")
+			.setPostalCode("0" + (1000 + theRandom.nextInt(1000)))
+			.setCountry("US");
+		Extension geolocation = address.addExtension().setUrl("http://hl7.org/fhir/StructureDefinition/geolocation");
+		geolocation.addExtension("latitude", new DecimalType(randomDecimal(theRandom, 41, 43)));
+		geolocation.addExtension("longitude", new DecimalType(randomDecimal(theRandom, -73, -70)));
+
+		retVal.setMaritalStatus(new CodeableConcept(new Coding("http://terminology.hl7.org/CodeSystem/v3-MaritalStatus", "M", "M")).setText("M"));
+		retVal.setMultipleBirth(new BooleanType(false));
+		retVal.addCommunication().setLanguage(new CodeableConcept(new Coding("urn:ietf:bcp:47", "en-US", "English")).setText("English"));
+
+		return retVal;
+	}
+
+	public static Encounter newEncounter(Random theRandom, String thePatientReference) {
+		Date start = randomDate(theRandom);
+
+		Encounter retVal = new Encounter();
+		retVal.getMeta().addProfile("http://hl7.org/fhir/us/core/StructureDefinition/us-core-encounter");
+		retVal.addIdentifier().setUse(Identifier.IdentifierUse.OFFICIAL).setSystem(SYNTHEA_IDENTIFIER_SYSTEM).setValue(newId(theRandom));
+		retVal.setStatus(Encounter.EncounterStatus.FINISHED);
+		retVal.setClass_(new Coding("http://terminology.hl7.org/CodeSystem/v3-ActCode", "AMB", null));
+		retVal.addType(new CodeableConcept(new Coding(SNOMED_SYSTEM, "162673000", "General examination of patient (procedure)")).setText("General examination of patient (procedure)"));
+		retVal.setSubject(new Reference(thePatientReference).setDisplay(pick(theRandom, GIVEN_NAMES) + " " + pick(theRandom, FAMILY_NAMES)));
+		retVal.addParticipant()
+			.addType(new CodeableConcept(new Coding("http://terminology.hl7.org/CodeSystem/v3-ParticipationType", "PPRF", "primary performer")).setText("primary performer"))
+			.setPeriod(new Period().setStart(start).setEnd(new Date(start.getTime() + 900000L)))
+			.setIndividual(newLogicalReference("http://hl7.org/fhir/sid/us-npi", String.valueOf(9999900000L + theRandom.nextInt(100000)), "Dr. " + pick(theRandom, GIVEN_NAMES) + " " + pick(theRandom, FAMILY_NAMES)));
+		retVal.setPeriod(new Period().setStart(start).setEnd(new Date(start.getTime() + 900000L)));
+		retVal.setServiceProvider(newLogicalReference(SYNTHEA_IDENTIFIER_SYSTEM, newId(theRandom), pick(theRandom, CITIES) + " General Hospital"));
+		return retVal;
+	}
+
+	public static Observation newObservation(Random theRandom, String thePatientReference, String theEncounterReference) {
+		Observation retVal = new Observation();
+		retVal.setStatus(Observation.ObservationStatus.FINAL);
+		retVal.setSubject(new Reference(thePatientReference));
+		retVal.setEncounter(new Reference(theEncounterReference));
+		Date effective = randomDate(theRandom);
+		retVal.setEffective(new DateTimeType(effective));
+		retVal.setIssued(effective);
+
+		int type = theRandom.nextInt(VITAL_SIGNS.length + LABORATORY.length + 1);
+		if (type == 0) {
+			retVal.getMeta().addProfile("http://hl7.org/fhir/StructureDefinition/bp");
+			retVal.addCategory(newCategory("vital-signs", "vital signs"));
+			retVal.setCode(newLoincConcept(LOINC_BLOOD_PRESSURE, "Blood Pressure"));
+			retVal.addComponent()
+				.setCode(newLoincConcept("8462-4", "Diastolic Blood Pressure"))
+				.setValue(newQuantity(theRandom, "mm[Hg]", 60, 100));
+			retVal.addComponent()
+				.setCode(newLoincConcept("8480-6", "Systolic Blood Pressure"))
+				.setValue(newQuantity(theRandom, "mm[Hg]", 100, 180));
+		} else if (type <= VITAL_SIGNS.length) {
+			String[] vitalSign = VITAL_SIGNS[type - 1];
+			retVal.getMeta().addProfile("http://hl7.org/fhir/StructureDefinition/vitalsigns");
+			retVal.addCategory(newCategory("vital-signs", "vital signs"));
+			retVal.setCode(newLoincConcept(vitalSign[0], vitalSign[1]));
+			retVal.setValue(newQuantity(theRandom, vitalSign[2], Integer.parseInt(vitalSign[3]), Integer.parseInt(vitalSign[4])));
+		} else {
+			String[] laboratory = LABORATORY[type - VITAL_SIGNS.length - 1];
+			retVal.getMeta().addProfile("http://hl7.org/fhir/us/core/StructureDefinition/us-core-observation-lab");
+			retVal.addCategory(newCategory("laboratory", "laboratory"));
+			retVal.setCode(newLoincConcept(laboratory[0], laboratory[1]));
+			retVal.setValue(newQuantity(theRandom, laboratory[2], Integer.parseInt(laboratory[3]), Integer.parseInt(laboratory[4])));
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Creates a transaction Bundle in the style of a Synthea patient export: one Patient
+	 * followed by a number of Encounters, each with a number of Observations. Entries
+	 * refer to each other using <code>urn:uuid:</code> full URLs.
+	 */
+	public static Bundle newTransactionBundle(Random theRandom, int theEncounterCount, int theObservationsPerEncounter) {
+		Bundle retVal = new Bundle();
+		retVal.setType(Bundle.BundleType.TRANSACTION);
+
+		String patientFullUrl = newUuidFullUrl(theRandom);
+		retVal.addEntry()
+			.setFullUrl(patientFullUrl)
+			.setResource(newPatient(theRandom))
+			.getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Patient");
+
+		for (int i = 0; i < theEncounterCount; i++) {
+			String encounterFullUrl = newUuidFullUrl(theRandom);
+			retVal.addEntry()
+				.setFullUrl(encounterFullUrl)
+				.setResource(newEncounter(theRandom, patientFullUrl))
+				.getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Encounter");
+
+			for (int j = 0; j < theObservationsPerEncounter; j++) {
+				retVal.addEntry()
+					.setFullUrl(newUuidFullUrl(theRandom))
+					.setResource(newObservation(theRandom, patientFullUrl, encounterFullUrl))
+					.getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Observation");
+			}
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Practitioners and organizations are referred to by identifier, so that encounters
+	 * can be stored without first storing the resources they refer to
+	 */
+	private static Reference newLogicalReference(String theSystem, String theValue, String theDisplay) {
+		Reference retVal = new Reference();
+		retVal.getIdentifier().setSystem(theSystem).setValue(theValue);
+		retVal.setDisplay(theDisplay);
+		return retVal;
+	}
+
+	private static CodeableConcept newCategory(String theCode, String theDisplay) {
+		return new CodeableConcept(new Coding("http://terminology.hl7.org/CodeSystem/observation-category", theCode, theDisplay));
+	}
+
+	private static CodeableConcept newLoincConcept(String theCode, String theDisplay) {
+		return new CodeableConcept(new Coding(LOINC_SYSTEM, theCode, theDisplay)).setText(theDisplay);
+	}
+
+	private static Quantity newQuantity(Random theRandom, String theUnit, int theMin, int theMax) {
+		return new Quantity()
+			.setValue(randomDecimal(theRandom, theMin, theMax))
+			.setUnit(theUnit)
+			.setSystem(UCUM_SYSTEM)
+			.setCode(theUnit);
+	}
+
+	private static String newId(Random theRandom) {
+		return new UUID(theRandom.nextLong(), theRandom.nextLong()).toString();
+	}
+
+	private static String newUuidFullUrl(Random theRandom) {
+		return "urn:uuid:" + newId(theRandom);
+	}
+
+	private static BigDecimal randomDecimal(Random theRandom, int theMin, int theMax) {
+		double value = theMin + theRandom.nextDouble() * (theMax - theMin);
+		return BigDecimal.valueOf(value).setScale(1, RoundingMode.HALF_UP);
+	}
+
+	private static Date randomDate(Random theRandom) {
+		// Somewhere between 2010 and 2020
+		return new Date(1262304000000L + (long) theRandom.nextInt(3650) * 86400000L + theRandom.nextInt(86400000));
+	}
+
+	private static String pick(Random theRandom, String[] theValues) {
+		return theValues[theRandom.nextInt(theValues.length)];
+	}
+
+}
@@ -0,0 +1,122 @@
+package ca.uhn.fhir.benchmark;
+
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
+import ca.uhn.fhir.jpa.binstore.IBinaryStorageSvc;
+import ca.uhn.fhir.jpa.binstore.MemoryBinaryStorageSvcImpl;
+import ca.uhn.fhir.jpa.config.BaseJavaConfigR4;
+import ca.uhn.fhir.jpa.dao.IFulltextSearchSvc;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.ModelConfig;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.search.mapper.orm.cfg.HibernateOrmMapperSettings;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.Properties;
+
+/**
+ * R4 JPA server configuration for the database backed benchmarks. This uses an
+ * in-memory H2 database and disables fulltext indexing, so that the benchmarks
+ * measure the work done by HAPI FHIR itself.
+ */
+@Configuration
+@EnableTransactionManagement()
+public class BenchmarkJpaConfig extends BaseJavaConfigR4 {
+
+	@Bean
+	public DaoConfig daoConfig() {
+		return new DaoConfig();
+	}
+
+	@Bean
+	public ModelConfig modelConfig() {
+		return daoConfig().getModelConfig();
+	}
+
+	@Bean
+	public PartitionSettings partitionSettings() {
+		return new PartitionSettings();
+	}
+
+	@Bean(destroyMethod = "close")
+	public BasicDataSource dataSource() {
+		BasicDataSource retVal = new BasicDataSource();
+		retVal.setDriver(new org.h2.Driver());
+		retVal.setUrl("jdbc:h2:mem:benchmark");
+		retVal.setUsername("");
+		retVal.setPassword("");
+		retVal.setMaxTotal(10);
+		return retVal;
+	}
+
+	@Override
+	@Bean
+	public LocalContainerEntityManagerFactoryBean entityManagerFactory() {
+		LocalContainerEntityManagerFactoryBean retVal = super.entityManagerFactory();
+		retVal.setPersistenceUnitName("PU_HapiFhirJpaBenchmark");
+		retVal.setDataSource(dataSource());
+		retVal.setJpaProperties(jpaProperties());
+		return retVal;
+	}
+
+	@Bean
+	public Properties jpaProperties() {
+		Properties extraProperties = new Properties();
+		extraProperties.put("hibernate.format_sql", "false");
+		extraProperties.put("hibernate.show_sql", "false");
+		extraProperties.put("hibernate.hbm2ddl.auto", "update");
+		extraProperties.put("hibernate.dialect", H2Dialect.class.getName());
+		extraProperties.put("hibernate.jdbc.batch_size", "20");
+		extraProperties.put(HibernateOrmMapperSettings.ENABLED, "false");
+		return extraProperties;
+	}
+
+	/**
+	 * Disable fulltext searching
+	 */
+	@Override
+	public IFulltextSearchSvc searchDaoR4() {
+		return null;
+	}
+
+	@Bean
+	public IBinaryStorageSvc binaryStorage() {
+		return new MemoryBinaryStorageSvcImpl();
+	}
+
+	@Primary
+	@Bean
+	public JpaTransactionManager hapiTransactionManager(EntityManagerFactory entityManagerFactory) {
+		JpaTransactionManager retVal = new JpaTransactionManager();
+		retVal.setEntityManagerFactory(entityManagerFactory);
+		return retVal;
+	}
+
+}
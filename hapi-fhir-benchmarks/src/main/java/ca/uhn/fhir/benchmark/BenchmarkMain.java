@@ -0,0 +1,63 @@
+package ca.uhn.fhir.benchmark;
+
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.util.VersionUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point for the benchmark JAR. This simply delegates to the JMH command line
+ * runner (so all of the usual JMH options such as <code>-f</code>, <code>-wi</code> or a
+ * benchmark name regex can be passed), except that unless a result format is given
+ * explicitly, results are written in JSON format to a file named after the HAPI FHIR
+ * version being measured, e.g. <code>hapi-fhir-benchmarks-5.4.0.json</code>. These files
+ * can be compared between releases using any JMH result visualizer.
+ */
+public class BenchmarkMain {
+
+	/**
+	 * Non instantiable
+	 */
+	private BenchmarkMain() {
+		// nothing
+	}
+
+	public static void main(String[] theArgs) throws Exception {
+		org.openjdk.jmh.Main.main(buildArguments(theArgs));
+	}
+
+	static String[] buildArguments(String[] theArgs) {
+		List<String> args = new ArrayList<>(Arrays.asList(theArgs));
+		if (!args.contains("-rf") && !args.contains("-h") && !args.contains("-l")) {
+			args.add(0, "-rf");
+			args.add(1, "json");
+			if (!args.contains("-rff")) {
+				args.add(2, "-rff");
+				args.add(3, "hapi-fhir-benchmarks-" + VersionUtil.getVersion() + ".json");
+			}
+		}
+		return args.toArray(new String[0]);
+	}
+
+}
@@ -0,0 +1,72 @@
+package ca.uhn.fhir.benchmark;
+
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Search parameter registry containing only the built-in search parameters of the
+ * FHIR version, so that benchmarks which don't need a database can run without one
+ */
+class FhirContextSearchParamRegistry implements ISearchParamRegistry {
+
+	private final Map<String, Map<String, RuntimeSearchParam>> myResourceNameToSpNameToSp = new HashMap<>();
+	private final Map<String, RuntimeSearchParam> myUrlToParam = new HashMap<>();
+
+	FhirContextSearchParamRegistry(FhirContext theFhirContext) {
+		for (String nextResourceName : theFhirContext.getResourceTypes()) {
+			RuntimeResourceDefinition nextResDef = theFhirContext.getResourceDefinition(nextResourceName);
+			Map<String, RuntimeSearchParam> nameToParam = new HashMap<>();
+			for (RuntimeSearchParam nextSp : nextResDef.getSearchParams()) {
+				nameToParam.put(nextSp.getName(), nextSp);
+				if (nextSp.getUri() != null) {
+					myUrlToParam.put(nextSp.getUri(), nextSp);
+				}
+			}
+			myResourceNameToSpNameToSp.put(nextResDef.getName(), Collections.unmodifiableMap(nameToParam));
+		}
+	}
+
+	@Override
+	public RuntimeSearchParam getActiveSearchParam(String theResourceName, String theParamName) {
+		return getActiveSearchParams(theResourceName).get(theParamName);
+	}
+
+	@Override
+	public Map<String, RuntimeSearchParam> getActiveSearchParams(String theResourceName) {
+		return myResourceNameToSpNameToSp.getOrDefault(theResourceName, Collections.emptyMap());
+	}
+
+	@Nullable
+	@Override
+	public RuntimeSearchParam getActiveSearchParamByUrl(String theUrl) {
+		return myUrlToParam.get(theUrl);
+	}
+
+}
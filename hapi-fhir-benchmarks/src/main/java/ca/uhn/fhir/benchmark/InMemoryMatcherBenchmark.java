@@ -0,0 +1,192 @@
+package ca.uhn.fhir.benchmark;
+
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.model.entity.ModelConfig;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.ResourceLink;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
+import ca.uhn.fhir.jpa.searchparam.extractor.PathAndRef;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorR4;
+import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryResourceMatcher;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures in-memory matching of an Observation against typical subscription
+ * criteria. The search parameters of the Observation are extracted once, so this
+ * measures only the cost of parsing the criteria and evaluating them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InMemoryMatcherBenchmark {
+
+	@Param({"TOKEN", "TOKEN_AND_TOKEN", "DATE", "REFERENCE", "NO_MATCH"})
+	public String myCriteriaType;
+
+	private AnnotationConfigApplicationContext myAppCtx;
+	private InMemoryResourceMatcher myMatcher;
+	private Observation myResource;
+	private ResourceIndexedSearchParams mySearchParams;
+	private String myCriteria;
+
+	@Setup
+	public void setup() {
+		myAppCtx = new AnnotationConfigApplicationContext(MatcherConfig.class);
+		myMatcher = myAppCtx.getBean(InMemoryResourceMatcher.class);
+		myResource = (Observation) BenchmarkFixtures.newResource("Observation");
+		mySearchParams = extractSearchParams(myAppCtx.getBean(ISearchParamExtractor.class), myResource);
+
+		switch (myCriteriaType) {
+			case "TOKEN":
+				myCriteria = "code=" + BenchmarkFixtures.LOINC_SYSTEM + "|" + BenchmarkFixtures.LOINC_HEART_RATE + "," + BenchmarkFixtures.LOINC_SYSTEM + "|" + myResource.getCode().getCodingFirstRep().getCode();
+				break;
+			case "TOKEN_AND_TOKEN":
+				myCriteria = "status=final&category=vital-signs,laboratory";
+				break;
+			case "DATE":
+				myCriteria = "date=ge2010-01-01&date=lt2021-01-01";
+				break;
+			case "REFERENCE":
+				myCriteria = "subject=" + myResource.getSubject().getReference();
+				break;
+			case "NO_MATCH":
+				// Most subscriptions don't match most resources
+				myCriteria = "code=" + BenchmarkFixtures.LOINC_SYSTEM + "|00000-0";
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown criteria type: " + myCriteriaType);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		myAppCtx.close();
+	}
+
+	@Benchmark
+	public InMemoryMatchResult match() {
+		return myMatcher.match(myCriteria, myResource, mySearchParams);
+	}
+
+	/**
+	 * Populates the search parameter indexes for a resource in the same way that the JPA
+	 * server does, but without resolving references against a database
+	 */
+	static ResourceIndexedSearchParams extractSearchParams(ISearchParamExtractor theExtractor, IBaseResource theResource) {
+		ResourceIndexedSearchParams retVal = new ResourceIndexedSearchParams();
+		retVal.myStringParams.addAll(theExtractor.extractSearchParamStrings(theResource));
+		retVal.myNumberParams.addAll(theExtractor.extractSearchParamNumber(theResource));
+		retVal.myQuantityParams.addAll(theExtractor.extractSearchParamQuantity(theResource));
+		retVal.myDateParams.addAll(theExtractor.extractSearchParamDates(theResource));
+		retVal.myUriParams.addAll(theExtractor.extractSearchParamUri(theResource));
+		for (BaseResourceIndexedSearchParam next : theExtractor.extractSearchParamTokens(theResource)) {
+			if (next instanceof ResourceIndexedSearchParamToken) {
+				retVal.myTokenParams.add((ResourceIndexedSearchParamToken) next);
+			}
+		}
+
+		ResourceTable source = new ResourceTable();
+		source.setResourceType(theResource.fhirType());
+		Date updated = new Date();
+		for (PathAndRef next : theExtractor.extractResourceLinks(theResource, false)) {
+			IIdType targetId = next.getRef().getReferenceElement();
+			if (targetId.hasResourceType() && targetId.hasIdPart()) {
+				retVal.myLinks.add(ResourceLink.forLocalReference(next.getPath(), source, targetId.getResourceType(), null, targetId.getIdPart(), updated, null));
+				retVal.myPopulatedResourceLinkParameters.add(next.getSearchParamName());
+			}
+		}
+
+		return retVal;
+	}
+
+	@Configuration
+	public static class MatcherConfig {
+
+		@Bean
+		public FhirContext fhirContext() {
+			return BenchmarkFixtures.getFhirContext();
+		}
+
+		@Bean
+		public ModelConfig modelConfig() {
+			return new ModelConfig();
+		}
+
+		@Bean
+		public PartitionSettings partitionSettings() {
+			return new PartitionSettings();
+		}
+
+		@Bean
+		public ISearchParamRegistry searchParamRegistry() {
+			return new FhirContextSearchParamRegistry(fhirContext());
+		}
+
+		@Bean
+		public ISearchParamExtractor searchParamExtractor() {
+			return new SearchParamExtractorR4(modelConfig(), partitionSettings(), fhirContext(), searchParamRegistry());
+		}
+
+		@Bean
+		public MatchUrlService matchUrlService() {
+			return new MatchUrlService();
+		}
+
+		@Bean
+		public InMemoryResourceMatcher inMemoryResourceMatcher() {
+			return new InMemoryResourceMatcher();
+		}
+
+	}
+
+}
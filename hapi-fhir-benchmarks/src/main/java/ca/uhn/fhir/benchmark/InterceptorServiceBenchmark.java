@@ -0,0 +1,109 @@
+package ca.uhn.fhir.benchmark;
+
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.HookParams;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.interceptor.executor.InterceptorService;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of invoking a storage pointcut, which happens several times
+ * for every resource written to the JPA server, with varying numbers of registered
+ * interceptors
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterceptorServiceBenchmark {
+
+	@Param({"0", "1", "10"})
+	public int myInterceptorCount;
+
+	private InterceptorService myInterceptorService;
+	private HookParams myParams;
+
+	@Setup
+	public void setup() {
+		myInterceptorService = new InterceptorService();
+		for (int i = 0; i < myInterceptorCount; i++) {
+			myInterceptorService.registerInterceptor(new CountingInterceptor());
+		}
+
+		IBaseResource resource = BenchmarkFixtures.newResource("Patient");
+		myParams = new HookParams()
+			.add(IBaseResource.class, resource)
+			.add(RequestDetails.class, null)
+			.addIfMatchesType(ServletRequestDetails.class, null)
+			.add(TransactionDetails.class, new TransactionDetails());
+	}
+
+	@Benchmark
+	public boolean callHooks() {
+		return myInterceptorService.callHooks(Pointcut.STORAGE_PRESTORAGE_RESOURCE_CREATED, myParams);
+	}
+
+	/**
+	 * Callers typically check this before building the {@link HookParams}
+	 */
+	@Benchmark
+	public boolean hasHooks() {
+		return myInterceptorService.hasHooks(Pointcut.STORAGE_PRESTORAGE_RESOURCE_CREATED);
+	}
+
+	@Interceptor
+	public static class CountingInterceptor {
+
+		private int myCount;
+
+		@Hook(Pointcut.STORAGE_PRESTORAGE_RESOURCE_CREATED)
+		public void resourceCreated(IBaseResource theResource, TransactionDetails theTransactionDetails) {
+			myCount++;
+		}
+
+		public int getCount() {
+			return myCount;
+		}
+
+	}
+
+}
@@ -0,0 +1,154 @@
+package ca.uhn.fhir.benchmark;
+
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.api.dao.IFhirSystemDao;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Meta;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures end-to-end write and search throughput of the R4 JPA server against an
+ * in-memory H2 database. The database is populated with a number of Synthea-style
+ * patients before measurement starts, and keeps growing as the write benchmarks run.
+ * Searches are performed synchronously so that each invocation actually queries the
+ * database instead of reusing cached search results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JpaThroughputBenchmark {
+
+	@Param({"20"})
+	public int myPatientCount;
+
+	private AnnotationConfigApplicationContext myAppCtx;
+	private IFhirSystemDao<Bundle, Meta> mySystemDao;
+	private IFhirResourceDao<Patient> myPatientDao;
+	private IFhirResourceDao<Observation> myObservationDao;
+	private Random myRandom;
+	private List<IIdType> myPatientIds;
+	private List<IIdType> myEncounterIds;
+
+	@SuppressWarnings("unchecked")
+	@Setup
+	public void setup() {
+		myAppCtx = new AnnotationConfigApplicationContext(BenchmarkJpaConfig.class);
+		DaoRegistry daoRegistry = myAppCtx.getBean(DaoRegistry.class);
+		mySystemDao = myAppCtx.getBean(IFhirSystemDao.class);
+		myPatientDao = daoRegistry.getResourceDao(Patient.class);
+		myObservationDao = daoRegistry.getResourceDao(Observation.class);
+		IFhirResourceDao<Encounter> encounterDao = daoRegistry.getResourceDao(Encounter.class);
+		myRandom = BenchmarkFixtures.newRandom();
+
+		myPatientIds = new ArrayList<>();
+		myEncounterIds = new ArrayList<>();
+		for (int i = 0; i < myPatientCount; i++) {
+			IIdType patientId = myPatientDao.create(BenchmarkFixtures.newPatient(myRandom)).getId().toUnqualifiedVersionless();
+			myPatientIds.add(patientId);
+			for (int j = 0; j < 5; j++) {
+				IIdType encounterId = encounterDao.create(BenchmarkFixtures.newEncounter(myRandom, patientId.getValue())).getId().toUnqualifiedVersionless();
+				myEncounterIds.add(encounterId);
+				for (int k = 0; k < 10; k++) {
+					myObservationDao.create(BenchmarkFixtures.newObservation(myRandom, patientId.getValue(), encounterId.getValue()));
+				}
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		myAppCtx.close();
+	}
+
+	@Benchmark
+	public IIdType createObservation() {
+		int index = myRandom.nextInt(myEncounterIds.size());
+		IIdType patientId = myPatientIds.get(index / 5);
+		IIdType encounterId = myEncounterIds.get(index);
+		return myObservationDao.create(BenchmarkFixtures.newObservation(myRandom, patientId.getValue(), encounterId.getValue())).getId();
+	}
+
+	/**
+	 * Stores a Synthea-style transaction Bundle containing one patient, two encounters
+	 * and ten observations
+	 */
+	@Benchmark
+	public Bundle transaction() {
+		return mySystemDao.transaction(null, BenchmarkFixtures.newTransactionBundle(myRandom, 2, 5));
+	}
+
+	@Benchmark
+	public Patient readPatient() {
+		return myPatientDao.read(myPatientIds.get(myRandom.nextInt(myPatientIds.size())));
+	}
+
+	@Benchmark
+	public List<IBaseResource> searchObservationsBySubjectAndCode() {
+		IIdType patientId = myPatientIds.get(myRandom.nextInt(myPatientIds.size()));
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		map.add(Observation.SP_SUBJECT, new ReferenceParam(patientId.getValue()));
+		map.add(Observation.SP_CATEGORY, new TokenParam("http://terminology.hl7.org/CodeSystem/observation-category", "vital-signs"));
+		IBundleProvider outcome = myObservationDao.search(map);
+		return outcome.getResources(0, 20);
+	}
+
+	@Benchmark
+	public List<IBaseResource> searchObservationsByCode() {
+		SearchParameterMap map = SearchParameterMap.newSynchronous();
+		map.add(Observation.SP_CODE, new TokenParam(BenchmarkFixtures.LOINC_SYSTEM, BenchmarkFixtures.LOINC_HEART_RATE));
+		map.setCount(20);
+		IBundleProvider outcome = myObservationDao.search(map);
+		return outcome.getResources(0, 20);
+	}
+
+}
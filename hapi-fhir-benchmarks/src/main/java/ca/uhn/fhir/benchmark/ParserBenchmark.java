@@ -0,0 +1,81 @@
+package ca.uhn.fhir.benchmark;
+
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing and encoding of the {@link BenchmarkFixtures fixtures} using the
+ * JSON and XML parsers
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({"JSON", "XML"})
+	public String myEncoding;
+
+	@Param({"Patient", "Observation", "Bundle"})
+	public String myFixture;
+
+	private IParser myParser;
+	private IBaseResource myResource;
+	private String myEncoded;
+
+	@Setup
+	public void setup() {
+		FhirContext ctx = BenchmarkFixtures.getFhirContext();
+		myParser = EncodingEnum.valueOf(myEncoding).newParser(ctx);
+		myResource = BenchmarkFixtures.newResource(myFixture);
+		myEncoded = myParser.encodeResourceToString(myResource);
+	}
+
+	@Benchmark
+	public IBaseResource parse() {
+		return myParser.parseResource(myEncoded);
+	}
+
+	@Benchmark
+	public String encode() {
+		return myParser.encodeResourceToString(myResource);
+	}
+
+}
@@ -0,0 +1,119 @@
+package ca.uhn.fhir.benchmark;
+
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.model.entity.ModelConfig;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamDate;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamQuantity;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
+import ca.uhn.fhir.jpa.searchparam.extractor.PathAndRef;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorR4;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures search parameter extraction for the {@link BenchmarkFixtures fixtures} using
+ * the R4 base search parameters. This is work which is performed for every resource
+ * that is written to the JPA server, and for every resource checked by in-memory
+ * subscription matching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchParamExtractorBenchmark {
+
+	@Param({"Patient", "Encounter", "Observation"})
+	public String myFixture;
+
+	private ISearchParamExtractor myExtractor;
+	private IBaseResource myResource;
+
+	@Setup
+	public void setup() {
+		FhirContext ctx = BenchmarkFixtures.getFhirContext();
+		myExtractor = new SearchParamExtractorR4(new ModelConfig(), new PartitionSettings(), ctx, new FhirContextSearchParamRegistry(ctx));
+		myResource = BenchmarkFixtures.newResource(myFixture);
+	}
+
+	@Benchmark
+	public Set<BaseResourceIndexedSearchParam> extractTokens() {
+		return myExtractor.extractSearchParamTokens(myResource);
+	}
+
+	@Benchmark
+	public Set<ResourceIndexedSearchParamString> extractStrings() {
+		return myExtractor.extractSearchParamStrings(myResource);
+	}
+
+	@Benchmark
+	public Set<ResourceIndexedSearchParamDate> extractDates() {
+		return myExtractor.extractSearchParamDates(myResource);
+	}
+
+	@Benchmark
+	public Set<ResourceIndexedSearchParamQuantity> extractQuantities() {
+		return myExtractor.extractSearchParamQuantity(myResource);
+	}
+
+	@Benchmark
+	public Set<PathAndRef> extractResourceLinks() {
+		return myExtractor.extractResourceLinks(myResource, false);
+	}
+
+	/**
+	 * Performs every kind of extraction which the JPA server performs when storing a resource
+	 */
+	@Benchmark
+	public int extractAll() {
+		int retVal = 0;
+		retVal += myExtractor.extractSearchParamStrings(myResource).size();
+		retVal += myExtractor.extractSearchParamNumber(myResource).size();
+		retVal += myExtractor.extractSearchParamQuantity(myResource).size();
+		retVal += myExtractor.extractSearchParamQuantityNormalized(myResource).size();
+		retVal += myExtractor.extractSearchParamDates(myResource).size();
+		retVal += myExtractor.extractSearchParamUri(myResource).size();
+		retVal += myExtractor.extractSearchParamTokens(myResource).size();
+		retVal += myExtractor.extractSearchParamSpecial(myResource).size();
+		retVal += myExtractor.extractResourceLinks(myResource, false).size();
+		return retVal;
+	}
+
+}
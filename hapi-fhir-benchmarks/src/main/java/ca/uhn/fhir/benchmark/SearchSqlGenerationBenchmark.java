@@ -0,0 +1,124 @@
+package ca.uhn.fhir.benchmark;
+
+/*-
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
+import ca.uhn.fhir.jpa.config.HibernatePropertiesProvider;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.search.builder.QueryStack;
+import ca.uhn.fhir.jpa.search.builder.sql.GeneratedSql;
+import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryBuilder;
+import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
+import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.SearchContainedModeEnum;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import com.healthmarketscience.sqlbuilder.Condition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the translation of a parsed search into SQL, which happens for every
+ * search (and every page of a search) performed by the JPA server. This mirrors
+ * what <code>SearchBuilder</code> does before executing the query, but no query is
+ * actually executed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchSqlGenerationBenchmark {
+
+	@Param({
+		"Patient?family=smith&given=john",
+		"Observation?code=http://loinc.org|8867-4&date=ge2020-01-01",
+		"Observation?status=final&category=vital-signs,laboratory&value-quantity=gt100",
+		"Encounter?class=AMB&date=ge2020-01-01&date=lt2021-01-01"
+	})
+	public String mySearchUrl;
+
+	private AnnotationConfigApplicationContext myAppCtx;
+	private FhirContext myFhirContext;
+	private DaoConfig myDaoConfig;
+	private PartitionSettings myPartitionSettings;
+	private SqlObjectFactory mySqlObjectFactory;
+	private HibernatePropertiesProvider myDialectProvider;
+	private ISearchParamRegistry mySearchParamRegistry;
+	private String myResourceType;
+	private SearchParameterMap myParams;
+
+	@Setup
+	public void setup() {
+		myAppCtx = new AnnotationConfigApplicationContext(BenchmarkJpaConfig.class);
+		myFhirContext = myAppCtx.getBean(FhirContext.class);
+		myDaoConfig = myAppCtx.getBean(DaoConfig.class);
+		myPartitionSettings = myAppCtx.getBean(PartitionSettings.class);
+		mySqlObjectFactory = myAppCtx.getBean(SqlObjectFactory.class);
+		myDialectProvider = myAppCtx.getBean(HibernatePropertiesProvider.class);
+		mySearchParamRegistry = myAppCtx.getBean(ISearchParamRegistry.class);
+
+		myResourceType = mySearchUrl.substring(0, mySearchUrl.indexOf('?'));
+		RuntimeResourceDefinition resourceDef = myFhirContext.getResourceDefinition(myResourceType);
+		myParams = myAppCtx.getBean(MatchUrlService.class).translateMatchUrl(mySearchUrl, resourceDef);
+		myParams.clean();
+	}
+
+	@TearDown
+	public void tearDown() {
+		myAppCtx.close();
+	}
+
+	@Benchmark
+	public GeneratedSql generate() {
+		RequestPartitionId partitionId = RequestPartitionId.allPartitions();
+		SearchQueryBuilder sqlBuilder = new SearchQueryBuilder(myFhirContext, myDaoConfig.getModelConfig(), myPartitionSettings, partitionId, myResourceType, mySqlObjectFactory, myDialectProvider, false);
+		QueryStack queryStack = new QueryStack(myParams, myDaoConfig, myDaoConfig.getModelConfig(), myFhirContext, sqlBuilder, mySearchParamRegistry, myPartitionSettings);
+
+		for (String nextParamName : myParams.keySet()) {
+			Condition predicate = queryStack.searchForIdsWithAndOr(null, myResourceType, nextParamName, myParams.get(nextParamName), null, partitionId, SearchContainedModeEnum.FALSE);
+			if (predicate != null) {
+				sqlBuilder.addPredicate(predicate);
+			}
+		}
+		queryStack.addSortOnLastUpdated(false);
+
+		return sqlBuilder.generate(null, 50);
+	}
+
+}
@@ -0,0 +1,131 @@
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.jpa.search.builder.sql.GeneratedSql;
+import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Invokes each benchmark once, so that benchmarks which no longer work are
+ * noticed in the regular build rather than when someone tries to run them
+ */
+public class BenchmarkSmokeTest {
+
+	@Test
+	public void testFixturesAreDeterministic() {
+		String first = BenchmarkFixtures.getFhirContext().newJsonParser().encodeResourceToString(BenchmarkFixtures.newResource("Bundle"));
+		String second = BenchmarkFixtures.getFhirContext().newJsonParser().encodeResourceToString(BenchmarkFixtures.newResource("Bundle"));
+		assertEquals(first, second);
+
+		Bundle bundle = (Bundle) BenchmarkFixtures.newResource("Bundle");
+		assertEquals(1 + 5 + 5 * 10, bundle.getEntry().size());
+		assertTrue(bundle.getEntry().get(0).getResource() instanceof Patient);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"JSON", "XML"})
+	public void testParserBenchmark(String theEncoding) {
+		for (String nextFixture : Arrays.asList("Patient", "Observation", "Bundle")) {
+			ParserBenchmark benchmark = new ParserBenchmark();
+			benchmark.myEncoding = theEncoding;
+			benchmark.myFixture = nextFixture;
+			benchmark.setup();
+
+			assertEquals(nextFixture, benchmark.parse().fhirType());
+			assertFalse(benchmark.encode().isEmpty());
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"Patient", "Encounter", "Observation"})
+	public void testSearchParamExtractorBenchmark(String theFixture) {
+		SearchParamExtractorBenchmark benchmark = new SearchParamExtractorBenchmark();
+		benchmark.myFixture = theFixture;
+		benchmark.setup();
+
+		assertFalse(benchmark.extractTokens().isEmpty());
+		assertTrue(benchmark.extractAll() > 0);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"TOKEN", "TOKEN_AND_TOKEN", "DATE", "REFERENCE", "NO_MATCH"})
+	public void testInMemoryMatcherBenchmark(String theCriteriaType) {
+		InMemoryMatcherBenchmark benchmark = new InMemoryMatcherBenchmark();
+		benchmark.myCriteriaType = theCriteriaType;
+		benchmark.setup();
+		try {
+			InMemoryMatchResult result = benchmark.match();
+			assertTrue(result.supported(), result.getUnsupportedReason());
+			assertEquals(!"NO_MATCH".equals(theCriteriaType), result.matched());
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, 1, 10})
+	public void testInterceptorServiceBenchmark(int theInterceptorCount) {
+		InterceptorServiceBenchmark benchmark = new InterceptorServiceBenchmark();
+		benchmark.myInterceptorCount = theInterceptorCount;
+		benchmark.setup();
+
+		assertTrue(benchmark.callHooks());
+		assertEquals(theInterceptorCount > 0, benchmark.hasHooks());
+	}
+
+	@Test
+	public void testSearchSqlGenerationBenchmark() {
+		SearchSqlGenerationBenchmark benchmark = new SearchSqlGenerationBenchmark();
+		benchmark.mySearchUrl = "Observation?code=http://loinc.org|8867-4&date=ge2020-01-01";
+		benchmark.setup();
+		try {
+			GeneratedSql sql = benchmark.generate();
+			assertThat(sql.getSql(), containsString("HFJ_SPIDX_TOKEN"));
+			assertThat(sql.getSql(), containsString("HFJ_SPIDX_DATE"));
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+
+	@Test
+	public void testJpaThroughputBenchmark() {
+		JpaThroughputBenchmark benchmark = new JpaThroughputBenchmark();
+		benchmark.myPatientCount = 1;
+		benchmark.setup();
+		try {
+			assertNotNull(benchmark.createObservation());
+			assertEquals(1 + 2 + 2 * 5, benchmark.transaction().getEntry().size());
+			assertNotNull(benchmark.readPatient());
+			assertFalse(benchmark.searchObservationsBySubjectAndCode().isEmpty());
+			assertNotNull(benchmark.searchObservationsByCode());
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+
+	@Test
+	public void testBuildArguments() {
+		String[] args = BenchmarkMain.buildArguments(new String[]{"Parser"});
+		assertEquals("-rf", args[0]);
+		assertEquals("json", args[1]);
+		assertEquals("-rff", args[2]);
+		assertThat(args[3], containsString("hapi-fhir-benchmarks-"));
+		assertEquals("Parser", args[4]);
+
+		args = BenchmarkMain.buildArguments(new String[]{"-rf", "csv", "Parser"});
+		assertEquals(Arrays.asList("-rf", "csv", "Parser"), Arrays.asList(args));
+	}
+
+}
@@ -15,10 +15,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -84,6 +87,61 @@ public class DaoConfig {
 	private static final Logger ourLog = LoggerFactory.getLogger(DaoConfig.class);
 	private static final int DEFAULT_EXPUNGE_BATCH_SIZE = 800;
 	private static final int DEFAULT_MAXIMUM_DELETE_CONFLICT_COUNT = 60;
+	/**
+	 * Default value for {@link #setInMemorySearchCacheMaxBytes(long)}
+	 *
+	 * @since 5.4.0
+	 */
+	public static final long DEFAULT_IN_MEMORY_SEARCH_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+	/**
+	 * Default value for {@link #setResourceEncodingDictionarySampleCount(int)}
+	 *
+	 * @since 5.4.0
+	 */
+	public static final int DEFAULT_RESOURCE_ENCODING_DICTIONARY_SAMPLE_COUNT = 50;
+	/**
+	 * Default value for {@link #setBundleBatchPoolSize(int)}
+	 *
+	 * @since 5.4.0
+	 */
+	public static final int DEFAULT_BUNDLE_BATCH_POOL_SIZE = 1;
+	/**
+	 * Default value for {@link #setMeasureEvaluationThreadCount(int)}
+	 *
+	 * @since 5.4.0
+	 */
+	public static final int DEFAULT_MEASURE_EVALUATION_THREAD_COUNT = 1;
+	/**
+	 * Default value for {@link #setMemoryCacheMaximumSize(String, long)}
+	 *
+	 * @since 5.4.0
+	 */
+	public static final long DEFAULT_MEMORY_CACHE_MAXIMUM_SIZE = 10000;
+	/**
+	 * Default value for {@link #setMemoryCacheMaximumSize(String, long)} for the <code>CONCEPT_CLOSURE</code>
+	 * cache, whose entries each hold the hierarchy of a whole code system version
+	 *
+	 * @since 5.4.0
+	 */
+	public static final long DEFAULT_CONCEPT_CLOSURE_MEMORY_CACHE_MAXIMUM_SIZE = 20;
+	/**
+	 * Default value for {@link #setMemoryCacheExpireAfterWriteInMinutes(String, long)}
+	 *
+	 * @since 5.4.0
+	 */
+	public static final long DEFAULT_MEMORY_CACHE_EXPIRE_AFTER_WRITE_IN_MINUTES = 60;
+	/**
+	 * Default value for {@link #setBulkExportFileMaximumSize(long)}
+	 *
+	 * @since 5.4.0
+	 */
+	public static final long DEFAULT_BULK_EXPORT_FILE_MAXIMUM_SIZE = 100L * 1024 * 1024;
+	/**
+	 * Default value for {@link #setPreExpandValueSetsThreadCount(int)}
+	 *
+	 * @since 5.4.0
+	 */
+	public static final int DEFAULT_PRE_EXPAND_VALUE_SETS_THREAD_COUNT = 1;
 	private IndexEnabledEnum myIndexMissingFieldsEnabled = IndexEnabledEnum.DISABLED;
 	/**
 	 * Child Configurations
@@ -201,6 +259,62 @@ public class DaoConfig {
 	 * @since 5.2.0
 	 */
 	private boolean myUseLegacySearchBuilder = false;
+	/**
+	 * @since 5.4.0
+	 */
+	private boolean myKeysetPagingEnabled = false;
+	/**
+	 * @since 5.4.0
+	 */
+	private int myResourceEncodingDictionarySampleCount = DEFAULT_RESOURCE_ENCODING_DICTIONARY_SAMPLE_COUNT;
+	/**
+	 * @since 5.4.0
+	 */
+	private int myBundleBatchPoolSize = DEFAULT_BUNDLE_BATCH_POOL_SIZE;
+	/**
+	 * @since 5.4.0
+	 */
+	private int myMeasureEvaluationThreadCount = DEFAULT_MEASURE_EVALUATION_THREAD_COUNT;
+	/**
+	 * @since 5.4.0
+	 */
+	private final Map<String, Long> myMemoryCacheMaximumSizes = new HashMap<>();
+	/**
+	 * @since 5.4.0
+	 */
+	private final Map<String, Long> myMemoryCacheExpireAfterWriteInMinutes = new HashMap<>();
+	/**
+	 * @since 5.4.0
+	 */
+	private boolean myMemoryCacheInvalidationBroadcastEnabled = false;
+	/**
+	 * @since 5.4.0
+	 */
+	private SearchCacheModeEnum mySearchCacheMode = SearchCacheModeEnum.DATABASE;
+	/**
+	 * @since 5.4.0
+	 */
+	private long myInMemorySearchCacheMaxBytes = DEFAULT_IN_MEMORY_SEARCH_CACHE_MAX_BYTES;
+	/**
+	 * @since 5.4.0
+	 */
+	private boolean myBulkExportStreamToBinaryStorage = false;
+	/**
+	 * @since 5.4.0
+	 */
+	private long myBulkExportFileMaximumSize = DEFAULT_BULK_EXPORT_FILE_MAXIMUM_SIZE;
+	/**
+	 * @since 5.4.0
+	 */
+	private boolean myBulkExportGzipEnabled = false;
+	/**
+	 * @since 5.4.0
+	 */
+	private int myPreExpandValueSetsThreadCount = DEFAULT_PRE_EXPAND_VALUE_SETS_THREAD_COUNT;
+	/**
+	 * @since 5.4.0
+	 */
+	private boolean myPreExpandValueSetsOnAllNodes = false;
 
 	/**
 	 * Constructor
@@ -265,6 +379,102 @@ public class DaoConfig {
 		myUseLegacySearchBuilder = theUseLegacySearchBuilder;
 	}
 
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), searches which are not sorted, or are only
+	 * sorted by <code>_lastUpdated</code>, are paged using keyset (seek) paging instead of being
+	 * stored in the search result cache. Each page is executed as a new synchronous query which starts immediately
+	 * after the last result of the previous page, which is identified by an opaque token in the
+	 * <code>_pageToken</code> parameter of the <code>next</code> link. This means that the cost of fetching a
+	 * page does not grow with its depth in the result set, and that result PIDs are never written to
+	 * <code>HFJ_SEARCH_RESULT</code>.
+	 * <p>
+	 * Keyset paged searches do not return a total, only return <code>next</code> links, and are not
+	 * isolated from resources created or updated while the client is paging.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public boolean isKeysetPagingEnabled() {
+		return myKeysetPagingEnabled;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), searches which are not sorted, or are only
+	 * sorted by <code>_lastUpdated</code>, are paged using keyset (seek) paging instead of being
+	 * stored in the search result cache. Each page is executed as a new synchronous query which starts immediately
+	 * after the last result of the previous page, which is identified by an opaque token in the
+	 * <code>_pageToken</code> parameter of the <code>next</code> link. This means that the cost of fetching a
+	 * page does not grow with its depth in the result set, and that result PIDs are never written to
+	 * <code>HFJ_SEARCH_RESULT</code>.
+	 * <p>
+	 * Keyset paged searches do not return a total, only return <code>next</code> links, and are not
+	 * isolated from resources created or updated while the client is paging.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public void setKeysetPagingEnabled(boolean theKeysetPagingEnabled) {
+		myKeysetPagingEnabled = theKeysetPagingEnabled;
+	}
+
+	/**
+	 * Controls where the server keeps searches and their result PIDs while a client is paging through them.
+	 * The default is {@link SearchCacheModeEnum#DATABASE}, which stores them in the <code>HFJ_SEARCH</code> and
+	 * <code>HFJ_SEARCH_RESULT</code> tables so that they can be shared by all nodes of a cluster. The in-memory
+	 * modes avoid writing (and later deleting) those rows, but paging links can only be followed on the node which
+	 * performed the search, so they should only be used on a single node or behind a load balancer with sticky sessions.
+	 * <p>
+	 * This setting is read when the server starts, so changing it later has no effect.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public SearchCacheModeEnum getSearchCacheMode() {
+		return mySearchCacheMode;
+	}
+
+	/**
+	 * Controls where the server keeps searches and their result PIDs while a client is paging through them.
+	 * The default is {@link SearchCacheModeEnum#DATABASE}, which stores them in the <code>HFJ_SEARCH</code> and
+	 * <code>HFJ_SEARCH_RESULT</code> tables so that they can be shared by all nodes of a cluster. The in-memory
+	 * modes avoid writing (and later deleting) those rows, but paging links can only be followed on the node which
+	 * performed the search, so they should only be used on a single node or behind a load balancer with sticky sessions.
+	 * <p>
+	 * This setting is read when the server starts, so changing it later has no effect.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public void setSearchCacheMode(@Nonnull SearchCacheModeEnum theSearchCacheMode) {
+		Validate.notNull(theSearchCacheMode, "theSearchCacheMode must not be null");
+		mySearchCacheMode = theSearchCacheMode;
+	}
+
+	/**
+	 * When the {@link #setSearchCacheMode(SearchCacheModeEnum) search cache mode} is one of the in-memory modes,
+	 * this is the maximum number of bytes used to hold search result PIDs. When it is exceeded, the results of the
+	 * least recently used searches are discarded (and paging links for those searches become invalid).
+	 * Defaults to {@link #DEFAULT_IN_MEMORY_SEARCH_CACHE_MAX_BYTES}.
+	 *
+	 * @since 5.4.0
+	 */
+	public long getInMemorySearchCacheMaxBytes() {
+		return myInMemorySearchCacheMaxBytes;
+	}
+
+	/**
+	 * When the {@link #setSearchCacheMode(SearchCacheModeEnum) search cache mode} is one of the in-memory modes,
+	 * this is the maximum number of bytes used to hold search result PIDs. When it is exceeded, the results of the
+	 * least recently used searches are discarded (and paging links for those searches become invalid).
+	 * Defaults to {@link #DEFAULT_IN_MEMORY_SEARCH_CACHE_MAX_BYTES}.
+	 *
+	 * @since 5.4.0
+	 */
+	public void setInMemorySearchCacheMaxBytes(long theInMemorySearchCacheMaxBytes) {
+		Validate.isTrue(theInMemorySearchCacheMaxBytes > 0, "theInMemorySearchCacheMaxBytes must be positive");
+		myInMemorySearchCacheMaxBytes = theInMemorySearchCacheMaxBytes;
+	}
+
 	/**
 	 * If set to <code>true</code> (default is true) when a resource is being persisted,
 	 * the target resource types of references will be validated to ensure that they
@@ -750,6 +960,269 @@ public class DaoConfig {
 		myExpungeThreadCount = Math.max(myExpungeThreadCount, 1); // Minimum of 1
 	}
 
+	/**
+	 * This setting controls the number of threads used to process the entries of a FHIR
+	 * <code>batch</code> Bundle. Each entry of a batch is processed in its own database transaction,
+	 * so when this is set to a value greater than 1, entries are processed concurrently using up
+	 * to this many threads (and database connections), with the response entries returned in the
+	 * same order as the request entries.
+	 * <p>
+	 * Note that interceptors registered using
+	 * {@link ca.uhn.fhir.interceptor.api.IInterceptorService#registerThreadLocalInterceptor(Object)}
+	 * on the calling thread will not be invoked for entries processed on other threads. Each entry
+	 * is given its own copy of the request's user data, so changes made to the user data while
+	 * processing an entry are not visible to other entries or to the batch request itself.
+	 * Batches submitted with request details other than servlet request details are always
+	 * processed sequentially.
+	 * </p>
+	 * <p>
+	 * The default value is {@value #DEFAULT_BUNDLE_BATCH_POOL_SIZE}, meaning that entries are processed
+	 * one after another on the calling thread.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public int getBundleBatchPoolSize() {
+		return myBundleBatchPoolSize;
+	}
+
+	/**
+	 * This setting controls the number of threads used to process the entries of a FHIR
+	 * <code>batch</code> Bundle. Each entry of a batch is processed in its own database transaction,
+	 * so when this is set to a value greater than 1, entries are processed concurrently using up
+	 * to this many threads (and database connections), with the response entries returned in the
+	 * same order as the request entries.
+	 * <p>
+	 * Note that interceptors registered using
+	 * {@link ca.uhn.fhir.interceptor.api.IInterceptorService#registerThreadLocalInterceptor(Object)}
+	 * on the calling thread will not be invoked for entries processed on other threads. Each entry
+	 * is given its own copy of the request's user data, so changes made to the user data while
+	 * processing an entry are not visible to other entries or to the batch request itself.
+	 * Batches submitted with request details other than servlet request details are always
+	 * processed sequentially.
+	 * </p>
+	 * <p>
+	 * The default value is {@value #DEFAULT_BUNDLE_BATCH_POOL_SIZE}, meaning that entries are processed
+	 * one after another on the calling thread.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public void setBundleBatchPoolSize(int theBundleBatchPoolSize) {
+		myBundleBatchPoolSize = theBundleBatchPoolSize;
+		myBundleBatchPoolSize = Math.max(myBundleBatchPoolSize, 1); // Minimum of 1
+	}
+
+	/**
+	 * This setting controls the number of threads used to evaluate the patients of a
+	 * population or subject-list CQL <code>$evaluate-measure</code> operation.
+	 * <p>
+	 * The default value is {@value #DEFAULT_MEASURE_EVALUATION_THREAD_COUNT}, meaning that patients are
+	 * evaluated one after another on the calling thread.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public int getMeasureEvaluationThreadCount() {
+		return myMeasureEvaluationThreadCount;
+	}
+
+	/**
+	 * This setting controls the number of threads used to evaluate the patients of a
+	 * population or subject-list CQL <code>$evaluate-measure</code> operation. When this is set
+	 * to a value greater than 1, batches of patients are evaluated concurrently, each thread using
+	 * its own CQL execution context, and the results are combined in patient order so the report
+	 * is the same as it would be if the patients were evaluated one after another. Measures with
+	 * <code>continuous-variable</code> scoring are always evaluated on the calling thread.
+	 * <p>
+	 * The default value is {@value #DEFAULT_MEASURE_EVALUATION_THREAD_COUNT}, meaning that patients are
+	 * evaluated one after another on the calling thread.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public void setMeasureEvaluationThreadCount(int theMeasureEvaluationThreadCount) {
+		myMeasureEvaluationThreadCount = Math.max(theMeasureEvaluationThreadCount, 1); // Minimum of 1
+	}
+
+	/**
+	 * Returns the maximum number of entries held by the given in-memory cache, or <code>null</code> if this
+	 * has not been set for the given cache. Cache names are the names of the <code>MemoryCacheService.CacheEnum</code>
+	 * constants (e.g. <code>PERSISTENT_ID</code>).
+	 *
+	 * @see #setMemoryCacheMaximumSize(String, long)
+	 * @since 5.4.0
+	 */
+	@Nullable
+	public Long getMemoryCacheMaximumSize(@Nonnull String theCacheName) {
+		return myMemoryCacheMaximumSizes.get(theCacheName);
+	}
+
+	/**
+	 * Sets the maximum number of entries held by the given in-memory cache. Cache names
+	 * are the names of the <code>MemoryCacheService.CacheEnum</code> constants (e.g. <code>PERSISTENT_ID</code>).
+	 * <p>
+	 * If this is not set, the <code>CONCEPT_CLOSURE</code> cache holds {@value #DEFAULT_CONCEPT_CLOSURE_MEMORY_CACHE_MAXIMUM_SIZE}
+	 * entries and all other caches hold {@value #DEFAULT_MEMORY_CACHE_MAXIMUM_SIZE}. Caches are created when the server
+	 * starts, so changing this value afterwards has no effect.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public void setMemoryCacheMaximumSize(@Nonnull String theCacheName, long theMaximumSize) {
+		Validate.notBlank(theCacheName, "theCacheName must not be blank");
+		Validate.isTrue(theMaximumSize >= 0, "theMaximumSize must not be negative");
+		myMemoryCacheMaximumSizes.put(theCacheName, theMaximumSize);
+	}
+
+	/**
+	 * Returns the duration in minutes for which values will be retained after being written to the
+	 * given in-memory cache, or <code>null</code> if this has not been set for the given cache. Cache names
+	 * are the names of the <code>MemoryCacheService.CacheEnum</code> constants (e.g. <code>PERSISTENT_ID</code>).
+	 *
+	 * @see #setMemoryCacheExpireAfterWriteInMinutes(String, long)
+	 * @since 5.4.0
+	 */
+	@Nullable
+	public Long getMemoryCacheExpireAfterWriteInMinutes(@Nonnull String theCacheName) {
+		return myMemoryCacheExpireAfterWriteInMinutes.get(theCacheName);
+	}
+
+	/**
+	 * Sets the duration in minutes for which values will be retained after being written to the
+	 * given in-memory cache. Cache names are the names of the <code>MemoryCacheService.CacheEnum</code>
+	 * constants (e.g. <code>PERSISTENT_ID</code>).
+	 * <p>
+	 * If this is not set, the terminology translation caches use {@link #getTranslationCachesExpireAfterWriteInMinutes()}
+	 * and all other caches use {@value #DEFAULT_MEMORY_CACHE_EXPIRE_AFTER_WRITE_IN_MINUTES} minutes. Caches are
+	 * created when the server starts, so changing this value afterwards has no effect.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public void setMemoryCacheExpireAfterWriteInMinutes(@Nonnull String theCacheName, long theExpireAfterWriteInMinutes) {
+		Validate.notBlank(theCacheName, "theCacheName must not be blank");
+		Validate.isTrue(theExpireAfterWriteInMinutes > 0, "theExpireAfterWriteInMinutes must be greater than 0");
+		myMemoryCacheExpireAfterWriteInMinutes.put(theCacheName, theExpireAfterWriteInMinutes);
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), the server will publish in-memory cache invalidations
+	 * caused by deletes, expunges, forced ID changes and terminology hierarchy changes to a message channel, and will evict the
+	 * corresponding entries when such invalidations are received from other servers. This allows
+	 * the in-memory caches to be made larger and longer-lived when several servers share a database.
+	 * <p>
+	 * The channel is created using the subscription <code>IChannelFactory</code>, which must therefore
+	 * be available, and must deliver each message to every server in the cluster.
+	 * This setting is read when the server starts, so changing it afterwards has no effect.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public boolean isMemoryCacheInvalidationBroadcastEnabled() {
+		return myMemoryCacheInvalidationBroadcastEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), the server will publish in-memory cache invalidations
+	 * caused by deletes, expunges, forced ID changes and terminology hierarchy changes to a message channel, and will evict the
+	 * corresponding entries when such invalidations are received from other servers. This allows
+	 * the in-memory caches to be made larger and longer-lived when several servers share a database.
+	 * <p>
+	 * The channel is created using the subscription <code>IChannelFactory</code>, which must therefore
+	 * be available, and must deliver each message to every server in the cluster.
+	 * This setting is read when the server starts, so changing it afterwards has no effect.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public void setMemoryCacheInvalidationBroadcastEnabled(boolean theMemoryCacheInvalidationBroadcastEnabled) {
+		myMemoryCacheInvalidationBroadcastEnabled = theMemoryCacheInvalidationBroadcastEnabled;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), Bulk Export jobs stream the generated NDJSON
+	 * directly into the configured <code>IBinaryStorageSvc</code> instead of buffering each output
+	 * file in memory and storing it as a <code>Binary</code> resource. Output files are rolled over
+	 * when they reach {@link #setBulkExportFileMaximumSize(long) the maximum file size}, and are
+	 * served to clients using the <code>$export-download</code> operation.
+	 * <p>
+	 * A binary storage service must be configured in order to use this setting.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public boolean isBulkExportStreamToBinaryStorage() {
+		return myBulkExportStreamToBinaryStorage;
+	}
+
+	/**
+	 * If enabled (default is <code>false</code>), Bulk Export jobs stream the generated NDJSON
+	 * directly into the configured <code>IBinaryStorageSvc</code> instead of buffering each output
+	 * file in memory and storing it as a <code>Binary</code> resource. Output files are rolled over
+	 * when they reach {@link #setBulkExportFileMaximumSize(long) the maximum file size}, and are
+	 * served to clients using the <code>$export-download</code> operation.
+	 * <p>
+	 * A binary storage service must be configured in order to use this setting.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public void setBulkExportStreamToBinaryStorage(boolean theBulkExportStreamToBinaryStorage) {
+		myBulkExportStreamToBinaryStorage = theBulkExportStreamToBinaryStorage;
+	}
+
+	/**
+	 * When {@link #setBulkExportStreamToBinaryStorage(boolean) streaming to binary storage} is enabled,
+	 * a new Bulk Export output file is started once the current file has reached this number of bytes.
+	 * The size is measured after compression when {@link #setBulkExportGzipEnabled(boolean) gzip} is
+	 * enabled, and a file may exceed it by up to one chunk of resources.
+	 * Default is {@value #DEFAULT_BULK_EXPORT_FILE_MAXIMUM_SIZE}.
+	 *
+	 * @since 5.4.0
+	 */
+	public long getBulkExportFileMaximumSize() {
+		return myBulkExportFileMaximumSize;
+	}
+
+	/**
+	 * When {@link #setBulkExportStreamToBinaryStorage(boolean) streaming to binary storage} is enabled,
+	 * a new Bulk Export output file is started once the current file has reached this number of bytes.
+	 * The size is measured after compression when {@link #setBulkExportGzipEnabled(boolean) gzip} is
+	 * enabled, and a file may exceed it by up to one chunk of resources.
+	 * Default is {@value #DEFAULT_BULK_EXPORT_FILE_MAXIMUM_SIZE}.
+	 *
+	 * @since 5.4.0
+	 */
+	public void setBulkExportFileMaximumSize(long theBulkExportFileMaximumSize) {
+		Validate.isTrue(theBulkExportFileMaximumSize > 0, "Maximum file size must be positive");
+		myBulkExportFileMaximumSize = theBulkExportFileMaximumSize;
+	}
+
+	/**
+	 * When {@link #setBulkExportStreamToBinaryStorage(boolean) streaming to binary storage} is enabled,
+	 * and this setting is also enabled (default is <code>false</code>), Bulk Export output files are
+	 * gzip compressed as they are written. Clients which send an <code>Accept-Encoding: gzip</code>
+	 * header receive the compressed file as-is, and other clients receive it decompressed.
+	 *
+	 * @since 5.4.0
+	 */
+	public boolean isBulkExportGzipEnabled() {
+		return myBulkExportGzipEnabled;
+	}
+
+	/**
+	 * When {@link #setBulkExportStreamToBinaryStorage(boolean) streaming to binary storage} is enabled,
+	 * and this setting is also enabled (default is <code>false</code>), Bulk Export output files are
+	 * gzip compressed as they are written. Clients which send an <code>Accept-Encoding: gzip</code>
+	 * header receive the compressed file as-is, and other clients receive it decompressed.
+	 *
+	 * @since 5.4.0
+	 */
+	public void setBulkExportGzipEnabled(boolean theBulkExportGzipEnabled) {
+		myBulkExportGzipEnabled = theBulkExportGzipEnabled;
+	}
+
 	public ResourceEncodingEnum getResourceEncoding() {
 		return myResourceEncoding;
 	}
@@ -758,6 +1231,47 @@ public class DaoConfig {
 		myResourceEncoding = theResourceEncoding;
 	}
 
+	/**
+	 * When the {@link #setResourceEncoding(ResourceEncodingEnum) resource encoding} is
+	 * {@link ResourceEncodingEnum#JSONZ}, this is the number of resources of a given type which are
+	 * stored (compressed without a dictionary) before a compression dictionary is trained for that type
+	 * from their contents. The dictionary is trained by a background job, stored in the database and used
+	 * for all subsequent writes of that type. Default is {@value #DEFAULT_RESOURCE_ENCODING_DICTIONARY_SAMPLE_COUNT}.
+	 * <p>
+	 * Dictionaries are only trained from the structure of the sampled resources: all numbers, and all
+	 * string values other than resource types and system, extension and profile URIs, are blanked out
+	 * before sampling. Dictionaries are deleted by a global <code>$expunge</code> with
+	 * <code>expungeEverything</code>, but not when individual resources are expunged, since other
+	 * resources may still be compressed with them.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public int getResourceEncodingDictionarySampleCount() {
+		return myResourceEncodingDictionarySampleCount;
+	}
+
+	/**
+	 * When the {@link #setResourceEncoding(ResourceEncodingEnum) resource encoding} is
+	 * {@link ResourceEncodingEnum#JSONZ}, this is the number of resources of a given type which are
+	 * stored (compressed without a dictionary) before a compression dictionary is trained for that type
+	 * from their contents. The dictionary is trained by a background job, stored in the database and used
+	 * for all subsequent writes of that type. Default is {@value #DEFAULT_RESOURCE_ENCODING_DICTIONARY_SAMPLE_COUNT}.
+	 * <p>
+	 * Dictionaries are only trained from the structure of the sampled resources: all numbers, and all
+	 * string values other than resource types and system, extension and profile URIs, are blanked out
+	 * before sampling. Dictionaries are deleted by a global <code>$expunge</code> with
+	 * <code>expungeEverything</code>, but not when individual resources are expunged, since other
+	 * resources may still be compressed with them.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public void setResourceEncodingDictionarySampleCount(int theResourceEncodingDictionarySampleCount) {
+		Validate.isTrue(theResourceEncodingDictionarySampleCount > 0, "Sample count must be positive");
+		myResourceEncodingDictionarySampleCount = theResourceEncodingDictionarySampleCount;
+	}
+
 	/**
 	 * If set, an individual resource will not be allowed to have more than the
 	 * given number of tags, profiles, and security labels (the limit is for the combined
@@ -2034,6 +2548,77 @@ public class DaoConfig {
 		setPreExpandValueSetsDefaultCount(Math.min(getPreExpandValueSetsDefaultCount(), getPreExpandValueSetsMaxCount()));
 	}
 
+	/**
+	 * <p>
+	 * This is the number of ValueSets which will be pre-expanded concurrently by the scheduled
+	 * pre-expansion job when {@link DaoConfig#isPreExpandValueSets()} returns {@code true}. Each
+	 * worker thread claims a ValueSet which has not yet been expanded and writes its expansion
+	 * using its own database transactions, so each thread will hold a database connection while
+	 * it is working.
+	 * </p>
+	 * <p>
+	 * The default value for this setting is {@value #DEFAULT_PRE_EXPAND_VALUE_SETS_THREAD_COUNT},
+	 * meaning that ValueSets are pre-expanded one after another.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public int getPreExpandValueSetsThreadCount() {
+		return myPreExpandValueSetsThreadCount;
+	}
+
+	/**
+	 * <p>
+	 * This is the number of ValueSets which will be pre-expanded concurrently by the scheduled
+	 * pre-expansion job when {@link DaoConfig#isPreExpandValueSets()} returns {@code true}. Each
+	 * worker thread claims a ValueSet which has not yet been expanded and writes its expansion
+	 * using its own database transactions, so each thread will hold a database connection while
+	 * it is working.
+	 * </p>
+	 * <p>
+	 * The default value for this setting is {@value #DEFAULT_PRE_EXPAND_VALUE_SETS_THREAD_COUNT},
+	 * meaning that ValueSets are pre-expanded one after another.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public void setPreExpandValueSetsThreadCount(int thePreExpandValueSetsThreadCount) {
+		Validate.isTrue(thePreExpandValueSetsThreadCount > 0, "thePreExpandValueSetsThreadCount must be greater than 0");
+		myPreExpandValueSetsThreadCount = thePreExpandValueSetsThreadCount;
+	}
+
+	/**
+	 * <p>
+	 * If set to {@code true}, the scheduled ValueSet pre-expansion job runs on every node of a
+	 * clustered server instead of only one node at a time. ValueSets are claimed with an atomic
+	 * status change, so each ValueSet is still only expanded once.
+	 * </p>
+	 * <p>
+	 * This setting is read when the terminology service starts. The default value is {@code false}.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public boolean isPreExpandValueSetsOnAllNodes() {
+		return myPreExpandValueSetsOnAllNodes;
+	}
+
+	/**
+	 * <p>
+	 * If set to {@code true}, the scheduled ValueSet pre-expansion job runs on every node of a
+	 * clustered server instead of only one node at a time. ValueSets are claimed with an atomic
+	 * status change, so each ValueSet is still only expanded once.
+	 * </p>
+	 * <p>
+	 * This setting is read when the terminology service starts. The default value is {@code false}.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public void setPreExpandValueSetsOnAllNodes(boolean thePreExpandValueSetsOnAllNodes) {
+		myPreExpandValueSetsOnAllNodes = thePreExpandValueSetsOnAllNodes;
+	}
+
 	/**
 	 * This setting should be disabled (set to <code>false</code>) on servers that are not allowing
 	 * deletes. Default is <code>true</code>. If deletes are disabled, some checks for resource
@@ -2137,6 +2722,29 @@ public class DaoConfig {
 		DISABLED
 	}
 
+	/**
+	 * This enum provides allowable options for {@link #setSearchCacheMode(SearchCacheModeEnum)}
+	 *
+	 * @since 5.4.0
+	 */
+	public enum SearchCacheModeEnum {
+		/**
+		 * Searches and their results are stored in the database (this is the default)
+		 */
+		DATABASE,
+		/**
+		 * Searches and their results are held in memory on the node which performed the search,
+		 * with the result PIDs stored in primitive arrays on the Java heap
+		 */
+		IN_MEMORY,
+		/**
+		 * Searches and their results are held in memory on the node which performed the search,
+		 * with the result PIDs stored in direct (off-heap) buffers so that they do not add to
+		 * garbage collection pressure
+		 */
+		IN_MEMORY_OFF_HEAP
+	}
+
 	/**
 	 * This enum provides allowable options for {@link #setResourceServerIdStrategy(IdStrategyEnum)}
 	 */
@@ -119,6 +119,9 @@ public interface IBulkDataExportSvc {
 	class FileEntry {
 		private String myResourceType;
 		private IIdType myResourceId;
+		private String myBlobId;
+		private Long myBlobSize;
+		private boolean myBlobGzipped;
 
 		public String getResourceType() {
 			return myResourceType;
@@ -137,6 +140,39 @@ public interface IBulkDataExportSvc {
 			myResourceId = theResourceId;
 			return this;
 		}
+
+		/**
+		 * If the file was streamed to binary storage, this is the ID of the blob. In that case
+		 * {@link #getResourceId()} is the ID the blob is stored against, not an actual Binary resource.
+		 *
+		 * @since 5.4.0
+		 */
+		public String getBlobId() {
+			return myBlobId;
+		}
+
+		public FileEntry setBlobId(String theBlobId) {
+			myBlobId = theBlobId;
+			return this;
+		}
+
+		public Long getBlobSize() {
+			return myBlobSize;
+		}
+
+		public FileEntry setBlobSize(Long theBlobSize) {
+			myBlobSize = theBlobSize;
+			return this;
+		}
+
+		public boolean isBlobGzipped() {
+			return myBlobGzipped;
+		}
+
+		public FileEntry setBlobGzipped(boolean theBlobGzipped) {
+			myBlobGzipped = theBlobGzipped;
+			return this;
+		}
 	}
 
 
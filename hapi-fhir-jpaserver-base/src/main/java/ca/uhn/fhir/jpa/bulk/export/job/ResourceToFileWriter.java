@@ -21,31 +21,63 @@ package ca.uhn.fhir.jpa.bulk.export.job;
  */
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
 import ca.uhn.fhir.jpa.batch.log.Logs;
+import ca.uhn.fhir.jpa.binstore.IBinaryStorageSvc;
+import ca.uhn.fhir.jpa.binstore.StoredDetails;
 import ca.uhn.fhir.jpa.bulk.export.svc.BulkExportDaoSvc;
 import ca.uhn.fhir.jpa.entity.BulkExportCollectionFileEntity;
 import ca.uhn.fhir.jpa.partition.SystemRequestDetails;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.util.BinaryUtil;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IBaseBinary;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.slf4j.Logger;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.Nonnull;
 import javax.annotation.PostConstruct;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.List;
 import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
 
-public class ResourceToFileWriter implements ItemWriter<List<IBaseResource>> {
+/**
+ * Writes the resources for one resource type of a bulk export job to NDJSON files.
+ * <p>
+ * By default each chunk is buffered in memory and stored as a <code>Binary</code> resource. If
+ * {@link DaoConfig#isBulkExportStreamToBinaryStorage()} is enabled, resources are instead streamed
+ * (optionally gzipped) to a temporary file which is handed to the {@link IBinaryStorageSvc} once it reaches
+ * {@link DaoConfig#getBulkExportFileMaximumSize()} bytes, or when the step completes.
+ * </p>
+ */
+public class ResourceToFileWriter implements ItemWriter<List<IBaseResource>>, StepExecutionListener {
 	private static final Logger ourLog = Logs.getBatchTroubleshootingLog();
 
 	@Autowired
@@ -57,6 +89,15 @@ public class ResourceToFileWriter implements ItemWriter<List<IBaseResource>> {
 	@Autowired
 	private BulkExportDaoSvc myBulkExportDaoSvc;
 
+	@Autowired
+	private DaoConfig myDaoConfig;
+
+	@Autowired(required = false)
+	private IBinaryStorageSvc myBinaryStorageSvc;
+
+	@Autowired
+	private PlatformTransactionManager myTxManager;
+
 	private ByteArrayOutputStream myOutputStream;
 	private OutputStreamWriter myWriter;
 	private IParser myParser;
@@ -69,6 +110,14 @@ public class ResourceToFileWriter implements ItemWriter<List<IBaseResource>> {
 
 	private IFhirResourceDao<IBaseBinary> myBinaryDao;
 
+	private boolean myStreamToBinaryStorage;
+	private boolean myGzip;
+	private TransactionTemplate myTxTemplate;
+	private File myStreamFile;
+	private CountingOutputStream myStreamCountingOutputStream;
+	private Writer myStreamWriter;
+	private int myStreamResourceCount;
+
 
 	public ResourceToFileWriter() {
 		myOutputStream = new ByteArrayOutputStream();
@@ -79,6 +128,12 @@ public class ResourceToFileWriter implements ItemWriter<List<IBaseResource>> {
 	public void start() {
 		myParser = myFhirContext.newJsonParser().setPrettyPrint(false);
 		myBinaryDao = getBinaryDao();
+		myStreamToBinaryStorage = myDaoConfig.isBulkExportStreamToBinaryStorage();
+		myGzip = myDaoConfig.isBulkExportGzipEnabled();
+		myTxTemplate = new TransactionTemplate(myTxManager);
+		if (myStreamToBinaryStorage) {
+			Validate.notNull(myBinaryStorageSvc, "Bulk export streaming to binary storage is enabled but no IBinaryStorageSvc is configured");
+		}
 	}
 
 	private Optional<IIdType> flushToFiles() {
@@ -112,6 +167,10 @@ public class ResourceToFileWriter implements ItemWriter<List<IBaseResource>> {
 
 	@Override
 	public void write(List<? extends List<IBaseResource>> theList) throws Exception {
+		if (myStreamToBinaryStorage) {
+			writeToStreamFile(theList);
+			return;
+		}
 
 		int count = 0;
 		for (List<IBaseResource> resourceList : theList) {
@@ -127,4 +186,117 @@ public class ResourceToFileWriter implements ItemWriter<List<IBaseResource>> {
 			ourLog.info("Created {} resources for bulk export file containing {} resources of type {} ", count, createdId.get().toUnqualifiedVersionless().getValue(), myResourceType);
 		}
 	}
+
+	private void writeToStreamFile(List<? extends List<IBaseResource>> theList) throws IOException {
+		if (myStreamWriter == null) {
+			openStreamFile();
+		}
+
+		for (List<IBaseResource> resourceList : theList) {
+			for (IBaseResource nextFileResource : resourceList) {
+				myParser.encodeResourceToWriter(nextFileResource, myStreamWriter);
+				myStreamWriter.append("\n");
+				myStreamResourceCount++;
+			}
+		}
+		myStreamWriter.flush();
+
+		if (myStreamCountingOutputStream.getByteCount() >= myDaoConfig.getBulkExportFileMaximumSize()) {
+			storeStreamFile();
+		}
+	}
+
+	private void openStreamFile() throws IOException {
+		myStreamFile = File.createTempFile("hapi-fhir-bulk-export-", myGzip ? ".ndjson.gz" : ".ndjson");
+		myStreamCountingOutputStream = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(myStreamFile)));
+		OutputStream outputStream = myStreamCountingOutputStream;
+		if (myGzip) {
+			outputStream = new GZIPOutputStream(outputStream);
+		}
+		myStreamWriter = new OutputStreamWriter(outputStream, Constants.CHARSET_UTF8);
+		myStreamResourceCount = 0;
+	}
+
+	/**
+	 * Closes the current stream file, hands it to the binary storage service and records
+	 * it against the collection. The temporary file is always removed.
+	 */
+	private void storeStreamFile() {
+		try {
+			myStreamWriter.close();
+			if (myStreamResourceCount > 0) {
+				myTxTemplate.executeWithoutResult(t -> storeStreamFileInTransaction());
+			}
+		} catch (IOException e) {
+			throw new InternalErrorException("Failed to write bulk export file for resource type " + myResourceType, e);
+		} finally {
+			discardStreamFile();
+		}
+	}
+
+	private void storeStreamFileInTransaction() {
+		String blobId = myBinaryStorageSvc.newBlobId();
+		IIdType blobOwnerId = myFhirContext.getVersion().newIdType();
+		blobOwnerId.setParts(null, "Binary", blobId, null);
+
+		StoredDetails storedDetails;
+		try (InputStream inputStream = new BufferedInputStream(new FileInputStream(myStreamFile))) {
+			storedDetails = myBinaryStorageSvc.storeBlob(blobOwnerId, blobId, Constants.CT_FHIR_NDJSON, inputStream);
+		} catch (IOException e) {
+			throw new InternalErrorException("Failed to store bulk export file for resource type " + myResourceType, e);
+		}
+
+		BulkExportCollectionFileEntity file = new BulkExportCollectionFileEntity();
+		file.setBlobId(storedDetails.getBlobId());
+		file.setBlobSize(storedDetails.getBytes());
+		file.setBlobGzipped(myGzip);
+		myBulkExportDaoSvc.addFileToCollectionWithId(myBulkExportCollectionEntityId, file);
+
+		ourLog.info("Stored bulk export file {} containing {} resources of type {} ({} bytes)", storedDetails.getBlobId(), myStreamResourceCount, myResourceType, storedDetails.getBytes());
+	}
+
+	private void discardStreamFile() {
+		if (myStreamFile != null && !myStreamFile.delete()) {
+			ourLog.warn("Failed to delete temporary bulk export file: {}", myStreamFile.getAbsolutePath());
+		}
+		myStreamFile = null;
+		myStreamCountingOutputStream = null;
+		myStreamWriter = null;
+		myStreamResourceCount = 0;
+	}
+
+	@Override
+	public void beforeStep(@Nonnull StepExecution theStepExecution) {
+		// nothing
+	}
+
+	/**
+	 * Stores whatever is left in the current stream file once all chunks have been written
+	 */
+	@Override
+	public ExitStatus afterStep(StepExecution theStepExecution) {
+		if (myStreamWriter == null) {
+			return theStepExecution.getExitStatus();
+		}
+
+		if (theStepExecution.getExitStatus().getExitCode().equals(ExitStatus.FAILED.getExitCode())) {
+			try {
+				myStreamWriter.close();
+			} catch (IOException e) {
+				ourLog.warn("Failed to close temporary bulk export file", e);
+			}
+			discardStreamFile();
+			return theStepExecution.getExitStatus();
+		}
+
+		try {
+			storeStreamFile();
+		} catch (Exception e) {
+			ourLog.error("Failed to store final bulk export file for resource type {}", myResourceType, e);
+			theStepExecution.setStatus(BatchStatus.FAILED);
+			theStepExecution.addFailureException(e);
+			return ExitStatus.FAILED.addExitDescription(e);
+		}
+		return theStepExecution.getExitStatus();
+	}
 }
@@ -21,6 +21,7 @@ package ca.uhn.fhir.jpa.bulk.export.provider;
  */
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.binstore.IBinaryStorageSvc;
 import ca.uhn.fhir.jpa.bulk.export.api.BulkDataExportOptions;
 import ca.uhn.fhir.jpa.bulk.export.api.IBulkDataExportSvc;
 import ca.uhn.fhir.jpa.bulk.export.model.BulkExportResponseJson;
@@ -33,6 +34,7 @@ import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.PreferHeader;
 import ca.uhn.fhir.rest.server.RestfulServerUtils;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
 import ca.uhn.fhir.util.ArrayUtil;
 import ca.uhn.fhir.util.JsonUtil;
@@ -48,6 +50,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
@@ -66,6 +69,8 @@ public class BulkDataExportProvider {
 	private IBulkDataExportSvc myBulkDataExportSvc;
 	@Autowired
 	private FhirContext myFhirContext;
+	@Autowired(required = false)
+	private IBinaryStorageSvc myBinaryStorageSvc;
 
 	@VisibleForTesting
 	public void setFhirContextForUnitTest(FhirContext theFhirContext) {
@@ -77,6 +82,11 @@ public class BulkDataExportProvider {
 		myBulkDataExportSvc = theBulkDataExportSvc;
 	}
 
+	@VisibleForTesting
+	public void setBinaryStorageSvcForUnitTests(IBinaryStorageSvc theBinaryStorageSvc) {
+		myBinaryStorageSvc = theBinaryStorageSvc;
+	}
+
 	/**
 	 * $export
 	 */
@@ -195,7 +205,12 @@ public class BulkDataExportProvider {
 				bulkResponseDocument.setRequest(status.getRequest());
 				for (IBulkDataExportSvc.FileEntry nextFile : status.getFiles()) {
 					String serverBase = getServerBase(theRequestDetails);
-					String nextUrl = serverBase + "/" + nextFile.getResourceId().toUnqualifiedVersionless().getValue();
+					String nextUrl;
+					if (nextFile.getBlobId() != null) {
+						nextUrl = serverBase + "/" + JpaConstants.OPERATION_EXPORT_DOWNLOAD + "?" + JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID + "=" + status.getJobId() + "&" + JpaConstants.PARAM_EXPORT_DOWNLOAD_FILE_ID + "=" + nextFile.getBlobId();
+					} else {
+						nextUrl = serverBase + "/" + nextFile.getResourceId().toUnqualifiedVersionless().getValue();
+					}
 					bulkResponseDocument
 						.addOutput()
 						.setType(nextFile.getResourceType())
@@ -218,6 +233,69 @@ public class BulkDataExportProvider {
 		}
 	}
 
+	/**
+	 * $export-download
+	 * <p>
+	 * Streams an export file which was written directly to binary storage. If the file was stored
+	 * gzipped and the client accepts gzip, it is sent as-is; otherwise it is decompressed on the way out.
+	 * </p>
+	 */
+	@Operation(name = JpaConstants.OPERATION_EXPORT_DOWNLOAD, manualResponse = true, idempotent = true)
+	public void exportDownload(
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID, typeName = "string", min = 1, max = 1) IPrimitiveType<String> theJobId,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_DOWNLOAD_FILE_ID, typeName = "string", min = 1, max = 1) IPrimitiveType<String> theFileId,
+		ServletRequestDetails theRequestDetails
+	) throws IOException {
+		if (myBinaryStorageSvc == null) {
+			throw new InvalidRequestException("This server does not have binary storage configured for bulk export files");
+		}
+
+		IBulkDataExportSvc.JobInfo status = myBulkDataExportSvc.getJobInfoOrThrowResourceNotFound(theJobId.getValueAsString());
+		String fileId = theFileId.getValueAsString();
+		IBulkDataExportSvc.FileEntry file = status
+			.getFiles()
+			.stream()
+			.filter(t -> fileId.equals(t.getBlobId()))
+			.findFirst()
+			.orElseThrow(() -> new ResourceNotFoundException("Unknown bulk export file: " + fileId));
+
+		HttpServletResponse response = theRequestDetails.getServletResponse();
+		theRequestDetails.getServer().addHeadersToResponse(response);
+		response.setStatus(Constants.STATUS_HTTP_200_OK);
+		response.setContentType(Constants.CT_FHIR_NDJSON);
+
+		if (!file.isBlobGzipped() || acceptsGzip(theRequestDetails)) {
+			if (file.isBlobGzipped()) {
+				response.addHeader(Constants.HEADER_CONTENT_ENCODING, Constants.ENCODING_GZIP);
+			}
+			if (file.getBlobSize() != null) {
+				response.setContentLengthLong(file.getBlobSize());
+			}
+			if (!myBinaryStorageSvc.writeBlob(file.getResourceId(), file.getBlobId(), response.getOutputStream())) {
+				throw new ResourceNotFoundException("Unknown bulk export file: " + fileId);
+			}
+		} else {
+			try (OutputStream outputStream = new GzipDecompressingOutputStream(response.getOutputStream())) {
+				if (!myBinaryStorageSvc.writeBlob(file.getResourceId(), file.getBlobId(), outputStream)) {
+					throw new ResourceNotFoundException("Unknown bulk export file: " + fileId);
+				}
+			}
+		}
+		response.getOutputStream().close();
+	}
+
+	private boolean acceptsGzip(ServletRequestDetails theRequestDetails) {
+		List<String> acceptEncodings = theRequestDetails.getHeaders(Constants.HEADER_ACCEPT_ENCODING);
+		if (acceptEncodings != null) {
+			for (String next : acceptEncodings) {
+				if (StringUtils.containsIgnoreCase(next, Constants.ENCODING_GZIP)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	private BulkDataExportOptions buildSystemBulkExportOptions(IPrimitiveType<String> theOutputFormat, IPrimitiveType<String> theType, IPrimitiveType<Date> theSince, IPrimitiveType<String> theTypeFilter) {
 		return buildBulkDataExportOptions(theOutputFormat, theType, theSince, theTypeFilter, BulkDataExportOptions.ExportStyle.SYSTEM);
 	}
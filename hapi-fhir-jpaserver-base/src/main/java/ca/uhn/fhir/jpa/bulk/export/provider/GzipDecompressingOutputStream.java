@@ -0,0 +1,157 @@
+package ca.uhn.fhir.jpa.bulk.export.provider;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * An output stream which decompresses the single member gzip stream that is written to it, and
+ * writes the decompressed contents to another stream as they become available. This lets a gzipped
+ * blob be sent uncompressed without ever holding the whole blob in memory, since binary storage
+ * can only stream a blob by writing it to an output stream. Closing this stream does not close
+ * the target stream.
+ */
+class GzipDecompressingOutputStream extends OutputStream {
+
+	private static final int FLAG_HEADER_CRC = 2;
+	private static final int FLAG_EXTRA = 4;
+	private static final int FLAG_NAME = 8;
+	private static final int FLAG_COMMENT = 16;
+	private static final int MINIMUM_HEADER_LENGTH = 10;
+
+	private final OutputStream myTarget;
+	private final Inflater myInflater = new Inflater(true);
+	private final byte[] myBuffer = new byte[8192];
+	private ByteArrayOutputStream myHeader = new ByteArrayOutputStream(MINIMUM_HEADER_LENGTH);
+
+	GzipDecompressingOutputStream(OutputStream theTarget) {
+		myTarget = theTarget;
+	}
+
+	@Override
+	public void write(int theByte) throws IOException {
+		write(new byte[]{(byte) theByte}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] theBytes, int theOffset, int theLength) throws IOException {
+		if (myHeader == null) {
+			inflate(theBytes, theOffset, theLength);
+			return;
+		}
+
+		myHeader.write(theBytes, theOffset, theLength);
+		byte[] header = myHeader.toByteArray();
+		int headerLength = parseHeaderLength(header);
+		if (headerLength != -1) {
+			myHeader = null;
+			inflate(header, headerLength, header.length - headerLength);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		myTarget.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (!myInflater.finished()) {
+				throw new EOFException("Unexpected end of gzip stream");
+			}
+			myTarget.flush();
+		} finally {
+			myInflater.end();
+		}
+	}
+
+	private void inflate(byte[] theBytes, int theOffset, int theLength) throws IOException {
+		// Anything after the end of the compressed data is the gzip trailer
+		if (theLength == 0 || myInflater.finished()) {
+			return;
+		}
+
+		myInflater.setInput(theBytes, theOffset, theLength);
+		try {
+			while (!myInflater.finished() && !myInflater.needsInput()) {
+				int count = myInflater.inflate(myBuffer);
+				if (count == 0 && myInflater.needsDictionary()) {
+					throw new ZipException("Invalid gzip stream");
+				}
+				myTarget.write(myBuffer, 0, count);
+			}
+		} catch (DataFormatException e) {
+			throw new ZipException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the length of the gzip header at the start of the given bytes, or <code>-1</code>
+	 * if more bytes are needed to know it
+	 */
+	private static int parseHeaderLength(byte[] theBytes) throws ZipException {
+		if (theBytes.length < MINIMUM_HEADER_LENGTH) {
+			return -1;
+		}
+		if ((theBytes[0] & 0xFF) != 0x1F || (theBytes[1] & 0xFF) != 0x8B || theBytes[2] != 8) {
+			throw new ZipException("Not in gzip format");
+		}
+
+		int flags = theBytes[3] & 0xFF;
+		int retVal = MINIMUM_HEADER_LENGTH;
+		if ((flags & FLAG_EXTRA) != 0) {
+			if (theBytes.length < retVal + 2) {
+				return -1;
+			}
+			retVal += 2 + ((theBytes[retVal] & 0xFF) | ((theBytes[retVal + 1] & 0xFF) << 8));
+		}
+		if ((flags & FLAG_NAME) != 0) {
+			retVal = skipZeroTerminated(theBytes, retVal);
+		}
+		if ((flags & FLAG_COMMENT) != 0 && retVal != -1) {
+			retVal = skipZeroTerminated(theBytes, retVal);
+		}
+		if ((flags & FLAG_HEADER_CRC) != 0 && retVal != -1) {
+			retVal += 2;
+		}
+		if (retVal == -1 || retVal > theBytes.length) {
+			return -1;
+		}
+		return retVal;
+	}
+
+	private static int skipZeroTerminated(byte[] theBytes, int theOffset) {
+		for (int i = theOffset; i < theBytes.length; i++) {
+			if (theBytes[i] == 0) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+}
@@ -28,6 +28,7 @@ import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.api.model.ExpungeOptions;
 import ca.uhn.fhir.jpa.batch.BatchJobsConfig;
 import ca.uhn.fhir.jpa.batch.api.IBatchJobSubmitter;
+import ca.uhn.fhir.jpa.binstore.IBinaryStorageSvc;
 import ca.uhn.fhir.jpa.bulk.export.api.BulkDataExportOptions;
 import ca.uhn.fhir.jpa.bulk.export.api.IBulkDataExportSvc;
 import ca.uhn.fhir.jpa.bulk.export.job.BulkExportJobConfig;
@@ -101,6 +102,8 @@ public class BulkDataExportSvcImpl implements IBulkDataExportSvc {
 	private FhirContext myContext;
 	@Autowired
 	private PlatformTransactionManager myTxManager;
+	@Autowired(required = false)
+	private IBinaryStorageSvc myBinaryStorageSvc;
 	private TransactionTemplate myTxTemplate;
 
 	@Autowired
@@ -203,9 +206,16 @@ public class BulkDataExportSvcImpl implements IBulkDataExportSvc {
 				for (BulkExportCollectionEntity nextCollection : job.getCollections()) {
 					for (BulkExportCollectionFileEntity nextFile : nextCollection.getFiles()) {
 
-						ourLog.info("Purging bulk data file: {}", nextFile.getResourceId());
-						getBinaryDao().delete(toId(nextFile.getResourceId()), new SystemRequestDetails());
-						getBinaryDao().forceExpungeInExistingTransaction(toId(nextFile.getResourceId()), new ExpungeOptions().setExpungeDeletedResources(true).setExpungeOldVersions(true), new SystemRequestDetails());
+						if (nextFile.getBlobId() != null) {
+							ourLog.info("Purging bulk data blob: {}", nextFile.getBlobId());
+							if (myBinaryStorageSvc != null) {
+								myBinaryStorageSvc.expungeBlob(toQualifiedBinaryId(nextFile.getBlobId()), nextFile.getBlobId());
+							}
+						} else {
+							ourLog.info("Purging bulk data file: {}", nextFile.getResourceId());
+							getBinaryDao().delete(toId(nextFile.getResourceId()), new SystemRequestDetails());
+							getBinaryDao().forceExpungeInExistingTransaction(toId(nextFile.getResourceId()), new ExpungeOptions().setExpungeDeletedResources(true).setExpungeOldVersions(true), new SystemRequestDetails());
+						}
 						myBulkExportCollectionFileDao.deleteByPid(nextFile.getId());
 
 					}
@@ -444,9 +454,17 @@ public class BulkDataExportSvcImpl implements IBulkDataExportSvc {
 		if (job.getStatus() == BulkExportJobStatusEnum.COMPLETE) {
 			for (BulkExportCollectionEntity nextCollection : job.getCollections()) {
 				for (BulkExportCollectionFileEntity nextFile : nextCollection.getFiles()) {
-					retVal.addFile()
-						.setResourceType(nextCollection.getResourceType())
-						.setResourceId(toQualifiedBinaryId(nextFile.getResourceId()));
+					FileEntry fileEntry = retVal.addFile()
+						.setResourceType(nextCollection.getResourceType());
+					if (nextFile.getBlobId() != null) {
+						fileEntry
+							.setResourceId(toQualifiedBinaryId(nextFile.getBlobId()))
+							.setBlobId(nextFile.getBlobId())
+							.setBlobSize(nextFile.getBlobSize())
+							.setBlobGzipped(nextFile.isBlobGzipped());
+					} else {
+						fileEntry.setResourceId(toQualifiedBinaryId(nextFile.getResourceId()));
+					}
 				}
 			}
 		}
@@ -25,6 +25,8 @@ import ca.uhn.fhir.jpa.bulk.imprt.model.BulkImportJobJson;
 import ca.uhn.fhir.jpa.bulk.imprt.model.BulkImportJobStatusEnum;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.InputStream;
 import java.util.List;
 
 public interface IBulkDataImportSvc {
@@ -86,6 +88,28 @@ public interface IBulkDataImportSvc {
 	 */
 	BulkImportJobFileJson fetchFile(String theJobId, int theFileIndex);
 
+	/**
+	 * Fetch the contents of a given file by job ID as a stream of UTF-8 encoded bytes. Unlike
+	 * {@link #fetchFile(String, int)}, this does not decode the file contents into a String.
+	 *
+	 * @param theJobId     The job ID
+	 * @param theFileIndex The index of the file within the job
+	 * @return The file contents
+	 * @since 5.4.0
+	 */
+	InputStream fetchFileContents(String theJobId, int theFileIndex);
+
+	/**
+	 * Fetch the tenant name associated with a given file by job ID
+	 *
+	 * @param theJobId     The job ID
+	 * @param theFileIndex The index of the file within the job
+	 * @return The tenant name, or <code>null</code> if none
+	 * @since 5.4.0
+	 */
+	@Nullable
+	String fetchFileTenantName(String theJobId, int theFileIndex);
+
 	/**
 	 * Delete all input files associated with a particular job
 	 */
@@ -24,18 +24,20 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.batch.log.Logs;
 import ca.uhn.fhir.jpa.bulk.export.job.BulkExportJobConfig;
 import ca.uhn.fhir.jpa.bulk.imprt.api.IBulkDataImportSvc;
-import ca.uhn.fhir.jpa.bulk.imprt.model.BulkImportJobFileJson;
 import ca.uhn.fhir.jpa.bulk.imprt.model.ParsedBulkImportRecord;
+import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.util.IoUtil;
-import com.google.common.io.LineReader;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
-import java.io.StringReader;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
 
-@SuppressWarnings("UnstableApiUsage")
 public class BulkImportFileReader implements ItemReader<ParsedBulkImportRecord> {
 
 	@Autowired
@@ -47,8 +49,8 @@ public class BulkImportFileReader implements ItemReader<ParsedBulkImportRecord>
 	@Value("#{stepExecutionContext['" + BulkImportPartitioner.FILE_INDEX + "']}")
 	private int myFileIndex;
 
-	private StringReader myReader;
-	private LineReader myLineReader;
+	private BufferedReader myReader;
+	private IParser myParser;
 	private int myLineIndex;
 	private String myTenantName;
 
@@ -56,21 +58,24 @@ public class BulkImportFileReader implements ItemReader<ParsedBulkImportRecord>
 	public ParsedBulkImportRecord read() throws Exception {
 
 		if (myReader == null) {
-			BulkImportJobFileJson file = myBulkDataImportSvc.fetchFile(myJobUuid, myFileIndex);
-			myTenantName = file.getTenantName();
-			myReader = new StringReader(file.getContents());
-			myLineReader = new LineReader(myReader);
+			myTenantName = myBulkDataImportSvc.fetchFileTenantName(myJobUuid, myFileIndex);
+			myReader = new BufferedReader(new InputStreamReader(myBulkDataImportSvc.fetchFileContents(myJobUuid, myFileIndex), StandardCharsets.UTF_8));
+			myParser = myFhirContext.newJsonParser();
 		}
 
-		String nextLine = myLineReader.readLine();
-		if (nextLine == null) {
-			IoUtil.closeQuietly(myReader);
-			return null;
-		}
+		String nextLine;
+		do {
+			nextLine = myReader.readLine();
+			if (nextLine == null) {
+				IoUtil.closeQuietly(myReader);
+				return null;
+			}
+			myLineIndex++;
+		} while (isBlank(nextLine));
 
-		Logs.getBatchTroubleshootingLog().debug("Reading line {} file index {} for job: {}", myLineIndex++, myFileIndex, myJobUuid);
+		Logs.getBatchTroubleshootingLog().debug("Reading line {} file index {} for job: {}", myLineIndex, myFileIndex, myJobUuid);
 
-		IBaseResource parsed = myFhirContext.newJsonParser().parseResource(nextLine);
+		IBaseResource parsed = myParser.parseResource(nextLine);
 		return new ParsedBulkImportRecord(myTenantName, parsed);
 	}
 }
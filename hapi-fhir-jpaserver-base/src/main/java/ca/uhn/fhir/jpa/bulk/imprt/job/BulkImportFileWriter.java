@@ -21,17 +21,21 @@ package ca.uhn.fhir.jpa.bulk.imprt.job;
  */
 
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.api.dao.IFhirSystemDao;
 import ca.uhn.fhir.jpa.bulk.export.job.BulkExportJobConfig;
 import ca.uhn.fhir.jpa.bulk.imprt.model.JobFileRowProcessingModeEnum;
 import ca.uhn.fhir.jpa.bulk.imprt.model.ParsedBulkImportRecord;
 import ca.uhn.fhir.jpa.partition.SystemRequestDetails;
+import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 
@@ -46,29 +50,50 @@ public class BulkImportFileWriter implements ItemWriter<ParsedBulkImportRecord>
 	private JobFileRowProcessingModeEnum myRowProcessingMode;
 	@Autowired
 	private DaoRegistry myDaoRegistry;
+	@Autowired
+	private PlatformTransactionManager myTxManager;
 
-	@SuppressWarnings({"SwitchStatementWithTooFewBranches", "rawtypes", "unchecked"})
+	@SuppressWarnings({"rawtypes", "unchecked"})
 	@Override
 	public void write(List<? extends ParsedBulkImportRecord> theItemLists) throws Exception {
 		ourLog.info("Beginning bulk import write {} chunks Job[{}] FileIndex[{}]", theItemLists.size(), myJobUuid, myFileIndex);
 
-		for (ParsedBulkImportRecord nextItem : theItemLists) {
-
-			SystemRequestDetails requestDetails = new SystemRequestDetails();
-			requestDetails.setTenantId(nextItem.getTenantName());
+		switch (myRowProcessingMode) {
+			case FHIR_RESOURCE:
+				// All of the resources in the chunk are stored in one DB transaction
+				new TransactionTemplate(myTxManager).executeWithoutResult(t -> writeResources(theItemLists));
+				break;
+			default:
+			case FHIR_TRANSACTION:
+				for (ParsedBulkImportRecord nextItem : theItemLists) {
+					SystemRequestDetails requestDetails = new SystemRequestDetails();
+					requestDetails.setTenantId(nextItem.getTenantName());
 
-			// Yeah this is a lame switch - We'll add more later I swear
-			switch (myRowProcessingMode) {
-				default:
-				case FHIR_TRANSACTION:
 					IFhirSystemDao systemDao = myDaoRegistry.getSystemDao();
 					IBaseResource inputBundle = nextItem.getRowContent();
 					systemDao.transactionNested(requestDetails, inputBundle);
-					break;
-			}
-
+				}
+				break;
 		}
 
 	}
 
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private void writeResources(List<? extends ParsedBulkImportRecord> theItemLists) {
+		TransactionDetails transactionDetails = new TransactionDetails();
+
+		for (ParsedBulkImportRecord nextItem : theItemLists) {
+			SystemRequestDetails requestDetails = new SystemRequestDetails();
+			requestDetails.setTenantId(nextItem.getTenantName());
+
+			IBaseResource resource = nextItem.getRowContent();
+			IFhirResourceDao dao = myDaoRegistry.getResourceDao(resource.getClass());
+			if (resource.getIdElement().hasIdPart()) {
+				dao.update(resource, null, true, false, requestDetails, transactionDetails);
+			} else {
+				dao.create(resource, null, true, transactionDetails, requestDetails);
+			}
+		}
+	}
+
 }
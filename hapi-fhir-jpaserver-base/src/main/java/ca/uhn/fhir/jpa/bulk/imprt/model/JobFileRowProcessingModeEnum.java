@@ -29,6 +29,16 @@ public enum JobFileRowProcessingModeEnum {
 	 * Sorting OK
 	 */
 
-	FHIR_TRANSACTION
+	FHIR_TRANSACTION,
+
+	/**
+	 * Each row is a single FHIR resource (i.e. the file is NDJSON). Resources with an
+	 * ID are stored using an update (creating them if they don't exist) and resources
+	 * without an ID are created. All rows in a chunk are stored in a single database
+	 * transaction, without going through FHIR transaction Bundle processing.
+	 *
+	 * @since 5.4.0
+	 */
+	FHIR_RESOURCE
 
 }
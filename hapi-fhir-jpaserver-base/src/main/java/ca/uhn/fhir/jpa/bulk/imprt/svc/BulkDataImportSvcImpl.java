@@ -54,6 +54,8 @@ import org.springframework.transaction.support.TransactionTemplate;
 import javax.annotation.Nonnull;
 import javax.annotation.PostConstruct;
 import javax.transaction.Transactional;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -223,6 +225,25 @@ public class BulkDataImportSvcImpl implements IBulkDataImportSvc {
 			.orElseThrow(() -> new IllegalArgumentException("Invalid index " + theFileIndex + " for job " + theJobId));
 	}
 
+	@Transactional
+	@Override
+	public InputStream fetchFileContents(String theJobId, int theFileIndex) {
+		byte[] contents = myJobFileDao
+			.findContentsForJob(theJobId, theFileIndex)
+			.orElseThrow(() -> new IllegalArgumentException("Invalid index " + theFileIndex + " for job " + theJobId));
+		return new ByteArrayInputStream(contents);
+	}
+
+	@Transactional
+	@Override
+	public String fetchFileTenantName(String theJobId, int theFileIndex) {
+		List<String> tenantNames = myJobFileDao.findTenantNameForJob(theJobId, theFileIndex);
+		if (tenantNames.isEmpty()) {
+			throw new IllegalArgumentException("Invalid index " + theFileIndex + " for job " + theJobId);
+		}
+		return tenantNames.get(0);
+	}
+
 	@Override
 	@Transactional
 	public void deleteJobFiles(String theJobId) {
@@ -33,6 +33,7 @@ import ca.uhn.fhir.jpa.dao.LegacySearchBuilder;
 import ca.uhn.fhir.jpa.dao.MatchResourceUrlService;
 import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
 import ca.uhn.fhir.jpa.dao.TransactionProcessor;
+import ca.uhn.fhir.jpa.dao.encoding.ResourceEncodingDictionarySvc;
 import ca.uhn.fhir.jpa.dao.expunge.DeleteExpungeService;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeEverythingService;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeOperation;
@@ -117,6 +118,8 @@ import ca.uhn.fhir.jpa.search.cache.DatabaseSearchCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.cache.DatabaseSearchResultCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
 import ca.uhn.fhir.jpa.search.cache.ISearchResultCacheSvc;
+import ca.uhn.fhir.jpa.search.cache.InMemorySearchCacheSvcImpl;
+import ca.uhn.fhir.jpa.search.cache.InMemorySearchResultCacheSvcImpl;
 import ca.uhn.fhir.jpa.search.reindex.IResourceReindexingSvc;
 import ca.uhn.fhir.jpa.search.reindex.ResourceReindexingSvcImpl;
 import ca.uhn.fhir.jpa.search.warm.CacheWarmingSvcImpl;
@@ -128,6 +131,7 @@ import ca.uhn.fhir.jpa.sp.ISearchParamPresenceSvc;
 import ca.uhn.fhir.jpa.sp.SearchParamPresenceSvcImpl;
 import ca.uhn.fhir.jpa.term.TermConceptMappingSvcImpl;
 import ca.uhn.fhir.jpa.term.api.ITermConceptMappingSvc;
+import ca.uhn.fhir.jpa.util.MemoryCacheInvalidationBroadcaster;
 import ca.uhn.fhir.jpa.util.MemoryCacheService;
 import ca.uhn.fhir.jpa.validation.JpaResourceLoader;
 import ca.uhn.fhir.jpa.validation.ValidationSettings;
@@ -323,6 +327,16 @@ public abstract class BaseConfig {
 		return new MemoryCacheService();
 	}
 
+	@Bean
+	public MemoryCacheInvalidationBroadcaster memoryCacheInvalidationBroadcaster() {
+		return new MemoryCacheInvalidationBroadcaster();
+	}
+
+	@Bean
+	public ResourceEncodingDictionarySvc resourceEncodingDictionarySvc() {
+		return new ResourceEncodingDictionarySvc();
+	}
+
 	@Bean
 	@Primary
 	public IResourceLinkResolver daoResourceLinkResolver() {
@@ -349,13 +363,24 @@ public abstract class BaseConfig {
 	}
 
 	@Bean
-	public ISearchCacheSvc searchCacheSvc() {
+	public ISearchCacheSvc searchCacheSvc(DaoConfig theDaoConfig) {
+		if (theDaoConfig.getSearchCacheMode() != DaoConfig.SearchCacheModeEnum.DATABASE) {
+			return new InMemorySearchCacheSvcImpl((InMemorySearchResultCacheSvcImpl) searchResultCacheSvc(theDaoConfig));
+		}
 		return new DatabaseSearchCacheSvcImpl();
 	}
 
 	@Bean
-	public ISearchResultCacheSvc searchResultCacheSvc() {
-		return new DatabaseSearchResultCacheSvcImpl();
+	public ISearchResultCacheSvc searchResultCacheSvc(DaoConfig theDaoConfig) {
+		switch (theDaoConfig.getSearchCacheMode()) {
+			case IN_MEMORY:
+				return new InMemorySearchResultCacheSvcImpl(theDaoConfig.getInMemorySearchCacheMaxBytes(), false);
+			case IN_MEMORY_OFF_HEAP:
+				return new InMemorySearchResultCacheSvcImpl(theDaoConfig.getInMemorySearchCacheMaxBytes(), true);
+			case DATABASE:
+			default:
+				return new DatabaseSearchResultCacheSvcImpl();
+		}
 	}
 
 	@Bean
@@ -21,6 +21,7 @@ import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceProvenanceDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
+import ca.uhn.fhir.jpa.dao.encoding.ResourceEncodingDictionarySvc;
 import ca.uhn.fhir.jpa.dao.expunge.ExpungeService;
 import ca.uhn.fhir.jpa.dao.index.DaoSearchParamSynchronizer;
 import ca.uhn.fhir.jpa.dao.index.IdHelperService;
@@ -89,6 +90,7 @@ import com.google.common.base.Charsets;
 import com.google.common.collect.Sets;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.tuple.Pair;
@@ -124,6 +126,11 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 import javax.xml.stream.events.Characters;
 import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -137,6 +144,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
 import static org.apache.commons.lang3.StringUtils.defaultIfBlank;
 import static org.apache.commons.lang3.StringUtils.defaultString;
@@ -200,6 +208,8 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 	@Autowired
 	protected IResourceTagDao myResourceTagDao;
 	@Autowired
+	private ResourceEncodingDictionarySvc myResourceEncodingDictionarySvc;
+	@Autowired
 	protected DeleteConflictService myDeleteConflictService;
 	@Autowired
 	protected IInterceptorBroadcaster myInterceptorBroadcaster;
@@ -503,6 +513,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 		}
 
 		byte[] bytes;
+		byte[] hashedBytes = null;
 		ResourceEncodingEnum encoding;
 		boolean changed = false;
 
@@ -561,7 +572,17 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 				theEntity.setFhirVersion(myContext.getVersion().getVersion());
 
-				bytes = encodeResource(theResource, encoding, excludeElements, myContext);
+				// The hash is over the uncompressed contents, since the same contents compress differently
+				// once a dictionary has been trained
+				if (encoding == ResourceEncodingEnum.JSONZ) {
+					IParser parser = encoding.newParser(myContext);
+					parser.setDontEncodeElements(excludeElements);
+					hashedBytes = parser.encodeResourceToString(theResource).getBytes(Charsets.UTF_8);
+					bytes = myResourceEncodingDictionarySvc.compress(resourceType, hashedBytes);
+				} else {
+					bytes = encodeResource(theResource, encoding, excludeElements, myContext);
+					hashedBytes = bytes;
+				}
 
 				if (sourceExtension != null) {
 					IBaseExtension<?, ?> newSourceExtension = ((IBaseHasExtensions) meta).addExtension();
@@ -570,7 +591,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 				}
 
 				HashFunction sha256 = Hashing.sha256();
-				String hashSha256 = sha256.hashBytes(bytes).toString();
+				String hashSha256 = sha256.hashBytes(hashedBytes).toString();
 				if (hashSha256.equals(theEntity.getHashSha256()) == false) {
 					changed = true;
 				}
@@ -643,6 +664,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 				}
 				if (currentHistoryVersion == null || currentHistoryVersion.getResource() == null) {
 					changed = true;
+				} else if (encoding == ResourceEncodingEnum.JSONZ && currentHistoryVersion.getEncoding() == ResourceEncodingEnum.JSONZ) {
+					// The current version may have been compressed with a different dictionary
+					changed = !Arrays.equals(decompress(currentHistoryVersion.getResource()), hashedBytes);
 				} else {
 					changed = !Arrays.equals(currentHistoryVersion.getResource(), bytes);
 				}
@@ -942,10 +966,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			return null;
 		}
 
-		// 2. get The text
-		String resourceText = decodeResource(resourceBytes, resourceEncoding);
-
-		// 3. Use the appropriate custom type if one is specified in the context
+		// 2. Use the appropriate custom type if one is specified in the context
 		Class<R> resourceType = theResourceType;
 		if (myContext.hasDefaultTypeForProfile()) {
 			for (BaseTag nextTag : myTagList) {
@@ -963,7 +984,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			}
 		}
 
-		// 4. parse the text to FHIR
+		// 3. parse the text to FHIR
 		R retVal;
 		if (resourceEncoding != ResourceEncodingEnum.DEL) {
 
@@ -971,7 +992,14 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			IParser parser = new TolerantJsonParser(getContext(theEntity.getFhirVersion()), errorHandler, theEntity.getId());
 
 			try {
-				retVal = parser.parseResource(resourceType, resourceText);
+				try (Reader reader = newResourceReader(resourceBytes, resourceEncoding)) {
+					retVal = parser.parseResource(resourceType, reader);
+				} catch (DataFormatException e) {
+					// TolerantJsonParser can only correct some invalid values when given the complete text
+					try (Reader reader = newResourceReader(resourceBytes, resourceEncoding)) {
+						retVal = parser.parseResource(resourceType, IOUtils.toString(reader));
+					}
+				}
 			} catch (Exception e) {
 				StringBuilder b = new StringBuilder();
 				b.append("Failed to parse database resource[");
@@ -995,7 +1023,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 		}
 
-		// 5. fill MetaData
+		// 4. fill MetaData
 		if (retVal instanceof IResource) {
 			IResource res = (IResource) retVal;
 			retVal = populateResourceMetadataHapi(resourceType, theEntity, myTagList, theForHistoryOperation, res, version);
@@ -1004,7 +1032,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			retVal = populateResourceMetadataRi(resourceType, theEntity, myTagList, theForHistoryOperation, res, version);
 		}
 
-		// 6. Handle source (provenance)
+		// 5. Handle source (provenance)
 		if (isNotBlank(provenanceRequestId) || isNotBlank(provenanceSourceUri)) {
 			String sourceString = cleanProvenanceSourceUri(provenanceSourceUri)
 				+ (isNotBlank(provenanceRequestId) ? "#" : "")
@@ -1014,7 +1042,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 		}
 
-		// 7. Add partition information
+		// 6. Add partition information
 		if (myPartitionSettings.isPartitioningEnabled()) {
 			PartitionablePartitionId partitionId = theEntity.getPartitionId();
 			if (partitionId != null && partitionId.getPartitionId() != null) {
@@ -1038,6 +1066,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 
 	protected ResourceTable updateEntityForDelete(RequestDetails theRequest, TransactionDetails theTransactionDetails, ResourceTable entity) {
 		Date updateTime = new Date();
+		myIdHelperService.invalidateCachedResourceIdentity(entity);
 		return updateEntity(theRequest, null, entity, updateTime, true, true, theTransactionDetails, false, true);
 	}
 
@@ -1577,12 +1606,40 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			case JSONC:
 				resourceText = GZipUtil.decompress(theResourceBytes);
 				break;
+			case JSONZ:
+				throw new InternalErrorException("Resources encoded as " + theResourceEncoding + " can not be decoded without their compression dictionary");
 			case DEL:
 				break;
 		}
 		return resourceText;
 	}
 
+	/**
+	 * Returns a reader over the stored body of a resource, decompressing it as it is
+	 * read rather than building an intermediate string
+	 */
+	private Reader newResourceReader(byte[] theResourceBytes, ResourceEncodingEnum theResourceEncoding) throws IOException {
+		switch (theResourceEncoding) {
+			case JSON:
+				return new InputStreamReader(new ByteArrayInputStream(theResourceBytes), Charsets.UTF_8);
+			case JSONC:
+				return new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(theResourceBytes)), Charsets.UTF_8);
+			case JSONZ:
+				return new InputStreamReader(myResourceEncodingDictionarySvc.newInputStream(theResourceBytes), Charsets.UTF_8);
+			case DEL:
+			default:
+				throw new InternalErrorException("Can not read resource with encoding: " + theResourceEncoding);
+		}
+	}
+
+	private byte[] decompress(byte[] theCompressed) {
+		try (InputStream inputStream = myResourceEncodingDictionarySvc.newInputStream(theCompressed)) {
+			return IOUtils.toByteArray(inputStream);
+		} catch (IOException e) {
+			throw new InternalErrorException("Failed to decompress resource", e);
+		}
+	}
+
 	public static byte[] encodeResource(IBaseResource theResource, ResourceEncodingEnum theEncoding, List<String> theExcludeElements, FhirContext theContext) {
 		byte[] bytes;
 		IParser parser = theEncoding.newParser(theContext);
@@ -1597,6 +1654,8 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			case JSONC:
 				bytes = GZipUtil.compress(encoded);
 				break;
+			case JSONZ:
+				throw new InternalErrorException("Resources can not be encoded as " + theEncoding + " without a compression dictionary");
 			default:
 			case DEL:
 				bytes = new byte[0];
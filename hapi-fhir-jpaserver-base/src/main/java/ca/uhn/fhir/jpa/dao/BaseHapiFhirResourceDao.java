@@ -53,6 +53,7 @@ import ca.uhn.fhir.jpa.search.DatabaseBackedPagingProvider;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProvider;
 import ca.uhn.fhir.jpa.search.cache.SearchCacheStatusEnum;
 import ca.uhn.fhir.jpa.search.reindex.IResourceReindexingSvc;
+import ca.uhn.fhir.jpa.searchparam.KeysetPageToken;
 import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
 import ca.uhn.fhir.rest.api.SearchContainedModeEnum;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
@@ -66,6 +67,7 @@ import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.api.PatchTypeEnum;
 import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.ValidationModeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.IPreResourceAccessDetails;
@@ -282,7 +284,7 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 		entity.setPartitionId(theRequestPartitionId);
 
 		if (isNotBlank(theIfNoneExist)) {
-			Set<ResourcePersistentId> match = myMatchResourceUrlService.processMatchUrl(theIfNoneExist, myResourceType, theRequest);
+			Set<ResourcePersistentId> match = myMatchResourceUrlService.processMatchUrl(theIfNoneExist, myResourceType, theTransactionDetails, theRequest);
 			if (match.size() > 1) {
 				String msg = getContext().getLocalizer().getMessageSanitized(BaseHapiFhirDao.class, "transactionOperationWithMultipleMatchFailure", "CREATE", theIfNoneExist, match.size());
 				throw new PreconditionFailedException(msg);
@@ -1398,6 +1400,15 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 				theParams.setOffset(offset);
 			}
 
+			if (offset == null && myDaoConfig.isKeysetPagingEnabled() && !theRequest.isSubRequest() && isKeysetPagingSupported(theParams)) {
+				theParams.setLoadSynchronous(true);
+				theParams.setKeysetPaging(true);
+				String[] pageToken = theRequest.getParameters().get(Constants.PARAM_PAGE_TOKEN);
+				if (pageToken != null && pageToken.length > 0 && isNotBlank(pageToken[0])) {
+					theParams.setKeysetPageToken(KeysetPageToken.decode(pageToken[0]));
+				}
+			}
+
 			Integer count = RestfulServerUtils.extractCountParameter(theRequest);
 			if (count != null) {
 				Integer maxPageSize = theRequest.getServer().getMaximumPageSize();
@@ -1408,8 +1419,35 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 				theParams.setCount(count);
 			} else if (theRequest.getServer().getDefaultPageSize() != null) {
 				theParams.setCount(theRequest.getServer().getDefaultPageSize());
+			} else if (theParams.isKeysetPaging() && theRequest.getServer().getPagingProvider() != null) {
+				theParams.setCount(theRequest.getServer().getPagingProvider().getDefaultPageSize());
 			}
+
+			// Keyset pages are loaded synchronously in one go, so they also can't exceed the paging provider's maximum
+			if (theParams.isKeysetPaging() && theParams.getCount() != null && theRequest.getServer().getPagingProvider() != null) {
+				int maxPageSize = theRequest.getServer().getPagingProvider().getMaximumPageSize();
+				if (theParams.getCount() > maxPageSize) {
+					ourLog.info("Reducing {} from {} to {} which is the maximum allowable page size.", Constants.PARAM_COUNT, theParams.getCount(), maxPageSize);
+					theParams.setCount(maxPageSize);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Keyset paging orders results by resource PID, so it can only be used for searches which are
+	 * not sorted, or are only sorted by <code>_lastUpdated</code>, and which are resolved by the
+	 * database (as opposed to fulltext, <code>$lastn</code> and <code>$everything</code> searches)
+	 */
+	private static boolean isKeysetPagingSupported(SearchParameterMap theParams) {
+		if (theParams.getEverythingMode() != null || theParams.isLastN()) {
+			return false;
+		}
+		if (theParams.containsKey(Constants.PARAM_CONTENT) || theParams.containsKey(Constants.PARAM_TEXT)) {
+			return false;
 		}
+		SortSpec sort = theParams.getSort();
+		return sort == null || (Constants.PARAM_LASTUPDATED.equals(sort.getParamName()) && sort.getChain() == null);
 	}
 
 	@Override
@@ -1532,7 +1570,7 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 
 		IIdType resourceId;
 		if (isNotBlank(theMatchUrl)) {
-			Set<ResourcePersistentId> match = myMatchResourceUrlService.processMatchUrl(theMatchUrl, myResourceType, theRequest);
+			Set<ResourcePersistentId> match = myMatchResourceUrlService.processMatchUrl(theMatchUrl, myResourceType, theTransactionDetails, theRequest);
 			if (match.size() > 1) {
 				String msg = getContext().getLocalizer().getMessageSanitized(BaseHapiFhirDao.class, "transactionOperationWithMultipleMatchFailure", "UPDATE", theMatchUrl, match.size());
 				throw new PreconditionFailedException(msg);
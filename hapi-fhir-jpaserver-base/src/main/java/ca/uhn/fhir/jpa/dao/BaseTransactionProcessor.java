@@ -25,6 +25,7 @@ import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.interceptor.api.HookParams;
 import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.api.config.DaoConfig;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
@@ -33,12 +34,16 @@ import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
 import ca.uhn.fhir.jpa.api.model.DeleteConflict;
 import ca.uhn.fhir.jpa.api.model.DeleteConflictList;
 import ca.uhn.fhir.jpa.api.model.DeleteMethodOutcome;
+import ca.uhn.fhir.jpa.dao.index.IdHelperService;
 import ca.uhn.fhir.jpa.dao.tx.HapiTransactionService;
 import ca.uhn.fhir.jpa.delete.DeleteConflictService;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.model.cross.IBasePersistedResource;
+import ca.uhn.fhir.jpa.model.cross.IResourceLookup;
 import ca.uhn.fhir.jpa.model.entity.ModelConfig;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
+import ca.uhn.fhir.jpa.search.reindex.ResourceReindexingSvcImpl;
 import ca.uhn.fhir.jpa.util.JpaInterceptorBroadcaster;
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
@@ -89,12 +94,14 @@ import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Date;
@@ -108,6 +115,8 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import static ca.uhn.fhir.util.StringUtil.toUtf8String;
 import static org.apache.commons.lang3.StringUtils.defaultString;
@@ -117,6 +126,7 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 public abstract class BaseTransactionProcessor {
 
 	public static final String URN_PREFIX = "urn:";
+	private static final int BATCH_EXECUTOR_QUEUE_CAPACITY = 100;
 	private static final Logger ourLog = LoggerFactory.getLogger(TransactionProcessor.class);
 	private BaseHapiFhirDao myDao;
 	@Autowired
@@ -137,6 +147,11 @@ public abstract class BaseTransactionProcessor {
 	private DaoConfig myDaoConfig;
 	@Autowired
 	private ModelConfig myModelConfig;
+	@Autowired
+	private PartitionSettings myPartitionSettings;
+	@Autowired
+	private IdHelperService myIdHelperService;
+	private ThreadPoolTaskExecutor myBatchExecutor;
 
 	@PostConstruct
 	public void start() {
@@ -291,60 +306,152 @@ public abstract class BaseTransactionProcessor {
 	}
 
 	private IBaseBundle batch(final RequestDetails theRequestDetails, IBaseBundle theRequest, boolean theNestedMode) {
-		ourLog.info("Beginning batch with {} resources", myVersionAdapter.getEntries(theRequest).size());
+		List<IBase> requestEntries = myVersionAdapter.getEntries(theRequest);
+		ourLog.info("Beginning batch with {} resources", requestEntries.size());
 		long start = System.currentTimeMillis();
 
-		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
-		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
-
 		IBaseBundle resp = myVersionAdapter.createBundle(org.hl7.fhir.r4.model.Bundle.BundleType.BATCHRESPONSE.toCode());
 
 		/*
 		 * For batch, we handle each entry as a mini-transaction in its own database transaction so that if one fails, it doesn't prevent others
 		 */
 
-		for (final Object nextRequestEntry : myVersionAdapter.getEntries(theRequest)) {
+		int poolSize = myDaoConfig.getBundleBatchPoolSize();
+		if (poolSize > 1 && !theNestedMode && requestEntries.size() > 1 && isBatchEntryRequestDetailsSupported(theRequestDetails)) {
+			batchInParallel(theRequestDetails, requestEntries, resp, poolSize);
+		} else {
+			for (IBase nextRequestEntry : requestEntries) {
+
+				BaseServerResponseExceptionHolder caughtEx = new BaseServerResponseExceptionHolder();
+				IBaseBundle nextResponseBundle = null;
+
+				try {
+					IBaseBundle subRequestBundle = createBatchSubRequestBundle(nextRequestEntry);
+					nextResponseBundle = processTransactionAsSubRequest(theRequestDetails, subRequestBundle, "Batch sub-request", theNestedMode);
+				} catch (BaseServerResponseException e) {
+					caughtEx.setException(e);
+				} catch (Throwable t) {
+					ourLog.error("Failure during BATCH sub transaction processing", t);
+					caughtEx.setException(new InternalErrorException(t));
+				}
 
-			BaseServerResponseExceptionHolder caughtEx = new BaseServerResponseExceptionHolder();
+				addBatchResponseEntry(resp, nextResponseBundle, caughtEx);
+			}
+		}
 
-			try {
-				IBaseBundle subRequestBundle = myVersionAdapter.createBundle(org.hl7.fhir.r4.model.Bundle.BundleType.TRANSACTION.toCode());
-				myVersionAdapter.addEntry(subRequestBundle, (IBase) nextRequestEntry);
+		long delay = System.currentTimeMillis() - start;
+		ourLog.info("Batch completed in {}ms", delay);
 
-				IBaseBundle nextResponseBundle = processTransactionAsSubRequest(theRequestDetails, subRequestBundle, "Batch sub-request", theNestedMode);
+		return resp;
+	}
 
-				IBase subResponseEntry = (IBase) myVersionAdapter.getEntries(nextResponseBundle).get(0);
-				myVersionAdapter.addEntry(resp, subResponseEntry);
+	/**
+	 * Entries can only be processed concurrently if each one can be given its own copy of the
+	 * request details (see {@link BatchEntryRequestDetails}). Other kinds of request details are
+	 * processed sequentially.
+	 */
+	private boolean isBatchEntryRequestDetailsSupported(RequestDetails theRequestDetails) {
+		return theRequestDetails == null || theRequestDetails instanceof ServletRequestDetails;
+	}
 
-				/*
-				 * If the individual entry didn't have a resource in its response, bring the sub-transaction's OperationOutcome across so the client can see it
-				 */
-				if (myVersionAdapter.getResource(subResponseEntry) == null) {
-					IBase nextResponseBundleFirstEntry = (IBase) myVersionAdapter.getEntries(nextResponseBundle).get(0);
-					myVersionAdapter.setResource(subResponseEntry, myVersionAdapter.getResource(nextResponseBundleFirstEntry));
-				}
+	/**
+	 * Processes the entries of a batch concurrently. Each entry still gets its own database transaction
+	 * (and its own {@link TransactionDetails}), and the response entries are added in request order.
+	 */
+	private void batchInParallel(RequestDetails theRequestDetails, List<IBase> theRequestEntries, IBaseBundle theResponse, int thePoolSize) {
+		ThreadPoolTaskExecutor executor = getBatchExecutor(thePoolSize);
+
+		List<Future<IBaseBundle>> futures = new ArrayList<>(theRequestEntries.size());
+		for (IBase nextRequestEntry : theRequestEntries) {
+			IBaseBundle subRequestBundle = createBatchSubRequestBundle(nextRequestEntry);
+			RequestDetails entryRequestDetails = theRequestDetails != null ? new BatchEntryRequestDetails((ServletRequestDetails) theRequestDetails) : null;
+			futures.add(executor.submit(() -> processTransactionAsSubRequest(entryRequestDetails, subRequestBundle, "Batch sub-request", false)));
+		}
 
-			} catch (BaseServerResponseException e) {
-				caughtEx.setException(e);
-			} catch (Throwable t) {
-				ourLog.error("Failure during BATCH sub transaction processing", t);
-				caughtEx.setException(new InternalErrorException(t));
+		for (Future<IBaseBundle> nextFuture : futures) {
+
+			BaseServerResponseExceptionHolder caughtEx = new BaseServerResponseExceptionHolder();
+			IBaseBundle nextResponseBundle = null;
+
+			try {
+				nextResponseBundle = nextFuture.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof BaseServerResponseException) {
+					caughtEx.setException((BaseServerResponseException) e.getCause());
+				} else {
+					ourLog.error("Failure during BATCH sub transaction processing", e.getCause());
+					caughtEx.setException(new InternalErrorException(e.getCause()));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				caughtEx.setException(new InternalErrorException(e));
 			}
 
-			if (caughtEx.getException() != null) {
-				IBase nextEntry = myVersionAdapter.addEntry(resp);
+			addBatchResponseEntry(theResponse, nextResponseBundle, caughtEx);
+		}
+	}
+
+	/**
+	 * The executor is shared by all batches and is only shut down when this processor is stopped,
+	 * since other batches may still be waiting on its tasks. If the configured pool size changes,
+	 * the existing executor is resized in place instead of being replaced.
+	 */
+	private synchronized ThreadPoolTaskExecutor getBatchExecutor(int thePoolSize) {
+		if (myBatchExecutor == null) {
+			ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+			executor.setThreadNamePrefix("bundle_batch_");
+			executor.setCorePoolSize(thePoolSize);
+			executor.setMaxPoolSize(thePoolSize);
+			executor.setQueueCapacity(BATCH_EXECUTOR_QUEUE_CAPACITY);
+			executor.setAllowCoreThreadTimeOut(true);
+			executor.setRejectedExecutionHandler(new ResourceReindexingSvcImpl.BlockPolicy());
+			executor.initialize();
+			myBatchExecutor = executor;
+		} else if (thePoolSize > myBatchExecutor.getMaxPoolSize()) {
+			// The maximum can never be below the core size, so grow the maximum first
+			myBatchExecutor.setMaxPoolSize(thePoolSize);
+			myBatchExecutor.setCorePoolSize(thePoolSize);
+		} else if (thePoolSize < myBatchExecutor.getMaxPoolSize()) {
+			myBatchExecutor.setCorePoolSize(thePoolSize);
+			myBatchExecutor.setMaxPoolSize(thePoolSize);
+		}
+		return myBatchExecutor;
+	}
 
-				populateEntryWithOperationOutcome(caughtEx.getException(), nextEntry);
+	@PreDestroy
+	public synchronized void stop() {
+		if (myBatchExecutor != null) {
+			myBatchExecutor.shutdown();
+			myBatchExecutor = null;
+		}
+	}
 
-				myVersionAdapter.setResponseStatus(nextEntry, toStatusString(caughtEx.getException().getStatusCode()));
+	private IBaseBundle createBatchSubRequestBundle(IBase theRequestEntry) {
+		IBaseBundle retVal = myVersionAdapter.createBundle(org.hl7.fhir.r4.model.Bundle.BundleType.TRANSACTION.toCode());
+		myVersionAdapter.addEntry(retVal, theRequestEntry);
+		return retVal;
+	}
+
+	private void addBatchResponseEntry(IBaseBundle theResponse, IBaseBundle theSubResponseBundle, BaseServerResponseExceptionHolder theCaughtEx) {
+		if (theCaughtEx.getException() == null) {
+			IBase subResponseEntry = (IBase) myVersionAdapter.getEntries(theSubResponseBundle).get(0);
+			myVersionAdapter.addEntry(theResponse, subResponseEntry);
+
+			/*
+			 * If the individual entry didn't have a resource in its response, bring the sub-transaction's OperationOutcome across so the client can see it
+			 */
+			if (myVersionAdapter.getResource(subResponseEntry) == null) {
+				IBase nextResponseBundleFirstEntry = (IBase) myVersionAdapter.getEntries(theSubResponseBundle).get(0);
+				myVersionAdapter.setResource(subResponseEntry, myVersionAdapter.getResource(nextResponseBundleFirstEntry));
 			}
 
-		}
+		} else {
+			IBase nextEntry = myVersionAdapter.addEntry(theResponse);
 
-		long delay = System.currentTimeMillis() - start;
-		ourLog.info("Batch completed in {}ms", delay);
+			populateEntryWithOperationOutcome(theCaughtEx.getException(), nextEntry);
 
-		return resp;
+			myVersionAdapter.setResponseStatus(nextEntry, toStatusString(theCaughtEx.getException().getStatusCode()));
+		}
 	}
 
 	@VisibleForTesting
@@ -575,6 +682,99 @@ public abstract class BaseTransactionProcessor {
 		myModelConfig = theModelConfig;
 	}
 
+	/**
+	 * Resolves the conditional URLs and literal resource references found in the transaction using
+	 * a small number of bulk queries, so that the individual entries don't each need to resolve their
+	 * own. Anything that can't be resolved here is simply resolved individually as before.
+	 */
+	private void preResolveConditionalUrlsAndReferences(RequestDetails theRequest, TransactionDetails theTransactionDetails, List<IBase> theEntries) {
+		if (theEntries.size() < 2) {
+			return;
+		}
+
+		/*
+		 * Resource types which are deleted or written unconditionally within this transaction are skipped,
+		 * since the outcome of resolving a URL against them can change while the transaction is processed
+		 */
+		Set<String> volatileResourceTypes = new HashSet<>();
+		Map<String, Class<? extends IBaseResource>> conditionalUrls = new HashMap<>();
+		Set<String> duplicateConditionalUrls = new HashSet<>();
+		for (IBase nextReqEntry : theEntries) {
+			String verb = myVersionAdapter.getEntryRequestVerb(myContext, nextReqEntry);
+			IBaseResource resource = myVersionAdapter.getResource(nextReqEntry);
+			String requestUrl = myVersionAdapter.getEntryRequestUrl(nextReqEntry);
+			String conditionalUrl = null;
+			if ("POST".equals(verb) && resource != null) {
+				conditionalUrl = myVersionAdapter.getEntryRequestIfNoneExist(nextReqEntry);
+			} else if ("PUT".equals(verb) && resource != null && isNotBlank(requestUrl)) {
+				UrlUtil.UrlParts parts = UrlUtil.parseUrl(requestUrl);
+				if (isBlank(parts.getResourceId()) && isNotBlank(parts.getParams())) {
+					conditionalUrl = parts.getResourceType() + '?' + parts.getParams();
+				}
+			} else if ("DELETE".equals(verb) && isNotBlank(requestUrl)) {
+				volatileResourceTypes.add(UrlUtil.parseUrl(requestUrl).getResourceType());
+				continue;
+			}
+
+			if (resource == null) {
+				continue;
+			}
+			if (isBlank(conditionalUrl)) {
+				volatileResourceTypes.add(myContext.getResourceType(resource));
+			} else if (!conditionalUrl.contains(URN_PREFIX) && conditionalUrls.put(conditionalUrl, resource.getClass()) != null) {
+				duplicateConditionalUrls.add(conditionalUrl);
+			}
+		}
+
+		conditionalUrls.keySet().removeAll(duplicateConditionalUrls);
+		conditionalUrls.values().removeIf(t -> volatileResourceTypes.contains(myContext.getResourceType(t)));
+		if (!conditionalUrls.isEmpty()) {
+			myMatchResourceUrlService.preResolveMatchUrls(conditionalUrls, theTransactionDetails, theRequest);
+		}
+
+		/*
+		 * Existing resources referred to by the resources being written. This is only done when partitioning is
+		 * disabled, since otherwise each reference is only valid for the partition its source resource ends up in.
+		 */
+		if (myPartitionSettings.isPartitioningEnabled()) {
+			return;
+		}
+		Set<String> referenceTypesToSkip = new HashSet<>();
+		for (IBase nextReqEntry : theEntries) {
+			if ("DELETE".equals(myVersionAdapter.getEntryRequestVerb(myContext, nextReqEntry))) {
+				String requestUrl = myVersionAdapter.getEntryRequestUrl(nextReqEntry);
+				if (isNotBlank(requestUrl)) {
+					referenceTypesToSkip.add(UrlUtil.parseUrl(requestUrl).getResourceType());
+				}
+			}
+		}
+		Map<String, IIdType> referencedIds = new HashMap<>();
+		for (IBase nextReqEntry : theEntries) {
+			IBaseResource resource = myVersionAdapter.getResource(nextReqEntry);
+			if (resource == null) {
+				continue;
+			}
+			for (IBaseReference nextReference : myContext.newTerser().getAllPopulatedChildElementsOfType(resource, IBaseReference.class)) {
+				IIdType nextId = nextReference.getReferenceElement();
+				if (nextId.hasResourceType() && nextId.hasIdPart() && !nextId.hasBaseUrl() && !isPlaceholder(nextId) && !nextId.getValue().contains("?") && !referenceTypesToSkip.contains(nextId.getResourceType())) {
+					IIdType id = nextId.toUnqualifiedVersionless();
+					referencedIds.put(id.getValue(), id);
+				}
+			}
+		}
+		if (referencedIds.size() < 2) {
+			return;
+		}
+
+		Map<String, IResourceLookup> lookups = myIdHelperService.resolveResourceIdentities(RequestPartitionId.allPartitions(), referencedIds.values());
+		for (Map.Entry<String, IResourceLookup> next : lookups.entrySet()) {
+			IIdType id = referencedIds.get(next.getKey());
+			if (id != null && next.getValue().getDeleted() == null) {
+				theTransactionDetails.addResolvedResourceId(id, new ResourcePersistentId(next.getValue().getResourceId()));
+			}
+		}
+	}
+
 	private Map<IBase, IBasePersistedResource> doTransactionWriteOperations(final RequestDetails theRequest, String theActionName, TransactionDetails theTransactionDetails, Set<IIdType> theAllIds,
 																									Map<IIdType, IIdType> theIdSubstitutions, Map<IIdType, DaoMethodOutcome> theIdToPersistedOutcome, IBaseBundle theResponse, IdentityHashMap<IBase, Integer> theOriginalRequestOrder, List<IBase> theEntries, StopWatch theTransactionStopWatch) {
 
@@ -655,6 +855,7 @@ public abstract class BaseTransactionProcessor {
 				}
 			}
 
+			preResolveConditionalUrlsAndReferences(theRequest, theTransactionDetails, theEntries);
 
 			/*
 			 * Loop through the request and process any entries of type
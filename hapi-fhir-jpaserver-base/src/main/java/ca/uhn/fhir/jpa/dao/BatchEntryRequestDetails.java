@@ -0,0 +1,66 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import ca.uhn.fhir.rest.server.servlet.ServletSubRequestDetails;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Request details for a single entry of a batch Bundle which is being processed on a worker thread.
+ * <p>
+ * This is a copy of the batch request, except that it has its own user data map (initially
+ * containing the same entries as the batch request). Interceptors keep per-request state in
+ * the user data map (and in the objects stored in it) without any synchronization, so entries
+ * which are processed concurrently must not share it. Changes made to the user data while
+ * processing the entry are not copied back to the batch request.
+ * </p>
+ */
+class BatchEntryRequestDetails extends ServletSubRequestDetails {
+
+	private final Map<Object, Object> myUserData;
+
+	BatchEntryRequestDetails(ServletRequestDetails theRequestDetails) {
+		super(theRequestDetails);
+		setServletRequest(theRequestDetails.getServletRequest());
+		setServletResponse(theRequestDetails.getServletResponse());
+		setServer(theRequestDetails.getServer());
+		setFhirServerBase(theRequestDetails.getFhirServerBase());
+		setTenantId(theRequestDetails.getTenantId());
+		setRequestType(theRequestDetails.getRequestType());
+		setRestOperationType(theRequestDetails.getRestOperationType());
+		setRequestPath(theRequestDetails.getRequestPath());
+		setCompleteUrl(theRequestDetails.getCompleteUrl());
+		setParameters(new HashMap<>(theRequestDetails.getParameters()));
+		setRequestId(theRequestDetails.getRequestId());
+		setTransactionGuid(theRequestDetails.getTransactionGuid());
+		setRespondGzip(theRequestDetails.isRespondGzip());
+		myUserData = new HashMap<>(theRequestDetails.getUserData());
+	}
+
+	@Override
+	public Map<Object, Object> getUserData() {
+		return myUserData;
+	}
+
+}
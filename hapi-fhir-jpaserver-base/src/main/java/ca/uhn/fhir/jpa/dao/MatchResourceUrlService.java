@@ -27,24 +27,57 @@ import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamTokenDao;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.util.JpaInterceptorBroadcaster;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.rest.api.server.storage.ResourcePersistentId;
+import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
 import ca.uhn.fhir.util.StopWatch;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
 
 @Service
 public class MatchResourceUrlService {
+	private static final Logger ourLog = LoggerFactory.getLogger(MatchResourceUrlService.class);
+	/**
+	 * Maximum number of values searched for at once by {@link #preResolveMatchUrls(Map, TransactionDetails, RequestDetails)}
+	 */
+	static final int PRE_RESOLVE_BATCH_SIZE = 500;
+	/**
+	 * This is the limit applied by {@link IFhirResourceDao#searchForIds(SearchParameterMap, RequestDetails)}
+	 */
+	private static final int SEARCH_FOR_IDS_LIMIT = 10000;
+	@Autowired
+	private IResourceIndexedSearchParamTokenDao myResourceIndexedSearchParamTokenDao;
 	@Autowired
 	private DaoRegistry myDaoRegistry;
 	@Autowired
@@ -65,6 +98,161 @@ public class MatchResourceUrlService {
 		return search(paramMap, theResourceType, theRequest);
 	}
 
+	/**
+	 * Like {@link #processMatchUrl(String, Class, RequestDetails)}, except that if the URL has already been
+	 * resolved within the current transaction (see {@link #preResolveMatchUrls(Map, TransactionDetails, RequestDetails)})
+	 * that outcome is returned instead of searching again.
+	 *
+	 * @since 5.4.0
+	 */
+	public <R extends IBaseResource> Set<ResourcePersistentId> processMatchUrl(String theMatchUrl, Class<R> theResourceType, TransactionDetails theTransactionDetails, RequestDetails theRequest) {
+		ResourcePersistentId resolved = theTransactionDetails.getResolvedMatchUrl(toResolvedMatchUrlKey(theMatchUrl, myContext.getResourceType(theResourceType)));
+		if (resolved == TransactionDetails.NOT_FOUND) {
+			return Collections.emptySet();
+		} else if (resolved != null) {
+			return Collections.singleton(resolved);
+		}
+		return processMatchUrl(theMatchUrl, theResourceType, theRequest);
+	}
+
+	/**
+	 * Resolves a collection of conditional URLs using as few database queries as possible, and stores
+	 * the outcomes in the given {@link TransactionDetails} so that subsequent calls to
+	 * {@link #processMatchUrl(String, Class, TransactionDetails, RequestDetails)} don't need to search.
+	 * <p>
+	 * URLs consisting of a single <code>system|value</code> token parameter (e.g.
+	 * <code>Patient?identifier=http://foo|123</code>) are grouped by resource type, parameter name
+	 * and system. Each group is resolved using one search for all of its values, followed by one
+	 * query against the token index to determine which value each matching resource has. Any other
+	 * URLs, as well as URLs matching more than one resource, are left to be resolved individually.
+	 * </p>
+	 *
+	 * @param theMatchUrls A map of conditional URLs to the resource type they apply to
+	 * @since 5.4.0
+	 */
+	public void preResolveMatchUrls(Map<String, Class<? extends IBaseResource>> theMatchUrls, TransactionDetails theTransactionDetails, RequestDetails theRequest) {
+		Map<TokenMatchUrlGroup, ListMultimap<String, String>> groups = new HashMap<>();
+		for (Map.Entry<String, Class<? extends IBaseResource>> next : theMatchUrls.entrySet()) {
+			String matchUrl = next.getKey();
+			String resourceType = myContext.getResourceType(next.getValue());
+			TokenParam token = toSingleTokenParamOrNull(matchUrl, next.getValue());
+			if (token != null) {
+				String paramName = matchUrl.substring(matchUrl.indexOf('?') + 1, matchUrl.indexOf('='));
+				TokenMatchUrlGroup group = new TokenMatchUrlGroup(next.getValue(), paramName, token.getSystem());
+				groups
+					.computeIfAbsent(group, t -> ArrayListMultimap.create())
+					.put(token.getValue(), toResolvedMatchUrlKey(matchUrl, resourceType));
+			}
+		}
+
+		for (Map.Entry<TokenMatchUrlGroup, ListMultimap<String, String>> nextGroup : groups.entrySet()) {
+			ListMultimap<String, String> valueToKeys = nextGroup.getValue();
+			if (valueToKeys.keySet().size() < 2) {
+				// Nothing to be gained over resolving the URL individually
+				continue;
+			}
+
+			for (List<String> nextValues : Lists.partition(new ArrayList<>(valueToKeys.keySet()), PRE_RESOLVE_BATCH_SIZE)) {
+				Map<String, ResourcePersistentId> resolved = resolveTokenValues(nextGroup.getKey(), nextValues, theRequest);
+				if (resolved != null) {
+					resolved.forEach((value, pid) -> valueToKeys.get(value).forEach(key -> theTransactionDetails.addResolvedMatchUrl(key, pid)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return A map of each value to the PID of the single resource having it, or to {@link TransactionDetails#NOT_FOUND}. Values
+	 * matching more than one resource are omitted. Returns <code>null</code> if the outcome could not be determined.
+	 */
+	private Map<String, ResourcePersistentId> resolveTokenValues(TokenMatchUrlGroup theGroup, List<String> theValues, RequestDetails theRequest) {
+		String resourceType = myContext.getResourceType(theGroup.myResourceType);
+
+		TokenOrListParam orList = new TokenOrListParam();
+		theValues.forEach(t -> orList.add(theGroup.mySystem, t));
+		SearchParameterMap paramMap = new SearchParameterMap();
+		paramMap.setLoadSynchronous(true);
+		paramMap.add(theGroup.myParamName, orList);
+
+		Set<ResourcePersistentId> matches = search(paramMap, theGroup.myResourceType, theRequest);
+		if (matches.size() >= SEARCH_FOR_IDS_LIMIT) {
+			return null;
+		}
+
+		ListMultimap<String, Long> valueToPids = ArrayListMultimap.create();
+		Set<Long> attributedPids = new HashSet<>();
+		Set<String> values = new HashSet<>(theValues);
+		for (List<Long> nextPids : Lists.partition(matches.stream().map(ResourcePersistentId::getIdAsLong).collect(Collectors.toList()), PRE_RESOLVE_BATCH_SIZE)) {
+			Collection<Object[]> tokens = myResourceIndexedSearchParamTokenDao.findValuesForResourcePids(nextPids, resourceType, theGroup.myParamName, theGroup.mySystem);
+			for (Object[] nextToken : tokens) {
+				Long pid = (Long) nextToken[0];
+				String value = (String) nextToken[1];
+				if (values.contains(value) && !valueToPids.containsEntry(value, pid)) {
+					valueToPids.put(value, pid);
+					attributedPids.add(pid);
+				}
+			}
+		}
+
+		if (attributedPids.size() != matches.size()) {
+			// Every match must have one of the values, otherwise something we didn't anticipate is going on
+			ourLog.debug("Unable to attribute {} matches for {}?{}={}|..., resolving individually", matches.size() - attributedPids.size(), resourceType, theGroup.myParamName, theGroup.mySystem);
+			return null;
+		}
+
+		Map<String, ResourcePersistentId> retVal = new HashMap<>();
+		for (String nextValue : theValues) {
+			List<Long> pids = valueToPids.get(nextValue);
+			if (pids.isEmpty()) {
+				retVal.put(nextValue, TransactionDetails.NOT_FOUND);
+			} else if (pids.size() == 1) {
+				retVal.put(nextValue, new ResourcePersistentId(pids.get(0)));
+			}
+		}
+		return retVal;
+	}
+
+	private TokenParam toSingleTokenParamOrNull(String theMatchUrl, Class<? extends IBaseResource> theResourceType) {
+		int questionMarkIndex = theMatchUrl.indexOf('?');
+		String query = theMatchUrl.substring(questionMarkIndex + 1);
+		int equalsIndex = query.indexOf('=');
+		if (equalsIndex < 1 || query.indexOf('&') != -1 || query.startsWith("_") || query.substring(0, equalsIndex).contains(":")) {
+			return null;
+		}
+
+		SearchParameterMap paramMap;
+		try {
+			paramMap = myMatchUrlService.translateMatchUrl(theMatchUrl, myContext.getResourceDefinition(theResourceType));
+		} catch (RuntimeException e) {
+			// Invalid URLs are reported when they are resolved individually
+			return null;
+		}
+		if (paramMap.size() != 1) {
+			return null;
+		}
+
+		List<List<IQueryParameterType>> andList = paramMap.values().iterator().next();
+		if (andList.size() != 1 || andList.get(0).size() != 1 || !(andList.get(0).get(0) instanceof TokenParam)) {
+			return null;
+		}
+
+		// Longer values are truncated in the index, so they can't be compared there
+		TokenParam retVal = (TokenParam) andList.get(0).get(0);
+		if (retVal.getModifier() != null || isBlank(retVal.getSystem()) || isBlank(retVal.getValue())
+			|| retVal.getSystem().length() > ResourceIndexedSearchParamToken.MAX_LENGTH || retVal.getValue().length() > ResourceIndexedSearchParamToken.MAX_LENGTH) {
+			return null;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Conditional URLs may or may not be prefixed with the resource type
+	 */
+	private static String toResolvedMatchUrlKey(String theMatchUrl, String theResourceType) {
+		int questionMarkIndex = theMatchUrl.indexOf('?');
+		return theResourceType + '?' + theMatchUrl.substring(questionMarkIndex + 1);
+	}
+
 	public <R extends IBaseResource> Set<ResourcePersistentId> search(SearchParameterMap theParamMap, Class<R> theResourceType, RequestDetails theRequest) {
 		StopWatch sw = new StopWatch();
 		IFhirResourceDao<R> dao = myDaoRegistry.getResourceDao(theResourceType);
@@ -87,5 +275,34 @@ public class MatchResourceUrlService {
 		return retVal;
 	}
 
+	private static class TokenMatchUrlGroup {
+
+		private final Class<? extends IBaseResource> myResourceType;
+		private final String myParamName;
+		private final String mySystem;
+
+		private TokenMatchUrlGroup(Class<? extends IBaseResource> theResourceType, String theParamName, String theSystem) {
+			myResourceType = theResourceType;
+			myParamName = theParamName;
+			mySystem = theSystem;
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			if (this == theO) {
+				return true;
+			}
+			if (theO == null || getClass() != theO.getClass()) {
+				return false;
+			}
+			TokenMatchUrlGroup that = (TokenMatchUrlGroup) theO;
+			return myResourceType.equals(that.myResourceType) && myParamName.equals(that.myParamName) && mySystem.equals(that.mySystem);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(myResourceType, myParamName, mySystem);
+		}
+	}
 
 }
@@ -40,4 +40,10 @@ public interface IBulkImportJobFileDao extends JpaRepository<BulkImportJobFileEn
 	@Query("SELECT f.myId FROM BulkImportJobFileEntity f WHERE f.myJob.myJobId = :jobId ORDER BY f.myFileSequence ASC")
 	List<Long> findAllIdsForJob(@Param("jobId") String theJobId);
 
+	@Query("SELECT f.myContents FROM BulkImportJobFileEntity f WHERE f.myJob.myJobId = :jobId AND f.myFileSequence = :fileIndex")
+	Optional<byte[]> findContentsForJob(@Param("jobId") String theJobId, @Param("fileIndex") int theFileIndex);
+
+	@Query("SELECT f.myTenantName FROM BulkImportJobFileEntity f WHERE f.myJob.myJobId = :jobId AND f.myFileSequence = :fileIndex")
+	List<String> findTenantNameForJob(@Param("jobId") String theJobId, @Param("fileIndex") int theFileIndex);
+
 }
@@ -26,6 +26,9 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface IResourceIndexedSearchParamTokenDao extends JpaRepository<ResourceIndexedSearchParamToken, Long> {
 
 	@Query("select count(*) from ResourceIndexedSearchParamToken t WHERE t.myResourcePid = :resid")
@@ -34,4 +37,10 @@ public interface IResourceIndexedSearchParamTokenDao extends JpaRepository<Resou
 	@Modifying
 	@Query("delete from ResourceIndexedSearchParamToken t WHERE t.myResourcePid = :resid")
 	void deleteByResourceId(@Param("resid") Long theResourcePid);
+
+	/**
+	 * @return Pairs of resource PID and token value
+	 */
+	@Query("SELECT t.myResourcePid, t.myValue FROM ResourceIndexedSearchParamToken t WHERE t.myResourcePid IN (:pids) AND t.myResourceType = :resource_type AND t.myParamName = :param_name AND t.mySystem = :system")
+	Collection<Object[]> findValuesForResourcePids(@Param("pids") List<Long> theResourcePids, @Param("resource_type") String theResourceType, @Param("param_name") String theParamName, @Param("system") String theSystem);
 }
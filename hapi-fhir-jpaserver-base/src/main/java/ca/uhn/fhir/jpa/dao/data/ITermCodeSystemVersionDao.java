@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 /*
  * #%L
@@ -50,4 +51,11 @@ public interface ITermCodeSystemVersionDao extends JpaRepository<TermCodeSystemV
 	@Query("SELECT cs FROM TermCodeSystemVersion cs WHERE cs.myCodeSystemHavingThisVersionAsCurrentVersionIfAny.myResource.myId = :resource_id")
 	TermCodeSystemVersion findCurrentVersionForCodeSystemResourcePid(@Param("resource_id") Long theCodeSystemResourcePid);
 
+	@Modifying
+	@Query("UPDATE TermCodeSystemVersion cs SET cs.myLinksChangeCount = COALESCE(cs.myLinksChangeCount, 0) + 1 WHERE cs.myId = :pid")
+	void incrementLinksChangeCount(@Param("pid") Long theCodeSystemVersionPid);
+
+	@Query("SELECT cs.myLinksChangeCount FROM TermCodeSystemVersion cs WHERE cs.myId = :pid")
+	Optional<Long> findLinksChangeCount(@Param("pid") Long theCodeSystemVersionPid);
+
 }
@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
+import java.util.List;
 
 /*
  * #%L
@@ -40,4 +41,10 @@ public interface ITermConceptParentChildLinkDao extends JpaRepository<TermConcep
 	@Query("SELECT t.myPid FROM TermConceptParentChildLink t WHERE t.myCodeSystem.myId = :cs_pid")
 	Slice<Long> findIdsByCodeSystemVersion(Pageable thePage, @Param("cs_pid") Long thePid);
 
+	/**
+	 * Returns the parent and child PID (in that order) of every link in the given code system version
+	 */
+	@Query("SELECT t.myParentPid, t.myChildPid FROM TermConceptParentChildLink t WHERE t.myCodeSystemVersionPid = :cs_pid")
+	List<Object[]> findParentAndChildPidsByCodeSystemVersion(@Param("cs_pid") Long thePid);
+
 }
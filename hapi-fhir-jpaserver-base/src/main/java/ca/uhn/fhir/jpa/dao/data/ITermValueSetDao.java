@@ -25,9 +25,11 @@ import ca.uhn.fhir.jpa.entity.TermValueSetPreExpansionStatusEnum;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -44,6 +46,34 @@ public interface ITermValueSetDao extends JpaRepository<TermValueSet, Long> {
 	@Query("SELECT vs FROM TermValueSet vs WHERE vs.myExpansionStatus = :expansion_status")
 	Slice<TermValueSet> findByExpansionStatus(Pageable pageable, @Param("expansion_status") TermValueSetPreExpansionStatusEnum theExpansionStatus);
 
+	@Query("SELECT vs.myId FROM TermValueSet vs WHERE vs.myExpansionStatus = :expansion_status ORDER BY vs.myId")
+	Slice<Long> findIdsByExpansionStatus(Pageable thePage, @Param("expansion_status") TermValueSetPreExpansionStatusEnum theExpansionStatus);
+
+	@Query("SELECT COUNT(vs) FROM TermValueSet vs WHERE vs.myExpansionStatus = :expansion_status")
+	long countByExpansionStatus(@Param("expansion_status") TermValueSetPreExpansionStatusEnum theExpansionStatus);
+
+	/**
+	 * Changes the expansion status only if the ValueSet currently has the expected status
+	 *
+	 * @return Returns the number of rows updated (0 or 1)
+	 */
+	@Modifying
+	@Query("UPDATE TermValueSet vs SET vs.myExpansionStatus = :new_status, vs.myExpansionStatusTime = :status_time WHERE vs.myId = :pid AND vs.myExpansionStatus = :expected_status")
+	int updateExpansionStatus(@Param("pid") Long thePid, @Param("expected_status") TermValueSetPreExpansionStatusEnum theExpectedStatus, @Param("new_status") TermValueSetPreExpansionStatusEnum theNewStatus, @Param("status_time") Date theStatusTime);
+
+	@Modifying
+	@Query("UPDATE TermValueSet vs SET vs.myExpansionStatusTime = :status_time WHERE vs.myId = :pid")
+	void updateExpansionStatusTime(@Param("pid") Long thePid, @Param("status_time") Date theStatusTime);
+
+	/**
+	 * Changes the expansion status of every ValueSet which has had the expected status since before the given time
+	 *
+	 * @return Returns the number of rows updated
+	 */
+	@Modifying
+	@Query("UPDATE TermValueSet vs SET vs.myExpansionStatus = :new_status, vs.myExpansionStatusTime = NULL WHERE vs.myExpansionStatus = :expected_status AND (vs.myExpansionStatusTime IS NULL OR vs.myExpansionStatusTime < :cutoff)")
+	int updateExpansionStatusIfStatusTimeBefore(@Param("expected_status") TermValueSetPreExpansionStatusEnum theExpectedStatus, @Param("new_status") TermValueSetPreExpansionStatusEnum theNewStatus, @Param("cutoff") Date theCutoff);
+
 	@Query(value="SELECT vs FROM TermValueSet vs INNER JOIN ResourceTable r ON r.myId = vs.myResourcePid WHERE vs.myUrl = :url ORDER BY r.myUpdated DESC")
 	List<TermValueSet> findTermValueSetByUrl(Pageable thePage, @Param("url") String theUrl);
 
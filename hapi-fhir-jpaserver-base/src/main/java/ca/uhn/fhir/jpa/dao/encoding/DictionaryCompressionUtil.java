@@ -0,0 +1,369 @@
+package ca.uhn.fhir.jpa.dao.encoding;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.parser.DataFormatException;
+import org.apache.commons.lang3.Validate;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression routines for the {@link ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum#JSONZ JSONZ}
+ * resource encoding.
+ * <p>
+ * A JSONZ payload consists of a single format byte, followed by the PID of the
+ * preset dictionary that was used (as an unsigned varint, where <code>0</code> means
+ * that no dictionary was used), followed by a raw DEFLATE stream. Small resources of
+ * the same type share most of their structure (element names, code system URLs, etc.)
+ * and a preset dictionary containing that structure lets DEFLATE encode it as back
+ * references even on the first occurrence within a resource.
+ * </p>
+ *
+ * @since 5.4.0
+ */
+public class DictionaryCompressionUtil {
+
+	/**
+	 * The DEFLATE window size, which is the largest dictionary that is useful
+	 */
+	public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+	static final byte FORMAT_DEFLATE = 1;
+	private static final int MIN_SEGMENT_LENGTH = 4;
+	private static final int MAX_SEGMENT_LENGTH = 64;
+	private static final int MAX_TOKENS_PER_SEGMENT = 4;
+	static final int MAX_SAMPLE_LENGTH = 16 * 1024;
+	private static final int MAX_CANDIDATES = 50000;
+
+	/**
+	 * Non instantiable
+	 */
+	private DictionaryCompressionUtil() {
+		// nothing
+	}
+
+	/**
+	 * Compresses the given UTF-8 bytes
+	 *
+	 * @param theContents     The contents to compress
+	 * @param theDictionaryId The PID of the dictionary, or <code>0</code> if <code>theDictionary</code> is null
+	 * @param theDictionary   The dictionary, or <code>null</code>
+	 */
+	public static byte[] compress(byte[] theContents, long theDictionaryId, @Nullable byte[] theDictionary) {
+		Validate.isTrue((theDictionaryId == 0) == (theDictionary == null), "Dictionary ID must be 0 if and only if no dictionary is supplied");
+
+		// Resource bodies are small, so the best compression level costs very little extra
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+		try {
+			if (theDictionary != null) {
+				deflater.setDictionary(theDictionary);
+			}
+			deflater.setInput(theContents);
+			deflater.finish();
+
+			ByteArrayOutputStream os = new ByteArrayOutputStream(theContents.length / 4 + 16);
+			os.write(FORMAT_DEFLATE);
+			writeVarint(os, theDictionaryId);
+
+			byte[] buffer = new byte[Math.min(Math.max(theContents.length, 64), 8192)];
+			while (!deflater.finished()) {
+				int count = deflater.deflate(buffer);
+				os.write(buffer, 0, count);
+			}
+			return os.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Returns the PID of the dictionary that was used to compress the given payload, or
+	 * <code>0</code> if none was used
+	 */
+	public static long getDictionaryId(byte[] theCompressed) {
+		Validate.isTrue(theCompressed.length > 0 && theCompressed[0] == FORMAT_DEFLATE, "Unknown compressed resource format");
+		long retVal = 0;
+		int shift = 0;
+		for (int i = 1; i < theCompressed.length; i++) {
+			byte next = theCompressed[i];
+			retVal |= (long) (next & 0x7F) << shift;
+			if ((next & 0x80) == 0) {
+				return retVal;
+			}
+			shift += 7;
+		}
+		throw new DataFormatException("Truncated compressed resource header");
+	}
+
+	/**
+	 * Returns a stream over the decompressed UTF-8 contents of the given payload
+	 *
+	 * @param theCompressed The payload
+	 * @param theDictionary The dictionary whose PID is returned by {@link #getDictionaryId(byte[])}, or <code>null</code> if that is <code>0</code>
+	 */
+	public static InputStream newInputStream(byte[] theCompressed, @Nullable byte[] theDictionary) {
+		int offset = headerLength(theCompressed);
+		int length = theCompressed.length - offset;
+
+		Inflater inflater = new Inflater(true);
+		if (theDictionary != null) {
+			inflater.setDictionary(theDictionary);
+		}
+		ByteArrayInputStream is = new ByteArrayInputStream(theCompressed, offset, length);
+		return new InflaterInputStream(is, inflater, Math.min(Math.max(length, 64), 8192)) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					// InflaterInputStream only releases the native resources of inflaters it created itself
+					inf.end();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Builds a preset dictionary from a collection of sample documents. The dictionary
+	 * consists of the JSON fragments that contribute the most bytes across the samples,
+	 * considering only fragments that appear in more than one sample. The most valuable
+	 * fragments are placed at the end of the dictionary, since DEFLATE encodes nearer
+	 * back references more cheaply. Only the first {@value #MAX_SAMPLE_LENGTH} bytes of each
+	 * sample are considered.
+	 *
+	 * @param theSamples The UTF-8 encoded sample documents
+	 * @param theMaxSize The maximum size of the dictionary in bytes
+	 */
+	public static byte[] trainDictionary(Collection<byte[]> theSamples, int theMaxSize) {
+		Validate.isTrue(theMaxSize > 0 && theMaxSize <= MAX_DICTIONARY_SIZE, "Dictionary size must be between 1 and %d", MAX_DICTIONARY_SIZE);
+
+		Map<String, int[]> sampleCounts = new HashMap<>();
+		for (byte[] nextSample : theSamples) {
+			String text = new String(nextSample, 0, Math.min(nextSample.length, MAX_SAMPLE_LENGTH), StandardCharsets.UTF_8);
+
+			List<String> tokens = tokenize(text);
+			Set<String> segments = new HashSet<>();
+			for (int i = 0; i < tokens.size(); i++) {
+				StringBuilder b = new StringBuilder();
+				for (int j = i; j < tokens.size() && j < i + MAX_TOKENS_PER_SEGMENT; j++) {
+					b.append(tokens.get(j));
+					if (b.length() > MAX_SEGMENT_LENGTH) {
+						break;
+					}
+					if (b.length() >= MIN_SEGMENT_LENGTH) {
+						segments.add(b.toString());
+					}
+				}
+			}
+			for (String nextSegment : segments) {
+				sampleCounts.computeIfAbsent(nextSegment, t -> new int[1])[0]++;
+			}
+		}
+
+		int minimumCount = theSamples.size() > 1 ? 2 : 1;
+		List<Candidate> candidates = new ArrayList<>();
+		for (Map.Entry<String, int[]> next : sampleCounts.entrySet()) {
+			int count = next.getValue()[0];
+			if (count >= minimumCount) {
+				byte[] bytes = next.getKey().getBytes(StandardCharsets.UTF_8);
+				candidates.add(new Candidate(next.getKey(), bytes.length, (long) count * bytes.length));
+			}
+		}
+		candidates.sort((o1, o2) -> {
+			int retVal = Long.compare(o2.myScore, o1.myScore);
+			if (retVal == 0) {
+				retVal = o1.myText.compareTo(o2.myText);
+			}
+			return retVal;
+		});
+
+		List<String> selected = new ArrayList<>();
+		StringBuilder selectedText = new StringBuilder();
+		int size = 0;
+		for (int i = 0; i < candidates.size() && i < MAX_CANDIDATES && size < theMaxSize; i++) {
+			Candidate next = candidates.get(i);
+			if (size + next.myLength > theMaxSize) {
+				continue;
+			}
+			if (selectedText.indexOf(next.myText) != -1) {
+				continue;
+			}
+			selected.add(next.myText);
+			selectedText.append(next.myText).append('\n');
+			size += next.myLength;
+		}
+
+		Collections.reverse(selected);
+		ByteArrayOutputStream retVal = new ByteArrayOutputStream(size);
+		for (String next : selected) {
+			byte[] bytes = next.getBytes(StandardCharsets.UTF_8);
+			retVal.write(bytes, 0, bytes.length);
+		}
+		return retVal.toByteArray();
+	}
+
+	/**
+	 * Returns a copy of the first {@value #MAX_SAMPLE_LENGTH} bytes of a JSON document with its
+	 * values blanked out, so that it can be kept as a training sample without retaining any
+	 * of the data in the document. Element names, resource types and the URIs of code systems,
+	 * identifier systems, extensions and profiles are kept, all other strings are replaced with
+	 * <code>""</code> and all numbers with <code>0</code>.
+	 *
+	 * @param theContents The UTF-8 encoded JSON document, which may be truncated
+	 */
+	public static byte[] toStructuralSample(byte[] theContents) {
+		String text = new String(theContents, 0, Math.min(theContents.length, MAX_SAMPLE_LENGTH), StandardCharsets.UTF_8);
+		List<String> tokens = tokenize(text);
+
+		StringBuilder b = new StringBuilder(text.length());
+		String previousKey = null;
+		for (int i = 0; i < tokens.size(); i++) {
+			String next = tokens.get(i);
+			boolean isKey = i + 1 < tokens.size() && tokens.get(i + 1).equals(":");
+			if (next.charAt(0) == '"') {
+				if (isKey) {
+					previousKey = next;
+					b.append(next);
+				} else if (isStructuralValue(previousKey, next)) {
+					b.append(next);
+				} else {
+					b.append("\"\"");
+				}
+			} else if (next.length() == 1 && isStructural(next.charAt(0))) {
+				b.append(next);
+			} else {
+				String trimmed = next.trim();
+				if (trimmed.equals("true") || trimmed.equals("false") || trimmed.equals("null")) {
+					b.append(trimmed);
+				} else {
+					b.append('0');
+				}
+			}
+		}
+		return b.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static boolean isStructuralValue(String theKey, String theValue) {
+		if (theKey == null) {
+			return false;
+		}
+		switch (theKey) {
+			case "\"resourceType\"":
+				return true;
+			case "\"system\"":
+			case "\"url\"":
+			case "\"profile\"":
+				return theValue.startsWith("\"http://") || theValue.startsWith("\"https://") || theValue.startsWith("\"urn:oid:");
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Splits JSON text into structural characters, quoted strings and runs of anything else
+	 */
+	static List<String> tokenize(String theText) {
+		List<String> retVal = new ArrayList<>();
+		int length = theText.length();
+		int i = 0;
+		while (i < length) {
+			char next = theText.charAt(i);
+			int end = i + 1;
+			if (next == '"') {
+				while (end < length && theText.charAt(end) != '"') {
+					if (theText.charAt(end) == '\\') {
+						end++;
+					}
+					end++;
+				}
+				end = Math.min(end + 1, length);
+			} else if (!isStructural(next)) {
+				while (end < length && !isStructural(theText.charAt(end)) && theText.charAt(end) != '"') {
+					end++;
+				}
+			}
+			retVal.add(theText.substring(i, end));
+			i = end;
+		}
+		return retVal;
+	}
+
+	private static boolean isStructural(char theChar) {
+		switch (theChar) {
+			case '{':
+			case '}':
+			case '[':
+			case ']':
+			case ',':
+			case ':':
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private static int headerLength(byte[] theCompressed) {
+		getDictionaryId(theCompressed);
+		int retVal = 1;
+		while ((theCompressed[retVal] & 0x80) != 0) {
+			retVal++;
+		}
+		return retVal + 1;
+	}
+
+	private static void writeVarint(ByteArrayOutputStream theOutputStream, long theValue) {
+		long value = theValue;
+		while ((value & ~0x7FL) != 0) {
+			theOutputStream.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		theOutputStream.write((int) value);
+	}
+
+	private static class Candidate {
+
+		private final String myText;
+		private final int myLength;
+		private final long myScore;
+
+		private Candidate(String theText, int theLength, long theScore) {
+			myText = theText;
+			myLength = theLength;
+			myScore = theScore;
+		}
+	}
+
+}
@@ -0,0 +1,226 @@
+package ca.uhn.fhir.jpa.dao.encoding;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
+import ca.uhn.fhir.jpa.dao.data.IResourceEncodingDictionaryDao;
+import ca.uhn.fhir.jpa.entity.ResourceEncodingDictionaryEntity;
+import ca.uhn.fhir.jpa.model.sched.HapiJob;
+import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
+import ca.uhn.fhir.jpa.model.sched.ScheduledJobDefinition;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.apache.commons.lang3.time.DateUtils;
+import org.quartz.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compresses and decompresses resource bodies stored using the
+ * {@link ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum#JSONZ JSONZ} encoding.
+ * <p>
+ * The first resources of each type are compressed without a dictionary, and a copy of
+ * their structure (see {@link DictionaryCompressionUtil#toStructuralSample(byte[])}) is
+ * kept as a sample. Once {@link DaoConfig#getResourceEncodingDictionarySampleCount()}
+ * samples have been collected, a scheduled job trains a dictionary from them outside of
+ * any request transaction and stores it in <code>HFJ_RES_ENC_DICT</code>. It is only used
+ * for writing once the transaction which stores it has committed, so that no resource can
+ * ever refer to a dictionary which does not exist. Each compressed resource carries the PID
+ * of its dictionary, so dictionaries trained later (e.g. by another server in the same
+ * cluster) never affect the ability to read existing resources.
+ * </p>
+ *
+ * @since 5.4.0
+ */
+public class ResourceEncodingDictionarySvc {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(ResourceEncodingDictionarySvc.class);
+	private final ConcurrentHashMap<Long, byte[]> myDictionaries = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, ResourceTypeState> myResourceTypeStates = new ConcurrentHashMap<>();
+	@Autowired
+	private DaoConfig myDaoConfig;
+	@Autowired
+	private IResourceEncodingDictionaryDao myDictionaryDao;
+	@Autowired
+	private PlatformTransactionManager myTxManager;
+	@Autowired
+	private ISchedulerService mySchedulerService;
+
+	/**
+	 * Compresses a resource body
+	 *
+	 * @param theResourceType The resource type
+	 * @param theContents     The UTF-8 encoded resource body
+	 */
+	public byte[] compress(String theResourceType, byte[] theContents) {
+		ResourceTypeState state = getResourceTypeState(theResourceType);
+
+		ResourceEncodingDictionaryEntity dictionary = state.myCurrentDictionary;
+		if (dictionary != null) {
+			return DictionaryCompressionUtil.compress(theContents, dictionary.getId(), dictionary.getDictionary());
+		}
+
+		byte[] retVal = DictionaryCompressionUtil.compress(theContents, 0, null);
+		addSample(state, theContents);
+		return retVal;
+	}
+
+	/**
+	 * Returns a stream over the UTF-8 encoded body of a compressed resource
+	 */
+	public InputStream newInputStream(byte[] theCompressed) {
+		long dictionaryId = DictionaryCompressionUtil.getDictionaryId(theCompressed);
+		byte[] dictionary = null;
+		if (dictionaryId != 0) {
+			dictionary = getDictionary(dictionaryId);
+		}
+		return DictionaryCompressionUtil.newInputStream(theCompressed, dictionary);
+	}
+
+	/**
+	 * Trains and stores a dictionary for every resource type which has collected enough
+	 * samples. This is invoked by a scheduled job, and must not be called from within a
+	 * request transaction.
+	 */
+	public void trainPendingDictionaries() {
+		for (Map.Entry<String, ResourceTypeState> next : myResourceTypeStates.entrySet()) {
+			List<byte[]> samples;
+			ResourceTypeState state = next.getValue();
+			synchronized (state) {
+				if (state.myCurrentDictionary != null || state.mySamples.size() < myDaoConfig.getResourceEncodingDictionarySampleCount()) {
+					continue;
+				}
+				samples = new ArrayList<>(state.mySamples);
+				state.mySamples.clear();
+			}
+
+			trainDictionary(next.getKey(), state, samples);
+		}
+	}
+
+	/**
+	 * Discards all cached dictionaries and samples. This is called after the dictionaries
+	 * have been deleted from the database.
+	 */
+	public void clearCaches() {
+		myResourceTypeStates.clear();
+		myDictionaries.clear();
+	}
+
+	@PostConstruct
+	public void scheduleJob() {
+		ScheduledJobDefinition jobDefinition = new ScheduledJobDefinition();
+		jobDefinition.setId(getClass().getName());
+		jobDefinition.setJobClass(Job.class);
+		mySchedulerService.scheduleLocalJob(10 * DateUtils.MILLIS_PER_SECOND, jobDefinition);
+	}
+
+	private byte[] getDictionary(long theDictionaryId) {
+		byte[] retVal = myDictionaries.get(theDictionaryId);
+		if (retVal == null) {
+			retVal = myDictionaryDao
+				.findById(theDictionaryId)
+				.map(ResourceEncodingDictionaryEntity::getDictionary)
+				.orElseThrow(() -> new InternalErrorException("Unknown resource encoding dictionary: " + theDictionaryId));
+			myDictionaries.put(theDictionaryId, retVal);
+		}
+		return retVal;
+	}
+
+	private ResourceTypeState getResourceTypeState(String theResourceType) {
+		ResourceTypeState retVal = myResourceTypeStates.get(theResourceType);
+		if (retVal == null) {
+			retVal = new ResourceTypeState();
+			List<ResourceEncodingDictionaryEntity> newest = myDictionaryDao.findNewestByResourceType(theResourceType, PageRequest.of(0, 1));
+			if (!newest.isEmpty()) {
+				retVal.myCurrentDictionary = newest.get(0);
+				myDictionaries.put(retVal.myCurrentDictionary.getId(), retVal.myCurrentDictionary.getDictionary());
+			}
+			ResourceTypeState existing = myResourceTypeStates.putIfAbsent(theResourceType, retVal);
+			if (existing != null) {
+				retVal = existing;
+			}
+		}
+		return retVal;
+	}
+
+	private void addSample(ResourceTypeState theState, byte[] theContents) {
+		synchronized (theState) {
+			if (theState.myCurrentDictionary != null || theState.mySamples.size() >= myDaoConfig.getResourceEncodingDictionarySampleCount()) {
+				return;
+			}
+			theState.mySamples.add(DictionaryCompressionUtil.toStructuralSample(theContents));
+		}
+	}
+
+	private void trainDictionary(String theResourceType, ResourceTypeState theState, List<byte[]> theSamples) {
+		byte[] dictionaryBytes = DictionaryCompressionUtil.trainDictionary(theSamples, DictionaryCompressionUtil.MAX_DICTIONARY_SIZE);
+		if (dictionaryBytes.length == 0) {
+			ourLog.info("Resources of type {} have no common content, not creating a compression dictionary", theResourceType);
+			return;
+		}
+
+		ResourceEncodingDictionaryEntity dictionary = new ResourceEncodingDictionaryEntity();
+		dictionary.setResourceType(theResourceType);
+		dictionary.setDictionary(dictionaryBytes);
+		dictionary.setCreated(new Date());
+
+		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
+		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		txTemplate.execute(t -> myDictionaryDao.save(dictionary));
+
+		ourLog.info("Stored {} byte compression dictionary {} for resource type {}", dictionaryBytes.length, dictionary.getId(), theResourceType);
+		myDictionaries.put(dictionary.getId(), dictionaryBytes);
+		synchronized (theState) {
+			theState.myCurrentDictionary = dictionary;
+		}
+	}
+
+	public static class Job implements HapiJob {
+		@Autowired
+		private ResourceEncodingDictionarySvc myTarget;
+
+		@Override
+		public void execute(JobExecutionContext theContext) {
+			myTarget.trainPendingDictionaries();
+		}
+	}
+
+	private static class ResourceTypeState {
+
+		private final List<byte[]> mySamples = new ArrayList<>();
+		private volatile ResourceEncodingDictionaryEntity myCurrentDictionary;
+
+	}
+
+}
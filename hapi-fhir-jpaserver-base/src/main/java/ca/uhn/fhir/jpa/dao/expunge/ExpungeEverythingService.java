@@ -23,9 +23,11 @@ package ca.uhn.fhir.jpa.dao.expunge;
 import ca.uhn.fhir.interceptor.api.HookParams;
 import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.dao.encoding.ResourceEncodingDictionarySvc;
 import ca.uhn.fhir.jpa.entity.BulkImportJobEntity;
 import ca.uhn.fhir.jpa.entity.BulkImportJobFileEntity;
 import ca.uhn.fhir.jpa.entity.PartitionEntity;
+import ca.uhn.fhir.jpa.entity.ResourceEncodingDictionaryEntity;
 import ca.uhn.fhir.jpa.entity.Search;
 import ca.uhn.fhir.jpa.entity.SearchInclude;
 import ca.uhn.fhir.jpa.entity.SearchResult;
@@ -96,6 +98,8 @@ public class ExpungeEverythingService {
 	private PlatformTransactionManager myPlatformTransactionManager;
 	@Autowired
 	protected IInterceptorBroadcaster myInterceptorBroadcaster;
+	@Autowired
+	private ResourceEncodingDictionarySvc myResourceEncodingDictionarySvc;
 
 	private TransactionTemplate myTxTemplate;
 
@@ -167,6 +171,8 @@ public class ExpungeEverythingService {
 		counter.addAndGet(expungeEverythingByType(ResourceHistoryProvenanceEntity.class));
 		counter.addAndGet(expungeEverythingByType(ResourceHistoryTable.class));
 		counter.addAndGet(expungeEverythingByType(ResourceTable.class));
+		counter.addAndGet(expungeEverythingByType(ResourceEncodingDictionaryEntity.class));
+		myResourceEncodingDictionarySvc.clearCaches();
 		counter.addAndGet(expungeEverythingByType(PartitionEntity.class));
 		myTxTemplate.execute(t -> {
 			counter.addAndGet(doExpungeEverythingQuery("DELETE from " + Search.class.getSimpleName() + " d"));
@@ -171,7 +171,8 @@ public class ResourceExpungeService implements IResourceExpungeService {
 
 		/*
 		 * Once this transaction is committed, we will invalidate all memory caches
-		 * in order to avoid any caches having references to things that no longer
+		 * (on this server and on the rest of the cluster if invalidation broadcasting
+		 * is enabled) in order to avoid any caches having references to things that no longer
 		 * exist. This is a pretty brute-force way of addressing this, and could probably
 		 * be optimized, but expunge is hopefully not frequently called on busy servers
 		 * so it shouldn't be too big a deal.
@@ -179,7 +180,7 @@ public class ResourceExpungeService implements IResourceExpungeService {
 		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization(){
 			@Override
 			public void afterCommit() {
-				myMemoryCacheService.invalidateAllCaches();
+				myMemoryCacheService.invalidateAllCachesAndBroadcast();
 			}
 		});
 	}
@@ -83,12 +83,15 @@ public class DaoSearchParamSynchronizer {
 
 		/*
 		 * HashCodes may have changed as a result of setting the partition ID, so
-		 * create a new set that will reflect the new hashcodes
+		 * create a new set that will reflect the new hashcodes. The existing params
+		 * are usually a list, so they're copied into a set too in order to avoid
+		 * comparing every new row with every existing row.
 		 */
 		newParams = new HashSet<>(newParams);
+		Collection<T> existingParams = new HashSet<>(theExistingParams);
 
 		List<T> paramsToRemove = subtract(theExistingParams, newParams);
-		List<T> paramsToAdd = subtract(newParams, theExistingParams);
+		List<T> paramsToAdd = subtract(newParams, existingParams);
 		tryToReuseIndexEntities(paramsToRemove, paramsToAdd);
 
 		for (T next : paramsToRemove) {
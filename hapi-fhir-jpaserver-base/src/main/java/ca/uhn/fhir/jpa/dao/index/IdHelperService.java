@@ -48,6 +48,7 @@ import org.springframework.stereotype.Service;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -96,6 +97,27 @@ public class IdHelperService {
 
 	public void delete(ForcedId forcedId) {
 		myForcedIdDao.deleteByPid(forcedId.getId());
+
+		Long resourcePid = forcedId.getResourceId();
+		String typeAndForcedId = forcedId.getResourceType() + "/" + forcedId.getForcedId();
+		String partitionId = forcedId.getPartitionId() != null ? String.valueOf(forcedId.getPartitionId().getPartitionId()) : "null";
+		myMemoryCacheService.invalidateKeys(MemoryCacheService.CacheEnum.FORCED_ID, Collections.singletonList(resourcePid));
+		myMemoryCacheService.invalidateKeys(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP, Arrays.asList(Long.toString(resourcePid), typeAndForcedId));
+		myMemoryCacheService.invalidateKeys(MemoryCacheService.CacheEnum.PERSISTENT_ID, Arrays.asList(RequestPartitionId.stringifyForKey(RequestPartitionId.allPartitions()) + "/" + typeAndForcedId, partitionId + "/" + typeAndForcedId));
+	}
+
+	/**
+	 * Removes any cached lookup (which includes the deleted status) for the given resource, on this
+	 * server and on any other servers in the cluster if memory cache invalidation broadcasting is enabled.
+	 * This should be called when a resource is deleted.
+	 */
+	public void invalidateCachedResourceIdentity(ResourceTable theEntity) {
+		List<String> keys = new ArrayList<>(2);
+		keys.add(Long.toString(theEntity.getId()));
+		if (theEntity.getForcedId() != null) {
+			keys.add(theEntity.getResourceType() + "/" + theEntity.getForcedId().getForcedId());
+		}
+		myMemoryCacheService.invalidateKeys(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP, keys);
 	}
 
 	/**
@@ -181,7 +203,7 @@ public class IdHelperService {
 
 		for (Map.Entry<String, Collection<String>> nextEntry : typeToIds.asMap().entrySet()) {
 			String nextResourceType = nextEntry.getKey();
-			Collection<String> nextIds = nextEntry.getValue();
+			Collection<String> nextIds = new ArrayList<>(nextEntry.getValue());
 			if (isBlank(nextResourceType)) {
 
 				List<Long> views = myForcedIdDao.findByForcedId(nextIds);
@@ -266,15 +288,41 @@ public class IdHelperService {
 		return typeToIds;
 	}
 
+	/**
+	 * Given a collection of resource IDs (resource type + id), resolves the resources they refer to
+	 * using as few queries as possible. The returned map is keyed by the unqualified versionless ID
+	 * (e.g. "<code>Patient/123</code>") and will not contain an entry for IDs which could not be
+	 * resolved, or which refer to a resource of a different type. Note that deleted resources are
+	 * resolved, and can be identified using {@link IResourceLookup#getDeleted()}.
+	 *
+	 * @since 5.4.0
+	 */
+	@Nonnull
+	public Map<String, IResourceLookup> resolveResourceIdentities(@Nonnull RequestPartitionId theRequestPartitionId, Collection<IIdType> theIds) {
+		ListMultimap<String, IResourceLookup> lookups = translateForcedIdToPidsByResourceId(theRequestPartitionId, theIds);
+
+		Map<String, IResourceLookup> retVal = new HashMap<>();
+		for (Map.Entry<String, Collection<IResourceLookup>> next : lookups.asMap().entrySet()) {
+			// More than one match means the forced ID unique constraint has been dropped
+			if (next.getValue().size() == 1) {
+				retVal.put(next.getKey(), next.getValue().iterator().next());
+			}
+		}
+		return retVal;
+	}
+
 	private Collection<IResourceLookup> translateForcedIdToPids(@Nonnull RequestPartitionId theRequestPartitionId, Collection<IIdType> theId) {
+		return translateForcedIdToPidsByResourceId(theRequestPartitionId, theId).values();
+	}
+
+	private ListMultimap<String, IResourceLookup> translateForcedIdToPidsByResourceId(@Nonnull RequestPartitionId theRequestPartitionId, Collection<IIdType> theId) {
 		theId.forEach(id -> Validate.isTrue(id.hasIdPart()));
 
+		ListMultimap<String, IResourceLookup> retVal = MultimapBuilder.hashKeys().arrayListValues().build();
 		if (theId.isEmpty()) {
-			return Collections.emptyList();
+			return retVal;
 		}
 
-		List<IResourceLookup> retVal = new ArrayList<>();
-
 		if (myDaoConfig.getResourceClientIdStrategy() != DaoConfig.ClientIdStrategyEnum.ANY) {
 			List<Long> pids = theId
 				.stream()
@@ -289,7 +337,7 @@ public class IdHelperService {
 		ListMultimap<String, String> typeToIds = organizeIdsByResourceType(theId);
 		for (Map.Entry<String, Collection<String>> nextEntry : typeToIds.asMap().entrySet()) {
 			String nextResourceType = nextEntry.getKey();
-			Collection<String> nextIds = nextEntry.getValue();
+			Collection<String> nextIds = new ArrayList<>(nextEntry.getValue());
 
 			if (!myDaoConfig.isDeleteEnabled()) {
 				for (Iterator<String> forcedIdIterator = nextIds.iterator(); forcedIdIterator.hasNext(); ) {
@@ -298,7 +346,7 @@ public class IdHelperService {
 					IResourceLookup cachedLookup = myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP, nextKey);
 					if (cachedLookup != null) {
 						forcedIdIterator.remove();
-						retVal.add(cachedLookup);
+						retVal.put(nextKey, cachedLookup);
 					}
 				}
 			}
@@ -325,10 +373,10 @@ public class IdHelperService {
 					String forcedId = (String) next[2];
 					Date deletedAt = (Date) next[3];
 					ResourceLookup lookup = new ResourceLookup(resourceType, resourcePid, deletedAt);
-					retVal.add(lookup);
+					String key = resourceType + "/" + forcedId;
+					retVal.put(key, lookup);
 
 					if (!myDaoConfig.isDeleteEnabled()) {
-						String key = resourceType + "/" + forcedId;
 						myMemoryCacheService.put(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP, key, lookup);
 					}
 				}
@@ -339,7 +387,7 @@ public class IdHelperService {
 		return retVal;
 	}
 
-	private void resolvePids(@Nonnull RequestPartitionId theRequestPartitionId, List<Long> thePidsToResolve, List<IResourceLookup> theTarget) {
+	private void resolvePids(@Nonnull RequestPartitionId theRequestPartitionId, List<Long> thePidsToResolve, ListMultimap<String, IResourceLookup> theTarget) {
 
 		if (!myDaoConfig.isDeleteEnabled()) {
 			for (Iterator<Long> forcedIdIterator = thePidsToResolve.iterator(); forcedIdIterator.hasNext(); ) {
@@ -348,7 +396,7 @@ public class IdHelperService {
 				IResourceLookup cachedLookup = myMemoryCacheService.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP, nextKey);
 				if (cachedLookup != null) {
 					forcedIdIterator.remove();
-					theTarget.add(cachedLookup);
+					theTarget.put(cachedLookup.getResourceType() + "/" + nextPid, cachedLookup);
 				}
 			}
 		}
@@ -370,7 +418,7 @@ public class IdHelperService {
 				.stream()
 				.map(t -> new ResourceLookup((String) t[0], (Long) t[1], (Date) t[2]))
 				.forEach(t -> {
-					theTarget.add(t);
+					theTarget.put(t.getResourceType() + "/" + t.getResourceId(), t);
 					if (!myDaoConfig.isDeleteEnabled()) {
 						String nextKey = Long.toString(t.getResourceId());
 						myMemoryCacheService.put(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP, nextKey, t);
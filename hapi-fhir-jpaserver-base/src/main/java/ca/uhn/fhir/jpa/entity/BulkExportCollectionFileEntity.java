@@ -49,9 +49,23 @@ public class BulkExportCollectionFileEntity implements Serializable {
 	@JoinColumn(name = "COLLECTION_PID", referencedColumnName = "PID", nullable = false, foreignKey = @ForeignKey(name="FK_BLKEXCOLFILE_COLLECT"))
 	private BulkExportCollectionEntity myCollection;
 
-	@Column(name = "RES_ID", length = ForcedId.MAX_FORCED_ID_LENGTH, nullable = false)
+	@Column(name = "RES_ID", length = ForcedId.MAX_FORCED_ID_LENGTH, nullable = true)
 	private String myResourceId;
 
+	/**
+	 * Set instead of {@link #myResourceId} when the file was streamed to binary storage
+	 *
+	 * @since 5.4.0
+	 */
+	@Column(name = "BLOB_ID", length = 200, nullable = true)
+	private String myBlobId;
+
+	@Column(name = "BLOB_SIZE", nullable = true)
+	private Long myBlobSize;
+
+	@Column(name = "BLOB_GZIPPED", nullable = true)
+	private Boolean myBlobGzipped;
+
 	public void setCollection(BulkExportCollectionEntity theCollection) {
 		myCollection = theCollection;
 	}
@@ -64,6 +78,30 @@ public class BulkExportCollectionFileEntity implements Serializable {
 		return myResourceId;
 	}
 
+	public String getBlobId() {
+		return myBlobId;
+	}
+
+	public void setBlobId(String theBlobId) {
+		myBlobId = theBlobId;
+	}
+
+	public Long getBlobSize() {
+		return myBlobSize;
+	}
+
+	public void setBlobSize(Long theBlobSize) {
+		myBlobSize = theBlobSize;
+	}
+
+	public boolean isBlobGzipped() {
+		return Boolean.TRUE.equals(myBlobGzipped);
+	}
+
+	public void setBlobGzipped(boolean theBlobGzipped) {
+		myBlobGzipped = theBlobGzipped;
+	}
+
 	public Long getId() {
 		return myId;
 	}
@@ -293,6 +293,16 @@ public class Search implements ICachedSearchDetails, Serializable {
 		return mySearchQueryString;
 	}
 
+	/**
+	 * Returns the hash of the {@link #getSearchQueryString() search query string}, or <code>null</code>
+	 * if this search {@link #setCannotBeReused() can not be reused}
+	 *
+	 * @since 5.4.0
+	 */
+	public Integer getSearchQueryStringHash() {
+		return mySearchQueryStringHash;
+	}
+
 	public void setSearchQueryString(String theSearchQueryString, RequestPartitionId theRequestPartitionId) {
 		String searchQueryString = null;
 		if (theSearchQueryString != null) {
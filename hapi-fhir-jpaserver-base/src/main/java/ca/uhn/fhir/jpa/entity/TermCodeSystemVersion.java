@@ -96,6 +96,16 @@ public class TermCodeSystemVersion implements Serializable {
 	@Column(name = "CS_DISPLAY", nullable = true, updatable = true, length = MAX_VERSION_LENGTH)
 	private String myCodeSystemDisplayName;
 
+	/**
+	 * Incremented whenever parent/child links are added to or removed from this version. This is only
+	 * ever written by {@link ca.uhn.fhir.jpa.dao.data.ITermCodeSystemVersionDao#incrementLinksChangeCount(Long)},
+	 * so that saving a stale copy of the entity can't overwrite it.
+	 *
+	 * @since 5.4.0
+	 */
+	@Column(name = "LINKS_CHANGE_COUNT", nullable = true, insertable = false, updatable = false)
+	private Long myLinksChangeCount;
+
 	/**
 	 * Constructor
 	 */
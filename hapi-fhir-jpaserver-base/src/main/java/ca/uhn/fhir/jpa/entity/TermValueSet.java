@@ -31,6 +31,7 @@ import javax.annotation.Nonnull;
 import javax.persistence.*;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import static org.apache.commons.lang3.StringUtils.left;
@@ -85,6 +86,10 @@ public class TermValueSet implements Serializable {
 	@Column(name = "EXPANSION_STATUS", nullable = false, length = MAX_EXPANSION_STATUS_LENGTH)
 	private TermValueSetPreExpansionStatusEnum myExpansionStatus;
 
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "EXPANSION_STATUS_TIME", nullable = true)
+	private Date myExpansionStatusTime;
+
 	@Transient
 	private transient Integer myHashCode;
 
@@ -187,6 +192,17 @@ public class TermValueSet implements Serializable {
 		myExpansionStatus = theExpansionStatus;
 	}
 
+	/**
+	 * Returns the time that the pre-expansion of this ValueSet was claimed, or last reported progress
+	 */
+	public Date getExpansionStatusTime() {
+		return myExpansionStatusTime;
+	}
+
+	public void setExpansionStatusTime(Date theExpansionStatusTime) {
+		myExpansionStatusTime = theExpansionStatusTime;
+	}
+
 	public String getVersion() {
 		return myVersion;
 	}
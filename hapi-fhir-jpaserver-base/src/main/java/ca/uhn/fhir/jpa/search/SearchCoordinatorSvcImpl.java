@@ -37,12 +37,14 @@ import ca.uhn.fhir.jpa.entity.Search;
 import ca.uhn.fhir.jpa.entity.SearchInclude;
 import ca.uhn.fhir.jpa.entity.SearchTypeEnum;
 import ca.uhn.fhir.jpa.interceptor.JpaPreResourceAccessDetails;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
 import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.search.cache.ISearchCacheSvc;
 import ca.uhn.fhir.jpa.search.cache.ISearchResultCacheSvc;
 import ca.uhn.fhir.jpa.search.cache.SearchCacheStatusEnum;
+import ca.uhn.fhir.jpa.searchparam.KeysetPageToken;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.util.InterceptorUtil;
 import ca.uhn.fhir.jpa.util.JpaInterceptorBroadcaster;
@@ -495,19 +497,27 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 				return bundleProvider;
 			}
 
-			try (IResultIterator resultIter = theSb.createQuery(theParams, searchRuntimeDetails, theRequestDetails, theRequestPartitionId)) {
-				while (resultIter.hasNext()) {
-					pids.add(resultIter.next());
-					if (theLoadSynchronousUpTo != null && pids.size() >= theLoadSynchronousUpTo) {
-						break;
-					}
-					if (theParams.getLoadSynchronousUpTo() != null && pids.size() >= theParams.getLoadSynchronousUpTo()) {
-						break;
+			// Keyset paged searches only ever load a single page
+			Integer keysetPageSize = theParams.isKeysetPaging() ? theParams.getCount() : null;
+			String nextPageToken = null;
+			if (keysetPageSize != null) {
+				// This needs to happen before any results are filtered out below
+				nextPageToken = loadKeysetPage(theParams, theRequestDetails, theSb, searchRuntimeDetails, theRequestPartitionId, keysetPageSize, pids);
+			} else {
+				try (IResultIterator resultIter = theSb.createQuery(theParams, searchRuntimeDetails, theRequestDetails, theRequestPartitionId)) {
+					while (resultIter.hasNext()) {
+						pids.add(resultIter.next());
+						if (theLoadSynchronousUpTo != null && pids.size() >= theLoadSynchronousUpTo) {
+							break;
+						}
+						if (theParams.getLoadSynchronousUpTo() != null && pids.size() >= theParams.getLoadSynchronousUpTo()) {
+							break;
+						}
 					}
+				} catch (IOException e) {
+					ourLog.error("IO failure during database access", e);
+					throw new InternalErrorException(e);
 				}
-			} catch (IOException e) {
-				ourLog.error("IO failure during database access", e);
-				throw new InternalErrorException(e);
 			}
 
 			JpaPreResourceAccessDetails accessDetails = new JpaPreResourceAccessDetails(pids, () -> theSb);
@@ -548,8 +558,17 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 
 			SimpleBundleProvider bundleProvider = new SimpleBundleProvider(resources);
 
+			bundleProvider.setNextPageToken(nextPageToken);
+
 			if (wantCount) {
 				bundleProvider.setSize(count.intValue());
+			} else if (theParams.isKeysetPaging()) {
+				// The total is only known if all of the results fit on the first page
+				if (nextPageToken == null && theParams.getKeysetPageToken() == null) {
+					bundleProvider.setSize(pids.size());
+				} else {
+					bundleProvider.setSize(null);
+				}
 			} else {
 				Integer queryCount = getQueryCount(theLoadSynchronousUpTo, theParams);
 				if (queryCount == null || queryCount > pids.size()) {
@@ -564,6 +583,67 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 		});
 	}
 
+	/**
+	 * Loads a single page of a keyset paged search into the given list.
+	 * <p>
+	 * The SQL is limited to a number of rows rather than distinct resources, and the same resource can
+	 * match more than one row of the joined index tables. Whenever all of the rows were read without
+	 * finding enough distinct resources, the query is repeated starting after the last row read. One
+	 * more resource than fits on the page is looked for, so that the page token is only returned if
+	 * there actually are more results.
+	 * </p>
+	 *
+	 * @return The token for the next page, or <code>null</code> if there are no more results
+	 */
+	private String loadKeysetPage(SearchParameterMap theParams, RequestDetails theRequestDetails, ISearchBuilder theSb, SearchRuntimeDetails theSearchRuntimeDetails, RequestPartitionId theRequestPartitionId, int thePageSize, List<ResourcePersistentId> thePids) {
+		if (thePageSize <= 0) {
+			return null;
+		}
+
+		KeysetPageToken originalPageToken = theParams.getKeysetPageToken();
+		int wantCount = thePageSize + 1;
+		try {
+			while (true) {
+				int maxRows = wantCount - thePids.size();
+				theSb.setMaxResultsToFetch(maxRows);
+				int rowCount;
+				try (IResultIterator resultIter = theSb.createQuery(theParams, theSearchRuntimeDetails, theRequestDetails, theRequestPartitionId)) {
+					while (thePids.size() < wantCount && resultIter.hasNext()) {
+						thePids.add(resultIter.next());
+					}
+					rowCount = resultIter.getSkippedCount() + resultIter.getNonSkippedCount();
+				} catch (IOException e) {
+					ourLog.error("IO failure during database access", e);
+					throw new InternalErrorException(e);
+				}
+
+				if (thePids.size() >= wantCount) {
+					thePids.remove(thePids.size() - 1);
+					return createKeysetPageToken(theParams, thePids.get(thePids.size() - 1)).encode();
+				}
+				if (rowCount < maxRows || thePids.isEmpty()) {
+					return null;
+				}
+
+				// Every row was read but some were duplicates, so carry on after the last one
+				ourLog.debug("Keyset page query returned duplicate rows, only found {} of {} results", thePids.size(), wantCount);
+				theParams.setKeysetPageToken(createKeysetPageToken(theParams, thePids.get(thePids.size() - 1)));
+			}
+		} finally {
+			theParams.setKeysetPageToken(originalPageToken);
+		}
+	}
+
+	private KeysetPageToken createKeysetPageToken(SearchParameterMap theParams, ResourcePersistentId theLastPid) {
+		Date lastUpdated = null;
+		if (theParams.getSort() != null) {
+			// Keyset paged searches can only be sorted by _lastUpdated
+			ResourceTable lastResource = myEntityManager.find(ResourceTable.class, theLastPid.getIdAsLong());
+			lastUpdated = lastResource.getUpdatedDate();
+		}
+		return new KeysetPageToken(lastUpdated, theLastPid.getIdAsLong());
+	}
+
 	private int getTotalCount(Integer queryCount, Integer offset, int queryResultCount) {
 		if (queryCount != null) {
 			if (offset != null) {
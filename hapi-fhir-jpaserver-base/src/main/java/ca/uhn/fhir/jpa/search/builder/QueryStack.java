@@ -51,6 +51,7 @@ import ca.uhn.fhir.jpa.search.builder.predicate.TagPredicateBuilder;
 import ca.uhn.fhir.jpa.search.builder.predicate.TokenPredicateBuilder;
 import ca.uhn.fhir.jpa.search.builder.predicate.UriPredicateBuilder;
 import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryBuilder;
+import ca.uhn.fhir.jpa.searchparam.KeysetPageToken;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.searchparam.extractor.BaseSearchParamExtractor;
 import ca.uhn.fhir.jpa.searchparam.util.JpaParamUtil;
@@ -107,6 +108,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -197,6 +199,36 @@ public class QueryStack {
 		mySqlBuilder.addSortDate(resourceTablePredicateBuilder.getColumnLastUpdated(), theAscending);
 	}
 
+	/**
+	 * Orders the results for keyset paging, i.e. by resource ID, optionally preceded by the last
+	 * updated timestamp, and if a page token is supplied only matches results which sort after it.
+	 */
+	public void addKeysetPaging(boolean theSortOnLastUpdated, boolean theAscending, @Nullable KeysetPageToken thePageToken) {
+		BaseJoiningPredicateBuilder firstPredicateBuilder = mySqlBuilder.getOrCreateFirstPredicateBuilder();
+		DbColumn resourceIdColumn = firstPredicateBuilder.getResourceIdColumn();
+
+		DbColumn lastUpdatedColumn = null;
+		if (theSortOnLastUpdated) {
+			ResourceTablePredicateBuilder resourceTablePredicateBuilder;
+			if (firstPredicateBuilder instanceof ResourceTablePredicateBuilder) {
+				resourceTablePredicateBuilder = (ResourceTablePredicateBuilder) firstPredicateBuilder;
+			} else {
+				resourceTablePredicateBuilder = mySqlBuilder.addResourceTablePredicateBuilder(resourceIdColumn);
+			}
+			lastUpdatedColumn = resourceTablePredicateBuilder.getColumnLastUpdated();
+			mySqlBuilder.addSortDate(lastUpdatedColumn, theAscending);
+		}
+		mySqlBuilder.addSortNumeric(resourceIdColumn, theAscending);
+
+		if (thePageToken != null) {
+			if (theSortOnLastUpdated && thePageToken.getLastUpdated() == null) {
+				throw new InvalidRequestException("Invalid " + Constants.PARAM_PAGE_TOKEN + " value for a search sorted by " + Constants.PARAM_LASTUPDATED);
+			}
+			Date lastUpdated = theSortOnLastUpdated ? thePageToken.getLastUpdated() : null;
+			mySqlBuilder.addPredicate(mySqlBuilder.createKeysetPredicate(lastUpdatedColumn, lastUpdated, resourceIdColumn, thePageToken.getResourcePid(), theAscending));
+		}
+	}
+
 	public void addSortOnNumber(String theResourceName, String theParamName, boolean theAscending) {
 		BaseJoiningPredicateBuilder firstPredicateBuilder = mySqlBuilder.getOrCreateFirstPredicateBuilder();
 		NumberPredicateBuilder sortPredicateBuilder = mySqlBuilder.addNumberPredicateBuilder(firstPredicateBuilder.getResourceIdColumn());
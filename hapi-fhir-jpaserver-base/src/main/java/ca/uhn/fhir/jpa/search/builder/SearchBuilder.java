@@ -445,9 +445,15 @@ public class SearchBuilder implements ISearchBuilder {
 		 * Sort
 		 *
 		 * If we have a sort, we wrap the criteria search (the search that actually
-		 * finds the appropriate resources) in an outer search which is then sorted
+		 * finds the appropriate resources) in an outer search which is then sorted.
+		 * Keyset paged searches are always sorted by resource ID (after _lastUpdated
+		 * if that is the requested sort) and start after the previous page.
 		 */
-		if (sort != null) {
+		if (theParams.isKeysetPaging() && !theCount) {
+			boolean sortOnLastUpdated = sort != null;
+			boolean ascending = sort == null || sort.getOrder() == null || sort.getOrder() == SortOrderEnum.ASC;
+			queryStack3.addKeysetPaging(sortOnLastUpdated, ascending, theParams.getKeysetPageToken());
+		} else if (sort != null) {
 			assert !theCount;
 
 			createSort(queryStack3, sort);
@@ -576,6 +576,26 @@ public class SearchQueryBuilder {
 		}
 	}
 
+	/**
+	 * Creates a predicate which matches the rows sorting after the given keyset paging position, i.e.
+	 * <code>(sortcol, res_id) &gt; (?, ?)</code> (or <code>&lt;</code> for a descending sort). This is
+	 * written as <code>sortcol &gt; ? OR (sortcol = ? AND res_id &gt; ?)</code> since row value comparisons
+	 * are not supported by all of the databases we support.
+	 *
+	 * @param theSortColumn The sort column, or <code>null</code> if the results are only sorted by resource ID
+	 */
+	public Condition createKeysetPredicate(@Nullable DbColumn theSortColumn, @Nullable Object theSortValue, DbColumn theResourceIdColumn, long theResourceId, boolean theAscending) {
+		ParamPrefixEnum comparator = theAscending ? ParamPrefixEnum.GREATERTHAN : ParamPrefixEnum.LESSTHAN;
+		Condition resourceIdCondition = createConditionForValueWithComparator(comparator, theResourceIdColumn, theResourceId);
+		if (theSortColumn == null) {
+			return resourceIdCondition;
+		}
+
+		Condition sortCondition = createConditionForValueWithComparator(comparator, theSortColumn, theSortValue);
+		Condition sortEqualsCondition = BinaryCondition.equalTo(theSortColumn, generatePlaceholder(theSortValue));
+		return ComboCondition.or(sortCondition, ComboCondition.and(sortEqualsCondition, resourceIdCondition));
+	}
+
 	public SearchQueryBuilder newChildSqlBuilder() {
 		return new SearchQueryBuilder(myFhirContext, myModelConfig, myPartitionSettings, myRequestPartitionId, myResourceType, mySqlBuilderFactory, myBindVariableSubstitutionBase, myDialect, false, myBindVariableValues);
 	}
@@ -0,0 +1,175 @@
+package ca.uhn.fhir.jpa.search.cache;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ca.uhn.fhir.jpa.search.cache.DatabaseSearchCacheSvcImpl.SEARCH_CLEANUP_JOB_INTERVAL_MILLIS;
+
+/**
+ * Search cache which keeps searches in memory on the node which performed them, instead
+ * of in the <code>HFJ_SEARCH</code> table. This must be used together with an
+ * {@link InMemorySearchResultCacheSvcImpl}, which holds the result PIDs. Searches are
+ * discarded when they become stale, or when their results are evicted from the result cache.
+ * <p>
+ * Because the stale search deletion job only runs on one node of a cluster, each node also
+ * discards its own stale searches when new searches are stored.
+ * </p>
+ *
+ * @see DaoConfig#setSearchCacheMode(DaoConfig.SearchCacheModeEnum)
+ * @since 5.4.0
+ */
+public class InMemorySearchCacheSvcImpl implements ISearchCacheSvc {
+	private static final Logger ourLog = LoggerFactory.getLogger(InMemorySearchCacheSvcImpl.class);
+
+	private final ConcurrentHashMap<String, Search> mySearches = new ConcurrentHashMap<>();
+	private final InMemorySearchResultCacheSvcImpl mySearchResultCacheSvc;
+	private final AtomicLong myLastStaleSearchPoll = new AtomicLong();
+	@Autowired
+	private DaoConfig myDaoConfig;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theSearchResultCacheSvc The result cache holding the result PIDs for the searches in this cache
+	 */
+	public InMemorySearchCacheSvcImpl(InMemorySearchResultCacheSvcImpl theSearchResultCacheSvc) {
+		Validate.notNull(theSearchResultCacheSvc, "theSearchResultCacheSvc must not be null");
+		mySearchResultCacheSvc = theSearchResultCacheSvc;
+		mySearchResultCacheSvc.setEvictionListener(mySearches::remove);
+	}
+
+	@VisibleForTesting
+	void setDaoConfigForUnitTest(DaoConfig theDaoConfig) {
+		myDaoConfig = theDaoConfig;
+	}
+
+	@Override
+	public Search save(Search theSearch) {
+		Validate.notBlank(theSearch.getUuid());
+		if (mySearches.put(theSearch.getUuid(), theSearch) == null) {
+			long now = System.currentTimeMillis();
+			long lastPoll = myLastStaleSearchPoll.get();
+			if (now - lastPoll > SEARCH_CLEANUP_JOB_INTERVAL_MILLIS && myLastStaleSearchPoll.compareAndSet(lastPoll, now)) {
+				pollForStaleSearchesAndDeleteThem();
+			}
+		}
+		return theSearch;
+	}
+
+	@Override
+	public Optional<Search> fetchByUuid(String theUuid) {
+		Validate.notBlank(theUuid);
+		return Optional.ofNullable(mySearches.get(theUuid));
+	}
+
+	@Override
+	public Optional<Search> tryToMarkSearchAsInProgress(Search theSearch) {
+		ourLog.trace("Going to try to change search status from {} to {}", theSearch.getStatus(), SearchStatusEnum.LOADING);
+		Search search = mySearches.getOrDefault(theSearch.getUuid(), theSearch);
+		synchronized (search) {
+			if (search.getStatus() != SearchStatusEnum.PASSCMPLET) {
+				ourLog.warn("Failed to activate search: Can't change to LOADING because state is {}", search.getStatus());
+				return Optional.empty();
+			}
+			search.setStatus(SearchStatusEnum.LOADING);
+		}
+		return Optional.of(search);
+	}
+
+	@Override
+	public Optional<Search> findCandidatesForReuse(String theResourceType, String theQueryString, Instant theCreatedAfter, RequestPartitionId theRequestPartitionId) {
+		String queryString = Search.createSearchQueryStringForStorage(theQueryString, theRequestPartitionId);
+		Integer hashCode = queryString.hashCode();
+
+		for (Search nextCandidateSearch : mySearches.values()) {
+			if (!hashCode.equals(nextCandidateSearch.getSearchQueryStringHash())) {
+				continue;
+			}
+			if (!theResourceType.equals(nextCandidateSearch.getResourceType()) || !queryString.equals(nextCandidateSearch.getSearchQueryString())) {
+				continue;
+			}
+			if (Boolean.TRUE.equals(nextCandidateSearch.getDeleted()) || nextCandidateSearch.getStatus() == SearchStatusEnum.FAILED) {
+				continue;
+			}
+			if (nextCandidateSearch.getCreated() != null && nextCandidateSearch.getCreated().toInstant().isAfter(theCreatedAfter)) {
+				return Optional.of(nextCandidateSearch);
+			}
+		}
+
+		return Optional.empty();
+	}
+
+	@Override
+	public void pollForStaleSearchesAndDeleteThem() {
+		if (!myDaoConfig.isExpireSearchResults()) {
+			return;
+		}
+
+		long cutoffMillis = myDaoConfig.getExpireSearchResultsAfterMillis();
+		if (myDaoConfig.getReuseCachedSearchResultsForMillis() != null) {
+			cutoffMillis = cutoffMillis + myDaoConfig.getReuseCachedSearchResultsForMillis();
+		}
+		Date now = new Date();
+		Date cutoff = new Date(now.getTime() - cutoffMillis);
+
+		int count = 0;
+		for (Iterator<Search> iter = mySearches.values().iterator(); iter.hasNext(); ) {
+			Search next = iter.next();
+			if (next.getCreated() == null || !next.getCreated().before(cutoff)) {
+				continue;
+			}
+			if (next.getExpiryOrNull() != null && !next.getExpiryOrNull().before(now)) {
+				continue;
+			}
+			iter.remove();
+			mySearchResultCacheSvc.remove(next.getUuid());
+			count++;
+		}
+
+		if (count > 0) {
+			ourLog.debug("Deleted {} stale searches from in-memory search cache", count);
+		}
+	}
+
+	/**
+	 * Returns the number of searches currently held in this cache
+	 */
+	public int getSearchCount() {
+		return mySearches.size();
+	}
+
+}
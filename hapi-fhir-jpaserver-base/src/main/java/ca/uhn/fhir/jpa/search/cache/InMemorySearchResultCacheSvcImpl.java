@@ -0,0 +1,317 @@
+package ca.uhn.fhir.jpa.search.cache;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.rest.api.server.storage.ResourcePersistentId;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Search result cache which keeps the result PIDs of each search in memory instead of
+ * in the <code>HFJ_SEARCH_RESULT</code> table. PIDs are stored as primitive longs in
+ * {@link LongBuffer} segments, which are either backed by a <code>long[]</code> on the heap
+ * or by a direct (off-heap) buffer.
+ * <p>
+ * The total size of all segments is limited to a byte budget. When the budget is exceeded,
+ * the results of the least recently used searches are discarded and the
+ * {@link #setEvictionListener(Consumer) eviction listener} is notified so that the search
+ * itself can be discarded too.
+ * </p>
+ *
+ * @see InMemorySearchCacheSvcImpl
+ * @since 5.4.0
+ */
+public class InMemorySearchResultCacheSvcImpl implements ISearchResultCacheSvc {
+
+	/**
+	 * The maximum number of PIDs in a single segment
+	 */
+	static final int SEGMENT_SIZE = 1024;
+	private static final int INITIAL_SEGMENT_SIZE = 16;
+	private static final Logger ourLog = LoggerFactory.getLogger(InMemorySearchResultCacheSvcImpl.class);
+
+	private final long myMaxBytes;
+	private final boolean myOffHeap;
+	private final LinkedHashMap<String, PidList> myEntries = new LinkedHashMap<>(16, 0.75f, true);
+	private final AtomicLong myHitCount = new AtomicLong();
+	private final AtomicLong myMissCount = new AtomicLong();
+	private final AtomicLong myEvictionCount = new AtomicLong();
+	private long myCurrentBytes;
+	private Consumer<String> myEvictionListener;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theMaxBytes The maximum number of bytes to use for storing result PIDs
+	 * @param theOffHeap  Should PIDs be stored in direct (off-heap) buffers?
+	 */
+	public InMemorySearchResultCacheSvcImpl(long theMaxBytes, boolean theOffHeap) {
+		Validate.isTrue(theMaxBytes > 0, "theMaxBytes must be positive");
+		myMaxBytes = theMaxBytes;
+		myOffHeap = theOffHeap;
+	}
+
+	/**
+	 * Sets a callback which is invoked with the UUID of each search whose results are
+	 * discarded because the byte budget was exceeded
+	 */
+	public void setEvictionListener(@Nullable Consumer<String> theEvictionListener) {
+		myEvictionListener = theEvictionListener;
+	}
+
+	@Override
+	public void storeResults(Search theSearch, List<ResourcePersistentId> thePreviouslyStoredResourcePids, List<ResourcePersistentId> theNewResourcePids) {
+		String uuid = theSearch.getUuid();
+		List<String> evicted;
+
+		synchronized (myEntries) {
+			PidList pids = myEntries.get(uuid);
+			if (pids == null || pids.size() != thePreviouslyStoredResourcePids.size()) {
+				// Either this is the first pass, or our copy is out of sync with the caller's
+				if (pids != null) {
+					myCurrentBytes -= pids.getBytes();
+				}
+				pids = new PidList(myOffHeap);
+				pids.addAll(thePreviouslyStoredResourcePids);
+				myEntries.put(uuid, pids);
+				myCurrentBytes += pids.getBytes();
+			}
+
+			long bytesBefore = pids.getBytes();
+			pids.addAll(theNewResourcePids);
+			myCurrentBytes += pids.getBytes() - bytesBefore;
+
+			ourLog.trace("Stored {} results with {} previous for search {}", theNewResourcePids.size(), thePreviouslyStoredResourcePids.size(), uuid);
+
+			evicted = evictIfOverBudget(uuid);
+		}
+
+		notifyEvicted(evicted);
+	}
+
+	@Nullable
+	@Override
+	public List<ResourcePersistentId> fetchResultPids(Search theSearch, int theFrom, int theTo) {
+		synchronized (myEntries) {
+			PidList pids = myEntries.get(theSearch.getUuid());
+			if (pids == null) {
+				myMissCount.incrementAndGet();
+				return null;
+			}
+			myHitCount.incrementAndGet();
+			List<ResourcePersistentId> retVal = pids.toList(theFrom, theTo);
+			ourLog.debug("fetchResultPids for range {}-{} returned {} pids", theFrom, theTo, retVal.size());
+			return retVal;
+		}
+	}
+
+	@Nullable
+	@Override
+	public List<ResourcePersistentId> fetchAllResultPids(Search theSearch) {
+		synchronized (myEntries) {
+			PidList pids = myEntries.get(theSearch.getUuid());
+			if (pids == null) {
+				myMissCount.incrementAndGet();
+				return null;
+			}
+			myHitCount.incrementAndGet();
+			return pids.toList(0, pids.size());
+		}
+	}
+
+	/**
+	 * Discards the results for the given search, if any are stored
+	 */
+	public void remove(String theSearchUuid) {
+		synchronized (myEntries) {
+			PidList pids = myEntries.remove(theSearchUuid);
+			if (pids != null) {
+				myCurrentBytes -= pids.getBytes();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of fetches for a search whose results were found
+	 */
+	public long getHitCount() {
+		return myHitCount.get();
+	}
+
+	/**
+	 * Returns the number of fetches for a search whose results were not found (e.g. because they were evicted)
+	 */
+	public long getMissCount() {
+		return myMissCount.get();
+	}
+
+	/**
+	 * Returns the number of searches whose results have been discarded because the byte budget was exceeded
+	 */
+	public long getEvictionCount() {
+		return myEvictionCount.get();
+	}
+
+	/**
+	 * Returns the number of bytes currently used to store result PIDs
+	 */
+	public long getCurrentBytes() {
+		synchronized (myEntries) {
+			return myCurrentBytes;
+		}
+	}
+
+	/**
+	 * Returns the number of searches whose results are currently stored
+	 */
+	public int getEntryCount() {
+		synchronized (myEntries) {
+			return myEntries.size();
+		}
+	}
+
+	/**
+	 * Must be called while holding the lock on {@link #myEntries}
+	 */
+	private List<String> evictIfOverBudget(String theUuidToKeep) {
+		List<String> retVal = null;
+		Iterator<Map.Entry<String, PidList>> iter = myEntries.entrySet().iterator();
+		while (myCurrentBytes > myMaxBytes && iter.hasNext()) {
+			Map.Entry<String, PidList> next = iter.next();
+			if (next.getKey().equals(theUuidToKeep)) {
+				continue;
+			}
+			iter.remove();
+			myCurrentBytes -= next.getValue().getBytes();
+			myEvictionCount.incrementAndGet();
+			if (retVal == null) {
+				retVal = new ArrayList<>();
+			}
+			retVal.add(next.getKey());
+		}
+
+		if (myCurrentBytes > myMaxBytes) {
+			ourLog.warn("Results for search {} use {} bytes, which exceeds the in-memory search cache budget of {} bytes", theUuidToKeep, myCurrentBytes, myMaxBytes);
+		}
+
+		return retVal;
+	}
+
+	private void notifyEvicted(@Nullable List<String> theEvictedUuids) {
+		if (theEvictedUuids == null) {
+			return;
+		}
+		ourLog.debug("Evicted results for {} searches from in-memory search cache", theEvictedUuids.size());
+		Consumer<String> listener = myEvictionListener;
+		if (listener != null) {
+			theEvictedUuids.forEach(listener);
+		}
+	}
+
+	/**
+	 * An append-only list of PIDs. The first segment starts small and doubles in
+	 * capacity until it reaches {@link #SEGMENT_SIZE}, so that searches with only a
+	 * few results don't use a full segment. Subsequent segments are always full size.
+	 */
+	static class PidList {
+
+		private final boolean myOffHeap;
+		private final List<LongBuffer> mySegments = new ArrayList<>();
+		private int mySize;
+		private long myBytes;
+
+		PidList(boolean theOffHeap) {
+			myOffHeap = theOffHeap;
+		}
+
+		int size() {
+			return mySize;
+		}
+
+		long getBytes() {
+			return myBytes;
+		}
+
+		void addAll(List<ResourcePersistentId> thePids) {
+			for (ResourcePersistentId next : thePids) {
+				add(next.getIdAsLong());
+			}
+		}
+
+		void add(long thePid) {
+			LongBuffer segment = mySegments.isEmpty() ? null : mySegments.get(mySegments.size() - 1);
+			if (segment == null) {
+				segment = allocate(INITIAL_SEGMENT_SIZE);
+				mySegments.add(segment);
+			} else if (!segment.hasRemaining()) {
+				if (segment.capacity() < SEGMENT_SIZE) {
+					LongBuffer grown = allocate(Math.min(segment.capacity() * 2, SEGMENT_SIZE));
+					segment.flip();
+					grown.put(segment);
+					myBytes -= (long) segment.capacity() * Long.BYTES;
+					segment = grown;
+					mySegments.set(mySegments.size() - 1, segment);
+				} else {
+					segment = allocate(SEGMENT_SIZE);
+					mySegments.add(segment);
+				}
+			}
+			segment.put(thePid);
+			mySize++;
+		}
+
+		long get(int theIndex) {
+			return mySegments.get(theIndex / SEGMENT_SIZE).get(theIndex % SEGMENT_SIZE);
+		}
+
+		List<ResourcePersistentId> toList(int theFrom, int theTo) {
+			int to = Math.min(theTo, mySize);
+			List<ResourcePersistentId> retVal = new ArrayList<>(Math.max(to - theFrom, 0));
+			for (int i = theFrom; i < to; i++) {
+				retVal.add(new ResourcePersistentId(get(i)));
+			}
+			return retVal;
+		}
+
+		private LongBuffer allocate(int theCapacity) {
+			myBytes += (long) theCapacity * Long.BYTES;
+			if (myOffHeap) {
+				return ByteBuffer.allocateDirect(theCapacity * Long.BYTES).asLongBuffer();
+			}
+			return LongBuffer.allocate(theCapacity);
+		}
+
+	}
+
+}
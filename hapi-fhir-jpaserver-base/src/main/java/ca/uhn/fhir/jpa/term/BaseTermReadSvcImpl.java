@@ -35,6 +35,7 @@ import ca.uhn.fhir.jpa.dao.data.ITermCodeSystemDao;
 import ca.uhn.fhir.jpa.dao.data.ITermCodeSystemVersionDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptDesignationDao;
+import ca.uhn.fhir.jpa.dao.data.ITermConceptParentChildLinkDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptPropertyDao;
 import ca.uhn.fhir.jpa.dao.data.ITermValueSetConceptDao;
 import ca.uhn.fhir.jpa.dao.data.ITermValueSetConceptDesignationDao;
@@ -67,6 +68,7 @@ import ca.uhn.fhir.jpa.term.api.ITermLoaderSvc;
 import ca.uhn.fhir.jpa.term.api.ITermReadSvc;
 import ca.uhn.fhir.jpa.term.ex.ExpansionTooCostlyException;
 import ca.uhn.fhir.jpa.util.LogicUtil;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.storage.ResourcePersistentId;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
@@ -85,6 +87,7 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -124,6 +127,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Propagation;
@@ -162,8 +166,11 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -179,6 +186,13 @@ import static org.apache.commons.lang3.StringUtils.startsWithIgnoreCase;
 public abstract class BaseTermReadSvcImpl implements ITermReadSvc {
 	public static final int DEFAULT_FETCH_SIZE = 250;
 	private static final int SINGLE_FETCH_SIZE = 1;
+	private static final int PRE_EXPANSION_CLAIM_CANDIDATES = 20;
+	/**
+	 * A pre-expansion claim which hasn't reported progress for this long is assumed to belong to a
+	 * worker that died, and is released. Workers report progress at least every
+	 * {@link ValueSetConceptAccumulator#STATUS_TIME_UPDATE_INTERVAL_MILLIS} while they are saving concepts.
+	 */
+	static final long PRE_EXPANSION_CLAIM_TIMEOUT_MILLIS = DateUtils.MILLIS_PER_HOUR;
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseTermReadSvcImpl.class);
 	private static final ValueSetExpansionOptions DEFAULT_EXPANSION_OPTIONS = new ValueSetExpansionOptions();
 	private static final TermCodeSystemVersion NO_CURRENT_VERSION = new TermCodeSystemVersion().setId(-1L);
@@ -193,6 +207,8 @@ public abstract class BaseTermReadSvcImpl implements ITermReadSvc {
 	@Autowired
 	protected ITermConceptPropertyDao myConceptPropertyDao;
 	@Autowired
+	protected ITermConceptParentChildLinkDao myConceptParentChildLinkDao;
+	@Autowired
 	protected ITermConceptDesignationDao myConceptDesignationDao;
 	@Autowired
 	protected ITermValueSetDao myValueSetDao;
@@ -223,6 +239,8 @@ public abstract class BaseTermReadSvcImpl implements ITermReadSvc {
 	private ISchedulerService mySchedulerService;
 	@Autowired(required = false)
 	private ITermDeferredStorageSvc myDeferredStorageSvc;
+	@Autowired
+	private MemoryCacheService myMemoryCacheService;
 	@Autowired(required = false)
 	private ITermCodeSystemStorageSvc myConceptStorageSvc;
 	@Autowired
@@ -327,12 +345,85 @@ public abstract class BaseTermReadSvcImpl implements ITermReadSvc {
 		return retVal;
 	}
 
+	private void addConceptsToSet(Set<TermConcept> theSetToPopulate, List<Long> theConceptPids) {
+		if (!theConceptPids.isEmpty() && theSetToPopulate.size() + theConceptPids.size() >= myDaoConfig.getMaximumExpansionSize()) {
+			String msg = myContext.getLocalizer().getMessage(BaseTermReadSvcImpl.class, "expansionTooLarge", myDaoConfig.getMaximumExpansionSize());
+			throw new ExpansionTooCostlyException(msg);
+		}
+		theSetToPopulate.addAll(fetchConcepts(theConceptPids));
+	}
+
 	/**
 	 * This method is present only for unit tests, do not call from client code
 	 */
 	@VisibleForTesting
 	public void clearCaches() {
 		myCodeSystemCurrentVersionCache.invalidateAll();
+		myMemoryCacheService.invalidateCacheLocally(MemoryCacheService.CacheEnum.CONCEPT_CLOSURE);
+	}
+
+	@Override
+	public void invalidateConceptClosure(long theCodeSystemVersionPid) {
+		myTxTemplate.executeWithoutResult(t -> myCodeSystemVersionDao.incrementLinksChangeCount(theCodeSystemVersionPid));
+		myMemoryCacheService.invalidateKeys(MemoryCacheService.CacheEnum.CONCEPT_CLOSURE, Collections.singletonList(theCodeSystemVersionPid));
+	}
+
+	/**
+	 * Returns the hierarchy closure for the given code system version, building it from the
+	 * parent/child links in the database if it isn't already cached. Returns <code>null</code> while
+	 * deferred terminology storage is in progress on this node, since the links may not all be saved yet.
+	 * <p>
+	 * Links can also be added or removed by other nodes, which only invalidate this node's cache if memory
+	 * cache invalidations are broadcast. Every change to the links of a version increments its links change
+	 * count though, so the count is read (by primary key) before each use, and the closure is rebuilt if it
+	 * was built from a different count.
+	 * </p>
+	 */
+	@Nullable
+	private TermConceptClosure getConceptClosure(long theCodeSystemVersionPid) {
+		if (myDeferredStorageSvc != null && !myDeferredStorageSvc.isStorageQueueEmpty()) {
+			return null;
+		}
+
+		// The count is read before the links, so a closure can only ever be cached with a count that is older than its links
+		long linksChangeCount = getLinksChangeCount(theCodeSystemVersionPid);
+		CountedConceptClosure retVal = myMemoryCacheService.get(MemoryCacheService.CacheEnum.CONCEPT_CLOSURE, theCodeSystemVersionPid, t -> new CountedConceptClosure(buildConceptClosure(theCodeSystemVersionPid), linksChangeCount));
+		if (retVal.getLinksChangeCount() != linksChangeCount) {
+			retVal = new CountedConceptClosure(buildConceptClosure(theCodeSystemVersionPid), linksChangeCount);
+			myMemoryCacheService.put(MemoryCacheService.CacheEnum.CONCEPT_CLOSURE, theCodeSystemVersionPid, retVal);
+		}
+		return retVal.getClosure();
+	}
+
+	private long getLinksChangeCount(long theCodeSystemVersionPid) {
+		Optional<Long> retVal = myTxTemplate.execute(t -> myCodeSystemVersionDao.findLinksChangeCount(theCodeSystemVersionPid));
+		assert retVal != null;
+		return retVal.orElse(0L);
+	}
+
+	private TermConceptClosure buildConceptClosure(long theCodeSystemVersionPid) {
+		StopWatch sw = new StopWatch();
+		List<Object[]> links = myTxTemplate.execute(t -> myConceptParentChildLinkDao.findParentAndChildPidsByCodeSystemVersion(theCodeSystemVersionPid));
+		assert links != null;
+
+		long[] parentPids = new long[links.size()];
+		long[] childPids = new long[links.size()];
+		for (int i = 0; i < links.size(); i++) {
+			parentPids[i] = (Long) links.get(i)[0];
+			childPids[i] = (Long) links.get(i)[1];
+		}
+
+		TermConceptClosure retVal = new TermConceptClosure(parentPids, childPids);
+		ourLog.info("Built hierarchy closure for code system version {} with {} concepts and {} links in {}", theCodeSystemVersionPid, retVal.getConceptCount(), retVal.getLinkCount(), sw);
+		return retVal;
+	}
+
+	private Set<TermConcept> fetchConcepts(List<Long> theConceptPids) {
+		Set<TermConcept> retVal = new HashSet<>();
+		for (List<Long> nextChunk : Lists.partition(theConceptPids, DEFAULT_FETCH_SIZE)) {
+			retVal.addAll(myConceptDao.findAllById(nextChunk));
+		}
+		return retVal;
 	}
 
 
@@ -1650,7 +1741,12 @@ public abstract class BaseTermReadSvcImpl implements ITermReadSvc {
 		Set<TermConcept> retVal = new HashSet<>();
 		retVal.add(concept.get());
 
-		fetchParents(concept.get(), retVal);
+		TermConceptClosure closure = getConceptClosure(concept.get().getCodeSystemVersion().getPid());
+		if (closure != null) {
+			addConceptsToSet(retVal, closure.getAncestorPids(concept.get().getId()));
+		} else {
+			fetchParents(concept.get(), retVal);
+		}
 
 		ourLog.debug("Fetched {} codes above code {} in {}ms", retVal.size(), theCode, stopwatch.getMillis());
 		return retVal;
@@ -1682,7 +1778,12 @@ public abstract class BaseTermReadSvcImpl implements ITermReadSvc {
 		Set<TermConcept> retVal = new HashSet<>();
 		retVal.add(concept.get());
 
-		fetchChildren(concept.get(), retVal);
+		TermConceptClosure closure = getConceptClosure(concept.get().getCodeSystemVersion().getPid());
+		if (closure != null) {
+			addConceptsToSet(retVal, closure.getDescendantPids(concept.get().getId()));
+		} else {
+			fetchChildren(concept.get(), retVal);
+		}
 
 		ourLog.debug("Fetched {} codes below code {} in {}ms", retVal.size(), theCode, stopwatch.elapsed(TimeUnit.MILLISECONDS));
 		return retVal;
@@ -1715,66 +1816,113 @@ public abstract class BaseTermReadSvcImpl implements ITermReadSvc {
 
 	public void scheduleJob() {
 		// Register scheduled job to pre-expand ValueSets
-		// In the future it would be great to make this a cluster-aware task somehow
 		ScheduledJobDefinition vsJobDefinition = new ScheduledJobDefinition();
 		vsJobDefinition.setId(getClass().getName());
 		vsJobDefinition.setJobClass(Job.class);
-		mySchedulerService.scheduleClusteredJob(10 * DateUtils.MILLIS_PER_MINUTE, vsJobDefinition);
+		if (myDaoConfig.isPreExpandValueSetsOnAllNodes()) {
+			// ValueSets are claimed atomically, so it is safe for every node to run the job
+			mySchedulerService.scheduleLocalJob(10 * DateUtils.MILLIS_PER_MINUTE, vsJobDefinition);
+		} else {
+			mySchedulerService.scheduleClusteredJob(10 * DateUtils.MILLIS_PER_MINUTE, vsJobDefinition);
+		}
 	}
 
 
 	@Override
-	public synchronized void preExpandDeferredValueSetsToTerminologyTables() {
+	public void preExpandDeferredValueSetsToTerminologyTables() {
 		if (isNotSafeToPreExpandValueSets()) {
 			ourLog.info("Skipping scheduled pre-expansion of ValueSets while deferred entities are being loaded.");
 			return;
 		}
-		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
 
-		while (true) {
-			StopWatch sw = new StopWatch();
-			TermValueSet valueSetToExpand = txTemplate.execute(t -> {
-				Optional<TermValueSet> optionalTermValueSet = getNextTermValueSetNotExpanded();
-				if (!optionalTermValueSet.isPresent()) {
-					return null;
+		releaseStaleValueSetClaims();
+
+		PreExpansionProgress progress = new PreExpansionProgress();
+		int threadCount = myDaoConfig.getPreExpandValueSetsThreadCount();
+		if (threadCount <= 1) {
+			preExpandValueSetsUntilNoneRemain(progress);
+		} else {
+			ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+			executor.setThreadNamePrefix("vs_pre_expand_");
+			executor.setCorePoolSize(threadCount);
+			executor.setMaxPoolSize(threadCount);
+			executor.initialize();
+			List<Future<?>> futures = new ArrayList<>();
+			try {
+				for (int i = 0; i < threadCount; i++) {
+					futures.add(executor.submit(() -> preExpandValueSetsUntilNoneRemain(progress)));
 				}
+				// A failed worker doesn't stop the others, so wait for all of them
+				for (Future<?> next : futures) {
+					try {
+						next.get();
+					} catch (ExecutionException e) {
+						ourLog.error("Failure during ValueSet pre-expansion: " + e.getCause(), e.getCause());
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				ourLog.warn("Interrupted while waiting for ValueSet pre-expansion to complete");
+				futures.forEach(t -> t.cancel(true));
+			} finally {
+				executor.shutdown();
+			}
+		}
 
-				TermValueSet termValueSet = optionalTermValueSet.get();
-				termValueSet.setExpansionStatus(TermValueSetPreExpansionStatusEnum.EXPANSION_IN_PROGRESS);
-				return myValueSetDao.saveAndFlush(termValueSet);
-			});
-			if (valueSetToExpand == null) {
+		progress.logSummary();
+	}
+
+	private void preExpandValueSetsUntilNoneRemain(PreExpansionProgress theProgress) {
+		while (!isNotSafeToPreExpandValueSets()) {
+			Long valueSetPid = claimNextTermValueSetNotExpanded();
+			if (valueSetPid == null) {
 				return;
 			}
+			preExpandValueSet(valueSetPid, theProgress);
+		}
+	}
 
-			// We have a ValueSet to pre-expand.
-			try {
-				ValueSet valueSet = txTemplate.execute(t -> {
-					TermValueSet refreshedValueSetToExpand = myValueSetDao.findById(valueSetToExpand.getId()).orElseThrow(() -> new IllegalStateException("Unknown VS ID: " + valueSetToExpand.getId()));
-					return getValueSetFromResourceTable(refreshedValueSetToExpand.getResource());
-				});
-				assert valueSet != null;
+	private void preExpandValueSet(Long theValueSetPid, PreExpansionProgress theProgress) {
+		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
+		StopWatch sw = new StopWatch();
 
-				ValueSetConceptAccumulator accumulator = new ValueSetConceptAccumulator(valueSetToExpand, myValueSetDao, myValueSetConceptDao, myValueSetConceptDesignationDao);
-				expandValueSet(null, valueSet, accumulator);
+		try {
+			// The status has already been moved to EXPANSION_IN_PROGRESS by the claim. If this ValueSet was
+			// claimed before by a worker that died, that worker may have saved some concepts, so start over.
+			TermValueSet valueSetToExpand = txTemplate.execute(t -> {
+				TermValueSet retVal = myValueSetDao.findById(theValueSetPid).orElseThrow(() -> new IllegalStateException("Unknown VS ID: " + theValueSetPid));
+				myValueSetConceptDesignationDao.deleteByTermValueSetId(theValueSetPid);
+				myValueSetConceptDao.deleteByTermValueSetId(theValueSetPid);
+				retVal.setTotalConcepts(0L);
+				retVal.setTotalConceptDesignations(0L);
+				return retVal;
+			});
+			assert valueSetToExpand != null;
 
-				// We are done with this ValueSet.
-				txTemplate.execute(t -> {
-					valueSetToExpand.setExpansionStatus(TermValueSetPreExpansionStatusEnum.EXPANDED);
-					myValueSetDao.saveAndFlush(valueSetToExpand);
-					return null;
-				});
+			ValueSet valueSet = txTemplate.execute(t -> {
+				TermValueSet refreshedValueSetToExpand = myValueSetDao.findById(theValueSetPid).orElseThrow(() -> new IllegalStateException("Unknown VS ID: " + theValueSetPid));
+				return getValueSetFromResourceTable(refreshedValueSetToExpand.getResource());
+			});
+			assert valueSet != null;
 
-				ourLog.info("Pre-expanded ValueSet[{}] with URL[{}] - Saved {} concepts in {}", valueSet.getId(), valueSet.getUrl(), accumulator.getConceptsSaved(), sw.toString());
+			ValueSetConceptAccumulator accumulator = new ValueSetConceptAccumulator(valueSetToExpand, myValueSetDao, myValueSetConceptDao, myValueSetConceptDesignationDao);
+			expandValueSet(null, valueSet, accumulator);
 
-			} catch (Exception e) {
-				ourLog.error("Failed to pre-expand ValueSet: " + e.getMessage(), e);
-				txTemplate.execute(t -> {
-					valueSetToExpand.setExpansionStatus(TermValueSetPreExpansionStatusEnum.FAILED_TO_EXPAND);
-					myValueSetDao.saveAndFlush(valueSetToExpand);
-					return null;
-				});
-			}
+			// We are done with this ValueSet. This also saves the totals tracked by the accumulator.
+			txTemplate.execute(t -> {
+				valueSetToExpand.setExpansionStatus(TermValueSetPreExpansionStatusEnum.EXPANDED);
+				valueSetToExpand.setExpansionStatusTime(new Date());
+				myValueSetDao.saveAndFlush(valueSetToExpand);
+				return null;
+			});
+
+			theProgress.addExpanded(accumulator.getConceptsSaved());
+			ourLog.info("Pre-expanded ValueSet[{}] with URL[{}] - Saved {} concepts in {} ({} concepts/sec) - {} remaining", valueSet.getId(), valueSet.getUrl(), accumulator.getConceptsSaved(), sw.toString(), sw.formatThroughput(accumulator.getConceptsSaved(), TimeUnit.SECONDS), countTermValueSetsNotExpanded());
+
+		} catch (Exception e) {
+			ourLog.error("Failed to pre-expand ValueSet: " + e.getMessage(), e);
+			theProgress.addFailed();
+			txTemplate.execute(t -> myValueSetDao.updateExpansionStatus(theValueSetPid, TermValueSetPreExpansionStatusEnum.EXPANSION_IN_PROGRESS, TermValueSetPreExpansionStatusEnum.FAILED_TO_EXPAND, new Date()));
 		}
 	}
 
@@ -1852,15 +2000,50 @@ public abstract class BaseTermReadSvcImpl implements ITermReadSvc {
 
 	protected abstract ValueSet getValueSetFromResourceTable(ResourceTable theResourceTable);
 
-	private Optional<TermValueSet> getNextTermValueSetNotExpanded() {
-		Optional<TermValueSet> retVal = Optional.empty();
-		Slice<TermValueSet> page = myValueSetDao.findByExpansionStatus(PageRequest.of(0, 1), TermValueSetPreExpansionStatusEnum.NOT_EXPANDED);
+	/**
+	 * Claims the next ValueSet which is waiting to be pre-expanded by moving it from
+	 * {@link TermValueSetPreExpansionStatusEnum#NOT_EXPANDED} to
+	 * {@link TermValueSetPreExpansionStatusEnum#EXPANSION_IN_PROGRESS}. The status change only
+	 * succeeds if nobody else (another thread or another node) got there first.
+	 *
+	 * @return Returns the PID of the claimed ValueSet, or <code>null</code> if none are waiting
+	 */
+	@Nullable
+	private Long claimNextTermValueSetNotExpanded() {
+		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
+		while (true) {
+			List<Long> candidates = txTemplate.execute(t -> new ArrayList<>(myValueSetDao.findIdsByExpansionStatus(PageRequest.of(0, PRE_EXPANSION_CLAIM_CANDIDATES), TermValueSetPreExpansionStatusEnum.NOT_EXPANDED).getContent()));
+			assert candidates != null;
+			if (candidates.isEmpty()) {
+				return null;
+			}
 
-		if (!page.getContent().isEmpty()) {
-			retVal = Optional.of(page.getContent().get(0));
+			// Workers all see the same candidates, so try them in a different order to avoid contention
+			Collections.shuffle(candidates);
+			for (Long next : candidates) {
+				Integer updated = txTemplate.execute(t -> myValueSetDao.updateExpansionStatus(next, TermValueSetPreExpansionStatusEnum.NOT_EXPANDED, TermValueSetPreExpansionStatusEnum.EXPANSION_IN_PROGRESS, new Date()));
+				if (updated != null && updated == 1) {
+					return next;
+				}
+			}
 		}
+	}
 
-		return retVal;
+	/**
+	 * Returns ValueSets whose pre-expansion claim has timed out (see {@link #PRE_EXPANSION_CLAIM_TIMEOUT_MILLIS})
+	 * to {@link TermValueSetPreExpansionStatusEnum#NOT_EXPANDED}, so that they are claimed again
+	 */
+	private void releaseStaleValueSetClaims() {
+		Date cutoff = new Date(System.currentTimeMillis() - PRE_EXPANSION_CLAIM_TIMEOUT_MILLIS);
+		Integer released = new TransactionTemplate(myTxManager).execute(t -> myValueSetDao.updateExpansionStatusIfStatusTimeBefore(TermValueSetPreExpansionStatusEnum.EXPANSION_IN_PROGRESS, TermValueSetPreExpansionStatusEnum.NOT_EXPANDED, cutoff));
+		if (released != null && released > 0) {
+			ourLog.warn("Released {} ValueSet pre-expansion claims which have not reported progress since {}", released, cutoff);
+		}
+	}
+
+	private long countTermValueSetsNotExpanded() {
+		Long retVal = new TransactionTemplate(myTxManager).execute(t -> myValueSetDao.countByExpansionStatus(TermValueSetPreExpansionStatusEnum.NOT_EXPANDED));
+		return retVal != null ? retVal : 0;
 	}
 
 	@Override
@@ -1954,15 +2137,25 @@ public abstract class BaseTermReadSvcImpl implements ITermReadSvc {
 		TermConcept codeB = findCode(codeBSystemIdentifier, conceptB.getCode())
 			.orElseThrow(() -> new InvalidRequestException("Unknown code: " + conceptB));
 
-		SearchSession searchSession = Search.session(myEntityManager);
-
 		ConceptSubsumptionOutcome subsumes;
-		subsumes = testForSubsumption(searchSession, codeA, codeB, ConceptSubsumptionOutcome.SUBSUMES);
-		if (subsumes == null) {
-			subsumes = testForSubsumption(searchSession, codeB, codeA, ConceptSubsumptionOutcome.SUBSUMEDBY);
-		}
-		if (subsumes == null) {
-			subsumes = ConceptSubsumptionOutcome.NOTSUBSUMED;
+		TermConceptClosure closure = getConceptClosure(codeA.getCodeSystemVersion().getPid());
+		if (closure != null) {
+			if (closure.isAncestor(codeA.getId(), codeB.getId())) {
+				subsumes = ConceptSubsumptionOutcome.SUBSUMES;
+			} else if (closure.isAncestor(codeB.getId(), codeA.getId())) {
+				subsumes = ConceptSubsumptionOutcome.SUBSUMEDBY;
+			} else {
+				subsumes = ConceptSubsumptionOutcome.NOTSUBSUMED;
+			}
+		} else {
+			SearchSession searchSession = Search.session(myEntityManager);
+			subsumes = testForSubsumption(searchSession, codeA, codeB, ConceptSubsumptionOutcome.SUBSUMES);
+			if (subsumes == null) {
+				subsumes = testForSubsumption(searchSession, codeB, codeA, ConceptSubsumptionOutcome.SUBSUMEDBY);
+			}
+			if (subsumes == null) {
+				subsumes = ConceptSubsumptionOutcome.NOTSUBSUMED;
+			}
 		}
 
 		return new IFhirResourceDaoCodeSystem.SubsumesResult(subsumes);
@@ -2366,6 +2559,35 @@ public abstract class BaseTermReadSvcImpl implements ITermReadSvc {
 			return createFailureCodeValidationResult(theCodeSystemUrl, theCode, " - Concept Display : " + theDisplay);
 	}
 
+	/**
+	 * Counts the work done by one run of the ValueSet pre-expansion job, across all of
+	 * its worker threads
+	 */
+	private static class PreExpansionProgress {
+		private final StopWatch mySw = new StopWatch();
+		private final AtomicInteger myValueSetsExpanded = new AtomicInteger();
+		private final AtomicInteger myValueSetsFailed = new AtomicInteger();
+		private final AtomicLong myConceptsSaved = new AtomicLong();
+
+		void addExpanded(int theConceptsSaved) {
+			myValueSetsExpanded.incrementAndGet();
+			myConceptsSaved.addAndGet(theConceptsSaved);
+		}
+
+		void addFailed() {
+			myValueSetsFailed.incrementAndGet();
+		}
+
+		void logSummary() {
+			int expanded = myValueSetsExpanded.get();
+			int failed = myValueSetsFailed.get();
+			if (expanded + failed > 0) {
+				long concepts = myConceptsSaved.get();
+				ourLog.info("Pre-expanded {} ValueSets ({} failed) with {} concepts in {} - {} ValueSets/min, {} concepts/sec", expanded, failed, concepts, mySw, mySw.formatThroughput(expanded + failed, TimeUnit.MINUTES), mySw.formatThroughput(concepts, TimeUnit.SECONDS));
+			}
+		}
+	}
+
 	public static class Job implements HapiJob {
 		@Autowired
 		private ITermReadSvc myTerminologySvc;
@@ -2462,4 +2684,21 @@ public abstract class BaseTermReadSvcImpl implements ITermReadSvc {
 		return termConcept;
 	}
 
+	private static class CountedConceptClosure {
+		private final TermConceptClosure myClosure;
+		private final long myLinksChangeCount;
+
+		private CountedConceptClosure(TermConceptClosure theClosure, long theLinksChangeCount) {
+			myClosure = theClosure;
+			myLinksChangeCount = theLinksChangeCount;
+		}
+
+		TermConceptClosure getClosure() {
+			return myClosure;
+		}
+
+		long getLinksChangeCount() {
+			return myLinksChangeCount;
+		}
+	}
 }
@@ -169,6 +169,8 @@ public class TermCodeSystemStorageSvcImpl implements ITermCodeSystemStorageSvc {
 			addConceptInHierarchy(csv, parentCodes, nextRootConcept, retVal, codeToConcept, 0);
 		}
 
+		myTerminologySvc.invalidateConceptClosure(csv.getPid());
+
 		return retVal;
 	}
 
@@ -212,6 +214,9 @@ public class TermCodeSystemStorageSvcImpl implements ITermCodeSystemStorageSvc {
 		for (TermConcept code : allFoundTermConcepts) {
 			deleteEverythingRelatedToConcept(code, removeCounter);
 		}
+		if (cs.getCurrentVersion() != null) {
+			myTerminologySvc.invalidateConceptClosure(cs.getCurrentVersion().getPid());
+		}
 
 		return new UploadStatistics(removeCounter.get(), target);
 	}
@@ -526,6 +531,7 @@ public class TermCodeSystemStorageSvcImpl implements ITermCodeSystemStorageSvc {
 		myCodeSystemVersionDao.save(codeSystemVersion);
 
 		myDeferredStorageSvc.deleteCodeSystemVersion(codeSystemVersion);
+		myTerminologySvc.invalidateConceptClosure(theCodeSystemVersionPid);
 	}
 
 	private void validateDstu3OrNewer() {
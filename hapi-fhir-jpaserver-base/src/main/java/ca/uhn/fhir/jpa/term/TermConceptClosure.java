@@ -0,0 +1,252 @@
+package ca.uhn.fhir.jpa.term;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compact, immutable closure of the parent/child hierarchy of a single code system version.
+ * <p>
+ * Every concept which takes part in a parent/child link is given a dense index, and the links are
+ * held in compressed adjacency arrays in both directions, so that hierarchy walks never touch the
+ * database or load entities. In addition, each concept is numbered in pre/post order over a spanning
+ * forest of the hierarchy: if concept A's interval contains concept B's interval then B is a descendant
+ * of A, which answers most subsumption tests in constant time. Since terminologies such as SNOMED CT
+ * allow a concept to have several parents, a negative interval test falls back to walking up from the
+ * descendant, checking the interval of each ancestor on the way.
+ * </p>
+ */
+class TermConceptClosure {
+
+	private final long[] myPids;
+	private final int[] myChildOffsets;
+	private final int[] myChildren;
+	private final int[] myParentOffsets;
+	private final int[] myParents;
+	private final int[] myPreOrder;
+	private final int[] myPostOrder;
+	private final int myLinkCount;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theParentPids The parent concept PID of each link
+	 * @param theChildPids  The child concept PID of each link, at the same position as its parent
+	 */
+	TermConceptClosure(long[] theParentPids, long[] theChildPids) {
+		Validate.isTrue(theParentPids.length == theChildPids.length, "Parent and child PID arrays must have the same length");
+		int linkCount = theParentPids.length;
+		myLinkCount = linkCount;
+
+		long[] pids = new long[linkCount * 2];
+		System.arraycopy(theParentPids, 0, pids, 0, linkCount);
+		System.arraycopy(theChildPids, 0, pids, linkCount, linkCount);
+		Arrays.sort(pids);
+		int conceptCount = 0;
+		for (int i = 0; i < pids.length; i++) {
+			if (i == 0 || pids[i] != pids[i - 1]) {
+				pids[conceptCount++] = pids[i];
+			}
+		}
+		myPids = Arrays.copyOf(pids, conceptCount);
+
+		int[] parentIndexes = new int[linkCount];
+		int[] childIndexes = new int[linkCount];
+		for (int i = 0; i < linkCount; i++) {
+			parentIndexes[i] = Arrays.binarySearch(myPids, theParentPids[i]);
+			childIndexes[i] = Arrays.binarySearch(myPids, theChildPids[i]);
+		}
+
+		myChildOffsets = new int[conceptCount + 1];
+		myChildren = new int[linkCount];
+		populateAdjacency(parentIndexes, childIndexes, myChildOffsets, myChildren);
+		myParentOffsets = new int[conceptCount + 1];
+		myParents = new int[linkCount];
+		populateAdjacency(childIndexes, parentIndexes, myParentOffsets, myParents);
+
+		myPreOrder = new int[conceptCount];
+		myPostOrder = new int[conceptCount];
+		numberSpanningForest();
+	}
+
+	/**
+	 * Returns the number of concepts which take part in at least one parent/child link
+	 */
+	int getConceptCount() {
+		return myPids.length;
+	}
+
+	int getLinkCount() {
+		return myLinkCount;
+	}
+
+	/**
+	 * Returns <code>true</code> if the concept with PID <code>theAncestorPid</code> is a
+	 * (direct or indirect) parent of the concept with PID <code>theDescendantPid</code>. A
+	 * concept is not considered to be its own ancestor.
+	 */
+	boolean isAncestor(long theAncestorPid, long theDescendantPid) {
+		int ancestor = indexOf(theAncestorPid);
+		int descendant = indexOf(theDescendantPid);
+		if (ancestor < 0 || descendant < 0 || ancestor == descendant) {
+			return false;
+		}
+		if (isSpanningTreeAncestorOrSelf(ancestor, descendant)) {
+			return true;
+		}
+
+		Set<Integer> visited = new HashSet<>();
+		Deque<Integer> queue = new ArrayDeque<>();
+		queue.add(descendant);
+		while (!queue.isEmpty()) {
+			int next = queue.poll();
+			for (int i = myParentOffsets[next]; i < myParentOffsets[next + 1]; i++) {
+				int parent = myParents[i];
+				if (isSpanningTreeAncestorOrSelf(ancestor, parent)) {
+					return true;
+				}
+				if (visited.add(parent)) {
+					queue.add(parent);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the PIDs of all (direct and indirect) children of the given concept, not including the concept itself
+	 */
+	List<Long> getDescendantPids(long thePid) {
+		return walk(thePid, myChildOffsets, myChildren);
+	}
+
+	/**
+	 * Returns the PIDs of all (direct and indirect) parents of the given concept, not including the concept itself
+	 */
+	List<Long> getAncestorPids(long thePid) {
+		return walk(thePid, myParentOffsets, myParents);
+	}
+
+	private List<Long> walk(long thePid, int[] theOffsets, int[] theTargets) {
+		int start = indexOf(thePid);
+		if (start < 0) {
+			return new ArrayList<>();
+		}
+
+		List<Long> retVal = new ArrayList<>();
+		BitSet visited = new BitSet(myPids.length);
+		visited.set(start);
+		int[] queue = new int[myPids.length];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = start;
+		while (head < tail) {
+			int next = queue[head++];
+			for (int i = theOffsets[next]; i < theOffsets[next + 1]; i++) {
+				int target = theTargets[i];
+				if (!visited.get(target)) {
+					visited.set(target);
+					queue[tail++] = target;
+					retVal.add(myPids[target]);
+				}
+			}
+		}
+		return retVal;
+	}
+
+	private int indexOf(long thePid) {
+		return Arrays.binarySearch(myPids, thePid);
+	}
+
+	private boolean isSpanningTreeAncestorOrSelf(int theAncestor, int theDescendant) {
+		return myPreOrder[theAncestor] <= myPreOrder[theDescendant] && myPostOrder[theDescendant] <= myPostOrder[theAncestor];
+	}
+
+	/**
+	 * Assigns pre/post order numbers using an iterative depth-first walk from each root, so that
+	 * deep hierarchies can't overflow the stack. Concepts which are only reachable through a cycle
+	 * are numbered from a second pass.
+	 */
+	private void numberSpanningForest() {
+		int conceptCount = myPids.length;
+		BitSet visited = new BitSet(conceptCount);
+		int[] stack = new int[conceptCount];
+		int[] cursors = new int[conceptCount];
+		int clock = 0;
+		for (int i = 0; i < conceptCount; i++) {
+			if (myParentOffsets[i] == myParentOffsets[i + 1]) {
+				clock = numberFrom(i, visited, stack, cursors, clock);
+			}
+		}
+		for (int i = visited.nextClearBit(0); i < conceptCount; i = visited.nextClearBit(i + 1)) {
+			clock = numberFrom(i, visited, stack, cursors, clock);
+		}
+	}
+
+	private int numberFrom(int theRoot, BitSet theVisited, int[] theStack, int[] theCursors, int theClock) {
+		int clock = theClock;
+		int depth = 0;
+		theStack[0] = theRoot;
+		theCursors[0] = myChildOffsets[theRoot];
+		theVisited.set(theRoot);
+		myPreOrder[theRoot] = clock++;
+		while (depth >= 0) {
+			int node = theStack[depth];
+			if (theCursors[depth] < myChildOffsets[node + 1]) {
+				int child = myChildren[theCursors[depth]++];
+				if (!theVisited.get(child)) {
+					theVisited.set(child);
+					myPreOrder[child] = clock++;
+					depth++;
+					theStack[depth] = child;
+					theCursors[depth] = myChildOffsets[child];
+				}
+			} else {
+				myPostOrder[node] = clock++;
+				depth--;
+			}
+		}
+		return clock;
+	}
+
+	private static void populateAdjacency(int[] theFrom, int[] theTo, int[] theOffsets, int[] theTargets) {
+		for (int next : theFrom) {
+			theOffsets[next + 1]++;
+		}
+		for (int i = 1; i < theOffsets.length; i++) {
+			theOffsets[i] += theOffsets[i - 1];
+		}
+		int[] positions = Arrays.copyOf(theOffsets, theOffsets.length - 1);
+		for (int i = 0; i < theFrom.length; i++) {
+			theTargets[positions[theFrom[i]]++] = theTo[i];
+		}
+	}
+
+}
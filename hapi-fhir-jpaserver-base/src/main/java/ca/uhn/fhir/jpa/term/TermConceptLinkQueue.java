@@ -0,0 +1,152 @@
+package ca.uhn.fhir.jpa.term;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.entity.TermConceptParentChildLink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A FIFO queue of parent/child links between concepts which have already been
+ * saved, stored as primitive PIDs instead of as entities.
+ * <p>
+ * Queued {@link TermConceptParentChildLink} entities keep their parent and child
+ * {@link ca.uhn.fhir.jpa.entity.TermConcept concepts} reachable, and through their
+ * children, properties and designations, the rest of the uploaded hierarchy. Once
+ * the concepts have PIDs, this queue lets that graph be garbage collected while the
+ * links wait to be stored. Each link uses 25 bytes here.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+class TermConceptLinkQueue {
+	private static final int CHUNK_SIZE = 10000;
+	private static final byte NO_RELATIONSHIP_TYPE = -1;
+	private static final TermConceptParentChildLink.RelationshipTypeEnum[] RELATIONSHIP_TYPES = TermConceptParentChildLink.RelationshipTypeEnum.values();
+
+	private final ArrayDeque<Chunk> myChunks = new ArrayDeque<>();
+	private int mySize;
+
+	synchronized void add(long theParentPid, long theChildPid, long theCodeSystemVersionPid, TermConceptParentChildLink.RelationshipTypeEnum theRelationshipType) {
+		Chunk last = myChunks.peekLast();
+		if (last == null || last.isFull()) {
+			last = new Chunk();
+			myChunks.addLast(last);
+		}
+		last.add(theParentPid, theChildPid, theCodeSystemVersionPid, theRelationshipType);
+		mySize++;
+	}
+
+	/**
+	 * Removes up to the given number of links from the head of the queue
+	 */
+	synchronized List<Link> poll(int theMaxCount) {
+		List<Link> retVal = new ArrayList<>(Math.min(theMaxCount, mySize));
+		while (retVal.size() < theMaxCount && !myChunks.isEmpty()) {
+			Chunk first = myChunks.peekFirst();
+			if (first.isEmpty()) {
+				myChunks.removeFirst();
+				continue;
+			}
+			retVal.add(first.poll());
+			mySize--;
+		}
+		return retVal;
+	}
+
+	synchronized int size() {
+		return mySize;
+	}
+
+	synchronized boolean isEmpty() {
+		return mySize == 0;
+	}
+
+	synchronized void clear() {
+		myChunks.clear();
+		mySize = 0;
+	}
+
+	static class Link {
+		private final long myParentPid;
+		private final long myChildPid;
+		private final long myCodeSystemVersionPid;
+		private final TermConceptParentChildLink.RelationshipTypeEnum myRelationshipType;
+
+		private Link(long theParentPid, long theChildPid, long theCodeSystemVersionPid, TermConceptParentChildLink.RelationshipTypeEnum theRelationshipType) {
+			myParentPid = theParentPid;
+			myChildPid = theChildPid;
+			myCodeSystemVersionPid = theCodeSystemVersionPid;
+			myRelationshipType = theRelationshipType;
+		}
+
+		long getParentPid() {
+			return myParentPid;
+		}
+
+		long getChildPid() {
+			return myChildPid;
+		}
+
+		long getCodeSystemVersionPid() {
+			return myCodeSystemVersionPid;
+		}
+
+		TermConceptParentChildLink.RelationshipTypeEnum getRelationshipType() {
+			return myRelationshipType;
+		}
+	}
+
+	private static class Chunk {
+		private final long[] myParentPids = new long[CHUNK_SIZE];
+		private final long[] myChildPids = new long[CHUNK_SIZE];
+		private final long[] myCodeSystemVersionPids = new long[CHUNK_SIZE];
+		private final byte[] myRelationshipTypes = new byte[CHUNK_SIZE];
+		private int myWriteIndex;
+		private int myReadIndex;
+
+		private boolean isFull() {
+			return myWriteIndex == CHUNK_SIZE;
+		}
+
+		private boolean isEmpty() {
+			return myReadIndex == myWriteIndex;
+		}
+
+		private void add(long theParentPid, long theChildPid, long theCodeSystemVersionPid, TermConceptParentChildLink.RelationshipTypeEnum theRelationshipType) {
+			myParentPids[myWriteIndex] = theParentPid;
+			myChildPids[myWriteIndex] = theChildPid;
+			myCodeSystemVersionPids[myWriteIndex] = theCodeSystemVersionPid;
+			myRelationshipTypes[myWriteIndex] = theRelationshipType != null ? (byte) theRelationshipType.ordinal() : NO_RELATIONSHIP_TYPE;
+			myWriteIndex++;
+		}
+
+		private Link poll() {
+			int index = myReadIndex++;
+			byte relationshipType = myRelationshipTypes[index];
+			return new Link(myParentPids[index], myChildPids[index], myCodeSystemVersionPids[index], relationshipType != NO_RELATIONSHIP_TYPE ? RELATIONSHIP_TYPES[relationshipType] : null);
+		}
+	}
+
+}
@@ -37,8 +37,10 @@ import ca.uhn.fhir.jpa.model.sched.ScheduledJobDefinition;
 import ca.uhn.fhir.jpa.term.api.ITermCodeSystemStorageSvc;
 import ca.uhn.fhir.jpa.term.api.ITermDeferredStorageSvc;
 import ca.uhn.fhir.jpa.term.api.ITermVersionAdapterSvc;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
 import ca.uhn.fhir.util.StopWatch;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.r4.model.ConceptMap;
 import org.hl7.fhir.r4.model.ValueSet;
@@ -58,11 +60,15 @@ import org.springframework.transaction.support.TransactionTemplate;
 import javax.annotation.PostConstruct;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
@@ -71,10 +77,11 @@ public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc {
 	private static final Logger ourLog = LoggerFactory.getLogger(TermDeferredStorageSvcImpl.class);
 	final private List<TermCodeSystem> myDeferredCodeSystemsDeletions = Collections.synchronizedList(new ArrayList<>());
 	final private Queue<TermCodeSystemVersion> myDeferredCodeSystemVersionsDeletions = new ConcurrentLinkedQueue<>();
-	final private List<TermConcept> myDeferredConcepts = Collections.synchronizedList(new ArrayList<>());
+	final private BlockingQueue<TermConcept> myDeferredConcepts = new LinkedBlockingQueue<>();
 	final private List<ValueSet> myDeferredValueSets = Collections.synchronizedList(new ArrayList<>());
 	final private List<ConceptMap> myDeferredConceptMaps = Collections.synchronizedList(new ArrayList<>());
-	final private List<TermConceptParentChildLink> myConceptLinksToSaveLater = Collections.synchronizedList(new ArrayList<>());
+	final private BlockingQueue<TermConceptParentChildLink> myConceptLinksToSaveLater = new LinkedBlockingQueue<>();
+	final private TermConceptLinkQueue myCompactConceptLinksToSaveLater = new TermConceptLinkQueue();
 	@Autowired
 	protected ITermConceptDao myConceptDao;
 	@Autowired
@@ -96,6 +103,8 @@ public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc {
 	private ITermVersionAdapterSvc myTerminologyVersionAdapterSvc;
 	@Autowired
 	private ITermCodeSystemStorageSvc myCodeSystemStorageSvc;
+	@Autowired
+	private MemoryCacheService myMemoryCacheService;
 
 	@Override
 	public void addConceptToStorageQueue(TermConcept theConcept) {
@@ -106,7 +115,11 @@ public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc {
 	@Override
 	public void addConceptLinkToStorageQueue(TermConceptParentChildLink theConceptLink) {
 		Validate.notNull(theConceptLink);
-		myConceptLinksToSaveLater.add(theConceptLink);
+		if (isCompactable(theConceptLink)) {
+			addCompactConceptLinkToSaveLater(theConceptLink);
+		} else {
+			myConceptLinksToSaveLater.add(theConceptLink);
+		}
 	}
 
 	@Override
@@ -165,8 +178,11 @@ public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc {
 
 		int count = Math.min(1000, myDeferredConcepts.size());
 		ourLog.debug("Saving {} deferred concepts...", count);
-		while (codeCount < count && myDeferredConcepts.size() > 0) {
-			TermConcept next = myDeferredConcepts.remove(0);
+		while (codeCount < count) {
+			TermConcept next = myDeferredConcepts.poll();
+			if (next == null) {
+				break;
+			}
 			if (myCodeSystemVersionDao.findById(next.getCodeSystemVersion().getPid()).isPresent()) {
 				try {
 					codeCount += myCodeSystemStorageSvc.saveConcept(next);
@@ -181,39 +197,123 @@ public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc {
 		}
 
 		if (codeCount > 0) {
+			compactSavedConceptLinksToSaveLater();
 			ourLog.info("Saved {} deferred concepts ({} codes remain and {} relationships remain) in {}ms ({} codes/sec)",
-				codeCount, myDeferredConcepts.size(), myConceptLinksToSaveLater.size(), stopwatch.getMillis(), stopwatch.formatThroughput(codeCount, TimeUnit.SECONDS));
+				codeCount, myDeferredConcepts.size(), getConceptLinksToSaveLaterCount(), stopwatch.getMillis(), stopwatch.formatThroughput(codeCount, TimeUnit.SECONDS));
 		}
 
 		if (codeCount == 0) {
-			count = Math.min(1000, myConceptLinksToSaveLater.size());
-			ourLog.info("Saving {} deferred concept relationships...", count);
-			while (relCount < count && myConceptLinksToSaveLater.size() > 0) {
-				TermConceptParentChildLink next = myConceptLinksToSaveLater.remove(0);
-				assert next.getChild() != null;
-				assert next.getParent() != null;
-
-				if ((next.getChild().getId() == null || !myConceptDao.findById(next.getChild().getId()).isPresent())
-					|| (next.getParent().getId() == null || !myConceptDao.findById(next.getParent().getId()).isPresent())) {
-					ourLog.warn("Not inserting link from child {} to parent {} because it appears to have been deleted", next.getParent().getCode(), next.getChild().getCode());
+			compactConceptLinksToSaveLater();
+
+			List<TermConceptLinkQueue.Link> links = myCompactConceptLinksToSaveLater.poll(1000);
+			ourLog.info("Saving {} deferred concept relationships...", links.size());
+
+			// Concepts may have been deleted since the links were queued
+			Set<Long> conceptPids = new HashSet<>();
+			for (TermConceptLinkQueue.Link next : links) {
+				conceptPids.add(next.getParentPid());
+				conceptPids.add(next.getChildPid());
+			}
+			Set<Long> existingConceptPids = new HashSet<>();
+			for (List<Long> nextPids : Lists.partition(new ArrayList<>(conceptPids), 500)) {
+				existingConceptPids.addAll(myConceptDao.findIdsByIds(nextPids));
+			}
+
+			Set<Long> codeSystemVersionPids = new HashSet<>();
+			for (TermConceptLinkQueue.Link next : links) {
+				if (!existingConceptPids.contains(next.getChildPid()) || !existingConceptPids.contains(next.getParentPid())) {
+					ourLog.warn("Not inserting link from child {} to parent {} because it appears to have been deleted", next.getChildPid(), next.getParentPid());
 					continue;
 				}
 
-				saveConceptLink(next);
+				TermConceptParentChildLink link = new TermConceptParentChildLink();
+				link.setParent(myConceptDao.getOne(next.getParentPid()));
+				link.setChild(myConceptDao.getOne(next.getChildPid()));
+				link.setCodeSystem(myCodeSystemVersionDao.getOne(next.getCodeSystemVersionPid()));
+				link.setRelationshipType(next.getRelationshipType());
+				saveConceptLink(link);
+				codeSystemVersionPids.add(next.getCodeSystemVersionPid());
 				relCount++;
 			}
+
+			// Hierarchy closures built before these links existed are now stale
+			for (Long next : codeSystemVersionPids) {
+				myCodeSystemVersionDao.incrementLinksChangeCount(next);
+			}
+			myMemoryCacheService.invalidateKeys(MemoryCacheService.CacheEnum.CONCEPT_CLOSURE, codeSystemVersionPids);
 		}
 
 		if (relCount > 0) {
 			ourLog.info("Saved {} deferred relationships ({} remain) in {}ms ({} entries/sec)",
-				relCount, myConceptLinksToSaveLater.size(), stopwatch.getMillis(), stopwatch.formatThroughput(relCount, TimeUnit.SECONDS));
+				relCount, getConceptLinksToSaveLaterCount(), stopwatch.getMillis(), stopwatch.formatThroughput(relCount, TimeUnit.SECONDS));
 		}
 
-		if ((myDeferredConcepts.size() + myConceptLinksToSaveLater.size()) == 0) {
+		if (myDeferredConcepts.isEmpty() && !isConceptLinksToSaveLater()) {
 			ourLog.info("All deferred concepts and relationships have now been synchronized to the database");
 		}
 	}
 
+	/**
+	 * Links are queued in the same order as the concepts they point to, so after a batch of
+	 * concepts has been saved, the links at the head of the queue can usually be reduced to
+	 * PIDs. Doing this as we go means the queued entities (and the rest of the uploaded concept
+	 * graph which they reference) are released while the concepts are still draining, instead
+	 * of all staying on the heap until the last concept is saved.
+	 */
+	private void compactSavedConceptLinksToSaveLater() {
+		int count = 0;
+		for (TermConceptParentChildLink next; (next = myConceptLinksToSaveLater.peek()) != null && isCompactable(next); ) {
+			if (myConceptLinksToSaveLater.remove(next)) {
+				addCompactConceptLinkToSaveLater(next);
+				count++;
+			}
+		}
+		if (count > 0) {
+			ourLog.debug("Compacted {} deferred concept relationships, {} are now waiting to be saved", count, myCompactConceptLinksToSaveLater.size());
+		}
+	}
+
+	/**
+	 * Once all of the deferred concepts have been saved, both ends of each remaining queued
+	 * link should have a PID. Anything that still doesn't is dropped.
+	 */
+	private void compactConceptLinksToSaveLater() {
+		int count = 0;
+		for (TermConceptParentChildLink next; (next = myConceptLinksToSaveLater.poll()) != null; ) {
+			assert next.getChild() != null;
+			assert next.getParent() != null;
+
+			if (next.getChild().getId() == null || next.getParent().getId() == null) {
+				ourLog.warn("Not inserting link from child {} to parent {} because it appears to have been deleted", next.getChild().getCode(), next.getParent().getCode());
+				continue;
+			}
+			if (next.getCodeSystem() == null || next.getCodeSystem().getPid() == null) {
+				ourLog.warn("Not inserting link from child {} to parent {} because it has no code system version", next.getChild().getCode(), next.getParent().getCode());
+				continue;
+			}
+
+			addCompactConceptLinkToSaveLater(next);
+			count++;
+		}
+		if (count > 0) {
+			ourLog.info("Compacted {} deferred concept relationships, {} are now waiting to be saved", count, myCompactConceptLinksToSaveLater.size());
+		}
+	}
+
+	private boolean isCompactable(TermConceptParentChildLink theConceptLink) {
+		return theConceptLink.getChild() != null && theConceptLink.getChild().getId() != null &&
+			theConceptLink.getParent() != null && theConceptLink.getParent().getId() != null &&
+			theConceptLink.getCodeSystem() != null && theConceptLink.getCodeSystem().getPid() != null;
+	}
+
+	private void addCompactConceptLinkToSaveLater(TermConceptParentChildLink theConceptLink) {
+		myCompactConceptLinksToSaveLater.add(theConceptLink.getParent().getId(), theConceptLink.getChild().getId(), theConceptLink.getCodeSystem().getPid(), theConceptLink.getRelationshipType());
+	}
+
+	private int getConceptLinksToSaveLaterCount() {
+		return myConceptLinksToSaveLater.size() + myCompactConceptLinksToSaveLater.size();
+	}
+
 	private void processDeferredValueSets() {
 		int count = Math.min(myDeferredValueSets.size(), 200);
 		for (ValueSet nextValueSet : new ArrayList<>(myDeferredValueSets.subList(0, count))) {
@@ -235,6 +335,7 @@ public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc {
 		myDeferredConcepts.clear();
 		myDeferredCodeSystemsDeletions.clear();
 		myConceptLinksToSaveLater.clear();
+		myCompactConceptLinksToSaveLater.clear();
 		myDeferredCodeSystemVersionsDeletions.clear();
 	}
 
@@ -446,7 +547,7 @@ public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc {
 	}
 
 	private boolean isConceptLinksToSaveLater() {
-		return !myConceptLinksToSaveLater.isEmpty();
+		return !myConceptLinksToSaveLater.isEmpty() || !myCompactConceptLinksToSaveLater.isEmpty();
 	}
 
 	private boolean isDeferredValueSets() {
@@ -488,6 +589,21 @@ public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc {
 		myCodeSystemVersionDao = theCodeSystemVersionDao;
 	}
 
+	@VisibleForTesting
+	void setConceptParentChildLinkDaoForUnitTest(ITermConceptParentChildLinkDao theConceptParentChildLinkDao) {
+		myConceptParentChildLinkDao = theConceptParentChildLinkDao;
+	}
+
+	@VisibleForTesting
+	void setMemoryCacheServiceForUnitTest(MemoryCacheService theMemoryCacheService) {
+		myMemoryCacheService = theMemoryCacheService;
+	}
+
+	@VisibleForTesting
+	int getCompactConceptLinksToSaveLaterCountForUnitTest() {
+		return myCompactConceptLinksToSaveLater.size();
+	}
+
 	@Override
 	@VisibleForTesting
 	public void logQueueForUnitTest() {
@@ -0,0 +1,283 @@
+package ca.uhn.fhir.jpa.term;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.term.api.ITermLoaderSvc;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.util.StopWatch;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.csv.QuoteMode;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Feeds the records of a series of terminology files to their handlers.
+ * <p>
+ * Handlers are always invoked on the calling thread, one file at a time and in the order that
+ * the files were added, since later handlers depend on the state built up by earlier ones.
+ * Reading and CSV parsing of the next few files happens concurrently on background threads,
+ * so that a handler never has to wait for its file to be parsed. Parsed records are handed
+ * over in batches through a bounded queue per file, which caps the amount of memory used by
+ * records that have been read ahead.
+ * </p>
+ * <p>
+ * Only reading is pipelined. The handlers still build up the complete code system version in
+ * memory, and it is stored by {@link ca.uhn.fhir.jpa.term.api.ITermCodeSystemStorageSvc} once
+ * all of the files have been handled.
+ * </p>
+ */
+class TermLoaderFilePipeline implements AutoCloseable {
+	static final int DEFAULT_READ_AHEAD_FILES = 3;
+	private static final Logger ourLog = LoggerFactory.getLogger(TermLoaderFilePipeline.class);
+	private static final int BATCH_SIZE = 500;
+	private static final int QUEUE_CAPACITY_BATCHES = 20;
+	private static final List<CSVRecord> END_OF_FILE = Collections.emptyList();
+
+	private final LoadedFileDescriptors myDescriptors;
+	private final int myReadAheadFiles;
+	private final List<Step> mySteps = new ArrayList<>();
+	private ThreadPoolTaskExecutor myExecutor;
+
+	TermLoaderFilePipeline(LoadedFileDescriptors theDescriptors) {
+		this(theDescriptors, DEFAULT_READ_AHEAD_FILES);
+	}
+
+	TermLoaderFilePipeline(LoadedFileDescriptors theDescriptors, int theReadAheadFiles) {
+		Validate.isTrue(theReadAheadFiles > 0, "theReadAheadFiles must be greater than 0");
+		myDescriptors = theDescriptors;
+		myReadAheadFiles = theReadAheadFiles;
+	}
+
+	/**
+	 * Adds a file which must be present
+	 *
+	 * @param theHandler Supplies the handler for this file. It is invoked when the pipeline reaches
+	 *                   this file, after all previously added files have been handled.
+	 */
+	TermLoaderFilePipeline add(String theFileNamePart, Supplier<IRecordHandler> theHandler, char theDelimiter, QuoteMode theQuoteMode, boolean theIsPartialFilename) {
+		return add(theFileNamePart, theHandler, theDelimiter, theQuoteMode, theIsPartialFilename, true);
+	}
+
+	/**
+	 * Adds a file which is skipped if it is not present
+	 *
+	 * @param theHandler Supplies the handler for this file. It is invoked when the pipeline reaches
+	 *                   this file, after all previously added files have been handled.
+	 */
+	TermLoaderFilePipeline addOptional(String theFileNamePart, Supplier<IRecordHandler> theHandler, char theDelimiter, QuoteMode theQuoteMode, boolean theIsPartialFilename) {
+		return add(theFileNamePart, theHandler, theDelimiter, theQuoteMode, theIsPartialFilename, false);
+	}
+
+	private TermLoaderFilePipeline add(String theFileNamePart, Supplier<IRecordHandler> theHandler, char theDelimiter, QuoteMode theQuoteMode, boolean theIsPartialFilename, boolean theRequireMatch) {
+		mySteps.add(new Step(theFileNamePart, theHandler, theDelimiter, theQuoteMode, theIsPartialFilename, theRequireMatch));
+		return this;
+	}
+
+	/**
+	 * Processes all of the files which have been added
+	 */
+	void process() {
+		List<FileTask> tasks = new ArrayList<>();
+		for (Step nextStep : mySteps) {
+			List<ITermLoaderSvc.FileDescriptor> matches = nextStep.findMatches(myDescriptors);
+			if (matches.isEmpty() && nextStep.myRequireMatch) {
+				throw new InvalidRequestException("Did not find file matching " + nextStep.myFileNamePart);
+			}
+			for (ITermLoaderSvc.FileDescriptor nextMatch : matches) {
+				tasks.add(new FileTask(nextStep, nextMatch));
+			}
+		}
+
+		StopWatch sw = new StopWatch();
+		int started = 0;
+		Step previousStep = null;
+		IRecordHandler handler = null;
+		for (int i = 0; i < tasks.size(); i++) {
+			for (; started < tasks.size() && started <= i + myReadAheadFiles; started++) {
+				getExecutor().execute(tasks.get(started));
+			}
+
+			FileTask nextTask = tasks.get(i);
+			if (nextTask.myStep != previousStep) {
+				handler = nextTask.myStep.myHandlerSupplier.get();
+				previousStep = nextTask.myStep;
+			}
+			nextTask.handleRecords(handler);
+		}
+
+		ourLog.info("Processed {} terminology files in {}", tasks.size(), sw);
+	}
+
+	private synchronized ThreadPoolTaskExecutor getExecutor() {
+		if (myExecutor == null) {
+			ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+			executor.setThreadNamePrefix("term_loader_");
+			// One more than the read ahead count, since the file being handled is also being read
+			executor.setCorePoolSize(myReadAheadFiles + 1);
+			executor.setMaxPoolSize(myReadAheadFiles + 1);
+			executor.initialize();
+			myExecutor = executor;
+		}
+		return myExecutor;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (myExecutor != null) {
+			// Interrupts any readers that are still blocked waiting for queue space
+			myExecutor.getThreadPoolExecutor().shutdownNow();
+			myExecutor = null;
+		}
+	}
+
+	private static class Step {
+		private final String myFileNamePart;
+		private final Supplier<IRecordHandler> myHandlerSupplier;
+		private final char myDelimiter;
+		private final QuoteMode myQuoteMode;
+		private final boolean myIsPartialFilename;
+		private final boolean myRequireMatch;
+
+		private Step(String theFileNamePart, Supplier<IRecordHandler> theHandlerSupplier, char theDelimiter, QuoteMode theQuoteMode, boolean theIsPartialFilename, boolean theRequireMatch) {
+			myFileNamePart = theFileNamePart;
+			myHandlerSupplier = theHandlerSupplier;
+			myDelimiter = theDelimiter;
+			myQuoteMode = theQuoteMode;
+			myIsPartialFilename = theIsPartialFilename;
+			myRequireMatch = theRequireMatch;
+		}
+
+		private List<ITermLoaderSvc.FileDescriptor> findMatches(LoadedFileDescriptors theDescriptors) {
+			List<ITermLoaderSvc.FileDescriptor> retVal = new ArrayList<>();
+			for (ITermLoaderSvc.FileDescriptor next : theDescriptors.getUncompressedFileDescriptors()) {
+				if (TermLoaderSvcImpl.filenameMatches(next.getFilename(), myFileNamePart, myIsPartialFilename)) {
+					retVal.add(next);
+				}
+			}
+			return retVal;
+		}
+	}
+
+	/**
+	 * Reads one file on a background thread, and hands its records to the handler on the
+	 * calling thread
+	 */
+	private static class FileTask implements Runnable {
+		private final Step myStep;
+		private final ITermLoaderSvc.FileDescriptor myFile;
+		private final BlockingQueue<List<CSVRecord>> myQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY_BATCHES);
+		private volatile Exception myFailure;
+		/**
+		 * Only used by the reader thread
+		 */
+		private List<CSVRecord> myBatch = new ArrayList<>(BATCH_SIZE);
+
+		private FileTask(Step theStep, ITermLoaderSvc.FileDescriptor theFile) {
+			myStep = theStep;
+			myFile = theFile;
+		}
+
+		@Override
+		public void run() {
+			try {
+				TermLoaderSvcImpl.iterateOverFile(myFile, this::addToBatch, myStep.myDelimiter, myStep.myQuoteMode);
+				if (!myBatch.isEmpty()) {
+					put(myBatch);
+				}
+			} catch (ReaderInterruptedException e) {
+				// The pipeline has been closed, so nobody is waiting for these records
+				return;
+			} catch (Exception e) {
+				myFailure = e;
+			}
+
+			try {
+				myQueue.put(END_OF_FILE);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private void addToBatch(CSVRecord theRecord) {
+			myBatch.add(theRecord);
+			if (myBatch.size() >= BATCH_SIZE) {
+				put(myBatch);
+				myBatch = new ArrayList<>(BATCH_SIZE);
+			}
+		}
+
+		private void put(List<CSVRecord> theBatch) {
+			try {
+				myQueue.put(theBatch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ReaderInterruptedException();
+			}
+		}
+
+		private void handleRecords(IRecordHandler theHandler) {
+			String filename = myFile.getFilename();
+			StopWatch sw = new StopWatch();
+
+			int count = 0;
+			try {
+				while (true) {
+					List<CSVRecord> nextBatch = myQueue.take();
+					if (nextBatch == END_OF_FILE) {
+						break;
+					}
+					for (CSVRecord nextRecord : nextBatch) {
+						theHandler.accept(nextRecord);
+					}
+					count += nextBatch.size();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InternalErrorException("Interrupted while processing file " + filename, e);
+			}
+
+			if (myFailure != null) {
+				throw new InternalErrorException("Failed to read file " + filename + ": " + myFailure.getMessage(), myFailure);
+			}
+
+			ourLog.info("Handled {} records from {} in {}", count, filename, sw);
+		}
+	}
+
+	/**
+	 * Thrown on a reader thread when the pipeline is closed while the reader is waiting
+	 * for queue space
+	 */
+	private static class ReaderInterruptedException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+}
@@ -508,81 +508,54 @@ public class TermLoaderSvcImpl implements ITermLoaderSvc {
 			propertyNamesToTypes.put(externalCopyRightNoticeCode, externalCopyRightNoticeType);
 		}
 
-		IRecordHandler handler;
-
-		// Part
-		handler = new LoincPartHandler(codeSystemVersion, code2concept);
-		iterateOverZipFile(theDescriptors, theUploadProperties.getProperty(LOINC_PART_FILE.getCode(), LOINC_PART_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-		Map<PartTypeAndPartName, String> partTypeAndPartNameToPartNumber = ((LoincPartHandler) handler).getPartTypeAndPartNameToPartNumber();
-
-		// LOINC codes
-		handler = new LoincHandler(codeSystemVersion, code2concept, propertyNamesToTypes, partTypeAndPartNameToPartNumber);
-		iterateOverZipFile(theDescriptors, theUploadProperties.getProperty(LOINC_FILE.getCode(), LOINC_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// LOINC hierarchy
-		handler = new LoincHierarchyHandler(codeSystemVersion, code2concept);
-		iterateOverZipFile(theDescriptors, theUploadProperties.getProperty(LOINC_HIERARCHY_FILE.getCode(), LOINC_HIERARCHY_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// Answer lists (ValueSets of potential answers/values for LOINC "questions")
-		handler = new LoincAnswerListHandler(codeSystemVersion, code2concept, valueSets, conceptMaps, theUploadProperties);
-		iterateOverZipFile(theDescriptors, theUploadProperties.getProperty(LOINC_ANSWERLIST_FILE.getCode(), LOINC_ANSWERLIST_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// Answer list links (connects LOINC observation codes to answer list codes)
-		handler = new LoincAnswerListLinkHandler(code2concept);
-		iterateOverZipFile(theDescriptors, theUploadProperties.getProperty(LOINC_ANSWERLIST_LINK_FILE.getCode(), LOINC_ANSWERLIST_LINK_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// RSNA playbook
-		// Note that this should come before the "Part Related Code Mapping"
-		// file because there are some duplicate mappings between these
-		// two files, and the RSNA Playbook file has more metadata
-		handler = new LoincRsnaPlaybookHandler(code2concept, valueSets, conceptMaps, theUploadProperties);
-		iterateOverZipFile(theDescriptors, theUploadProperties.getProperty(LOINC_RSNA_PLAYBOOK_FILE.getCode(), LOINC_RSNA_PLAYBOOK_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// Part related code mapping
-		handler = new LoincPartRelatedCodeMappingHandler(code2concept, valueSets, conceptMaps, theUploadProperties);
-		iterateOverZipFile(theDescriptors, theUploadProperties.getProperty(LOINC_PART_RELATED_CODE_MAPPING_FILE.getCode(), LOINC_PART_RELATED_CODE_MAPPING_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// Document ontology
-		handler = new LoincDocumentOntologyHandler(code2concept, propertyNamesToTypes, valueSets, conceptMaps, theUploadProperties);
-		iterateOverZipFile(theDescriptors, theUploadProperties.getProperty(LOINC_DOCUMENT_ONTOLOGY_FILE.getCode(), LOINC_DOCUMENT_ONTOLOGY_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// Top 2000 codes - US
-		handler = new LoincTop2000LabResultsUsHandler(code2concept, valueSets, conceptMaps, theUploadProperties);
-		iterateOverZipFileOptional(theDescriptors, theUploadProperties.getProperty(LOINC_TOP2000_COMMON_LAB_RESULTS_US_FILE.getCode(), LOINC_TOP2000_COMMON_LAB_RESULTS_US_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// Top 2000 codes - SI
-		handler = new LoincTop2000LabResultsSiHandler(code2concept, valueSets, conceptMaps, theUploadProperties);
-		iterateOverZipFileOptional(theDescriptors, theUploadProperties.getProperty(LOINC_TOP2000_COMMON_LAB_RESULTS_SI_FILE.getCode(), LOINC_TOP2000_COMMON_LAB_RESULTS_SI_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// Universal lab order ValueSet
-		handler = new LoincUniversalOrderSetHandler(code2concept, valueSets, conceptMaps, theUploadProperties);
-		iterateOverZipFile(theDescriptors, theUploadProperties.getProperty(LOINC_UNIVERSAL_LAB_ORDER_VALUESET_FILE.getCode(), LOINC_UNIVERSAL_LAB_ORDER_VALUESET_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// IEEE medical device codes
-		handler = new LoincIeeeMedicalDeviceCodeHandler(code2concept, valueSets, conceptMaps, theUploadProperties);
-		iterateOverZipFile(theDescriptors, theUploadProperties.getProperty(LOINC_IEEE_MEDICAL_DEVICE_CODE_MAPPING_TABLE_FILE.getCode(), LOINC_IEEE_MEDICAL_DEVICE_CODE_MAPPING_TABLE_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// Imaging document codes
-		handler = new LoincImagingDocumentCodeHandler(code2concept, valueSets, conceptMaps, theUploadProperties);
-		iterateOverZipFile(theDescriptors, theUploadProperties.getProperty(LOINC_IMAGING_DOCUMENT_CODES_FILE.getCode(), LOINC_IMAGING_DOCUMENT_CODES_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// Group
-		handler = new LoincGroupFileHandler(code2concept, valueSets, conceptMaps, theUploadProperties);
-		iterateOverZipFile(theDescriptors, theUploadProperties.getProperty(LOINC_GROUP_FILE.getCode(), LOINC_GROUP_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// Group terms
-		handler = new LoincGroupTermsFileHandler(code2concept, valueSets, conceptMaps, theUploadProperties);
-		iterateOverZipFile(theDescriptors, theUploadProperties.getProperty(LOINC_GROUP_TERMS_FILE.getCode(), LOINC_GROUP_TERMS_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// Parent group
-		handler = new LoincParentGroupFileHandler(code2concept, valueSets, conceptMaps, theUploadProperties);
-		iterateOverZipFile(theDescriptors, theUploadProperties.getProperty(LOINC_PARENT_GROUP_FILE.getCode(), LOINC_PARENT_GROUP_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-
-		// Part link
-		handler = new LoincPartLinkHandler(codeSystemVersion, code2concept, propertyNamesToTypes);
-		iterateOverZipFileOptional(theDescriptors, theUploadProperties.getProperty(LOINC_PART_LINK_FILE.getCode(), LOINC_PART_LINK_FILE_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-		iterateOverZipFileOptional(theDescriptors, theUploadProperties.getProperty(LOINC_PART_LINK_FILE_PRIMARY.getCode(), LOINC_PART_LINK_FILE_PRIMARY_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
-		iterateOverZipFileOptional(theDescriptors, theUploadProperties.getProperty(LOINC_PART_LINK_FILE_SUPPLEMENTARY.getCode(), LOINC_PART_LINK_FILE_SUPPLEMENTARY_DEFAULT.getCode()), handler, ',', QuoteMode.NON_NUMERIC, false);
+		// Handlers are created as the pipeline reaches their file, since several of them depend on
+		// the concepts, ValueSets and ConceptMaps created by the handlers before them
+		LoincPartHandler partHandler = new LoincPartHandler(codeSystemVersion, code2concept);
+		LoincPartLinkHandler partLinkHandler = new LoincPartLinkHandler(codeSystemVersion, code2concept, propertyNamesToTypes);
+
+		try (TermLoaderFilePipeline pipeline = new TermLoaderFilePipeline(theDescriptors)) {
+			pipeline
+				// Part
+				.add(theUploadProperties.getProperty(LOINC_PART_FILE.getCode(), LOINC_PART_FILE_DEFAULT.getCode()), () -> partHandler, ',', QuoteMode.NON_NUMERIC, false)
+				// LOINC codes
+				.add(theUploadProperties.getProperty(LOINC_FILE.getCode(), LOINC_FILE_DEFAULT.getCode()), () -> new LoincHandler(codeSystemVersion, code2concept, propertyNamesToTypes, partHandler.getPartTypeAndPartNameToPartNumber()), ',', QuoteMode.NON_NUMERIC, false)
+				// LOINC hierarchy
+				.add(theUploadProperties.getProperty(LOINC_HIERARCHY_FILE.getCode(), LOINC_HIERARCHY_FILE_DEFAULT.getCode()), () -> new LoincHierarchyHandler(codeSystemVersion, code2concept), ',', QuoteMode.NON_NUMERIC, false)
+				// Answer lists (ValueSets of potential answers/values for LOINC "questions")
+				.add(theUploadProperties.getProperty(LOINC_ANSWERLIST_FILE.getCode(), LOINC_ANSWERLIST_FILE_DEFAULT.getCode()), () -> new LoincAnswerListHandler(codeSystemVersion, code2concept, valueSets, conceptMaps, theUploadProperties), ',', QuoteMode.NON_NUMERIC, false)
+				// Answer list links (connects LOINC observation codes to answer list codes)
+				.add(theUploadProperties.getProperty(LOINC_ANSWERLIST_LINK_FILE.getCode(), LOINC_ANSWERLIST_LINK_FILE_DEFAULT.getCode()), () -> new LoincAnswerListLinkHandler(code2concept), ',', QuoteMode.NON_NUMERIC, false)
+				// RSNA playbook
+				// Note that this should come before the "Part Related Code Mapping"
+				// file because there are some duplicate mappings between these
+				// two files, and the RSNA Playbook file has more metadata
+				.add(theUploadProperties.getProperty(LOINC_RSNA_PLAYBOOK_FILE.getCode(), LOINC_RSNA_PLAYBOOK_FILE_DEFAULT.getCode()), () -> new LoincRsnaPlaybookHandler(code2concept, valueSets, conceptMaps, theUploadProperties), ',', QuoteMode.NON_NUMERIC, false)
+				// Part related code mapping
+				.add(theUploadProperties.getProperty(LOINC_PART_RELATED_CODE_MAPPING_FILE.getCode(), LOINC_PART_RELATED_CODE_MAPPING_FILE_DEFAULT.getCode()), () -> new LoincPartRelatedCodeMappingHandler(code2concept, valueSets, conceptMaps, theUploadProperties), ',', QuoteMode.NON_NUMERIC, false)
+				// Document ontology
+				.add(theUploadProperties.getProperty(LOINC_DOCUMENT_ONTOLOGY_FILE.getCode(), LOINC_DOCUMENT_ONTOLOGY_FILE_DEFAULT.getCode()), () -> new LoincDocumentOntologyHandler(code2concept, propertyNamesToTypes, valueSets, conceptMaps, theUploadProperties), ',', QuoteMode.NON_NUMERIC, false)
+				// Top 2000 codes - US
+				.addOptional(theUploadProperties.getProperty(LOINC_TOP2000_COMMON_LAB_RESULTS_US_FILE.getCode(), LOINC_TOP2000_COMMON_LAB_RESULTS_US_FILE_DEFAULT.getCode()), () -> new LoincTop2000LabResultsUsHandler(code2concept, valueSets, conceptMaps, theUploadProperties), ',', QuoteMode.NON_NUMERIC, false)
+				// Top 2000 codes - SI
+				.addOptional(theUploadProperties.getProperty(LOINC_TOP2000_COMMON_LAB_RESULTS_SI_FILE.getCode(), LOINC_TOP2000_COMMON_LAB_RESULTS_SI_FILE_DEFAULT.getCode()), () -> new LoincTop2000LabResultsSiHandler(code2concept, valueSets, conceptMaps, theUploadProperties), ',', QuoteMode.NON_NUMERIC, false)
+				// Universal lab order ValueSet
+				.add(theUploadProperties.getProperty(LOINC_UNIVERSAL_LAB_ORDER_VALUESET_FILE.getCode(), LOINC_UNIVERSAL_LAB_ORDER_VALUESET_FILE_DEFAULT.getCode()), () -> new LoincUniversalOrderSetHandler(code2concept, valueSets, conceptMaps, theUploadProperties), ',', QuoteMode.NON_NUMERIC, false)
+				// IEEE medical device codes
+				.add(theUploadProperties.getProperty(LOINC_IEEE_MEDICAL_DEVICE_CODE_MAPPING_TABLE_FILE.getCode(), LOINC_IEEE_MEDICAL_DEVICE_CODE_MAPPING_TABLE_FILE_DEFAULT.getCode()), () -> new LoincIeeeMedicalDeviceCodeHandler(code2concept, valueSets, conceptMaps, theUploadProperties), ',', QuoteMode.NON_NUMERIC, false)
+				// Imaging document codes
+				.add(theUploadProperties.getProperty(LOINC_IMAGING_DOCUMENT_CODES_FILE.getCode(), LOINC_IMAGING_DOCUMENT_CODES_FILE_DEFAULT.getCode()), () -> new LoincImagingDocumentCodeHandler(code2concept, valueSets, conceptMaps, theUploadProperties), ',', QuoteMode.NON_NUMERIC, false)
+				// Group
+				.add(theUploadProperties.getProperty(LOINC_GROUP_FILE.getCode(), LOINC_GROUP_FILE_DEFAULT.getCode()), () -> new LoincGroupFileHandler(code2concept, valueSets, conceptMaps, theUploadProperties), ',', QuoteMode.NON_NUMERIC, false)
+				// Group terms
+				.add(theUploadProperties.getProperty(LOINC_GROUP_TERMS_FILE.getCode(), LOINC_GROUP_TERMS_FILE_DEFAULT.getCode()), () -> new LoincGroupTermsFileHandler(code2concept, valueSets, conceptMaps, theUploadProperties), ',', QuoteMode.NON_NUMERIC, false)
+				// Parent group
+				.add(theUploadProperties.getProperty(LOINC_PARENT_GROUP_FILE.getCode(), LOINC_PARENT_GROUP_FILE_DEFAULT.getCode()), () -> new LoincParentGroupFileHandler(code2concept, valueSets, conceptMaps, theUploadProperties), ',', QuoteMode.NON_NUMERIC, false)
+				// Part link
+				.addOptional(theUploadProperties.getProperty(LOINC_PART_LINK_FILE.getCode(), LOINC_PART_LINK_FILE_DEFAULT.getCode()), () -> partLinkHandler, ',', QuoteMode.NON_NUMERIC, false)
+				.addOptional(theUploadProperties.getProperty(LOINC_PART_LINK_FILE_PRIMARY.getCode(), LOINC_PART_LINK_FILE_PRIMARY_DEFAULT.getCode()), () -> partLinkHandler, ',', QuoteMode.NON_NUMERIC, false)
+				.addOptional(theUploadProperties.getProperty(LOINC_PART_LINK_FILE_SUPPLEMENTARY.getCode(), LOINC_PART_LINK_FILE_SUPPLEMENTARY_DEFAULT.getCode()), () -> partLinkHandler, ',', QuoteMode.NON_NUMERIC, false)
+				.process();
+		}
 
 		if (theCloseFiles) {
 			IOUtils.closeQuietly(theDescriptors);
@@ -637,20 +610,22 @@ public class TermLoaderSvcImpl implements ITermLoaderSvc {
 		final Map<String, TermConcept> id2concept = new HashMap<>();
 		final Map<String, TermConcept> code2concept = new HashMap<>();
 		final Set<String> validConceptIds = new HashSet<>();
-
-		IRecordHandler handler = new SctHandlerConcept(validConceptIds);
-		iterateOverZipFile(theDescriptors, SCT_FILE_CONCEPT, handler, '\t', null, true);
-
-		ourLog.info("Have {} valid concept IDs", validConceptIds.size());
-
-		handler = new SctHandlerDescription(validConceptIds, code2concept, id2concept, codeSystemVersion);
-		iterateOverZipFile(theDescriptors, SCT_FILE_DESCRIPTION, handler, '\t', null, true);
-
-		ourLog.info("Got {} concepts, cloning map", code2concept.size());
-		final HashMap<String, TermConcept> rootConcepts = new HashMap<>(code2concept);
-
-		handler = new SctHandlerRelationship(codeSystemVersion, rootConcepts, code2concept);
-		iterateOverZipFile(theDescriptors, SCT_FILE_RELATIONSHIP, handler, '\t', null, true);
+		final HashMap<String, TermConcept> rootConcepts = new HashMap<>();
+
+		try (TermLoaderFilePipeline pipeline = new TermLoaderFilePipeline(theDescriptors)) {
+			pipeline
+				.add(SCT_FILE_CONCEPT, () -> new SctHandlerConcept(validConceptIds), '\t', null, true)
+				.add(SCT_FILE_DESCRIPTION, () -> {
+					ourLog.info("Have {} valid concept IDs", validConceptIds.size());
+					return new SctHandlerDescription(validConceptIds, code2concept, id2concept, codeSystemVersion);
+				}, '\t', null, true)
+				.add(SCT_FILE_RELATIONSHIP, () -> {
+					ourLog.info("Got {} concepts, cloning map", code2concept.size());
+					rootConcepts.putAll(code2concept);
+					return new SctHandlerRelationship(codeSystemVersion, rootConcepts, code2concept);
+				}, '\t', null, true)
+				.process();
+		}
 
 		IOUtils.closeQuietly(theDescriptors);
 
@@ -708,56 +683,64 @@ public class TermLoaderSvcImpl implements ITermLoaderSvc {
 		boolean foundMatch = false;
 		for (FileDescriptor nextZipBytes : theDescriptors.getUncompressedFileDescriptors()) {
 			String nextFilename = nextZipBytes.getFilename();
-			boolean matches;
-			if (theIsPartialFilename) {
-				matches = nextFilename.contains(theFileNamePart);
-			} else {
-				matches = nextFilename.endsWith("/" + theFileNamePart) || nextFilename.equals(theFileNamePart);
+			if (filenameMatches(nextFilename, theFileNamePart, theIsPartialFilename)) {
+				foundMatch = true;
+				iterateOverFile(nextZipBytes, theHandler, theDelimiter, theQuoteMode);
 			}
 
-			if (matches) {
-				ourLog.info("Processing file {}", nextFilename);
-				foundMatch = true;
+		}
 
-				Reader reader;
-				CSVParser parsed;
-				try {
-					reader = new InputStreamReader(nextZipBytes.getInputStream(), Charsets.UTF_8);
+		if (!foundMatch && theRequireMatch) {
+			throw new InvalidRequestException("Did not find file matching " + theFileNamePart);
+		}
 
-					parsed = newCsvRecords(theDelimiter, theQuoteMode, reader);
-					Iterator<CSVRecord> iter = parsed.iterator();
-					ourLog.debug("Header map: {}", parsed.getHeaderMap());
-
-					int count = 0;
-					int nextLoggedCount = 0;
-					while (iter.hasNext()) {
-						CSVRecord nextRecord = iter.next();
-						if (nextRecord.isConsistent() == false) {
-							continue;
-						}
-						theHandler.accept(nextRecord);
-						count++;
-						if (count >= nextLoggedCount) {
-							ourLog.info(" * Processed {} records in {}", count, nextFilename);
-							nextLoggedCount += LOG_INCREMENT;
-						}
-					}
+	}
 
-				} catch (IOException e) {
-					throw new InternalErrorException(e);
+	/**
+	 * Passes each consistent record in a single file to the handler
+	 */
+	static void iterateOverFile(FileDescriptor theFile, IRecordHandler theHandler, char theDelimiter, QuoteMode theQuoteMode) {
+		String filename = theFile.getFilename();
+		ourLog.info("Processing file {}", filename);
+
+		Reader reader;
+		CSVParser parsed;
+		try {
+			reader = new InputStreamReader(theFile.getInputStream(), Charsets.UTF_8);
+
+			parsed = newCsvRecords(theDelimiter, theQuoteMode, reader);
+			Iterator<CSVRecord> iter = parsed.iterator();
+			ourLog.debug("Header map: {}", parsed.getHeaderMap());
+
+			int count = 0;
+			int nextLoggedCount = 0;
+			while (iter.hasNext()) {
+				CSVRecord nextRecord = iter.next();
+				if (nextRecord.isConsistent() == false) {
+					continue;
+				}
+				theHandler.accept(nextRecord);
+				count++;
+				if (count >= nextLoggedCount) {
+					ourLog.info(" * Processed {} records in {}", count, filename);
+					nextLoggedCount += LOG_INCREMENT;
 				}
 			}
 
+		} catch (IOException e) {
+			throw new InternalErrorException(e);
 		}
+	}
 
-		if (!foundMatch && theRequireMatch) {
-			throw new InvalidRequestException("Did not find file matching " + theFileNamePart);
+	static boolean filenameMatches(String theFilename, String theFileNamePart, boolean theIsPartialFilename) {
+		if (theIsPartialFilename) {
+			return theFilename.contains(theFileNamePart);
 		}
-
+		return theFilename.endsWith("/" + theFileNamePart) || theFilename.equals(theFileNamePart);
 	}
 
 	@Nonnull
-	private static CSVParser newCsvRecords(char theDelimiter, QuoteMode theQuoteMode, Reader theReader) throws IOException {
+	static CSVParser newCsvRecords(char theDelimiter, QuoteMode theQuoteMode, Reader theReader) throws IOException {
 		CSVParser parsed;
 		CSVFormat format = CSVFormat
 			.newFormat(theDelimiter)
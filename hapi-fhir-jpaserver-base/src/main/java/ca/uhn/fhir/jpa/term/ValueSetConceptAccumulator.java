@@ -28,9 +28,11 @@ import ca.uhn.fhir.jpa.entity.TermValueSet;
 import ca.uhn.fhir.jpa.entity.TermValueSetConcept;
 import ca.uhn.fhir.jpa.entity.TermValueSetConceptDesignation;
 import ca.uhn.fhir.util.ValidateUtil;
+import org.apache.commons.lang3.time.DateUtils;
 
 import javax.annotation.Nonnull;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -38,7 +40,22 @@ import static org.apache.commons.lang3.StringUtils.isAnyBlank;
 import static org.apache.commons.lang3.StringUtils.isNoneBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+/**
+ * Writes the concepts of a ValueSet expansion to the terminology tables.
+ * <p>
+ * The concept and designation totals are only tracked on the {@link TermValueSet} passed
+ * in to the constructor, and are not saved by this class. Saving the ValueSet once per row
+ * would interleave an update with every insert and defeat the JDBC batching that
+ * {@link ca.uhn.fhir.jpa.config.HapiFhirLocalContainerEntityManagerFactoryBean} enables by default,
+ * so the caller is expected to save the {@link TermValueSet} when the expansion is complete.
+ * </p>
+ * <p>
+ * While concepts are being saved, the expansion status time of the ValueSet is updated every
+ * {@link #STATUS_TIME_UPDATE_INTERVAL_MILLIS}, to show that the pre-expansion claim is still alive.
+ * </p>
+ */
 public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
+	static final long STATUS_TIME_UPDATE_INTERVAL_MILLIS = DateUtils.MILLIS_PER_MINUTE;
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ValueSetConceptAccumulator.class);
 
 	private TermValueSet myTermValueSet;
@@ -48,6 +65,7 @@ public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
 	private int myConceptsSaved;
 	private int myDesignationsSaved;
 	private int myConceptsExcluded;
+	private long myStatusTimeUpdated;
 
 	public ValueSetConceptAccumulator(@Nonnull TermValueSet theTermValueSet, @Nonnull ITermValueSetDao theValueSetDao, @Nonnull ITermValueSetConceptDao theValueSetConceptDao, @Nonnull ITermValueSetConceptDesignationDao theValueSetConceptDesignationDao) {
 		myTermValueSet = theTermValueSet;
@@ -57,6 +75,7 @@ public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
 		myConceptsSaved = 0;
 		myDesignationsSaved = 0;
 		myConceptsExcluded = 0;
+		myStatusTimeUpdated = System.currentTimeMillis();
 	}
 
 	@Override
@@ -107,7 +126,6 @@ public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
 			}
 			myValueSetConceptDao.deleteById(concept.getId());
 			myTermValueSet.decrementTotalConcepts();
-			myValueSetDao.save(myTermValueSet);
 			ourLog.debug("Done excluding [{}|{}] from ValueSet[{}]", concept.getSystem(), concept.getCode(), myTermValueSet.getUrl());
 
 			if (++myConceptsExcluded % 250 == 0) {
@@ -140,15 +158,24 @@ public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
 		concept.setSourceConceptDirectParentPids(theSourceConceptDirectParentPids);
 
 		myValueSetConceptDao.save(concept);
-		myValueSetDao.save(myTermValueSet.incrementTotalConcepts());
+		myTermValueSet.incrementTotalConcepts();
 
 		if (++myConceptsSaved % 250 == 0) {
 			ourLog.info("Have pre-expanded {} concepts in ValueSet[{}]", myConceptsSaved, myTermValueSet.getUrl());
+			updateStatusTimeIfDue();
 		}
 
 		return concept;
 	}
 
+	private void updateStatusTimeIfDue() {
+		long now = System.currentTimeMillis();
+		if (myTermValueSet.getId() != null && now - myStatusTimeUpdated >= STATUS_TIME_UPDATE_INTERVAL_MILLIS) {
+			myValueSetDao.updateExpansionStatusTime(myTermValueSet.getId(), new Date(now));
+			myStatusTimeUpdated = now;
+		}
+	}
+
 	private TermValueSetConceptDesignation saveConceptDesignation(TermValueSetConcept theConcept, TermConceptDesignation theDesignation) {
 		ValidateUtil.isNotBlankOrThrowInvalidRequest(theDesignation.getValue(), "ValueSet contains a concept designation with no value");
 
@@ -165,7 +192,7 @@ public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
 		}
 		designation.setValue(theDesignation.getValue());
 		myValueSetConceptDesignationDao.save(designation);
-		myValueSetDao.save(myTermValueSet.incrementTotalConceptDesignations());
+		myTermValueSet.incrementTotalConceptDesignations();
 
 		if (++myDesignationsSaved % 250 == 0) {
 			ourLog.debug("Have pre-expanded {} designations for Concept[{}|{}] in ValueSet[{}]", myDesignationsSaved, theConcept.getSystem(), theConcept.getCode(), myTermValueSet.getUrl());
@@ -87,6 +87,16 @@ public interface ITermReadSvc extends IValidationSupport {
 
 	List<FhirVersionIndependentConcept> findCodesBelowUsingBuiltInSystems(String theSystem, String theCode);
 
+	/**
+	 * Marks the parent/child links of the given code system version as changed, so that the hierarchy
+	 * closure used for subsumption and for finding codes above/below a given code is rebuilt from the
+	 * database on next use, on this server and on any other server. If a transaction is active, the
+	 * cached closure is discarded again once it commits.
+	 *
+	 * @since 5.4.0
+	 */
+	void invalidateConceptClosure(long theCodeSystemVersionPid);
+
 	CodeSystem fetchCanonicalCodeSystemFromCompleteContext(String theSystem);
 
 	void deleteValueSetAndChildren(ResourceTable theResourceTable);
@@ -0,0 +1,168 @@
+package ca.uhn.fhir.jpa.util;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelConsumerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelProducerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelFactory;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sends {@link MemoryCacheService} invalidations to the other servers in a cluster, and applies
+ * the invalidations sent by them. This is only active if
+ * {@link DaoConfig#setMemoryCacheInvalidationBroadcastEnabled(boolean) enabled} and an
+ * {@link IChannelFactory} is available. The channel implementation must deliver every message
+ * to every server (i.e. publish/subscribe semantics).
+ *
+ * @since 5.4.0
+ */
+public class MemoryCacheInvalidationBroadcaster implements MessageHandler {
+
+	public static final String CHANNEL_NAME = "memory-cache-invalidation";
+	private static final Logger ourLog = LoggerFactory.getLogger(MemoryCacheInvalidationBroadcaster.class);
+
+	private final String myOriginId = UUID.randomUUID().toString();
+	@Autowired
+	private DaoConfig myDaoConfig;
+	@Autowired
+	private MemoryCacheService myMemoryCacheService;
+	@Autowired(required = false)
+	private IChannelFactory myChannelFactory;
+	private IChannelProducer myProducer;
+	private IChannelReceiver myReceiver;
+
+	@PostConstruct
+	public void start() {
+		if (!myDaoConfig.isMemoryCacheInvalidationBroadcastEnabled()) {
+			return;
+		}
+		if (myChannelFactory == null) {
+			ourLog.warn("Memory cache invalidation broadcasting is enabled but no channel factory is available, invalidations will not be broadcast");
+			return;
+		}
+
+		myProducer = myChannelFactory.getOrCreateProducer(CHANNEL_NAME, MemoryCacheInvalidationJsonMessage.class, new ChannelProducerSettings());
+		myReceiver = myChannelFactory.getOrCreateReceiver(CHANNEL_NAME, MemoryCacheInvalidationJsonMessage.class, new ChannelConsumerSettings().setConcurrentConsumers(1));
+		myReceiver.subscribe(this);
+		myMemoryCacheService.setInvalidationBroadcaster(this);
+		ourLog.info("Memory cache invalidations will be broadcast on channel {}", myReceiver.getName());
+	}
+
+	@PreDestroy
+	public void stop() throws Exception {
+		if (myReceiver != null) {
+			myMemoryCacheService.setInvalidationBroadcaster(null);
+			myReceiver.unsubscribe(this);
+			myReceiver.destroy();
+			myReceiver = null;
+			myProducer = null;
+		}
+	}
+
+	void broadcastInvalidateAll() {
+		send(new MemoryCacheInvalidationMessage(myOriginId, null, null));
+	}
+
+	void broadcastInvalidateKeys(MemoryCacheService.CacheEnum theCache, Collection<?> theKeys) {
+		List<String> keys = null;
+		Class<?> keyType = theCache.getKeyType();
+		if (keyType != null && theKeys.stream().allMatch(keyType::isInstance)) {
+			keys = new ArrayList<>(theKeys.size());
+			for (Object next : theKeys) {
+				keys.add(next.toString());
+			}
+		}
+		send(new MemoryCacheInvalidationMessage(myOriginId, theCache.name(), keys));
+	}
+
+	private void send(MemoryCacheInvalidationMessage theMessage) {
+		IChannelProducer producer = myProducer;
+		if (producer == null) {
+			return;
+		}
+		try {
+			producer.send(new MemoryCacheInvalidationJsonMessage(theMessage));
+		} catch (Exception e) {
+			ourLog.error("Failed to broadcast memory cache invalidation {}", theMessage, e);
+		}
+	}
+
+	@Override
+	public void handleMessage(Message<?> theMessage) throws MessagingException {
+		if (!(theMessage.getPayload() instanceof MemoryCacheInvalidationMessage)) {
+			ourLog.warn("Unexpected message payload type: {}", theMessage.getPayload());
+			return;
+		}
+
+		MemoryCacheInvalidationMessage message = (MemoryCacheInvalidationMessage) theMessage.getPayload();
+		if (myOriginId.equals(message.getOriginId())) {
+			return;
+		}
+
+		ourLog.debug("Applying memory cache invalidation: {}", message);
+		if (message.getCacheName() == null) {
+			myMemoryCacheService.invalidateAllCaches();
+			return;
+		}
+
+		MemoryCacheService.CacheEnum cache;
+		try {
+			cache = MemoryCacheService.CacheEnum.valueOf(message.getCacheName());
+		} catch (IllegalArgumentException e) {
+			ourLog.warn("Ignoring invalidation for unknown memory cache: {}", message.getCacheName());
+			return;
+		}
+
+		if (message.getKeys() == null || cache.getKeyType() == null) {
+			myMemoryCacheService.invalidateCacheLocally(cache);
+			return;
+		}
+
+		List<Object> keys = new ArrayList<>(message.getKeys().size());
+		for (String next : message.getKeys()) {
+			keys.add(cache.getKeyType().equals(Long.class) ? Long.valueOf(next) : next);
+		}
+		myMemoryCacheService.invalidateKeysLocally(cache, keys);
+	}
+
+	@VisibleForTesting
+	void setDependenciesForUnitTest(DaoConfig theDaoConfig, MemoryCacheService theMemoryCacheService, IChannelFactory theChannelFactory) {
+		myDaoConfig = theDaoConfig;
+		myMemoryCacheService = theMemoryCacheService;
+		myChannelFactory = theChannelFactory;
+	}
+}
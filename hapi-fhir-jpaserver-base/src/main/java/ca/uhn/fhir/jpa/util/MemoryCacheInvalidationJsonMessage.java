@@ -0,0 +1,64 @@
+package ca.uhn.fhir.jpa.util;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.rest.server.messaging.json.BaseJsonMessage;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * @since 5.4.0
+ */
+public class MemoryCacheInvalidationJsonMessage extends BaseJsonMessage<MemoryCacheInvalidationMessage> {
+
+	@JsonProperty("payload")
+	private MemoryCacheInvalidationMessage myPayload;
+
+	/**
+	 * Constructor
+	 */
+	public MemoryCacheInvalidationJsonMessage() {
+		super();
+	}
+
+	/**
+	 * Constructor
+	 */
+	public MemoryCacheInvalidationJsonMessage(MemoryCacheInvalidationMessage thePayload) {
+		myPayload = thePayload;
+	}
+
+	@Override
+	public MemoryCacheInvalidationMessage getPayload() {
+		return myPayload;
+	}
+
+	public void setPayload(MemoryCacheInvalidationMessage thePayload) {
+		myPayload = thePayload;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this)
+			.append("myPayload", myPayload)
+			.toString();
+	}
+}
@@ -0,0 +1,102 @@
+package ca.uhn.fhir.jpa.util;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.model.api.IModelJson;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.List;
+
+/**
+ * Describes an invalidation of one or more {@link MemoryCacheService} caches, sent
+ * between servers by the {@link MemoryCacheInvalidationBroadcaster}
+ *
+ * @since 5.4.0
+ */
+public class MemoryCacheInvalidationMessage implements IModelJson {
+
+	@JsonProperty("originId")
+	private String myOriginId;
+	@JsonProperty("cache")
+	private String myCacheName;
+	@JsonProperty("keys")
+	private List<String> myKeys;
+
+	/**
+	 * Constructor
+	 */
+	public MemoryCacheInvalidationMessage() {
+		super();
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theOriginId  The ID of the server sending the message
+	 * @param theCacheName The name of the cache to invalidate, or <code>null</code> for all caches
+	 * @param theKeys      The keys to invalidate, or <code>null</code> for the whole cache
+	 */
+	public MemoryCacheInvalidationMessage(String theOriginId, String theCacheName, List<String> theKeys) {
+		myOriginId = theOriginId;
+		myCacheName = theCacheName;
+		myKeys = theKeys;
+	}
+
+	public String getOriginId() {
+		return myOriginId;
+	}
+
+	public void setOriginId(String theOriginId) {
+		myOriginId = theOriginId;
+	}
+
+	/**
+	 * @return The name of the cache to invalidate, or <code>null</code> for all caches
+	 */
+	public String getCacheName() {
+		return myCacheName;
+	}
+
+	public void setCacheName(String theCacheName) {
+		myCacheName = theCacheName;
+	}
+
+	/**
+	 * @return The keys to invalidate, or <code>null</code> for the whole cache
+	 */
+	public List<String> getKeys() {
+		return myKeys;
+	}
+
+	public void setKeys(List<String> theKeys) {
+		myKeys = theKeys;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this)
+			.append("originId", myOriginId)
+			.append("cache", myCacheName)
+			.append("keys", myKeys)
+			.toString();
+	}
+}
@@ -23,21 +23,34 @@ package ca.uhn.fhir.jpa.util;
 import ca.uhn.fhir.jpa.api.config.DaoConfig;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.annotations.VisibleForTesting;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
  * This class acts as a central spot for all of the many Caffeine caches we use in HAPI FHIR.
  * <p>
- * The API is super simplistic, and caches are all 1-minute, max 10000 entries for starters. We could definitely add nuance to this,
- * which will be much easier now that this is being centralized. Some logging/monitoring would be good too.
+ * The size and expiry of each cache can be configured in {@link DaoConfig} (see
+ * {@link DaoConfig#setMemoryCacheMaximumSize(String, long)} and {@link DaoConfig#setMemoryCacheExpireAfterWriteInMinutes(String, long)}),
+ * and statistics for each cache are available through {@link #getStats(CacheEnum)} for monitoring.
+ * </p>
+ * <p>
+ * Invalidations made through {@link #invalidateKeys(CacheEnum, Collection)} and {@link #invalidateAllCachesAndBroadcast()}
+ * are also sent to the other servers in the cluster if a {@link MemoryCacheInvalidationBroadcaster} is active.
+ * </p>
  */
 public class MemoryCacheService {
 
@@ -45,6 +58,7 @@ public class MemoryCacheService {
 	private DaoConfig myDaoConfig;
 
 	private EnumMap<CacheEnum, Cache<?, ?>> myCaches;
+	private volatile MemoryCacheInvalidationBroadcaster myInvalidationBroadcaster;
 
 	@PostConstruct
 	public void start() {
@@ -53,28 +67,45 @@ public class MemoryCacheService {
 
 		for (CacheEnum next : CacheEnum.values()) {
 
-			long timeoutSeconds;
-			switch (next) {
-				case CONCEPT_TRANSLATION:
-				case CONCEPT_TRANSLATION_REVERSE:
-					timeoutSeconds = myDaoConfig.getTranslationCachesExpireAfterWriteInMinutes() * 1000;
-					break;
-				case TAG_DEFINITION:
-				case PERSISTENT_ID:
-				case RESOURCE_LOOKUP:
-				case FORCED_ID:
-				default:
-					timeoutSeconds = 60;
-					break;
+			Long expireAfterWriteMinutes = myDaoConfig.getMemoryCacheExpireAfterWriteInMinutes(next.name());
+			if (expireAfterWriteMinutes == null) {
+				switch (next) {
+					case CONCEPT_TRANSLATION:
+					case CONCEPT_TRANSLATION_REVERSE:
+						expireAfterWriteMinutes = myDaoConfig.getTranslationCachesExpireAfterWriteInMinutes();
+						break;
+					case TAG_DEFINITION:
+					case PERSISTENT_ID:
+					case RESOURCE_LOOKUP:
+					case FORCED_ID:
+					default:
+						expireAfterWriteMinutes = DaoConfig.DEFAULT_MEMORY_CACHE_EXPIRE_AFTER_WRITE_IN_MINUTES;
+						break;
+				}
+			}
+			Long maximumSize = myDaoConfig.getMemoryCacheMaximumSize(next.name());
+			if (maximumSize == null) {
+				switch (next) {
+					case CONCEPT_CLOSURE:
+						maximumSize = DaoConfig.DEFAULT_CONCEPT_CLOSURE_MEMORY_CACHE_MAXIMUM_SIZE;
+						break;
+					default:
+						maximumSize = DaoConfig.DEFAULT_MEMORY_CACHE_MAXIMUM_SIZE;
+						break;
+				}
 			}
 
-			Cache<Object, Object> nextCache = Caffeine.newBuilder().expireAfterWrite(timeoutSeconds, TimeUnit.MINUTES).maximumSize(10000).build();
+			Cache<Object, Object> nextCache = Caffeine
+				.newBuilder()
+				.expireAfterWrite(expireAfterWriteMinutes, TimeUnit.MINUTES)
+				.maximumSize(maximumSize)
+				.recordStats()
+				.build();
 			myCaches.put(next, nextCache);
 		}
 
 	}
 
-
 	public <K, T> T get(CacheEnum theCache, K theKey, Function<K, T> theSupplier) {
 		Cache<K, T> cache = getCache(theCache);
 		return cache.get(theKey, theSupplier);
@@ -92,24 +123,153 @@ public class MemoryCacheService {
 		return (Map<K, V>) getCache(theCache).getAllPresent(theKeys);
 	}
 
+	/**
+	 * Invalidates all caches on this server only
+	 */
 	public void invalidateAllCaches() {
 		myCaches.values().forEach(t -> t.invalidateAll());
 	}
 
+	/**
+	 * Invalidates all caches on this server, and on the other servers in the cluster if
+	 * a {@link MemoryCacheInvalidationBroadcaster} is active
+	 *
+	 * @since 5.4.0
+	 */
+	public void invalidateAllCachesAndBroadcast() {
+		invalidateAllCaches();
+		MemoryCacheInvalidationBroadcaster broadcaster = myInvalidationBroadcaster;
+		if (broadcaster != null) {
+			broadcaster.broadcastInvalidateAll();
+		}
+	}
+
+	/**
+	 * Invalidates the given cache on this server only
+	 *
+	 * @since 5.4.0
+	 */
+	public void invalidateCacheLocally(CacheEnum theCache) {
+		getCache(theCache).invalidateAll();
+	}
+
+	/**
+	 * Removes the given keys from the given cache on this server only
+	 *
+	 * @since 5.4.0
+	 */
+	public void invalidateKeysLocally(CacheEnum theCache, Collection<?> theKeys) {
+		getCache(theCache).invalidateAll(theKeys);
+	}
+
+	/**
+	 * Removes the given keys from the given cache on this server, and on the other servers in the
+	 * cluster if a {@link MemoryCacheInvalidationBroadcaster} is active.
+	 * <p>
+	 * If a transaction is active, the keys are removed immediately and again once the transaction
+	 * commits (so that values loaded by concurrent readers before the commit don't survive), and the
+	 * invalidation is only sent to other servers after the commit.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public void invalidateKeys(CacheEnum theCache, Collection<?> theKeys) {
+		if (theKeys.isEmpty()) {
+			return;
+		}
+
+		List<Object> keys = new ArrayList<>(theKeys);
+		invalidateKeysLocally(theCache, keys);
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					invalidateKeysLocally(theCache, keys);
+					broadcastInvalidation(theCache, keys);
+				}
+			});
+		} else {
+			broadcastInvalidation(theCache, keys);
+		}
+	}
+
+	private void broadcastInvalidation(CacheEnum theCache, List<Object> theKeys) {
+		MemoryCacheInvalidationBroadcaster broadcaster = myInvalidationBroadcaster;
+		if (broadcaster != null) {
+			broadcaster.broadcastInvalidateKeys(theCache, theKeys);
+		}
+	}
+
+	/**
+	 * Returns the statistics recorded for the given cache since the server started. This is intended
+	 * to be polled by a metrics or monitoring system.
+	 *
+	 * @since 5.4.0
+	 */
+	@Nonnull
+	public CacheStats getStats(CacheEnum theCache) {
+		return getCache(theCache).stats();
+	}
+
+	/**
+	 * Returns the approximate number of entries currently held by the given cache
+	 *
+	 * @since 5.4.0
+	 */
+	public long getEstimatedSize(CacheEnum theCache) {
+		return getCache(theCache).estimatedSize();
+	}
+
+	/**
+	 * Sets (or clears, if <code>null</code>) the broadcaster that invalidations are sent to. This is
+	 * called by the {@link MemoryCacheInvalidationBroadcaster} itself when it starts.
+	 *
+	 * @since 5.4.0
+	 */
+	public void setInvalidationBroadcaster(@Nullable MemoryCacheInvalidationBroadcaster theInvalidationBroadcaster) {
+		myInvalidationBroadcaster = theInvalidationBroadcaster;
+	}
+
+	@VisibleForTesting
+	public void setDaoConfigForUnitTest(DaoConfig theDaoConfig) {
+		myDaoConfig = theDaoConfig;
+	}
+
 	private <K, T> Cache<K, T> getCache(CacheEnum theCache) {
 		return (Cache<K, T>) myCaches.get(theCache);
 	}
 
 	public enum CacheEnum {
 
-		TAG_DEFINITION,
-		PERSISTENT_ID,
-		RESOURCE_LOOKUP,
-		FORCED_ID,
-		CONCEPT_TRANSLATION,
-		CONCEPT_TRANSLATION_REVERSE
+		TAG_DEFINITION(null),
+		PERSISTENT_ID(String.class),
+		RESOURCE_LOOKUP(String.class),
+		FORCED_ID(Long.class),
+		CONCEPT_TRANSLATION(null),
+		CONCEPT_TRANSLATION_REVERSE(null),
+		/**
+		 * Terminology hierarchy closures, keyed by code system version PID
+		 */
+		CONCEPT_CLOSURE(Long.class);
 
-	}
+		private final Class<?> myKeyType;
 
+		CacheEnum(Class<?> theKeyType) {
+			myKeyType = theKeyType;
+		}
+
+		/**
+		 * Returns the type of the keys in this cache if individual keys can be sent to other
+		 * servers as part of an invalidation, or <code>null</code> if the whole cache
+		 * must be invalidated on other servers instead.
+		 *
+		 * @since 5.4.0
+		 */
+		@Nullable
+		public Class<?> getKeyType() {
+			return myKeyType;
+		}
+	}
 
 }
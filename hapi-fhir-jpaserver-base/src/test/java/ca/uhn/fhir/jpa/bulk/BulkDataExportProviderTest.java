@@ -2,6 +2,7 @@ package ca.uhn.fhir.jpa.bulk;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.jpa.binstore.MemoryBinaryStorageSvcImpl;
 import ca.uhn.fhir.jpa.bulk.export.api.BulkDataExportOptions;
 import ca.uhn.fhir.jpa.bulk.export.api.IBulkDataExportSvc;
 import ca.uhn.fhir.jpa.bulk.export.model.BulkExportResponseJson;
@@ -42,8 +43,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
@@ -54,6 +59,7 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
@@ -76,6 +82,7 @@ public class BulkDataExportProviderTest {
 	@Mock
 	private IBulkDataExportSvc myBulkDataExportSvc;
 	private CloseableHttpClient myClient;
+	private MemoryBinaryStorageSvcImpl myBinaryStorageSvc;
 	@Captor
 	private ArgumentCaptor<BulkDataExportOptions> myBulkDataExportOptionsCaptor;
 	@Captor
@@ -94,6 +101,8 @@ public class BulkDataExportProviderTest {
 		BulkDataExportProvider provider = new BulkDataExportProvider();
 		provider.setBulkDataExportSvcForUnitTests(myBulkDataExportSvc);
 		provider.setFhirContextForUnitTest(myCtx);
+		myBinaryStorageSvc = new MemoryBinaryStorageSvcImpl();
+		provider.setBinaryStorageSvcForUnitTests(myBinaryStorageSvc);
 
 		ServletHandler proxyHandler = new ServletHandler();
 		RestfulServer servlet = new RestfulServer(myCtx);
@@ -270,6 +279,62 @@ public class BulkDataExportProviderTest {
 		}
 	}
 
+	@Test
+	public void testPollForStatusAndDownload_BlobFiles() throws IOException {
+		String ndjson = "{\"resourceType\":\"Patient\",\"id\":\"1\"}\n{\"resourceType\":\"Patient\",\"id\":\"2\"}\n";
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(gzipped)) {
+			gzipOutputStream.write(ndjson.getBytes(Charsets.UTF_8));
+		}
+		byte[] gzippedBytes = gzipped.toByteArray();
+		IdType blobOwnerId = new IdType("Binary/BLOB1");
+		myBinaryStorageSvc.storeBlob(blobOwnerId, "BLOB1", Constants.CT_FHIR_NDJSON, new ByteArrayInputStream(gzippedBytes));
+
+		IBulkDataExportSvc.JobInfo jobInfo = new IBulkDataExportSvc.JobInfo()
+			.setJobId(A_JOB_ID)
+			.setStatus(BulkExportJobStatusEnum.COMPLETE)
+			.setStatusTime(InstantType.now().getValue());
+		jobInfo.addFile().setResourceType("Patient").setResourceId(blobOwnerId).setBlobId("BLOB1").setBlobSize((long) gzippedBytes.length).setBlobGzipped(true);
+		when(myBulkDataExportSvc.getJobInfoOrThrowResourceNotFound(eq(A_JOB_ID))).thenReturn(jobInfo);
+
+		String url = "http://localhost:" + myPort + "/" + JpaConstants.OPERATION_EXPORT_POLL_STATUS + "?" +
+			JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID + "=" + A_JOB_ID;
+		String downloadUrl;
+		try (CloseableHttpResponse response = myClient.execute(new HttpGet(url))) {
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			String responseContent = IOUtils.toString(response.getEntity().getContent(), Charsets.UTF_8);
+			BulkExportResponseJson responseJson = JsonUtil.deserialize(responseContent, BulkExportResponseJson.class);
+			assertEquals(1, responseJson.getOutput().size());
+			downloadUrl = responseJson.getOutput().get(0).getUrl();
+			assertEquals("http://localhost:" + myPort + "/$export-download?_jobId=" + A_JOB_ID + "&_fileId=BLOB1", downloadUrl);
+		}
+
+		try (CloseableHttpClient rawClient = HttpClientBuilder.create().disableContentCompression().build()) {
+
+			// Client accepts gzip, so the stored file is sent as-is
+			HttpGet get = new HttpGet(downloadUrl);
+			get.addHeader(Constants.HEADER_ACCEPT_ENCODING, Constants.ENCODING_GZIP);
+			try (CloseableHttpResponse response = rawClient.execute(get)) {
+				assertEquals(200, response.getStatusLine().getStatusCode());
+				assertEquals(Constants.ENCODING_GZIP, response.getFirstHeader(Constants.HEADER_CONTENT_ENCODING).getValue());
+				byte[] body = IOUtils.toByteArray(response.getEntity().getContent());
+				assertEquals(ndjson, IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(body)), Charsets.UTF_8));
+			}
+
+			// Client doesn't accept gzip, so the file is decompressed by the server
+			try (CloseableHttpResponse response = rawClient.execute(new HttpGet(downloadUrl))) {
+				assertEquals(200, response.getStatusLine().getStatusCode());
+				assertNull(response.getFirstHeader(Constants.HEADER_CONTENT_ENCODING));
+				assertEquals(ndjson, IOUtils.toString(response.getEntity().getContent(), Charsets.UTF_8));
+			}
+
+			// Unknown file
+			try (CloseableHttpResponse response = rawClient.execute(new HttpGet(downloadUrl.replace("BLOB1", "BLOB2")))) {
+				assertEquals(404, response.getStatusLine().getStatusCode());
+			}
+		}
+	}
+
 	@Test
 	public void testPollForStatus_Gone() throws IOException {
 
@@ -6,6 +6,7 @@ import ca.uhn.fhir.jpa.api.config.DaoConfig;
 import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
 import ca.uhn.fhir.jpa.batch.BatchJobsConfig;
 import ca.uhn.fhir.jpa.batch.api.IBatchJobSubmitter;
+import ca.uhn.fhir.jpa.binstore.IBinaryStorageSvc;
 import ca.uhn.fhir.jpa.bulk.export.api.BulkDataExportOptions;
 import ca.uhn.fhir.jpa.bulk.export.api.IBulkDataExportSvc;
 import ca.uhn.fhir.jpa.bulk.export.job.BulkExportJobParametersBuilder;
@@ -28,6 +29,7 @@ import ca.uhn.fhir.util.HapiExtensions;
 import ca.uhn.fhir.util.UrlUtil;
 import com.google.common.base.Charsets;
 import com.google.common.collect.Sets;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.time.DateUtils;
 import org.hamcrest.Matchers;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -53,6 +55,8 @@ import org.springframework.batch.core.JobParametersInvalidException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
@@ -61,6 +65,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -68,7 +73,9 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -86,6 +93,8 @@ public class BulkDataExportSvcImplR4Test extends BaseBatchJobR4Test {
 	private IBulkDataExportSvc myBulkDataExportSvc;
 	@Autowired
 	private IBatchJobSubmitter myBatchJobSubmitter;
+	@Autowired
+	private IBinaryStorageSvc myBinaryStorageSvc;
 
 	@Autowired
 	@Qualifier(BatchJobsConfig.BULK_EXPORT_JOB_NAME)
@@ -1107,6 +1116,109 @@ public class BulkDataExportSvcImplR4Test extends BaseBatchJobR4Test {
 		myPartitionSettings.setPartitioningEnabled(false);
 	}
 
+	@Test
+	public void testGenerateBulkExport_StreamToBinaryStorage() throws IOException {
+		myDaoConfig.setBulkExportStreamToBinaryStorage(true);
+		myDaoConfig.setBulkExportGzipEnabled(true);
+		myDaoConfig.setBulkExportFileMaximumSize(1);
+		try {
+
+			// Create some resources to load
+			createResources();
+
+			// Create a bulk job
+			BulkDataExportOptions options = new BulkDataExportOptions();
+			options.setResourceTypes(Sets.newHashSet("Patient", "Observation"));
+			options.setFilters(Sets.newHashSet(TEST_FILTER));
+			options.setExportStyle(BulkDataExportOptions.ExportStyle.SYSTEM);
+			IBulkDataExportSvc.JobInfo jobDetails = myBulkDataExportSvc.submitJob(options);
+
+			// Run a scheduled pass to build the export
+			myBulkDataExportSvc.buildExportFiles();
+			awaitAllBulkJobCompletions();
+
+			IBulkDataExportSvc.JobInfo status = myBulkDataExportSvc.getJobInfoOrThrowResourceNotFound(jobDetails.getJobId());
+			assertEquals(BulkExportJobStatusEnum.COMPLETE, status.getStatus());
+			assertEquals(2, status.getFiles().size());
+
+			// No Binary resources should have been created
+			runInTransaction(() -> myBulkExportCollectionFileDao.findAll().forEach(t -> assertNull(t.getResourceId())));
+
+			for (IBulkDataExportSvc.FileEntry next : status.getFiles()) {
+				assertNotNull(next.getBlobId());
+				assertTrue(next.isBlobGzipped());
+				byte[] compressed = myBinaryStorageSvc.fetchBlob(next.getResourceId(), next.getBlobId());
+				assertEquals(next.getBlobSize().longValue(), compressed.length);
+				String nextContents = IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(compressed)), Constants.CHARSET_UTF8);
+				ourLog.info("Next contents for type {}:\n{}", next.getResourceType(), nextContents);
+
+				if ("Patient".equals(next.getResourceType())) {
+					assertThat(nextContents, containsString("\"value\":\"PAT1\"}"));
+					assertEquals(7, nextContents.split("\n").length); // Only female patients
+				} else if ("Observation".equals(next.getResourceType())) {
+					assertThat(nextContents, containsString("\"subject\":{\"reference\":\"Patient/PAT0\"}}\n"));
+					assertEquals(26, nextContents.split("\n").length);
+				} else {
+					fail(next.getResourceType());
+				}
+			}
+
+		} finally {
+			myDaoConfig.setBulkExportStreamToBinaryStorage(false);
+			myDaoConfig.setBulkExportGzipEnabled(false);
+			myDaoConfig.setBulkExportFileMaximumSize(DaoConfig.DEFAULT_BULK_EXPORT_FILE_MAXIMUM_SIZE);
+		}
+	}
+
+	/**
+	 * With the default maximum file size the files never fill up while the chunks are written,
+	 * so each one is only stored once its step completes
+	 */
+	@Test
+	public void testGenerateBulkExport_StreamToBinaryStorageWithDefaultFileSize() throws IOException {
+		myDaoConfig.setBulkExportStreamToBinaryStorage(true);
+		try {
+
+			// Create some resources to load
+			createResources();
+
+			// Create a bulk job
+			BulkDataExportOptions options = new BulkDataExportOptions();
+			options.setResourceTypes(Sets.newHashSet("Patient", "Observation"));
+			options.setFilters(Sets.newHashSet(TEST_FILTER));
+			options.setExportStyle(BulkDataExportOptions.ExportStyle.SYSTEM);
+			IBulkDataExportSvc.JobInfo jobDetails = myBulkDataExportSvc.submitJob(options);
+
+			// Run a scheduled pass to build the export
+			myBulkDataExportSvc.buildExportFiles();
+			awaitAllBulkJobCompletions();
+
+			IBulkDataExportSvc.JobInfo status = myBulkDataExportSvc.getJobInfoOrThrowResourceNotFound(jobDetails.getJobId());
+			assertEquals(BulkExportJobStatusEnum.COMPLETE, status.getStatus());
+			assertEquals(2, status.getFiles().size());
+
+			for (IBulkDataExportSvc.FileEntry next : status.getFiles()) {
+				assertNotNull(next.getBlobId());
+				assertFalse(next.isBlobGzipped());
+				byte[] contents = myBinaryStorageSvc.fetchBlob(next.getResourceId(), next.getBlobId());
+				assertEquals(next.getBlobSize().longValue(), contents.length);
+				String nextContents = new String(contents, Constants.CHARSET_UTF8);
+				ourLog.info("Next contents for type {}:\n{}", next.getResourceType(), nextContents);
+
+				if ("Patient".equals(next.getResourceType())) {
+					assertEquals(7, nextContents.split("\n").length); // Only female patients
+				} else if ("Observation".equals(next.getResourceType())) {
+					assertEquals(26, nextContents.split("\n").length);
+				} else {
+					fail(next.getResourceType());
+				}
+			}
+
+		} finally {
+			myDaoConfig.setBulkExportStreamToBinaryStorage(false);
+		}
+	}
+
 	private void createResources() {
 		Group group = new Group();
 		group.setId("G0");
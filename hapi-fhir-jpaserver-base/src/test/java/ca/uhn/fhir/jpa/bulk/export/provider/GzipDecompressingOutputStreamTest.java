@@ -0,0 +1,92 @@
+package ca.uhn.fhir.jpa.bulk.export.provider;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class GzipDecompressingOutputStreamTest {
+
+	private static String newContents() {
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			b.append("{\"resourceType\":\"Patient\",\"id\":\"").append(i).append("\"}\n");
+		}
+		return b.toString();
+	}
+
+	private static byte[] gzip(String theContents) throws IOException {
+		ByteArrayOutputStream retVal = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(retVal)) {
+			gzip.write(theContents.getBytes(StandardCharsets.UTF_8));
+		}
+		return retVal.toByteArray();
+	}
+
+	@Test
+	public void testDecompressInOneWrite() throws IOException {
+		String contents = newContents();
+		ByteArrayOutputStream target = new ByteArrayOutputStream();
+		try (GzipDecompressingOutputStream os = new GzipDecompressingOutputStream(target)) {
+			os.write(gzip(contents));
+		}
+		assertEquals(contents, target.toString(StandardCharsets.UTF_8.name()));
+	}
+
+	@Test
+	public void testDecompressInSmallWrites() throws IOException {
+		String contents = newContents();
+		byte[] compressed = gzip(contents);
+		ByteArrayOutputStream target = new ByteArrayOutputStream();
+		try (GzipDecompressingOutputStream os = new GzipDecompressingOutputStream(target)) {
+			// Smaller than the header, so the header is split across writes too
+			for (int i = 0; i < compressed.length; i += 3) {
+				os.write(compressed, i, Math.min(3, compressed.length - i));
+			}
+		}
+		assertEquals(contents, target.toString(StandardCharsets.UTF_8.name()));
+	}
+
+	@Test
+	public void testHeaderWithFileName() throws IOException {
+		byte[] compressed = gzip("hello");
+		// Set FNAME and insert a zero terminated file name after the fixed length header
+		byte[] withName = new byte[compressed.length + 4];
+		System.arraycopy(compressed, 0, withName, 0, 10);
+		withName[3] = 8;
+		withName[10] = 'a';
+		withName[11] = '.';
+		withName[12] = 'z';
+		withName[13] = 0;
+		System.arraycopy(compressed, 10, withName, 14, compressed.length - 10);
+
+		ByteArrayOutputStream target = new ByteArrayOutputStream();
+		try (GzipDecompressingOutputStream os = new GzipDecompressingOutputStream(target)) {
+			os.write(withName);
+		}
+		assertEquals("hello", target.toString(StandardCharsets.UTF_8.name()));
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		byte[] compressed = gzip(newContents());
+		GzipDecompressingOutputStream os = new GzipDecompressingOutputStream(new ByteArrayOutputStream());
+		os.write(Arrays.copyOf(compressed, compressed.length / 2));
+		assertThrows(EOFException.class, os::close);
+	}
+
+	@Test
+	public void testNotGzip() {
+		GzipDecompressingOutputStream os = new GzipDecompressingOutputStream(new ByteArrayOutputStream());
+		assertThrows(ZipException.class, () -> os.write("not gzipped at all".getBytes(StandardCharsets.UTF_8)));
+	}
+
+}
@@ -18,9 +18,11 @@ import ca.uhn.fhir.jpa.entity.BulkImportJobFileEntity;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.test.utilities.ITestDataBuilder;
 import ca.uhn.fhir.util.BundleBuilder;
 import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -71,7 +73,10 @@ public class BulkDataImportR4Test extends BaseBatchJobR4Test implements ITestDat
 		boolean activateJobOutcome = mySvc.activateNextReadyJob();
 		assertTrue(activateJobOutcome);
 
-		List<JobExecution> executions = awaitAllBulkJobCompletions();
+		List<JobExecution> executions = awaitAllBulkJobCompletions()
+			.stream()
+			.filter(t -> jobId.equals(t.getJobParameters().getString(BulkExportJobConfig.JOB_UUID_PARAMETER)))
+			.collect(Collectors.toList());
 		assertEquals(1, executions.size());
 		assertEquals("This is the description", executions.get(0).getJobParameters().getString(BulkExportJobConfig.JOB_DESCRIPTION));
 
@@ -89,6 +94,53 @@ public class BulkDataImportR4Test extends BaseBatchJobR4Test implements ITestDat
 
 	}
 
+	@Test
+	public void testFlow_ResourceRows() {
+		int resourcesPerFile = 10;
+		int fileCount = 5;
+		List<BulkImportJobFileJson> files = new ArrayList<>();
+		for (int fileIndex = 0; fileIndex < fileCount; fileIndex++) {
+			StringBuilder fileContents = new StringBuilder();
+			for (int resourceIdx = 0; resourceIdx < resourcesPerFile; resourceIdx++) {
+				IBaseResource patient;
+				if (resourceIdx % 2 == 0) {
+					patient = buildPatient(withId("P" + fileIndex + "-" + resourceIdx), withFamily("FAM " + fileIndex + " " + resourceIdx));
+				} else {
+					patient = buildPatient(withFamily("FAM " + fileIndex + " " + resourceIdx));
+				}
+				fileContents.append(myFhirCtx.newJsonParser().setPrettyPrint(false).encodeResourceToString(patient));
+				fileContents.append("\n");
+			}
+			fileContents.append("\n");
+
+			BulkImportJobFileJson nextFile = new BulkImportJobFileJson();
+			nextFile.setContents(fileContents.toString());
+			files.add(nextFile);
+		}
+
+		BulkImportJobJson job = new BulkImportJobJson();
+		job.setProcessingMode(JobFileRowProcessingModeEnum.FHIR_RESOURCE);
+		job.setBatchSize(4);
+		String jobId = mySvc.createNewJob(job, files);
+		mySvc.markJobAsReadyForActivation(jobId);
+
+		boolean activateJobOutcome = mySvc.activateNextReadyJob();
+		assertTrue(activateJobOutcome);
+
+		List<JobExecution> executions = awaitAllBulkJobCompletions()
+			.stream()
+			.filter(t -> jobId.equals(t.getJobParameters().getString(BulkExportJobConfig.JOB_UUID_PARAMETER)))
+			.collect(Collectors.toList());
+		assertEquals(1, executions.size());
+
+		IBundleProvider searchResults = myPatientDao.search(SearchParameterMap.newSynchronous());
+		assertEquals(resourcesPerFile * fileCount, searchResults.sizeOrThrowNpe());
+
+		searchResults = myPatientDao.search(SearchParameterMap.newSynchronous(Patient.SP_FAMILY, new StringParam("FAM 2 4")));
+		assertEquals(1, searchResults.sizeOrThrowNpe());
+		assertEquals("P2-4", searchResults.getResources(0, 1).get(0).getIdElement().getIdPart());
+	}
+
 	@Test
 	public void testFlow_WithTenantNamesInInput() {
 		int transactionsPerFile = 5;
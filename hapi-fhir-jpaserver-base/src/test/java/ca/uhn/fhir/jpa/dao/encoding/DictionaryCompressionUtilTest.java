@@ -0,0 +1,120 @@
+package ca.uhn.fhir.jpa.dao.encoding;
+
+import ca.uhn.fhir.context.FhirContext;
+import org.apache.commons.io.IOUtils;
+import org.hl7.fhir.r4.model.Observation;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DictionaryCompressionUtilTest {
+
+	private static final FhirContext ourCtx = FhirContext.forR4();
+
+	@Test
+	public void testRoundTripWithoutDictionary() throws IOException {
+		byte[] contents = newObservation(0).getBytes(StandardCharsets.UTF_8);
+
+		byte[] compressed = DictionaryCompressionUtil.compress(contents, 0, null);
+		assertEquals(0, DictionaryCompressionUtil.getDictionaryId(compressed));
+		assertArrayEquals(contents, decompress(compressed, null));
+	}
+
+	@Test
+	public void testRoundTripWithDictionary() throws IOException {
+		byte[] dictionary = DictionaryCompressionUtil.trainDictionary(newSamples(20), DictionaryCompressionUtil.MAX_DICTIONARY_SIZE);
+		byte[] contents = newObservation(1000).getBytes(StandardCharsets.UTF_8);
+
+		// Use a PID which needs more than one byte to encode
+		byte[] compressed = DictionaryCompressionUtil.compress(contents, 300, dictionary);
+		assertEquals(300, DictionaryCompressionUtil.getDictionaryId(compressed));
+		assertArrayEquals(contents, decompress(compressed, dictionary));
+
+		byte[] compressedWithoutDictionary = DictionaryCompressionUtil.compress(contents, 0, null);
+		assertThat(compressed.length, lessThan(compressedWithoutDictionary.length));
+	}
+
+	@Test
+	public void testTrainDictionary() {
+		byte[] dictionary = DictionaryCompressionUtil.trainDictionary(newSamples(20), 1024);
+		assertThat(dictionary.length, lessThanOrEqualTo(1024));
+
+		String dictionaryText = new String(dictionary, StandardCharsets.UTF_8);
+		assertThat(dictionaryText, containsString("http://loinc.org"));
+
+		// Values which only appear in one sample are not useful
+		assertThat(dictionaryText, not(containsString("patient-7\"")));
+	}
+
+	@Test
+	public void testTrainDictionaryIsDeterministic() {
+		List<byte[]> samples = newSamples(10);
+		byte[] first = DictionaryCompressionUtil.trainDictionary(samples, DictionaryCompressionUtil.MAX_DICTIONARY_SIZE);
+		Collections.reverse(samples);
+		byte[] second = DictionaryCompressionUtil.trainDictionary(samples, DictionaryCompressionUtil.MAX_DICTIONARY_SIZE);
+		assertArrayEquals(first, second);
+	}
+
+	@Test
+	public void testTokenize() {
+		assertEquals(Arrays.asList("{", "\"a\"", ":", "\"b\\\"c\"", ",", "\"d\"", ":", "12.5", "}"), DictionaryCompressionUtil.tokenize("{\"a\":\"b\\\"c\",\"d\":12.5}"));
+	}
+
+	@Test
+	public void testToStructuralSample() {
+		String json = "{\"resourceType\":\"Patient\",\"identifier\":[{\"system\":\"http://example.com/mrn\",\"value\":\"12345\"}],\"active\":true,\"name\":[{\"family\":\"Simpson\"}],\"multipleBirthInteger\":2}";
+		String sample = new String(DictionaryCompressionUtil.toStructuralSample(json.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+		assertEquals("{\"resourceType\":\"Patient\",\"identifier\":[{\"system\":\"http://example.com/mrn\",\"value\":\"\"}],\"active\":true,\"name\":[{\"family\":\"\"}],\"multipleBirthInteger\":0}", sample);
+	}
+
+	@Test
+	public void testToStructuralSampleTruncated() {
+		String sample = new String(DictionaryCompressionUtil.toStructuralSample("{\"name\":[{\"family\":\"Simp".getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+		assertEquals("{\"name\":[{\"family\":\"\"", sample);
+	}
+
+	@Test
+	public void testInvalidFormat() {
+		assertThrows(IllegalArgumentException.class, () -> DictionaryCompressionUtil.getDictionaryId(new byte[]{0x1f, (byte) 0x8b}));
+	}
+
+	private static byte[] decompress(byte[] theCompressed, byte[] theDictionary) throws IOException {
+		try (InputStream is = DictionaryCompressionUtil.newInputStream(theCompressed, theDictionary)) {
+			return IOUtils.toByteArray(is);
+		}
+	}
+
+	private static List<byte[]> newSamples(int theCount) {
+		List<byte[]> retVal = new ArrayList<>();
+		for (int i = 0; i < theCount; i++) {
+			retVal.add(newObservation(i).getBytes(StandardCharsets.UTF_8));
+		}
+		return retVal;
+	}
+
+	private static String newObservation(int theIndex) {
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.addCategory().addCoding().setSystem("http://terminology.hl7.org/CodeSystem/observation-category").setCode("vital-signs").setDisplay("Vital Signs");
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode("8867-4").setDisplay("Heart rate");
+		obs.getSubject().setReference("Patient/patient-" + theIndex);
+		obs.getValueQuantity().setValue(60 + theIndex % 40).setUnit("beats/minute").setSystem("http://unitsofmeasure.org").setCode("/min");
+		return ourCtx.newJsonParser().encodeResourceToString(obs);
+	}
+
+}
@@ -702,7 +702,7 @@ public class FhirResourceDaoR4QueryCountTest extends BaseJpaR4Test {
 		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
 		assertEquals(2, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
 		assertEquals(3, myCaptureQueriesListener.countInsertQueriesForCurrentThread());
-		assertEquals(2, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
+		assertEquals(1, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
 		assertEquals(0, myCaptureQueriesListener.countDeleteQueriesForCurrentThread());
 
 		// Do the same a second time - Deletes are enabled so we expect to have to resolve the
@@ -740,7 +740,7 @@ public class FhirResourceDaoR4QueryCountTest extends BaseJpaR4Test {
 		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
 		assertEquals(2, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
 		assertEquals(3, myCaptureQueriesListener.countInsertQueriesForCurrentThread());
-		assertEquals(2, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
+		assertEquals(1, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
 		assertEquals(0, myCaptureQueriesListener.countDeleteQueriesForCurrentThread());
 
 	}
@@ -789,9 +789,9 @@ public class FhirResourceDaoR4QueryCountTest extends BaseJpaR4Test {
 		// Lookup the two existing IDs to make sure they are legit
 		myCaptureQueriesListener.logInsertQueriesForCurrentThread();
 		myCaptureQueriesListener.logUpdateQueriesForCurrentThread();
-		assertEquals(2, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
+		assertEquals(1, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
 		assertEquals(3, myCaptureQueriesListener.countInsertQueriesForCurrentThread());
-		assertEquals(2, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
+		assertEquals(1, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
 		assertEquals(0, myCaptureQueriesListener.countDeleteQueriesForCurrentThread());
 
 		// Do the same a second time - Deletes are enabled so we expect to have to resolve the
@@ -827,9 +827,9 @@ public class FhirResourceDaoR4QueryCountTest extends BaseJpaR4Test {
 
 		// Lookup the two existing IDs to make sure they are legit
 		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
-		assertEquals(2, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
+		assertEquals(1, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
 		assertEquals(3, myCaptureQueriesListener.countInsertQueriesForCurrentThread());
-		assertEquals(2, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
+		assertEquals(1, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
 		assertEquals(0, myCaptureQueriesListener.countDeleteQueriesForCurrentThread());
 
 	}
@@ -884,7 +884,7 @@ public class FhirResourceDaoR4QueryCountTest extends BaseJpaR4Test {
 		assertEquals(3, myCaptureQueriesListener.countInsertQueriesForCurrentThread());
 		// See notes in testTransactionWithMultiplePreExistingReferences_Numeric_DeletesDisabled below
 		myCaptureQueriesListener.logUpdateQueriesForCurrentThread();
-		assertEquals(2, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
+		assertEquals(1, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
 		assertEquals(0, myCaptureQueriesListener.countDeleteQueriesForCurrentThread());
 
 		// Do the same a second time - Deletes are enabled so we expect to have to resolve the
@@ -970,12 +970,12 @@ public class FhirResourceDaoR4QueryCountTest extends BaseJpaR4Test {
 
 		// Lookup the two existing IDs to make sure they are legit
 		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
-		assertEquals(2, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
+		assertEquals(1, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
 		assertEquals(3, myCaptureQueriesListener.countInsertQueriesForCurrentThread());
-		// TODO: We have 2 updates here that are caused by Hibernate deciding to flush its action queue half way through
-		// the transaction because a read is about to take place. I think these are unnecessary but I don't see a simple
-		// way of getting rid of them. Hopefully these can be optimized out later
-		assertEquals(2, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
+		// TODO: We have 1 update here that is caused by Hibernate deciding to flush its action queue half way through
+		// the transaction because a read is about to take place. I think it is unnecessary but I don't see a simple
+		// way of getting rid of it. Hopefully it can be optimized out later
+		assertEquals(1, myCaptureQueriesListener.countUpdateQueriesForCurrentThread());
 		assertEquals(0, myCaptureQueriesListener.countDeleteQueriesForCurrentThread());
 
 		// Do the same a second time - Deletes are enabled so we expect to have to resolve the
@@ -1153,6 +1153,71 @@ public class FhirResourceDaoR4QueryCountTest extends BaseJpaR4Test {
 
 	}
 
+	@Test
+	public void testTransactionWithMultipleConditionalCreates_Identifier() {
+		Patient patient = new Patient();
+		patient.addIdentifier().setSystem("http://foo").setValue("1");
+		IIdType patientId1 = myPatientDao.create(patient).getId().toUnqualifiedVersionless();
+
+		patient = new Patient();
+		patient.addIdentifier().setSystem("http://foo").setValue("2");
+		IIdType patientId2 = myPatientDao.create(patient).getId().toUnqualifiedVersionless();
+
+		// Create transaction
+		Bundle input = createConditionalCreateBundle();
+
+		myCaptureQueriesListener.clear();
+		Bundle output = mySystemDao.transaction(mySrd, input);
+		ourLog.info(myFhirCtx.newJsonParser().setPrettyPrint(true).encodeResourceToString(output));
+
+		// All four conditional URLs are resolved using a single search plus a single token lookup, the
+		// other two searches verify that the newly created resources match their conditional URLs
+		myCaptureQueriesListener.logSelectQueriesForCurrentThread();
+		assertEquals(3, myCaptureQueriesListener.getSelectQueriesForCurrentThread().stream().filter(t -> t.getSql(true, false).contains("HASH_SYS_AND_VALUE")).count());
+		assertEquals(8, myCaptureQueriesListener.countSelectQueriesForCurrentThread());
+
+		assertEquals("200 OK", output.getEntry().get(0).getResponse().getStatus());
+		assertEquals(patientId1.getValue(), new IdType(output.getEntry().get(0).getResponse().getLocation()).toUnqualifiedVersionless().getValue());
+		assertEquals("200 OK", output.getEntry().get(2).getResponse().getStatus());
+		assertEquals(patientId2.getValue(), new IdType(output.getEntry().get(2).getResponse().getLocation()).toUnqualifiedVersionless().getValue());
+		assertEquals("201 Created", output.getEntry().get(4).getResponse().getStatus());
+		assertEquals("201 Created", output.getEntry().get(6).getResponse().getStatus());
+
+		// Do the same a second time - Every patient exists now
+
+		input = createConditionalCreateBundle();
+		output = mySystemDao.transaction(mySrd, input);
+		for (int i = 0; i < 8; i += 2) {
+			assertEquals("200 OK", output.getEntry().get(i).getResponse().getStatus());
+		}
+		assertEquals(4, myPatientDao.search(SearchParameterMap.newSynchronous()).size().intValue());
+	}
+
+	private Bundle createConditionalCreateBundle() {
+		Bundle retVal = new Bundle();
+		for (int i = 1; i <= 4; i++) {
+			Patient patient = new Patient();
+			patient.setId(IdType.newRandomUuid());
+			patient.addIdentifier().setSystem("http://foo").setValue(Integer.toString(i));
+			retVal.addEntry()
+				.setFullUrl(patient.getId())
+				.setResource(patient)
+				.getRequest()
+				.setMethod(Bundle.HTTPVerb.POST)
+				.setUrl("Patient")
+				.setIfNoneExist("Patient?identifier=http://foo|" + i);
+
+			Observation obs = new Observation();
+			obs.getSubject().setReference(patient.getId());
+			retVal.addEntry()
+				.setResource(obs)
+				.getRequest()
+				.setMethod(Bundle.HTTPVerb.POST)
+				.setUrl("Observation");
+		}
+		return retVal;
+	}
+
 
 	@Test
 	public void testTransactionWithMultipleProfiles() {
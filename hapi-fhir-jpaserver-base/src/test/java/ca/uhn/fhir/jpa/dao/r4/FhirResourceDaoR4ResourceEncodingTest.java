@@ -0,0 +1,163 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
+import ca.uhn.fhir.jpa.api.model.ExpungeOptions;
+import ca.uhn.fhir.jpa.dao.data.IResourceEncodingDictionaryDao;
+import ca.uhn.fhir.jpa.dao.encoding.DictionaryCompressionUtil;
+import ca.uhn.fhir.jpa.dao.encoding.ResourceEncodingDictionarySvc;
+import ca.uhn.fhir.jpa.entity.ResourceEncodingDictionaryEntity;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FhirResourceDaoR4ResourceEncodingTest extends BaseJpaR4Test {
+
+	@Autowired
+	private IResourceEncodingDictionaryDao myResourceEncodingDictionaryDao;
+	@Autowired
+	private ResourceEncodingDictionarySvc myResourceEncodingDictionarySvc;
+
+	@AfterEach
+	public void after() {
+		myDaoConfig.setResourceEncoding(new DaoConfig().getResourceEncoding());
+		myDaoConfig.setResourceEncodingDictionarySampleCount(new DaoConfig().getResourceEncodingDictionarySampleCount());
+		myDaoConfig.setExpungeEnabled(new DaoConfig().isExpungeEnabled());
+	}
+
+	@Test
+	public void testJsonzTrainsDictionaryAndReadsAllEncodings() {
+		List<IIdType> ids = new ArrayList<>();
+
+		// Resources stored before switching encodings must remain readable
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSON);
+		ids.add(createObservation(0));
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONC);
+		ids.add(createObservation(1));
+
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONZ);
+		myDaoConfig.setResourceEncodingDictionarySampleCount(5);
+		for (int i = 2; i < 7; i++) {
+			ids.add(createObservation(i));
+		}
+
+		// Dictionaries are trained by a scheduled job, never while storing a resource
+		assertEquals(0, runInTransaction(() -> myResourceEncodingDictionaryDao.count()));
+		myResourceEncodingDictionarySvc.trainPendingDictionaries();
+
+		for (int i = 7; i < 12; i++) {
+			ids.add(createObservation(i));
+		}
+
+		List<ResourceEncodingDictionaryEntity> dictionaries = runInTransaction(() -> myResourceEncodingDictionaryDao.findNewestByResourceType("Observation", PageRequest.of(0, 10)));
+		assertEquals(1, dictionaries.size());
+		long dictionaryId = dictionaries.get(0).getId();
+
+		runInTransaction(() -> {
+			List<ResourceHistoryTable> versions = new ArrayList<>();
+			for (IIdType next : ids) {
+				versions.add(myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(next.getIdPartAsLong(), 1));
+			}
+
+			assertEquals(ResourceEncodingEnum.JSON, versions.get(0).getEncoding());
+			assertEquals(ResourceEncodingEnum.JSONC, versions.get(1).getEncoding());
+
+			// The samples are compressed without a dictionary, everything after uses the trained one
+			for (int i = 2; i < 7; i++) {
+				assertEquals(ResourceEncodingEnum.JSONZ, versions.get(i).getEncoding());
+				assertEquals(0, DictionaryCompressionUtil.getDictionaryId(versions.get(i).getResource()));
+			}
+			for (int i = 7; i < 12; i++) {
+				assertEquals(ResourceEncodingEnum.JSONZ, versions.get(i).getEncoding());
+				assertEquals(dictionaryId, DictionaryCompressionUtil.getDictionaryId(versions.get(i).getResource()));
+			}
+			assertThat(versions.get(11).getResource().length, lessThan(versions.get(6).getResource().length));
+			assertThat(versions.get(11).getResource().length, lessThan(versions.get(1).getResource().length));
+		});
+
+		for (int i = 0; i < ids.size(); i++) {
+			Observation obs = myObservationDao.read(ids.get(i), mySrd);
+			assertEquals("OBS" + i, obs.getIdentifierFirstRep().getValue());
+		}
+	}
+
+	@Test
+	public void testJsonzUpdateWithNoChanges() {
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONZ);
+
+		Patient patient = new Patient();
+		patient.setActive(true);
+		patient.addName().setFamily("Simpson").addGiven("Homer");
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+
+		patient.setId(id);
+		assertEquals("1", myPatientDao.update(patient, mySrd).getId().getVersionIdPart());
+
+		Patient read = myPatientDao.read(id, mySrd);
+		assertTrue(read.getActive());
+		assertEquals("Homer", read.getNameFirstRep().getGivenAsSingleString());
+	}
+
+	@Test
+	public void testJsonzUpdateWithNoChangesAfterDictionaryIsTrained() {
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONZ);
+		myDaoConfig.setResourceEncodingDictionarySampleCount(1);
+
+		Patient patient = new Patient();
+		patient.setActive(true);
+		patient.addName().setFamily("Simpson").addGiven("Homer");
+		IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+		myResourceEncodingDictionarySvc.trainPendingDictionaries();
+		assertEquals(1, runInTransaction(() -> myResourceEncodingDictionaryDao.count()));
+
+		// The contents are now compressed with the dictionary, but are still the same
+		patient.setId(id);
+		assertEquals("1", myPatientDao.update(patient, mySrd).getId().getVersionIdPart());
+	}
+
+	@Test
+	public void testExpungeEverythingDeletesDictionaries() {
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONZ);
+		myDaoConfig.setResourceEncodingDictionarySampleCount(2);
+		createObservation(0);
+		createObservation(1);
+		myResourceEncodingDictionarySvc.trainPendingDictionaries();
+		assertEquals(1, runInTransaction(() -> myResourceEncodingDictionaryDao.count()));
+
+		myDaoConfig.setExpungeEnabled(true);
+		mySystemDao.expunge(new ExpungeOptions().setExpungeEverything(true), mySrd);
+		assertEquals(0, runInTransaction(() -> myResourceEncodingDictionaryDao.count()));
+
+		// New resources are compressed without the deleted dictionary
+		IIdType id = createObservation(2);
+		assertEquals("OBS2", myObservationDao.read(id, mySrd).getIdentifierFirstRep().getValue());
+		runInTransaction(() -> {
+			ResourceHistoryTable version = myResourceHistoryTableDao.findForIdAndVersionAndFetchProvenance(id.getIdPartAsLong(), 1);
+			assertEquals(0, DictionaryCompressionUtil.getDictionaryId(version.getResource()));
+		});
+	}
+
+	private IIdType createObservation(int theIndex) {
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.addCategory().addCoding().setSystem("http://terminology.hl7.org/CodeSystem/observation-category").setCode("vital-signs").setDisplay("Vital Signs");
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode("8867-4").setDisplay("Heart rate");
+		obs.addIdentifier().setSystem("http://example.com/obs").setValue("OBS" + theIndex);
+		obs.getValueQuantity().setValue(60 + theIndex).setUnit("beats/minute").setSystem("http://unitsofmeasure.org").setCode("/min");
+		return myObservationDao.create(obs, mySrd).getId().toUnqualifiedVersionless();
+	}
+
+}
@@ -1,5 +1,7 @@
 package ca.uhn.fhir.jpa.dao.r4;
 
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.jpa.api.config.DaoConfig;
 import ca.uhn.fhir.jpa.dao.BaseHapiFhirDao;
 import ca.uhn.fhir.jpa.model.entity.NormalizedQuantitySearchLevel;
@@ -15,6 +17,7 @@ import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
@@ -76,7 +79,9 @@ import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -95,6 +100,7 @@ import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -110,6 +116,7 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 	public void after() {
 		myDaoConfig.setAllowInlineMatchUrlReferences(false);
 		myDaoConfig.setAllowMultipleDelete(new DaoConfig().isAllowMultipleDelete());
+		myDaoConfig.setBundleBatchPoolSize(new DaoConfig().getBundleBatchPoolSize());
 		myModelConfig.setNormalizedQuantitySearchLevel(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_SEARCH_NOT_SUPPORTED);
 	}
 
@@ -376,6 +383,87 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 		assertThat(oo.getIssue().get(0).getDiagnostics(), containsString("Unknown search parameter"));
 	}
 
+	@Test
+	public void testBatchInParallel() {
+		myDaoConfig.setBundleBatchPoolSize(3);
+
+		Bundle request = new Bundle();
+		request.setType(BundleType.BATCH);
+		for (int i = 0; i < 10; i++) {
+			if (i == 5) {
+				request
+					.addEntry()
+					.getRequest()
+					.setMethod(HTTPVerb.GET)
+					.setUrl("Patient/BABABABA");
+			}
+
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue("FOO" + i);
+			request
+				.addEntry()
+				.setResource(p)
+				.getRequest()
+				.setMethod(HTTPVerb.POST)
+				.setUrl("Patient");
+		}
+
+		Bundle response = mySystemDao.transaction(mySrd, request);
+		assertEquals(11, response.getEntry().size());
+
+		// Response entries must be in the same order as the request entries
+		for (int i = 0; i < 11; i++) {
+			BundleEntryComponent nextEntry = response.getEntry().get(i);
+			if (i == 5) {
+				assertEquals("404 Not Found", nextEntry.getResponse().getStatus());
+				OperationOutcome oo = (OperationOutcome) nextEntry.getResponse().getOutcome();
+				assertEquals("Resource Patient/BABABABA is not known", oo.getIssue().get(0).getDiagnostics());
+			} else {
+				assertEquals("201 Created", nextEntry.getResponse().getStatus());
+				Patient patient = myPatientDao.read(new IdType(nextEntry.getResponse().getLocation()), mySrd);
+				assertEquals("FOO" + (i < 5 ? i : i - 1), patient.getIdentifierFirstRep().getValue());
+			}
+		}
+	}
+
+	@Test
+	public void testBatchInParallelGivesEachEntryItsOwnUserData() {
+		myDaoConfig.setBundleBatchPoolSize(3);
+		mySrd.getUserData().put("PARENT_KEY", "PARENT_VALUE");
+
+		Set<Map<Object, Object>> userDataMaps = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) -> {
+			RequestDetails requestDetails = theArgs.get(RequestDetails.class);
+			assertEquals("PARENT_VALUE", requestDetails.getUserData().get("PARENT_KEY"));
+			requestDetails.getUserData().put("ENTRY_KEY", "ENTRY_VALUE");
+			userDataMaps.add(requestDetails.getUserData());
+		};
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.STORAGE_PRESTORAGE_RESOURCE_CREATED, interceptor);
+		try {
+			Bundle request = new Bundle();
+			request.setType(BundleType.BATCH);
+			for (int i = 0; i < 10; i++) {
+				Patient p = new Patient();
+				p.addIdentifier().setSystem("urn:system").setValue("FOO" + i);
+				request
+					.addEntry()
+					.setResource(p)
+					.getRequest()
+					.setMethod(HTTPVerb.POST)
+					.setUrl("Patient");
+			}
+
+			Bundle response = mySystemDao.transaction(mySrd, request);
+			assertEquals(10, response.getEntry().size());
+		} finally {
+			myInterceptorRegistry.unregisterInterceptor(interceptor);
+		}
+
+		assertEquals(10, userDataMaps.size());
+		assertFalse(userDataMaps.contains(mySrd.getUserData()));
+		assertFalse(mySrd.getUserData().containsKey("ENTRY_KEY"));
+	}
+
 	@Test
 	public void testCircularCreateAndDelete() {
 		Encounter enc = new Encounter();
@@ -2251,6 +2339,41 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 		}
 	}
 
+	@Test
+	public void testTransactionConditionalCreateMatchesResourceCreatedEarlierInTransaction() {
+		Bundle inputBundle = new Bundle();
+		inputBundle.setType(Bundle.BundleType.TRANSACTION);
+
+		// The first patient also has the identifier the second one is conditional on
+		Patient patient1 = new Patient();
+		patient1.addIdentifier().setSystem("urn:foo").setValue("1");
+		patient1.addIdentifier().setSystem("urn:foo").setValue("2");
+		inputBundle
+			.addEntry()
+			.setResource(patient1)
+			.getRequest()
+			.setMethod(HTTPVerb.POST)
+			.setIfNoneExist("Patient?identifier=urn:foo|1");
+		Patient patient2 = new Patient();
+		patient2.addIdentifier().setSystem("urn:foo").setValue("2");
+		inputBundle
+			.addEntry()
+			.setResource(patient2)
+			.getRequest()
+			.setMethod(HTTPVerb.POST)
+			.setIfNoneExist("Patient?identifier=urn:foo|2");
+
+		// Both URLs are resolved up front, but the duplicate must still be caught just like when they are resolved individually
+		try {
+			mySystemDao.transaction(mySrd, inputBundle);
+			fail();
+		} catch (InvalidRequestException e) {
+			assertEquals("Unable to process Transaction - Request would cause multiple resources to match URL: \"Patient?identifier=urn:foo|2\". Does transaction request contain duplicates?",
+				e.getMessage());
+		}
+		assertEquals(0, myPatientDao.search(SearchParameterMap.newSynchronous()).size().intValue());
+	}
+
 	@Test
 	public void testTransactionDoubleConditionalUpdateOnlyCreatesOne() {
 		Bundle inputBundle = new Bundle();
@@ -0,0 +1,159 @@
+package ca.uhn.fhir.jpa.provider.r4;
+
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
+import ca.uhn.fhir.jpa.dao.data.ISearchDao;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.BasePagingProvider;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class ResourceProviderR4KeysetPagingTest extends BaseResourceProviderR4Test {
+
+	@Autowired
+	private ISearchDao mySearchEntityDao;
+	private List<String> myPatientIds;
+
+	@Override
+	@BeforeEach
+	public void before() throws Exception {
+		super.before();
+		myDaoConfig.setKeysetPagingEnabled(true);
+
+		myPatientIds = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			Patient patient = new Patient();
+			patient.addName().setFamily("KEYSET");
+			myPatientIds.add(myPatientDao.create(patient).getId().toUnqualifiedVersionless().getValue());
+		}
+	}
+
+	@Override
+	@AfterEach
+	public void after() throws Exception {
+		super.after();
+		myDaoConfig.setKeysetPagingEnabled(new DaoConfig().isKeysetPagingEnabled());
+	}
+
+	@Test
+	public void testPageThroughUnsortedSearch() {
+		List<String> ids = searchAndLoadAllPages(ourServerBase + "/Patient?family=KEYSET&_count=10");
+
+		assertEquals(myPatientIds, ids);
+		assertEquals(0, mySearchEntityDao.count());
+	}
+
+	@Test
+	public void testPageThroughSearchSortedByLastUpdatedDescending() {
+		List<String> ids = searchAndLoadAllPages(ourServerBase + "/Patient?family=KEYSET&_count=10&_sort=-_lastUpdated");
+
+		List<String> expected = new ArrayList<>(myPatientIds);
+		Collections.reverse(expected);
+		assertEquals(expected, ids);
+		assertEquals(0, mySearchEntityDao.count());
+	}
+
+	@Test
+	public void testSingleFullPageHasTotal() {
+		Bundle bundle = myClient.search().byUrl(ourServerBase + "/Patient?family=KEYSET&_count=50").returnBundle(Bundle.class).execute();
+
+		assertEquals(25, bundle.getEntry().size());
+		assertEquals(25, bundle.getTotal());
+		assertNull(bundle.getLink(Constants.LINK_NEXT));
+	}
+
+	@Test
+	public void testExactlyFullPageHasNoNextLink() {
+		Bundle bundle = myClient.search().byUrl(ourServerBase + "/Patient?family=KEYSET&_count=25").returnBundle(Bundle.class).execute();
+
+		assertEquals(25, bundle.getEntry().size());
+		assertEquals(25, bundle.getTotal());
+		assertNull(bundle.getLink(Constants.LINK_NEXT));
+	}
+
+	@Test
+	public void testPageThroughSearchMatchingSeveralIndexRowsPerResource() {
+		List<String> patientIds = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			Patient patient = new Patient();
+			patient.addName().setFamily("DUPLICATE");
+			patient.addName().setFamily("DUPLICATE").addGiven("OTHER");
+			patientIds.add(myPatientDao.create(patient).getId().toUnqualifiedVersionless().getValue());
+		}
+
+		// Each patient matches two rows, so a page of rows would only hold half a page of patients
+		List<String> ids = searchAndLoadAllPages(ourServerBase + "/Patient?family=DUPLICATE&_count=10");
+
+		assertEquals(patientIds, ids);
+	}
+
+	@Test
+	public void testCountIsLimitedToPagingProviderMaximum() {
+		BasePagingProvider pagingProvider = (BasePagingProvider) ourRestServer.getPagingProvider();
+		int maximumPageSize = pagingProvider.getMaximumPageSize();
+		pagingProvider.setMaximumPageSize(10);
+		try {
+			Bundle bundle = myClient.search().byUrl(ourServerBase + "/Patient?family=KEYSET&_count=1000000").returnBundle(Bundle.class).execute();
+
+			assertEquals(10, bundle.getEntry().size());
+			assertThat(bundle.getLink(Constants.LINK_NEXT).getUrl(), containsString(Constants.PARAM_PAGE_TOKEN + "="));
+		} finally {
+			pagingProvider.setMaximumPageSize(maximumPageSize);
+		}
+	}
+
+	@Test
+	public void testSearchWithUnsupportedSortIsNotKeysetPaged() {
+		Bundle bundle = myClient.search().byUrl(ourServerBase + "/Patient?family=KEYSET&_count=10&_sort=family").returnBundle(Bundle.class).execute();
+
+		assertEquals(10, bundle.getEntry().size());
+		assertThat(bundle.getLink(Constants.LINK_NEXT).getUrl(), not(containsString(Constants.PARAM_PAGE_TOKEN)));
+		assertEquals(1, mySearchEntityDao.count());
+	}
+
+	@Test
+	public void testInvalidPageToken() {
+		try {
+			myClient.search().byUrl(ourServerBase + "/Patient?family=KEYSET&" + Constants.PARAM_PAGE_TOKEN + "=FOO").returnBundle(Bundle.class).execute();
+			fail();
+		} catch (InvalidRequestException e) {
+			assertThat(e.getMessage(), containsString("Invalid " + Constants.PARAM_PAGE_TOKEN + " value: FOO"));
+		}
+	}
+
+	private List<String> searchAndLoadAllPages(String theUrl) {
+		List<String> retVal = new ArrayList<>();
+		Bundle bundle = myClient.search().byUrl(theUrl).returnBundle(Bundle.class).execute();
+		int pages = 1;
+		while (true) {
+			assertNull(bundle.getTotalElement().getValue());
+			bundle.getEntry().forEach(t -> retVal.add(t.getResource().getIdElement().toUnqualifiedVersionless().getValue()));
+			if (bundle.getLink(Constants.LINK_NEXT) == null) {
+				break;
+			}
+			assertThat(bundle.getLink(Constants.LINK_NEXT).getUrl(), containsString(Constants.PARAM_PAGE_TOKEN + "="));
+			bundle = myClient.loadPage().next(bundle).execute();
+			pages++;
+		}
+		assertNotNull(bundle);
+		assertEquals(3, pages);
+		return retVal;
+	}
+
+}
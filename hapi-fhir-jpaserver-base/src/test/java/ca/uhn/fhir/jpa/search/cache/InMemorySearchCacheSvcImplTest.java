@@ -0,0 +1,191 @@
+package ca.uhn.fhir.jpa.search.cache;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import ca.uhn.fhir.rest.api.server.storage.ResourcePersistentId;
+import org.apache.commons.lang3.time.DateUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InMemorySearchCacheSvcImplTest {
+
+	private DaoConfig myDaoConfig;
+
+	@BeforeEach
+	public void before() {
+		myDaoConfig = new DaoConfig();
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	public void testStoreAndFetchResults(boolean theOffHeap) {
+		InMemorySearchResultCacheSvcImpl svc = new InMemorySearchResultCacheSvcImpl(DaoConfig.DEFAULT_IN_MEMORY_SEARCH_CACHE_MAX_BYTES, theOffHeap);
+		Search search = newSearch("Patient?name=smith");
+
+		List<ResourcePersistentId> firstPass = pids(0, 10);
+		svc.storeResults(search, Collections.emptyList(), firstPass);
+		List<ResourcePersistentId> secondPass = pids(10, 3000);
+		svc.storeResults(search, firstPass, secondPass);
+
+		assertEquals(pids(0, 20), svc.fetchResultPids(search, 0, 20));
+		assertEquals(pids(1020, 1030), svc.fetchResultPids(search, 1020, 1030));
+		assertEquals(pids(2990, 3000), svc.fetchResultPids(search, 2990, 3010));
+		assertEquals(Collections.emptyList(), svc.fetchResultPids(search, 3000, 3010));
+		assertEquals(pids(0, 3000), svc.fetchAllResultPids(search));
+		assertEquals(3 * InMemorySearchResultCacheSvcImpl.SEGMENT_SIZE * Long.BYTES, svc.getCurrentBytes());
+		assertEquals(5, svc.getHitCount());
+
+		assertNull(svc.fetchResultPids(newSearch("Patient?name=jones"), 0, 10));
+		assertEquals(1, svc.getMissCount());
+
+		svc.remove(search.getUuid());
+		assertNull(svc.fetchAllResultPids(search));
+		assertEquals(0, svc.getCurrentBytes());
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	public void testStoreResultsRebuildsWhenOutOfSync(boolean theOffHeap) {
+		InMemorySearchResultCacheSvcImpl svc = new InMemorySearchResultCacheSvcImpl(DaoConfig.DEFAULT_IN_MEMORY_SEARCH_CACHE_MAX_BYTES, theOffHeap);
+		Search search = newSearch("Patient?name=smith");
+
+		svc.storeResults(search, pids(0, 5), pids(5, 10));
+
+		assertEquals(pids(0, 10), svc.fetchAllResultPids(search));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	public void testLeastRecentlyUsedResultsAreEvicted(boolean theOffHeap) {
+		long maxBytes = 2 * InMemorySearchResultCacheSvcImpl.SEGMENT_SIZE * Long.BYTES;
+		InMemorySearchResultCacheSvcImpl resultSvc = new InMemorySearchResultCacheSvcImpl(maxBytes, theOffHeap);
+		InMemorySearchCacheSvcImpl searchSvc = newSearchCacheSvc(resultSvc);
+
+		Search search0 = searchSvc.save(newSearch("Patient?name=0"));
+		Search search1 = searchSvc.save(newSearch("Patient?name=1"));
+		Search search2 = searchSvc.save(newSearch("Patient?name=2"));
+		resultSvc.storeResults(search0, Collections.emptyList(), pids(0, 1000));
+		resultSvc.storeResults(search1, Collections.emptyList(), pids(0, 1000));
+
+		// Touch search 0 so that search 1 is the least recently used
+		resultSvc.fetchResultPids(search0, 0, 10);
+		resultSvc.storeResults(search2, Collections.emptyList(), pids(0, 1000));
+
+		assertEquals(1, resultSvc.getEvictionCount());
+		assertNull(resultSvc.fetchAllResultPids(search1));
+		assertFalse(searchSvc.fetchByUuid(search1.getUuid()).isPresent());
+		assertEquals(1000, resultSvc.fetchAllResultPids(search0).size());
+		assertEquals(1000, resultSvc.fetchAllResultPids(search2).size());
+		assertTrue(searchSvc.fetchByUuid(search2.getUuid()).isPresent());
+		assertTrue(resultSvc.getCurrentBytes() <= maxBytes);
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	public void testResultsForCurrentSearchAreNeverEvicted(boolean theOffHeap) {
+		InMemorySearchResultCacheSvcImpl svc = new InMemorySearchResultCacheSvcImpl(100, theOffHeap);
+		Search search = newSearch("Patient?name=smith");
+
+		svc.storeResults(search, Collections.emptyList(), pids(0, 100));
+
+		assertEquals(100, svc.fetchAllResultPids(search).size());
+		assertEquals(0, svc.getEvictionCount());
+	}
+
+	@Test
+	public void testTryToMarkSearchAsInProgress() {
+		InMemorySearchCacheSvcImpl svc = newSearchCacheSvc(new InMemorySearchResultCacheSvcImpl(1000, false));
+		Search search = newSearch("Patient?name=smith");
+		search.setStatus(SearchStatusEnum.PASSCMPLET);
+		svc.save(search);
+
+		Optional<Search> outcome = svc.tryToMarkSearchAsInProgress(search);
+		assertTrue(outcome.isPresent());
+		assertSame(search, outcome.get());
+		assertEquals(SearchStatusEnum.LOADING, search.getStatus());
+
+		assertFalse(svc.tryToMarkSearchAsInProgress(search).isPresent());
+	}
+
+	@Test
+	public void testFindCandidatesForReuse() {
+		InMemorySearchCacheSvcImpl svc = newSearchCacheSvc(new InMemorySearchResultCacheSvcImpl(1000, false));
+		Search search = svc.save(newSearch("?name=smith"));
+		Search failed = svc.save(newSearch("?name=jones"));
+		failed.setStatus(SearchStatusEnum.FAILED);
+		Search notReusable = svc.save(newSearch("?name=brown"));
+		notReusable.setCannotBeReused();
+
+		Instant cutoff = Instant.now().minusSeconds(60);
+		assertSame(search, svc.findCandidatesForReuse("Patient", "?name=smith", cutoff, RequestPartitionId.allPartitions()).orElse(null));
+		assertFalse(svc.findCandidatesForReuse("Observation", "?name=smith", cutoff, RequestPartitionId.allPartitions()).isPresent());
+		assertFalse(svc.findCandidatesForReuse("Patient", "?name=smith", Instant.now().plusSeconds(60), RequestPartitionId.allPartitions()).isPresent());
+		assertFalse(svc.findCandidatesForReuse("Patient", "?name=jones", cutoff, RequestPartitionId.allPartitions()).isPresent());
+		assertFalse(svc.findCandidatesForReuse("Patient", "?name=brown", cutoff, RequestPartitionId.allPartitions()).isPresent());
+	}
+
+	@Test
+	public void testPollForStaleSearches() {
+		InMemorySearchResultCacheSvcImpl resultSvc = new InMemorySearchResultCacheSvcImpl(100000, false);
+		InMemorySearchCacheSvcImpl svc = newSearchCacheSvc(resultSvc);
+		myDaoConfig.setExpireSearchResultsAfterMillis(DateUtils.MILLIS_PER_HOUR);
+		myDaoConfig.setReuseCachedSearchResultsForMillis(DateUtils.MILLIS_PER_MINUTE);
+
+		Search fresh = svc.save(newSearch("?name=fresh"));
+		Search stale = svc.save(newSearch("?name=stale"));
+		stale.setCreated(new Date(System.currentTimeMillis() - 2 * DateUtils.MILLIS_PER_HOUR));
+		resultSvc.storeResults(fresh, Collections.emptyList(), pids(0, 10));
+		resultSvc.storeResults(stale, Collections.emptyList(), pids(0, 10));
+
+		svc.pollForStaleSearchesAndDeleteThem();
+
+		assertEquals(1, svc.getSearchCount());
+		assertTrue(svc.fetchByUuid(fresh.getUuid()).isPresent());
+		assertFalse(svc.fetchByUuid(stale.getUuid()).isPresent());
+		assertNull(resultSvc.fetchAllResultPids(stale));
+		assertEquals(1, resultSvc.getEntryCount());
+	}
+
+	private InMemorySearchCacheSvcImpl newSearchCacheSvc(InMemorySearchResultCacheSvcImpl theResultSvc) {
+		InMemorySearchCacheSvcImpl retVal = new InMemorySearchCacheSvcImpl(theResultSvc);
+		retVal.setDaoConfigForUnitTest(myDaoConfig);
+		return retVal;
+	}
+
+	private static Search newSearch(String theQueryString) {
+		Search retVal = new Search();
+		retVal.setUuid(UUID.randomUUID().toString());
+		retVal.setResourceType("Patient");
+		retVal.setSearchQueryString(theQueryString, RequestPartitionId.allPartitions());
+		retVal.setCreated(new Date());
+		retVal.setStatus(SearchStatusEnum.LOADING);
+		return retVal;
+	}
+
+	private static List<ResourcePersistentId> pids(int theFrom, int theTo) {
+		List<ResourcePersistentId> retVal = new ArrayList<>();
+		for (long i = theFrom; i < theTo; i++) {
+			retVal.add(new ResourcePersistentId(i));
+		}
+		return retVal;
+	}
+
+}
@@ -9,11 +9,15 @@ import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
 import ca.uhn.fhir.jpa.model.util.UcumServiceUtil;
 import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.searchparam.matcher.IndexedSearchParamExtractor;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
 import ca.uhn.fhir.jpa.subscription.match.matcher.matching.InMemorySubscriptionMatcher;
 import ca.uhn.fhir.jpa.subscription.match.matcher.matching.SubscriptionMatchingStrategy;
 import ca.uhn.fhir.jpa.subscription.match.matcher.matching.SubscriptionStrategyEvaluator;
+import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
+import ca.uhn.fhir.jpa.subscription.match.registry.SubscriptionCriteria;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
 import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedMessage;
 import ca.uhn.fhir.jpa.util.CoordCalculatorTest;
@@ -74,6 +78,7 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
@@ -98,6 +103,8 @@ public class InMemorySubscriptionMatcherR4Test {
 	FhirContext myFhirContext;
 	@Autowired
 	MatchUrlService myMatchUrlService;
+	@Autowired
+	IndexedSearchParamExtractor myIndexedSearchParamExtractor;
 
 	@Autowired
 	ModelConfig myModelConfig;
@@ -571,6 +578,34 @@ public class InMemorySubscriptionMatcherR4Test {
 		}
 	}
 
+	@Test
+	public void testMatchActiveSubscriptionUsesExtractedSearchParams() {
+		Patient patient = new Patient();
+		patient.setId("Patient/123");
+		patient.addName().setFamily("FOO");
+		Patient otherPatient = new Patient();
+		otherPatient.setId("Patient/456");
+		otherPatient.addName().setFamily("BAR");
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_FAMILY, new StringParam("FOO"));
+		CanonicalSubscription subscription = new CanonicalSubscription();
+		subscription.setCriteriaString("Patient" + params.toNormalizedQueryString(myFhirContext));
+		subscription.setIdElement(new IdType("Subscription", 123L));
+		ActiveSubscription activeSubscription = new ActiveSubscription(subscription, "channel");
+		activeSubscription.setCriteria(new SubscriptionCriteria("Patient", params, Collections.emptySet()));
+		ResourceModifiedMessage msg = new ResourceModifiedMessage(myFhirContext, patient, ResourceModifiedMessage.OperationTypeEnum.CREATE);
+
+		assertTrue(myInMemorySubscriptionMatcher.match(activeSubscription, msg, null).matched());
+
+		ResourceIndexedSearchParams searchParams = myIndexedSearchParamExtractor.extractIndexedSearchParams(patient, null);
+		assertTrue(myInMemorySubscriptionMatcher.match(activeSubscription, msg, searchParams).matched());
+
+		// The search parameters passed in are used instead of being extracted from the resource again
+		ResourceIndexedSearchParams otherSearchParams = myIndexedSearchParamExtractor.extractIndexedSearchParams(otherPatient, null);
+		assertFalse(myInMemorySubscriptionMatcher.match(activeSubscription, msg, otherSearchParams).matched());
+	}
+
 	@Test
 	public void testReferenceAlias() {
 		Observation obs = new Observation();
@@ -0,0 +1,84 @@
+package ca.uhn.fhir.jpa.term;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TermConceptClosureTest {
+
+	/**
+	 * <pre>
+	 *        1          10
+	 *      /   \        |
+	 *     2     3       11
+	 *      \   / \
+	 *        4    5
+	 *        |
+	 *        6
+	 * </pre>
+	 */
+	private TermConceptClosure createClosure() {
+		long[] parents = {1, 1, 2, 3, 3, 4, 10};
+		long[] children = {2, 3, 4, 4, 5, 6, 11};
+		return new TermConceptClosure(parents, children);
+	}
+
+	@Test
+	public void testCounts() {
+		TermConceptClosure closure = createClosure();
+		assertEquals(8, closure.getConceptCount());
+		assertEquals(7, closure.getLinkCount());
+	}
+
+	@Test
+	public void testIsAncestor() {
+		TermConceptClosure closure = createClosure();
+
+		assertTrue(closure.isAncestor(1, 2));
+		assertTrue(closure.isAncestor(1, 6));
+		assertTrue(closure.isAncestor(2, 6));
+		assertTrue(closure.isAncestor(10, 11));
+
+		// 4 has two parents, so one of these is only reachable outside the spanning tree
+		assertTrue(closure.isAncestor(2, 4));
+		assertTrue(closure.isAncestor(3, 4));
+		assertTrue(closure.isAncestor(3, 6));
+
+		assertFalse(closure.isAncestor(2, 1));
+		assertFalse(closure.isAncestor(2, 3));
+		assertFalse(closure.isAncestor(2, 5));
+		assertFalse(closure.isAncestor(1, 11));
+		assertFalse(closure.isAncestor(4, 4));
+		assertFalse(closure.isAncestor(1, 999));
+		assertFalse(closure.isAncestor(999, 1));
+	}
+
+	@Test
+	public void testDescendantsAndAncestors() {
+		TermConceptClosure closure = createClosure();
+
+		assertThat(closure.getDescendantPids(1), containsInAnyOrder(2L, 3L, 4L, 5L, 6L));
+		assertThat(closure.getDescendantPids(3), containsInAnyOrder(4L, 5L, 6L));
+		assertThat(closure.getDescendantPids(6), empty());
+		assertThat(closure.getDescendantPids(999), empty());
+
+		assertThat(closure.getAncestorPids(6), containsInAnyOrder(4L, 2L, 3L, 1L));
+		assertThat(closure.getAncestorPids(11), containsInAnyOrder(10L));
+		assertThat(closure.getAncestorPids(1), empty());
+	}
+
+	@Test
+	public void testCycleIsTolerated() {
+		TermConceptClosure closure = new TermConceptClosure(new long[]{1, 2, 3}, new long[]{2, 3, 1});
+
+		assertTrue(closure.isAncestor(1, 3));
+		assertTrue(closure.isAncestor(3, 1));
+		assertThat(closure.getDescendantPids(1), containsInAnyOrder(2L, 3L));
+	}
+
+}
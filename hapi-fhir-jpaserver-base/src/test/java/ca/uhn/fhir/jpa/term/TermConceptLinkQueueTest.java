@@ -0,0 +1,66 @@
+package ca.uhn.fhir.jpa.term;
+
+import ca.uhn.fhir.jpa.entity.TermConceptParentChildLink;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TermConceptLinkQueueTest {
+
+	@Test
+	public void testPollInInsertionOrderAcrossChunks() {
+		TermConceptLinkQueue queue = new TermConceptLinkQueue();
+		assertTrue(queue.isEmpty());
+
+		int count = 25000;
+		for (int i = 0; i < count; i++) {
+			TermConceptParentChildLink.RelationshipTypeEnum type = i % 2 == 0 ? TermConceptParentChildLink.RelationshipTypeEnum.ISA : null;
+			queue.add(i, i + 1_000_000L, 5L, type);
+		}
+		assertEquals(count, queue.size());
+		assertFalse(queue.isEmpty());
+
+		int expected = 0;
+		while (!queue.isEmpty()) {
+			List<TermConceptLinkQueue.Link> links = queue.poll(1000);
+			assertEquals(1000, links.size());
+			for (TermConceptLinkQueue.Link next : links) {
+				assertEquals(expected, next.getParentPid());
+				assertEquals(expected + 1_000_000L, next.getChildPid());
+				assertEquals(5L, next.getCodeSystemVersionPid());
+				if (expected % 2 == 0) {
+					assertEquals(TermConceptParentChildLink.RelationshipTypeEnum.ISA, next.getRelationshipType());
+				} else {
+					assertNull(next.getRelationshipType());
+				}
+				expected++;
+			}
+		}
+		assertEquals(count, expected);
+		assertEquals(0, queue.poll(1000).size());
+	}
+
+	@Test
+	public void testAddAfterDrainAndClear() {
+		TermConceptLinkQueue queue = new TermConceptLinkQueue();
+		queue.add(1L, 2L, 3L, null);
+		assertEquals(1, queue.poll(10).size());
+
+		queue.add(4L, 5L, 6L, null);
+		queue.add(7L, 8L, 9L, null);
+		List<TermConceptLinkQueue.Link> links = queue.poll(1);
+		assertEquals(1, links.size());
+		assertEquals(4L, links.get(0).getParentPid());
+		assertEquals(1, queue.size());
+
+		queue.clear();
+		assertTrue(queue.isEmpty());
+		assertEquals(0, queue.poll(10).size());
+	}
+
+}
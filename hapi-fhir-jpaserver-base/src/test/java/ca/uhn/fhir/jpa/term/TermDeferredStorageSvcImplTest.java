@@ -2,20 +2,35 @@ package ca.uhn.fhir.jpa.term;
 
 import ca.uhn.fhir.jpa.dao.data.ITermCodeSystemVersionDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptDao;
+import ca.uhn.fhir.jpa.dao.data.ITermConceptParentChildLinkDao;
 import ca.uhn.fhir.jpa.entity.TermCodeSystemVersion;
 import ca.uhn.fhir.jpa.entity.TermConcept;
 import ca.uhn.fhir.jpa.entity.TermConceptParentChildLink;
 import ca.uhn.fhir.jpa.term.api.ITermCodeSystemStorageSvc;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.transaction.PlatformTransactionManager;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -32,6 +47,10 @@ public class TermDeferredStorageSvcImplTest {
 	private ITermConceptDao myConceptDao;
 	@Mock
 	private ITermCodeSystemVersionDao myTermCodeSystemVersionDao;
+	@Mock
+	private ITermConceptParentChildLinkDao myConceptParentChildLinkDao;
+	@Mock
+	private MemoryCacheService myMemoryCacheService;
 
 	@Test
 	public void testSaveDeferredWithExecutionSuspended() {
@@ -132,4 +151,134 @@ public class TermDeferredStorageSvcImplTest {
 		verifyNoMoreInteractions(myTermConceptStorageSvc);
 	}
 
+	@Test
+	public void testSaveDeferred_ConceptParentChildLink() {
+		TermCodeSystemVersion codeSystemVersion = new TermCodeSystemVersion().setId(1L);
+		TermConceptParentChildLink conceptLink = new TermConceptParentChildLink();
+		conceptLink.setChild(new TermConcept().setId(111L));
+		conceptLink.setParent(new TermConcept().setId(222L));
+		conceptLink.setCodeSystem(codeSystemVersion);
+		conceptLink.setRelationshipType(TermConceptParentChildLink.RelationshipTypeEnum.ISA);
+
+		TermConcept childReference = new TermConcept().setId(111L);
+		TermConcept parentReference = new TermConcept().setId(222L);
+		when(myConceptDao.findIdsByIds(anyCollection())).thenReturn(Arrays.asList(111L, 222L));
+		when(myConceptDao.getOne(111L)).thenReturn(childReference);
+		when(myConceptDao.getOne(222L)).thenReturn(parentReference);
+		when(myTermCodeSystemVersionDao.getOne(1L)).thenReturn(codeSystemVersion);
+
+		TermDeferredStorageSvcImpl svc = new TermDeferredStorageSvcImpl();
+		svc.setTransactionManagerForUnitTest(myTxManager);
+		svc.setCodeSystemStorageSvcForUnitTest(myTermConceptStorageSvc);
+		svc.setConceptDaoForUnitTest(myConceptDao);
+		svc.setCodeSystemVersionDaoForUnitTest(myTermCodeSystemVersionDao);
+		svc.setConceptParentChildLinkDaoForUnitTest(myConceptParentChildLinkDao);
+		svc.setMemoryCacheServiceForUnitTest(myMemoryCacheService);
+		svc.setProcessDeferred(true);
+		svc.addConceptLinkToStorageQueue(conceptLink);
+		svc.saveDeferred();
+
+		ArgumentCaptor<TermConceptParentChildLink> captor = ArgumentCaptor.forClass(TermConceptParentChildLink.class);
+		verify(myConceptParentChildLinkDao, times(1)).save(captor.capture());
+		TermConceptParentChildLink saved = captor.getValue();
+		assertSame(childReference, saved.getChild());
+		assertSame(parentReference, saved.getParent());
+		assertSame(codeSystemVersion, saved.getCodeSystem());
+		assertEquals(TermConceptParentChildLink.RelationshipTypeEnum.ISA, saved.getRelationshipType());
+		assertTrue(svc.isStorageQueueEmpty());
+
+		verify(myTermCodeSystemVersionDao, times(1)).incrementLinksChangeCount(1L);
+		verify(myMemoryCacheService, times(1)).invalidateKeys(MemoryCacheService.CacheEnum.CONCEPT_CLOSURE, Collections.singleton(1L));
+	}
+
+	@Test
+	public void testSaveDeferred_ConceptParentChildLink_CompactedWhileConceptsRemain() {
+		TermCodeSystemVersion codeSystemVersion = new TermCodeSystemVersion().setId(1L);
+		when(myTermCodeSystemVersionDao.findById(anyLong())).thenReturn(Optional.of(codeSystemVersion));
+
+		TermDeferredStorageSvcImpl svc = new TermDeferredStorageSvcImpl();
+		svc.setTransactionManagerForUnitTest(myTxManager);
+		svc.setCodeSystemStorageSvcForUnitTest(myTermConceptStorageSvc);
+		svc.setConceptDaoForUnitTest(myConceptDao);
+		svc.setCodeSystemVersionDaoForUnitTest(myTermCodeSystemVersionDao);
+		svc.setConceptParentChildLinkDaoForUnitTest(myConceptParentChildLinkDao);
+		svc.setMemoryCacheServiceForUnitTest(myMemoryCacheService);
+		svc.setProcessDeferred(true);
+
+		// More concepts than are saved in one pass
+		List<TermConcept> concepts = new ArrayList<>();
+		for (int i = 0; i < 1001; i++) {
+			TermConcept concept = new TermConcept();
+			concept.setCode("CODE_" + i);
+			concept.setCodeSystemVersion(codeSystemVersion);
+			concepts.add(concept);
+			svc.addConceptToStorageQueue(concept);
+		}
+
+		// Neither end has a PID yet when the link is queued
+		TermConceptParentChildLink conceptLink = new TermConceptParentChildLink();
+		conceptLink.setParent(concepts.get(0));
+		conceptLink.setChild(concepts.get(1));
+		conceptLink.setCodeSystem(codeSystemVersion);
+		svc.addConceptLinkToStorageQueue(conceptLink);
+		assertEquals(0, svc.getCompactConceptLinksToSaveLaterCountForUnitTest());
+
+		AtomicLong nextPid = new AtomicLong(100);
+		AtomicInteger compactedWhenSavingLastConcept = new AtomicInteger(-1);
+		when(myTermConceptStorageSvc.saveConcept(any())).thenAnswer(t -> {
+			TermConcept concept = t.getArgument(0);
+			concept.setId(nextPid.getAndIncrement());
+			if (concept == concepts.get(1000)) {
+				compactedWhenSavingLastConcept.set(svc.getCompactConceptLinksToSaveLaterCountForUnitTest());
+			}
+			return 1;
+		});
+		when(myConceptDao.findIdsByIds(anyCollection())).thenReturn(Arrays.asList(100L, 101L));
+
+		svc.saveDeferred();
+
+		// The link was compacted after the first batch, before the last concept was saved
+		assertEquals(1, compactedWhenSavingLastConcept.get());
+		verify(myConceptParentChildLinkDao, times(1)).save(any());
+		assertTrue(svc.isStorageQueueEmpty());
+	}
+
+	@Test
+	public void testSaveDeferred_ConceptParentChildLink_CompactedWhenQueued() {
+		TermConceptParentChildLink conceptLink = new TermConceptParentChildLink();
+		conceptLink.setChild(new TermConcept().setId(111L));
+		conceptLink.setParent(new TermConcept().setId(222L));
+		conceptLink.setCodeSystem(new TermCodeSystemVersion().setId(1L));
+
+		TermDeferredStorageSvcImpl svc = new TermDeferredStorageSvcImpl();
+		svc.addConceptLinkToStorageQueue(conceptLink);
+
+		assertEquals(1, svc.getCompactConceptLinksToSaveLaterCountForUnitTest());
+	}
+
+	@Test
+	public void testSaveDeferred_ConceptParentChildLink_ConceptDeletedBeforeSave() {
+		TermConceptParentChildLink conceptLink = new TermConceptParentChildLink();
+		conceptLink.setChild(new TermConcept().setId(111L));
+		conceptLink.setParent(new TermConcept().setId(222L));
+		conceptLink.setCodeSystem(new TermCodeSystemVersion().setId(1L));
+
+		// The parent is no longer in the database
+		when(myConceptDao.findIdsByIds(anyCollection())).thenReturn(Collections.singletonList(111L));
+
+		TermDeferredStorageSvcImpl svc = new TermDeferredStorageSvcImpl();
+		svc.setTransactionManagerForUnitTest(myTxManager);
+		svc.setCodeSystemStorageSvcForUnitTest(myTermConceptStorageSvc);
+		svc.setConceptDaoForUnitTest(myConceptDao);
+		svc.setCodeSystemVersionDaoForUnitTest(myTermCodeSystemVersionDao);
+		svc.setConceptParentChildLinkDaoForUnitTest(myConceptParentChildLinkDao);
+		svc.setMemoryCacheServiceForUnitTest(myMemoryCacheService);
+		svc.setProcessDeferred(true);
+		svc.addConceptLinkToStorageQueue(conceptLink);
+		svc.saveDeferred();
+
+		verify(myConceptParentChildLinkDao, never()).save(any());
+		verifyNoMoreInteractions(myTermConceptStorageSvc);
+	}
+
 }
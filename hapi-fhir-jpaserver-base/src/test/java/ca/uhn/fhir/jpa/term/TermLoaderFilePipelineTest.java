@@ -0,0 +1,127 @@
+package ca.uhn.fhir.jpa.term;
+
+import ca.uhn.fhir.jpa.term.api.ITermLoaderSvc;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.apache.commons.csv.QuoteMode;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TermLoaderFilePipelineTest {
+
+	private static ITermLoaderSvc.FileDescriptor file(String theFilename, String theContents) {
+		return new ITermLoaderSvc.ByteArrayFileDescriptor(theFilename, theContents.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String createCsv(String thePrefix, int theCount) {
+		StringBuilder b = new StringBuilder("CODE,DISPLAY\n");
+		for (int i = 0; i < theCount; i++) {
+			b.append(thePrefix).append(i).append(",Display ").append(i).append("\n");
+		}
+		return b.toString();
+	}
+
+	@Test
+	public void testFilesAreHandledInOrder() {
+		List<ITermLoaderSvc.FileDescriptor> files = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			files.add(file("dir/file" + i + ".csv", createCsv("F" + i + "-", 2000)));
+		}
+
+		List<String> handled = new ArrayList<>();
+		List<Integer> handlersCreatedAtCount = new ArrayList<>();
+		try (LoadedFileDescriptors descriptors = new LoadedFileDescriptors(files)) {
+			try (TermLoaderFilePipeline pipeline = new TermLoaderFilePipeline(descriptors, 2)) {
+				for (int i = 0; i < 6; i++) {
+					pipeline.add("file" + i + ".csv", () -> {
+						handlersCreatedAtCount.add(handled.size());
+						return t -> handled.add(t.get("CODE"));
+					}, ',', QuoteMode.NON_NUMERIC, false);
+				}
+				pipeline.process();
+			}
+		}
+
+		assertEquals(12000, handled.size());
+		for (int i = 0; i < handled.size(); i++) {
+			assertEquals("F" + (i / 2000) + "-" + (i % 2000), handled.get(i));
+		}
+		// Each handler is only created once the previous files have been fully handled
+		assertThat(handlersCreatedAtCount, contains(0, 2000, 4000, 6000, 8000, 10000));
+	}
+
+	@Test
+	public void testSameHandlerForSeveralFiles() {
+		List<ITermLoaderSvc.FileDescriptor> files = Arrays.asList(
+			file("a.csv", createCsv("A", 3)),
+			file("b.csv", createCsv("B", 2))
+		);
+
+		List<String> handled = new ArrayList<>();
+		IRecordHandler handler = t -> handled.add(t.get("CODE"));
+		try (LoadedFileDescriptors descriptors = new LoadedFileDescriptors(files)) {
+			try (TermLoaderFilePipeline pipeline = new TermLoaderFilePipeline(descriptors)) {
+				pipeline
+					.add("a.csv", () -> handler, ',', QuoteMode.NON_NUMERIC, false)
+					.addOptional("missing.csv", () -> handler, ',', QuoteMode.NON_NUMERIC, false)
+					.add("b.csv", () -> handler, ',', QuoteMode.NON_NUMERIC, false)
+					.process();
+			}
+		}
+
+		assertThat(handled, contains("A0", "A1", "A2", "B0", "B1"));
+	}
+
+	@Test
+	public void testMissingMandatoryFile() {
+		List<ITermLoaderSvc.FileDescriptor> files = Arrays.asList(file("a.csv", createCsv("A", 3)));
+
+		List<String> handled = new ArrayList<>();
+		try (LoadedFileDescriptors descriptors = new LoadedFileDescriptors(files)) {
+			try (TermLoaderFilePipeline pipeline = new TermLoaderFilePipeline(descriptors)) {
+				pipeline
+					.add("a.csv", () -> t -> handled.add(t.get("CODE")), ',', QuoteMode.NON_NUMERIC, false)
+					.add("missing.csv", () -> t -> handled.add(t.get("CODE")), ',', QuoteMode.NON_NUMERIC, false);
+				InvalidRequestException e = assertThrows(InvalidRequestException.class, pipeline::process);
+				assertEquals("Did not find file matching missing.csv", e.getMessage());
+			}
+		}
+
+		// Nothing is handled if a mandatory file is missing
+		assertEquals(0, handled.size());
+	}
+
+	@Test
+	public void testHandlerFailureStopsPipeline() {
+		List<ITermLoaderSvc.FileDescriptor> files = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			files.add(file("file" + i + ".csv", createCsv("F", 50000)));
+		}
+
+		try (LoadedFileDescriptors descriptors = new LoadedFileDescriptors(files)) {
+			TermLoaderFilePipeline pipeline = new TermLoaderFilePipeline(descriptors, 2);
+			for (int i = 0; i < 4; i++) {
+				pipeline.add("file" + i + ".csv", () -> t -> {
+					throw new InternalErrorException("Failed on " + t.get("CODE"));
+				}, ',', QuoteMode.NON_NUMERIC, false);
+			}
+			try {
+				InternalErrorException e = assertThrows(InternalErrorException.class, pipeline::process);
+				assertThat(e.getMessage(), containsString("Failed on F0"));
+			} finally {
+				pipeline.close();
+			}
+		}
+	}
+
+}
@@ -12,6 +12,8 @@ import ca.uhn.fhir.jpa.term.custom.CustomTerminologySet;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.UriParam;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.util.FhirVersionIndependentConcept;
+import com.google.common.collect.Lists;
 import org.hl7.fhir.r4.model.CodeSystem;
 import org.hl7.fhir.r4.model.CodeType;
 import org.hl7.fhir.r4.model.Coding;
@@ -98,6 +100,34 @@ public class TerminologySvcDeltaR4Test extends BaseJpaR4Test {
 		}
 	}
 
+	@Test
+	public void testFindCodesBelowAfterAddingChildren() {
+		createNotPresentCodeSystem();
+
+		CustomTerminologySet delta = new CustomTerminologySet();
+		delta.addRootConcept("RootA", "Root A")
+			.addChild(TermConceptParentChildLink.RelationshipTypeEnum.ISA).setCode("ChildAA").setDisplay("Child AA");
+		myTermCodeSystemStorageSvc.applyDeltaCodeSystemsAdd("http://foo/cs", delta);
+		myTermDeferredStorageSvc.saveAllDeferred();
+		assertEquals(Lists.newArrayList("ChildAA", "RootA"), findCodesBelow("RootA"));
+
+		// The cached hierarchy closure must be replaced once the new links are saved
+		delta = new CustomTerminologySet();
+		delta.addRootConcept("ChildAA", "Child AA")
+			.addChild(TermConceptParentChildLink.RelationshipTypeEnum.ISA).setCode("ChildAAA").setDisplay("Child AAA");
+		myTermCodeSystemStorageSvc.applyDeltaCodeSystemsAdd("http://foo/cs", delta);
+		myTermDeferredStorageSvc.saveAllDeferred();
+		assertEquals(Lists.newArrayList("ChildAA", "ChildAAA", "RootA"), findCodesBelow("RootA"));
+	}
+
+	private List<String> findCodesBelow(String theCode) {
+		return myTermSvc.findCodesBelow("http://foo/cs", theCode)
+			.stream()
+			.map(FhirVersionIndependentConcept::getCode)
+			.sorted()
+			.collect(Collectors.toList());
+	}
+
 	@Test
 	public void testAddHierarchyConcepts() {
 		ourLog.info("Starting testAddHierarchyConcepts");
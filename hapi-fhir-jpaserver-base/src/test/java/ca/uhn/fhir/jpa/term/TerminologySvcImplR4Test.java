@@ -6,6 +6,7 @@ import ca.uhn.fhir.context.support.ValidationSupportContext;
 import ca.uhn.fhir.jpa.entity.TermCodeSystem;
 import ca.uhn.fhir.jpa.entity.TermCodeSystemVersion;
 import ca.uhn.fhir.jpa.entity.TermConcept;
+import ca.uhn.fhir.jpa.entity.TermConceptParentChildLink;
 import ca.uhn.fhir.jpa.entity.TermValueSet;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
 import org.hl7.fhir.instance.model.api.IIdType;
@@ -379,6 +380,54 @@ public class TerminologySvcImplR4Test extends BaseTermR4Test {
 		});
 	}
 
+	@Test
+	public void testFindCodesBelowSeesLinksChangedByAnotherNode() {
+		CodeSystem codeSystem = new CodeSystem();
+		codeSystem.setUrl(CS_URL);
+		codeSystem.setContent(CodeSystem.CodeSystemContentMode.COMPLETE);
+		codeSystem
+			.addConcept().setCode("A").setDisplay("Code A")
+			.addConcept().setCode("AA").setDisplay("Code AA");
+		codeSystem
+			.addConcept().setCode("B").setDisplay("Code B");
+		IIdType id = myCodeSystemDao.create(codeSystem, mySrd).getId().toUnqualified();
+		myTerminologyDeferredStorageSvc.saveAllDeferred();
+
+		Set<TermConcept> codes = myTermSvc.findCodesBelow(id.getIdPartAsLong(), id.getVersionIdPartAsLong(), "A");
+		assertThat(toCodes(codes), containsInAnyOrder("A", "AA"));
+
+		Long csvPid = runInTransaction(() -> myTermCodeSystemDao.findByResourcePid(id.getIdPartAsLong()).getCurrentVersion().getPid());
+
+		// Add a link without going through this node's terminology services, as another node would
+		Long linkPid = runInTransaction(() -> {
+			TermCodeSystemVersion csv = myTermCodeSystemDao.findByResourcePid(id.getIdPartAsLong()).getCurrentVersion();
+			TermConcept parent = myTermConceptDao.findByCodeSystemAndCode(csv, "A").orElseThrow(IllegalStateException::new);
+			TermConcept child = myTermConceptDao.findByCodeSystemAndCode(csv, "B").orElseThrow(IllegalStateException::new);
+			TermConceptParentChildLink link = new TermConceptParentChildLink()
+				.setCodeSystem(csv)
+				.setParent(parent)
+				.setChild(child)
+				.setRelationshipType(TermConceptParentChildLink.RelationshipTypeEnum.ISA);
+			return myTermConceptParentChildLinkDao.save(link).getId();
+		});
+
+		// The cached closure is used until the links change count of the version changes
+		codes = myTermSvc.findCodesBelow(id.getIdPartAsLong(), id.getVersionIdPartAsLong(), "A");
+		assertThat(toCodes(codes), containsInAnyOrder("A", "AA"));
+
+		// The other node's storage services increment the count, but its cache invalidation isn't broadcast
+		runInTransaction(() -> myTermCodeSystemVersionDao.incrementLinksChangeCount(csvPid));
+		codes = myTermSvc.findCodesBelow(id.getIdPartAsLong(), id.getVersionIdPartAsLong(), "A");
+		assertThat(toCodes(codes), containsInAnyOrder("A", "AA", "B"));
+
+		runInTransaction(() -> {
+			myTermConceptParentChildLinkDao.deleteById(linkPid);
+			myTermCodeSystemVersionDao.incrementLinksChangeCount(csvPid);
+		});
+		codes = myTermSvc.findCodesBelow(id.getIdPartAsLong(), id.getVersionIdPartAsLong(), "A");
+		assertThat(toCodes(codes), containsInAnyOrder("A", "AA"));
+	}
+
 	@Test
 	public void testUpdateCodeSystemUrlAndVersion() {
 		CodeSystem codeSystem = new CodeSystem();
@@ -14,8 +14,10 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -45,6 +47,8 @@ public class ValueSetConceptAccumulatorTest {
 			myAccumulator.includeConcept("sys", "code", "display", null, null);
 		}
 		verify(myValueSetConceptDao, times(1000)).save(any());
+		verify(myValueSetDao, never()).save(any());
+		assertEquals(1000, myValueSet.getTotalConcepts().intValue());
 	}
 
 	@Test
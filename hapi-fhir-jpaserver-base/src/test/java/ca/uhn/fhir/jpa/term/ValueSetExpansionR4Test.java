@@ -1,6 +1,7 @@
 package ca.uhn.fhir.jpa.term;
 
 import ca.uhn.fhir.context.support.ValueSetExpansionOptions;
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
 import ca.uhn.fhir.jpa.entity.TermCodeSystem;
 import ca.uhn.fhir.jpa.entity.TermCodeSystemVersion;
 import ca.uhn.fhir.jpa.entity.TermConcept;
@@ -17,6 +18,7 @@ import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.util.HapiExtensions;
 import com.google.common.collect.Lists;
+import org.apache.commons.lang3.time.DateUtils;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.CodeSystem;
 import org.hl7.fhir.r4.model.Extension;
@@ -34,6 +36,7 @@ import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -67,6 +70,99 @@ public class ValueSetExpansionR4Test extends BaseTermR4Test {
 	@AfterEach
 	public void afterEach() {
 		SearchBuilder.setMaxPageSize50ForTest(false);
+		myDaoConfig.setPreExpandValueSetsThreadCount(new DaoConfig().getPreExpandValueSetsThreadCount());
+	}
+
+	@Test
+	public void testPreExpandValueSetsConcurrently() {
+		myDaoConfig.setPreExpandValueSets(true);
+		myDaoConfig.setPreExpandValueSetsThreadCount(3);
+
+		CodeSystem cs = new CodeSystem();
+		cs.setUrl("http://foo/cs");
+		cs.setContent(CodeSystem.CodeSystemContentMode.NOTPRESENT);
+		myCodeSystemDao.create(cs);
+
+		CustomTerminologySet additions = new CustomTerminologySet();
+		for (int i = 0; i < 20; i++) {
+			additions.addRootConcept("code" + i, "display value " + i);
+		}
+		myTermCodeSystemStorageSvc.applyDeltaCodeSystemsAdd("http://foo/cs", additions);
+		myTerminologyDeferredStorageSvc.saveAllDeferred();
+
+		for (int i = 0; i < 10; i++) {
+			ValueSet vs = new ValueSet();
+			vs.setUrl("http://foo/vs" + i);
+			ValueSet.ConceptSetComponent include = vs.getCompose().addInclude().setSystem("http://foo/cs");
+			for (int j = 0; j <= i; j++) {
+				include.addConcept().setCode("code" + j);
+			}
+			myValueSetDao.create(vs);
+		}
+
+		myTermSvc.preExpandDeferredValueSetsToTerminologyTables();
+
+		runInTransaction(() -> {
+			List<TermValueSet> valueSets = myTermValueSetDao.findAll();
+			assertEquals(10, valueSets.size());
+			for (TermValueSet next : valueSets) {
+				assertEquals(TermValueSetPreExpansionStatusEnum.EXPANDED, next.getExpansionStatus(), next.getUrl());
+				int expectedCount = Integer.parseInt(next.getUrl().substring("http://foo/vs".length())) + 1;
+				assertEquals(expectedCount, next.getTotalConcepts().intValue(), next.getUrl());
+			}
+			assertEquals(55, myTermValueSetConceptDao.count());
+			assertEquals(0, myTermValueSetDao.countByExpansionStatus(TermValueSetPreExpansionStatusEnum.NOT_EXPANDED));
+		});
+	}
+
+	@Test
+	public void testPreExpandReleasesStaleClaims() {
+		myDaoConfig.setPreExpandValueSets(true);
+
+		CodeSystem cs = new CodeSystem();
+		cs.setUrl("http://foo/cs");
+		cs.setContent(CodeSystem.CodeSystemContentMode.NOTPRESENT);
+		myCodeSystemDao.create(cs);
+
+		CustomTerminologySet additions = new CustomTerminologySet();
+		for (int i = 0; i < 3; i++) {
+			additions.addRootConcept("code" + i, "display value " + i);
+		}
+		myTermCodeSystemStorageSvc.applyDeltaCodeSystemsAdd("http://foo/cs", additions);
+		myTerminologyDeferredStorageSvc.saveAllDeferred();
+
+		for (int i = 0; i < 2; i++) {
+			ValueSet vs = new ValueSet();
+			vs.setUrl("http://foo/vs" + i);
+			vs.getCompose().addInclude().setSystem("http://foo/cs");
+			myValueSetDao.create(vs);
+		}
+		myTermSvc.preExpandDeferredValueSetsToTerminologyTables();
+
+		// Both ValueSets look like their expansion was interrupted, but only vs0 hasn't reported progress recently
+		runInTransaction(() -> {
+			for (TermValueSet next : myTermValueSetDao.findAll()) {
+				next.setExpansionStatus(TermValueSetPreExpansionStatusEnum.EXPANSION_IN_PROGRESS);
+				if (next.getUrl().equals("http://foo/vs0")) {
+					next.setExpansionStatusTime(new Date(System.currentTimeMillis() - BaseTermReadSvcImpl.PRE_EXPANSION_CLAIM_TIMEOUT_MILLIS - DateUtils.MILLIS_PER_MINUTE));
+				} else {
+					next.setExpansionStatusTime(new Date());
+				}
+				myTermValueSetDao.save(next);
+			}
+		});
+
+		myTermSvc.preExpandDeferredValueSetsToTerminologyTables();
+
+		runInTransaction(() -> {
+			TermValueSet vs0 = myTermValueSetDao.findTermValueSetByUrlAndNullVersion("http://foo/vs0").orElseThrow(IllegalStateException::new);
+			assertEquals(TermValueSetPreExpansionStatusEnum.EXPANDED, vs0.getExpansionStatus());
+			assertEquals(3, vs0.getTotalConcepts().intValue());
+			assertEquals(3, myTermValueSetConceptDao.countByTermValueSetId(vs0.getId()).intValue());
+
+			TermValueSet vs1 = myTermValueSetDao.findTermValueSetByUrlAndNullVersion("http://foo/vs1").orElseThrow(IllegalStateException::new);
+			assertEquals(TermValueSetPreExpansionStatusEnum.EXPANSION_IN_PROGRESS, vs1.getExpansionStatus());
+		});
 	}
 
 	@Test
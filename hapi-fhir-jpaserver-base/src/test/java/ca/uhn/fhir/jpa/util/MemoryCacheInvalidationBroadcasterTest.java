@@ -0,0 +1,101 @@
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
+import ca.uhn.fhir.jpa.subscription.channel.impl.LinkedBlockingChannelFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class MemoryCacheInvalidationBroadcasterTest {
+
+	private DaoConfig myDaoConfig;
+	private MemoryCacheService myCacheServiceA;
+	private MemoryCacheService myCacheServiceB;
+	private MemoryCacheInvalidationBroadcaster myBroadcasterA;
+	private MemoryCacheInvalidationBroadcaster myBroadcasterB;
+
+	@BeforeEach
+	public void before() {
+		myDaoConfig = new DaoConfig();
+		myDaoConfig.setMemoryCacheInvalidationBroadcastEnabled(true);
+		myDaoConfig.setMemoryCacheMaximumSize(MemoryCacheService.CacheEnum.PERSISTENT_ID.name(), 100000);
+
+		LinkedBlockingChannelFactory channelFactory = new LinkedBlockingChannelFactory((theName, theSettings) -> theName);
+		myCacheServiceA = newCacheService();
+		myCacheServiceB = newCacheService();
+		myBroadcasterA = newBroadcaster(myCacheServiceA, channelFactory);
+		myBroadcasterB = newBroadcaster(myCacheServiceB, channelFactory);
+	}
+
+	@AfterEach
+	public void after() throws Exception {
+		myBroadcasterA.stop();
+		myBroadcasterB.stop();
+	}
+
+	@Test
+	public void testInvalidateKeysIsBroadcast() {
+		for (MemoryCacheService next : Arrays.asList(myCacheServiceA, myCacheServiceB)) {
+			next.put(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP, "Patient/A", "A");
+			next.put(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP, "Patient/B", "B");
+			next.put(MemoryCacheService.CacheEnum.FORCED_ID, 123L, Optional.of("A"));
+		}
+
+		myCacheServiceA.invalidateKeys(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP, Collections.singletonList("Patient/A"));
+		myCacheServiceA.invalidateKeys(MemoryCacheService.CacheEnum.FORCED_ID, Collections.singletonList(123L));
+
+		assertNull(myCacheServiceA.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP, "Patient/A"));
+		assertNull(myCacheServiceA.getIfPresent(MemoryCacheService.CacheEnum.FORCED_ID, 123L));
+		await().until(() -> myCacheServiceB.getIfPresent(MemoryCacheService.CacheEnum.FORCED_ID, 123L) == null);
+		assertNull(myCacheServiceB.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP, "Patient/A"));
+		assertNotNull(myCacheServiceA.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP, "Patient/B"));
+		assertNotNull(myCacheServiceB.getIfPresent(MemoryCacheService.CacheEnum.RESOURCE_LOOKUP, "Patient/B"));
+	}
+
+	@Test
+	public void testInvalidateAllIsBroadcast() {
+		myCacheServiceB.put(MemoryCacheService.CacheEnum.TAG_DEFINITION, "A", "A");
+		myCacheServiceB.put(MemoryCacheService.CacheEnum.PERSISTENT_ID, "A", 1L);
+
+		myCacheServiceA.invalidateAllCachesAndBroadcast();
+
+		await().until(() -> myCacheServiceB.getIfPresent(MemoryCacheService.CacheEnum.TAG_DEFINITION, "A") == null);
+		assertNull(myCacheServiceB.getIfPresent(MemoryCacheService.CacheEnum.PERSISTENT_ID, "A"));
+	}
+
+	@Test
+	public void testStats() {
+		myCacheServiceA.put(MemoryCacheService.CacheEnum.PERSISTENT_ID, "A", 1L);
+		myCacheServiceA.getIfPresent(MemoryCacheService.CacheEnum.PERSISTENT_ID, "A");
+		myCacheServiceA.getIfPresent(MemoryCacheService.CacheEnum.PERSISTENT_ID, "B");
+
+		assertEquals(1, myCacheServiceA.getStats(MemoryCacheService.CacheEnum.PERSISTENT_ID).hitCount());
+		assertEquals(1, myCacheServiceA.getStats(MemoryCacheService.CacheEnum.PERSISTENT_ID).missCount());
+
+		assertEquals(1, myCacheServiceA.getEstimatedSize(MemoryCacheService.CacheEnum.PERSISTENT_ID));
+	}
+
+	private MemoryCacheService newCacheService() {
+		MemoryCacheService retVal = new MemoryCacheService();
+		retVal.setDaoConfigForUnitTest(myDaoConfig);
+		retVal.start();
+		return retVal;
+	}
+
+	private MemoryCacheInvalidationBroadcaster newBroadcaster(MemoryCacheService theCacheService, LinkedBlockingChannelFactory theChannelFactory) {
+		MemoryCacheInvalidationBroadcaster retVal = new MemoryCacheInvalidationBroadcaster();
+		retVal.setDependenciesForUnitTest(myDaoConfig, theCacheService, theChannelFactory);
+		retVal.start();
+		return retVal;
+	}
+
+}
@@ -0,0 +1,54 @@
+package ca.uhn.fhir.cql.common.evaluation;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Clinical Quality Language
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The resources to be evaluated for a measure, which are supplied one batch at a time so that
+ * only a single batch needs to be held in memory
+ *
+ * @see ResourceBatchSearchSvc
+ * @since 5.4.0
+ */
+@FunctionalInterface
+public interface IResourceBatches<T extends IBaseResource> {
+
+	/**
+	 * Passes each batch of resources to the given consumer, in order
+	 */
+	void forEachBatch(Consumer<List<T>> theConsumer);
+
+	/**
+	 * Returns a single batch holding the given resources
+	 */
+	static <T extends IBaseResource> IResourceBatches<T> of(List<T> theResources) {
+		return theConsumer -> {
+			if (!theResources.isEmpty()) {
+				theConsumer.accept(theResources);
+			}
+		};
+	}
+}
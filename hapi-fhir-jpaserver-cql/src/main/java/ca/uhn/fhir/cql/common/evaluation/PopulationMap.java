@@ -0,0 +1,58 @@
+package ca.uhn.fhir.cql.common.evaluation;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Clinical Quality Language
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The members of a measure population, keyed by ID, which also remembers the keys that have
+ * been removed from it. This lets the populations found for separate batches of patients be
+ * merged, in patient order, into the same populations that would have been found if all of the
+ * patients had been evaluated one after another.
+ *
+ * @since 5.4.0
+ */
+public class PopulationMap<V> extends HashMap<String, V> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Set<String> myRemovedKeys = new HashSet<>();
+
+	@Override
+	public V remove(Object theKey) {
+		myRemovedKeys.add((String) theKey);
+		return super.remove(theKey);
+	}
+
+	/**
+	 * Applies the removals and then the entries of this map to the given map, which holds the
+	 * population found for the patients evaluated before the patients of this map
+	 */
+	public void mergeInto(PopulationMap<V> theTarget) {
+		for (String next : myRemovedKeys) {
+			theTarget.remove(next);
+		}
+		theTarget.putAll(this);
+	}
+}
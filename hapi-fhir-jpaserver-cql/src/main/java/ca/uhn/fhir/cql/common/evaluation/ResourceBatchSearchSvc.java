@@ -0,0 +1,135 @@
+package ca.uhn.fhir.cql.common.evaluation;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Clinical Quality Language
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.IResultIterator;
+import ca.uhn.fhir.jpa.dao.ISearchBuilder;
+import ca.uhn.fhir.jpa.dao.SearchBuilderFactory;
+import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.server.storage.ResourcePersistentId;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Searches for the resources to be evaluated for a measure, and supplies them one batch at a time.
+ * <p>
+ * The search reads the PIDs of the matching resources directly from the database, the same way that
+ * <code>$mdm-submit</code> does, instead of creating a persisted search. A persisted search would expire
+ * while a large population was still being evaluated. Each batch of resources is loaded in its own
+ * read-only transaction, and is evaluated outside of the transaction which holds the query open.
+ * </p>
+ *
+ * @since 5.4.0
+ */
+public class ResourceBatchSearchSvc {
+
+	/**
+	 * The default number of resources in each batch, which matches the number of patients whose
+	 * resources are prefetched together
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 500;
+
+	@Autowired
+	private FhirContext myFhirContext;
+	@Autowired
+	private DaoRegistry myDaoRegistry;
+	@Autowired
+	private SearchBuilderFactory mySearchBuilderFactory;
+	@Autowired
+	private PlatformTransactionManager myTxManager;
+
+	private int myBatchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * Returns the resources of the given type which match the given parameters. The search is run
+	 * each time {@link IResourceBatches#forEachBatch(Consumer)} is called.
+	 */
+	public <T extends IBaseResource> IResourceBatches<T> search(Class<T> theResourceType, SearchParameterMap theParams) {
+		return theConsumer -> {
+			TransactionTemplate queryTx = new TransactionTemplate(myTxManager);
+			queryTx.setReadOnly(true);
+			queryTx.executeWithoutResult(t -> forEachBatch(theResourceType, theParams, theConsumer));
+		};
+	}
+
+	private <T extends IBaseResource> void forEachBatch(Class<T> theResourceType, SearchParameterMap theParams, Consumer<List<T>> theConsumer) {
+		String resourceName = myFhirContext.getResourceType(theResourceType);
+		IFhirResourceDao<T> dao = myDaoRegistry.getResourceDao(theResourceType);
+		ISearchBuilder searchBuilder = mySearchBuilderFactory.newSearchBuilder(dao, resourceName, theResourceType);
+
+		TransactionTemplate loadTx = new TransactionTemplate(myTxManager);
+		loadTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		loadTx.setReadOnly(true);
+
+		// The resources are evaluated without a transaction, as they were before they were paged
+		TransactionTemplate evaluateTx = new TransactionTemplate(myTxManager);
+		evaluateTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+
+		SearchRuntimeDetails searchRuntimeDetails = new SearchRuntimeDetails(null, UUID.randomUUID().toString());
+		try (IResultIterator query = searchBuilder.createQuery(theParams, searchRuntimeDetails, null, RequestPartitionId.allPartitions())) {
+			while (query.hasNext()) {
+				Collection<ResourcePersistentId> pidBatch = query.getNextResultBatch(myBatchSize);
+				List<T> batch = loadTx.execute(t -> loadResources(searchBuilder, pidBatch, theResourceType));
+				if (batch != null && !batch.isEmpty()) {
+					evaluateTx.executeWithoutResult(t -> theConsumer.accept(batch));
+				}
+			}
+		} catch (IOException e) {
+			throw new InternalErrorException("Failure while attempting to query " + resourceName + " resources for measure evaluation", e);
+		}
+	}
+
+	private <T extends IBaseResource> List<T> loadResources(ISearchBuilder theSearchBuilder, Collection<ResourcePersistentId> thePids, Class<T> theResourceType) {
+		List<IBaseResource> resources = new ArrayList<>();
+		theSearchBuilder.loadResourcesByPid(thePids, Collections.emptyList(), resources, false, null);
+		List<T> retVal = new ArrayList<>(resources.size());
+		for (IBaseResource next : resources) {
+			retVal.add(theResourceType.cast(next));
+		}
+		return retVal;
+	}
+
+	@VisibleForTesting
+	public void setBatchSizeForUnitTest(int theBatchSize) {
+		Validate.isTrue(theBatchSize > 0, "theBatchSize must be greater than 0");
+		myBatchSize = theBatchSize;
+	}
+}
@@ -0,0 +1,101 @@
+package ca.uhn.fhir.cql.common.evaluation;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Clinical Quality Language
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.hl7.fhir.instance.model.api.IBaseCoding;
+import org.hl7.fhir.instance.model.api.IBaseExtension;
+import org.hl7.fhir.instance.model.api.IBaseHasExtensions;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Remembers the codings in the patients' extensions which the supplemental data observations of a
+ * measure report need, so that the patients don't have to be loaded again once all of them have been
+ * evaluated. If several patients have an extension with the same code, the last one collected is used.
+ *
+ * @since 5.4.0
+ */
+public class SupplementalDataCodings<T extends IBaseCoding> {
+
+	private static final String SDE_SEX = "sde-sex";
+
+	private final Class<T> myCodingType;
+	private final Map<String, T> myCodings = new HashMap<>();
+
+	public SupplementalDataCodings(Class<T> theCodingType) {
+		myCodingType = theCodingType;
+	}
+
+	/**
+	 * Collects the codings of the given patient
+	 *
+	 * @param thePatient The patient
+	 * @param theSdeKeys The keys of the supplemental data elements of the measure
+	 */
+	public void collect(IBaseHasExtensions thePatient, List<String> theSdeKeys) {
+		for (String nextSdeKey : theSdeKeys) {
+			if (nextSdeKey == null || nextSdeKey.equalsIgnoreCase(SDE_SEX)) {
+				continue;
+			}
+			String coreCategory = getCoreCategory(nextSdeKey);
+			for (IBaseExtension<?, ?> nextExtension : thePatient.getExtension()) {
+				if (nextExtension.getUrl() == null || !nextExtension.getUrl().contains(coreCategory) || nextExtension.getExtension().isEmpty()) {
+					continue;
+				}
+				Object value = ((IBaseExtension<?, ?>) nextExtension.getExtension().get(0)).getValue();
+				if (myCodingType.isInstance(value)) {
+					T coding = myCodingType.cast(value);
+					if (coding.getCode() != null) {
+						myCodings.put(getKey(coreCategory, coding.getCode()), coding);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the collected coding for the given supplemental data element and code, or <code>null</code>
+	 */
+	public T get(String theSdeKey, String theCode) {
+		return myCodings.get(getKey(getCoreCategory(theSdeKey), theCode));
+	}
+
+	/**
+	 * Adds the codings collected by the given instance, which were collected from patients
+	 * evaluated after the patients of this instance
+	 */
+	public void putAll(SupplementalDataCodings<T> theOther) {
+		myCodings.putAll(theOther.myCodings);
+	}
+
+	private static String getCoreCategory(String theSdeKey) {
+		int index = theSdeKey.lastIndexOf('-');
+		return theSdeKey.substring(index >= 0 ? index : 0);
+	}
+
+	private static String getKey(String theCoreCategory, String theCode) {
+		return theCoreCategory + "|" + theCode.toLowerCase(Locale.ROOT);
+	}
+
+}
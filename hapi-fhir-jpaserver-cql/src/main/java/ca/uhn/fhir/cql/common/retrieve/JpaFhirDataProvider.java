@@ -0,0 +1,44 @@
+package ca.uhn.fhir.cql.common.retrieve;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Clinical Quality Language
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.opencds.cqf.cql.engine.data.CompositeDataProvider;
+import org.opencds.cqf.cql.engine.model.ModelResolver;
+
+/**
+ * A data provider which retrieves from the JPA server, and keeps its retrieve provider so that
+ * measure evaluation can prefetch retrieves for blocks of patients
+ *
+ * @since 5.4.0
+ */
+public class JpaFhirDataProvider extends CompositeDataProvider {
+
+	private final JpaFhirRetrieveProvider myJpaRetrieveProvider;
+
+	public JpaFhirDataProvider(ModelResolver theModelResolver, JpaFhirRetrieveProvider theRetrieveProvider) {
+		super(theModelResolver, theRetrieveProvider);
+		myJpaRetrieveProvider = theRetrieveProvider;
+	}
+
+	public JpaFhirRetrieveProvider getJpaRetrieveProvider() {
+		return myJpaRetrieveProvider;
+	}
+}
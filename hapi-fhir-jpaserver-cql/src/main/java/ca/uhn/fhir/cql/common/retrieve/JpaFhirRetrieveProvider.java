@@ -20,10 +20,20 @@ package ca.uhn.fhir.cql.common.retrieve;
  * #L%
  */
 
+import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
+import ca.uhn.fhir.jpa.searchparam.extractor.PathAndRef;
 import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.instance.model.api.IBaseReference;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.opencds.cqf.cql.engine.fhir.retrieve.SearchParamFhirRetrieveProvider;
 import org.opencds.cqf.cql.engine.fhir.searchparam.SearchParameterMap;
@@ -38,21 +48,95 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
 @Component
 public class JpaFhirRetrieveProvider extends SearchParamFhirRetrieveProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(JpaFhirRetrieveProvider.class);
 
+    /**
+     * The default number of patients whose resources are loaded together by {@link #prefetchInBlocks(Iterable)}
+     */
+    public static final int DEFAULT_PREFETCH_BLOCK_SIZE = 500;
+
+    private static final int PREFETCH_PAGE_SIZE = 500;
+
     DaoRegistry registry;
 
+    private final ISearchParamExtractor mySearchParamExtractor;
+    private Set<String> myPrefetchPatientIds = Collections.emptySet();
+    private final Map<String, Map<String, List<Object>>> myPrefetchedResources = new HashMap<>();
+
     @Autowired
     public JpaFhirRetrieveProvider(DaoRegistry registry, SearchParameterResolver searchParameterResolver) {
+        this(registry, searchParameterResolver, null);
+    }
+
+    /**
+     * @param theSearchParamExtractor Used to find which patient each prefetched resource belongs to. If this
+     *                                is <code>null</code>, retrieves are never prefetched.
+     * @since 5.4.0
+     */
+    public JpaFhirRetrieveProvider(DaoRegistry registry, SearchParameterResolver searchParameterResolver, ISearchParamExtractor theSearchParamExtractor) {
         super(searchParameterResolver);
         this.registry = registry;
+        mySearchParamExtractor = theSearchParamExtractor;
+    }
+
+    /**
+     * Wraps a population of patients so that, while it is iterated, the retrieves for each block of
+     * {@link #DEFAULT_PREFETCH_BLOCK_SIZE} patients are loaded for the whole block at once.
+     *
+     * @see #startPatientBlock(Collection)
+     * @since 5.4.0
+     */
+    public <T extends IBaseResource> Iterable<T> prefetchInBlocks(Iterable<T> thePatients) {
+        return prefetchInBlocks(thePatients, DEFAULT_PREFETCH_BLOCK_SIZE);
+    }
+
+    /**
+     * @see #prefetchInBlocks(Iterable)
+     * @since 5.4.0
+     */
+    public <T extends IBaseResource> Iterable<T> prefetchInBlocks(Iterable<T> thePatients, int theBlockSize) {
+        return new PatientBlockIterable<>(thePatients, this, theBlockSize);
+    }
+
+    /**
+     * Starts a new block of patients, discarding any resources prefetched for the previous block.
+     * <p>
+     * Until the next block is started, the first retrieve for one of these patients searches for the
+     * matching resources of every patient in the block at once, using the same criteria with the
+     * patient replaced by the list of patients in the block. The results are kept in memory, grouped
+     * by patient, and later retrieves with the same criteria for other patients in the block are
+     * answered from them without searching.
+     * </p>
+     *
+     * @since 5.4.0
+     */
+    public void startPatientBlock(Collection<String> thePatientIds) {
+        clearPrefetchedResources();
+        if (mySearchParamExtractor != null) {
+            myPrefetchPatientIds = new HashSet<>(thePatientIds);
+        }
+    }
+
+    /**
+     * Discards all prefetched resources, and stops prefetching until the next block is started
+     *
+     * @since 5.4.0
+     */
+    public void clearPrefetchedResources() {
+        myPrefetchPatientIds = Collections.emptySet();
+        myPrefetchedResources.clear();
     }
 
     @Override
@@ -70,6 +154,151 @@ public class JpaFhirRetrieveProvider extends SearchParamFhirRetrieveProvider {
     }
 
     protected Collection<Object> executeQuery(String dataType, SearchParameterMap map) {
+        if (!myPrefetchPatientIds.isEmpty()) {
+            Collection<Object> prefetched = executePrefetchedQuery(dataType, map);
+            if (prefetched != null) {
+                return prefetched;
+            }
+        }
+
+        ca.uhn.fhir.jpa.searchparam.SearchParameterMap hapiMap = toHapiMap(map);
+
+        IFhirResourceDao<?> dao = this.registry.getResourceDao(dataType);
+
+        IBundleProvider bundleProvider = dao.search(hapiMap);
+        if (bundleProvider.size() == null) {
+            return resolveResourceList(bundleProvider.getResources(0, 10000));
+        }
+        if (bundleProvider.size() == 0) {
+            return new ArrayList<>();
+        }
+        List<IBaseResource> resourceList = bundleProvider.getResources(0, bundleProvider.size());
+        return resolveResourceList(resourceList);
+    }
+
+    /**
+     * Answers a query for a patient in the current block from the prefetched resources, prefetching
+     * them first if this is the first query with these criteria in the block
+     *
+     * @return <code>null</code> if the query isn't for a single patient in the current block
+     */
+    private Collection<Object> executePrefetchedQuery(String dataType, SearchParameterMap map) {
+        IFhirResourceDao<?> dao = this.registry.getResourceDao(dataType);
+        FhirContext fhirContext = dao.getContext();
+
+        String patientParamName = null;
+        String patientId = null;
+        for (Map.Entry<String, List<List<IQueryParameterType>>> entry : map.entrySet()) {
+            List<List<IQueryParameterType>> andList = entry.getValue();
+            if (andList.size() != 1 || andList.get(0).size() != 1) {
+                continue;
+            }
+            String nextPatientId = getBlockPatientId(fhirContext, dataType, entry.getKey(), andList.get(0).get(0));
+            if (nextPatientId != null) {
+                if (patientParamName != null) {
+                    return null;
+                }
+                patientParamName = entry.getKey();
+                patientId = nextPatientId;
+            }
+        }
+        if (patientParamName == null) {
+            return null;
+        }
+
+        ca.uhn.fhir.jpa.searchparam.SearchParameterMap hapiMap = toHapiMap(map);
+        List<List<IQueryParameterType>> patientParam = hapiMap.remove(patientParamName);
+        String key = dataType + "|" + patientParamName + "|" + hapiMap.toNormalizedQueryString(fhirContext);
+
+        Map<String, List<Object>> resourcesByPatient = myPrefetchedResources.get(key);
+        if (resourcesByPatient == null) {
+            resourcesByPatient = prefetch(dao, hapiMap, patientParamName, patientParam.get(0).get(0));
+            myPrefetchedResources.put(key, resourcesByPatient);
+        }
+        return new ArrayList<>(resourcesByPatient.getOrDefault(patientId, Collections.emptyList()));
+    }
+
+    private Map<String, List<Object>> prefetch(IFhirResourceDao<?> theDao, ca.uhn.fhir.jpa.searchparam.SearchParameterMap theMap, String thePatientParamName, IQueryParameterType thePatientParam) {
+        String patientResourceType = null;
+        if (thePatientParam instanceof ReferenceParam) {
+            patientResourceType = ((ReferenceParam) thePatientParam).getResourceType();
+            ReferenceOrListParam patients = new ReferenceOrListParam();
+            for (String next : myPrefetchPatientIds) {
+                patients.addOr(new ReferenceParam(patientResourceType, null, next));
+            }
+            theMap.add(thePatientParamName, patients);
+        } else {
+            TokenOrListParam patients = new TokenOrListParam();
+            for (String next : myPrefetchPatientIds) {
+                patients.addOr(new TokenParam(next));
+            }
+            theMap.add(thePatientParamName, patients);
+        }
+
+        Map<String, List<Object>> retVal = new HashMap<>();
+        IBundleProvider bundleProvider = theDao.search(theMap);
+        Integer size = bundleProvider.size();
+        // Only one page of the search results is held in memory at a time besides the prefetched resources.
+        // Pages are requested by offset, since a page can hold fewer resources than requested if some were purged.
+        for (int from = 0; size == null || from < size; from += PREFETCH_PAGE_SIZE) {
+            List<IBaseResource> page = bundleProvider.getResources(from, from + PREFETCH_PAGE_SIZE);
+            if (size == null && page.isEmpty()) {
+                break;
+            }
+            for (IBaseResource next : page) {
+                addPrefetchedResource(retVal, next, thePatientParamName, patientResourceType);
+            }
+        }
+        return retVal;
+    }
+
+    private void addPrefetchedResource(Map<String, List<Object>> theResourcesByPatient, IBaseResource theResource, String thePatientParamName, String thePatientResourceType) {
+        if (IAnyResource.SP_RES_ID.equals(thePatientParamName)) {
+            theResourcesByPatient.computeIfAbsent(theResource.getIdElement().getIdPart(), t -> new ArrayList<>()).add(theResource);
+            return;
+        }
+
+        Set<String> patientIds = new HashSet<>();
+        for (PathAndRef nextLink : mySearchParamExtractor.extractResourceLinks(theResource, false)) {
+            IBaseReference ref = nextLink.getRef();
+            if (!thePatientParamName.equals(nextLink.getSearchParamName()) || ref == null) {
+                continue;
+            }
+            String resourceType = ref.getReferenceElement().getResourceType();
+            if (thePatientResourceType != null && resourceType != null && !thePatientResourceType.equals(resourceType)) {
+                continue;
+            }
+            String idPart = ref.getReferenceElement().getIdPart();
+            if (myPrefetchPatientIds.contains(idPart) && patientIds.add(idPart)) {
+                theResourcesByPatient.computeIfAbsent(idPart, t -> new ArrayList<>()).add(theResource);
+            }
+        }
+    }
+
+    /**
+     * Returns the ID of the patient that this parameter restricts the query to, if that patient is in
+     * the current block
+     */
+    private String getBlockPatientId(FhirContext theFhirContext, String theDataType, String theParamName, IQueryParameterType theParam) {
+        String idPart;
+        if (theParam instanceof ReferenceParam) {
+            ReferenceParam ref = (ReferenceParam) theParam;
+            if (isNotBlank(ref.getChain()) || theParam.getMissing() != null) {
+                return null;
+            }
+            if (ref.getResourceType() != null && !"Patient".equals(ref.getResourceType())) {
+                return null;
+            }
+            idPart = ref.getIdPart();
+        } else if ("Patient".equals(theDataType) && IAnyResource.SP_RES_ID.equals(theParamName)) {
+            idPart = new IdDt(theParam.getValueAsQueryToken(theFhirContext)).getIdPart();
+        } else {
+            return null;
+        }
+        return myPrefetchPatientIds.contains(idPart) ? idPart : null;
+    }
+
+    private ca.uhn.fhir.jpa.searchparam.SearchParameterMap toHapiMap(SearchParameterMap map) {
         // TODO: Once HAPI breaks this out from the server dependencies
         // we can include it on its own.
         ca.uhn.fhir.jpa.searchparam.SearchParameterMap hapiMap = new ca.uhn.fhir.jpa.searchparam.SearchParameterMap();
@@ -88,21 +317,10 @@ public class JpaFhirRetrieveProvider extends SearchParamFhirRetrieveProvider {
         } catch (Exception e) {
             logger.warn("Error converting search parameter map", e);
         }
-
-        IFhirResourceDao<?> dao = this.registry.getResourceDao(dataType);
-
-        IBundleProvider bundleProvider = dao.search(hapiMap);
-        if (bundleProvider.size() == null) {
-            return resolveResourceList(bundleProvider.getResources(0, 10000));
-        }
-        if (bundleProvider.size() == 0) {
-            return new ArrayList<>();
-        }
-        List<IBaseResource> resourceList = bundleProvider.getResources(0, bundleProvider.size());
-        return resolveResourceList(resourceList);
+        return hapiMap;
     }
 
-    public synchronized Collection<Object> resolveResourceList(List<IBaseResource> resourceList) {
+    public Collection<Object> resolveResourceList(List<IBaseResource> resourceList) {
         List<Object> ret = new ArrayList<>();
         for (IBaseResource res : resourceList) {
             Class<?> clazz = res.getClass();
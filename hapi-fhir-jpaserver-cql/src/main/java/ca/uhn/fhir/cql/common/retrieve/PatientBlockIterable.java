@@ -0,0 +1,96 @@
+package ca.uhn.fhir.cql.common.retrieve;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Clinical Quality Language
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over a population of patients in blocks, and starts a new patient block in the
+ * retrieve provider before the first patient of each block is returned. The prefetched
+ * resources are discarded once the last block has been iterated.
+ */
+class PatientBlockIterable<T extends IBaseResource> implements Iterable<T> {
+
+	private final Iterable<T> myPatients;
+	private final JpaFhirRetrieveProvider myRetrieveProvider;
+	private final int myBlockSize;
+
+	PatientBlockIterable(Iterable<T> thePatients, JpaFhirRetrieveProvider theRetrieveProvider, int theBlockSize) {
+		Validate.isTrue(theBlockSize > 0, "theBlockSize must be greater than 0");
+		myPatients = thePatients;
+		myRetrieveProvider = theRetrieveProvider;
+		myBlockSize = theBlockSize;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new BlockIterator(myPatients.iterator());
+	}
+
+	private class BlockIterator implements Iterator<T> {
+		private final Iterator<T> myPatientIterator;
+		private final List<T> myBlock = new ArrayList<>();
+		private int myIndexInBlock;
+
+		private BlockIterator(Iterator<T> thePatientIterator) {
+			myPatientIterator = thePatientIterator;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (myIndexInBlock < myBlock.size()) {
+				return true;
+			}
+			if (!myPatientIterator.hasNext()) {
+				if (!myBlock.isEmpty()) {
+					myBlock.clear();
+					myRetrieveProvider.clearPrefetchedResources();
+				}
+				return false;
+			}
+
+			myBlock.clear();
+			myIndexInBlock = 0;
+			List<String> patientIds = new ArrayList<>();
+			while (myBlock.size() < myBlockSize && myPatientIterator.hasNext()) {
+				T next = myPatientIterator.next();
+				myBlock.add(next);
+				patientIds.add(next.getIdElement().getIdPart());
+			}
+			myRetrieveProvider.startPatientBlock(patientIds);
+			return true;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return myBlock.get(myIndexInBlock++);
+		}
+	}
+}
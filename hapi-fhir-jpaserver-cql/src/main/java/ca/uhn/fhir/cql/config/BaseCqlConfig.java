@@ -20,6 +20,7 @@ package ca.uhn.fhir.cql.config;
  * #L%
  */
 
+import ca.uhn.fhir.cql.common.evaluation.ResourceBatchSearchSvc;
 import ca.uhn.fhir.cql.common.provider.CqlProviderFactory;
 import ca.uhn.fhir.cql.common.provider.CqlProviderLoader;
 
@@ -42,6 +43,11 @@ public abstract class BaseCqlConfig {
 		return new CqlProviderLoader();
 	}
 
+	@Bean
+	ResourceBatchSearchSvc resourceBatchSearchSvc() {
+		return new ResourceBatchSearchSvc();
+	}
+
 	@Bean(name="globalModelCache")
 	Map<VersionedIdentifier, Model> globalModelCache() {
 		return new ConcurrentHashMap<VersionedIdentifier, Model>();
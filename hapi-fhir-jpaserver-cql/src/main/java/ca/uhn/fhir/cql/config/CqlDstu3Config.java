@@ -30,6 +30,7 @@ import ca.uhn.fhir.cql.dstu3.provider.JpaTerminologyProvider;
 import ca.uhn.fhir.cql.dstu3.provider.LibraryResolutionProviderImpl;
 import ca.uhn.fhir.cql.dstu3.provider.MeasureOperationsProvider;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
 import ca.uhn.fhir.jpa.term.api.ITermReadSvcDstu3;
 import org.cqframework.cql.cql2elm.model.Model;
 import org.hl7.elm.r1.VersionedIdentifier;
@@ -54,8 +55,9 @@ public class CqlDstu3Config extends BaseCqlConfig {
 	@Lazy
 	@Bean
 	EvaluationProviderFactory evaluationProviderFactory(FhirContext theFhirContext, DaoRegistry theDaoRegistry,
-			TerminologyProvider theLocalSystemTerminologyProvider, ModelResolver modelResolver) {
-		return new ProviderFactory(theFhirContext, theDaoRegistry, theLocalSystemTerminologyProvider, modelResolver);
+			TerminologyProvider theLocalSystemTerminologyProvider, ModelResolver modelResolver,
+			ISearchParamExtractor theSearchParamExtractor) {
+		return new ProviderFactory(theFhirContext, theDaoRegistry, theLocalSystemTerminologyProvider, modelResolver, theSearchParamExtractor);
 	}
 
 	@Lazy
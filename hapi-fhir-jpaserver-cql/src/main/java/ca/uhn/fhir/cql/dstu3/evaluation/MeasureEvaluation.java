@@ -20,13 +20,18 @@ package ca.uhn.fhir.cql.dstu3.evaluation;
  * #L%
  */
 
+import ca.uhn.fhir.cql.common.evaluation.IResourceBatches;
 import ca.uhn.fhir.cql.common.evaluation.MeasurePopulationType;
 import ca.uhn.fhir.cql.common.evaluation.MeasureScoring;
+import ca.uhn.fhir.cql.common.evaluation.PopulationMap;
+import ca.uhn.fhir.cql.common.evaluation.ResourceBatchSearchSvc;
+import ca.uhn.fhir.cql.common.evaluation.SupplementalDataCodings;
+import ca.uhn.fhir.cql.common.retrieve.JpaFhirDataProvider;
 import ca.uhn.fhir.cql.dstu3.builder.MeasureReportBuilder;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
-import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import org.cqframework.cql.elm.execution.ExpressionDef;
 import org.cqframework.cql.elm.execution.FunctionDef;
 import org.hl7.fhir.dstu3.model.CodeableConcept;
@@ -43,35 +48,66 @@ import org.hl7.fhir.dstu3.model.Reference;
 import org.hl7.fhir.dstu3.model.Resource;
 import org.hl7.fhir.dstu3.model.StringType;
 import org.hl7.fhir.dstu3.model.UriType;
-import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.opencds.cqf.cql.engine.data.DataProvider;
 import org.opencds.cqf.cql.engine.execution.Context;
 import org.opencds.cqf.cql.engine.execution.Variable;
 import org.opencds.cqf.cql.engine.runtime.Code;
 import org.opencds.cqf.cql.engine.runtime.Interval;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.lang.reflect.Field;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class MeasureEvaluation {
 
     private static final Logger logger = LoggerFactory.getLogger(MeasureEvaluation.class);
 
-    private Interval measurementPeriod;
-    private DaoRegistry registry;
+    private final Interval measurementPeriod;
+    private final DaoRegistry registry;
+    private final ResourceBatchSearchSvc resourceBatchSearchSvc;
+    private final DataProvider provider;
+    private final int threadCount;
+    private final Supplier<MeasureEvaluationSeed> workerSeedSupplier;
 
-    public MeasureEvaluation(DaoRegistry registry, Interval measurementPeriod) {
+    public MeasureEvaluation(DaoRegistry registry, ResourceBatchSearchSvc resourceBatchSearchSvc, Interval measurementPeriod) {
+        this(null, registry, resourceBatchSearchSvc, measurementPeriod);
+    }
+
+    public MeasureEvaluation(DataProvider provider, DaoRegistry registry, ResourceBatchSearchSvc resourceBatchSearchSvc,
+            Interval measurementPeriod) {
+        this(provider, registry, resourceBatchSearchSvc, measurementPeriod, 1, null);
+    }
+
+    /**
+     * @param threadCount        The number of threads used to evaluate the patients of population and subject-list reports
+     * @param workerSeedSupplier Sets up a new seed for the measure, whose context is used by one of those threads. The
+     *                           seed must have its own copy of the measure, since the model getters are not thread safe.
+     */
+    public MeasureEvaluation(DataProvider provider, DaoRegistry registry, ResourceBatchSearchSvc resourceBatchSearchSvc,
+            Interval measurementPeriod, int threadCount, Supplier<MeasureEvaluationSeed> workerSeedSupplier) {
+        this.provider = provider;
         this.registry = registry;
+        this.resourceBatchSearchSvc = resourceBatchSearchSvc;
         this.measurementPeriod = measurementPeriod;
+        this.threadCount = threadCount;
+        this.workerSeedSupplier = workerSeedSupplier;
     }
 
     public MeasureReport evaluatePatientMeasure(Measure measure, Context context, String patientId) {
@@ -93,43 +129,49 @@ public class MeasureEvaluation {
 
         boolean isSingle = true;
         return evaluate(measure, context,
-                patient == null ? Collections.emptyList() : Collections.singletonList(patient),
-                MeasureReport.MeasureReportType.INDIVIDUAL, isSingle);
+                IResourceBatches.of(patient == null ? Collections.<Patient>emptyList() : Collections.singletonList(patient)),
+                patient, MeasureReport.MeasureReportType.INDIVIDUAL, isSingle);
     }
 
     public MeasureReport evaluatePatientListMeasure(Measure measure, Context context, String practitionerRef) {
         logger.info("Generating patient-list report");
 
-        List<Patient> patients = practitionerRef == null ? getAllPatients() : getPractitionerPatients(practitionerRef);
+        IResourceBatches<Patient> patients = practitionerRef == null ? getAllPatients() : getPractitionerPatients(practitionerRef);
         boolean isSingle = false;
-        return evaluate(measure, context, patients, MeasureReport.MeasureReportType.PATIENTLIST, isSingle);
+        return evaluate(measure, context, patients, null, MeasureReport.MeasureReportType.PATIENTLIST, isSingle);
     }
 
-    private List<Patient> getPractitionerPatients(String practitionerRef) {
+    private IResourceBatches<Patient> getPractitionerPatients(String practitionerRef) {
         SearchParameterMap map = new SearchParameterMap();
         map.add("general-practitioner", new ReferenceParam(
                 practitionerRef.startsWith("Practitioner/") ? practitionerRef : "Practitioner/" + practitionerRef));
 
-        List<Patient> patients = new ArrayList<>();
-        IBundleProvider patientProvider = registry.getResourceDao("Patient").search(map);
-        List<IBaseResource> patientList = patientProvider.getResources(0, patientProvider.size());
-        patientList.forEach(x -> patients.add((Patient) x));
-        return patients;
+        return resourceBatchSearchSvc.search(Patient.class, map);
     }
 
-    private List<Patient> getAllPatients() {
-        List<Patient> patients = new ArrayList<>();
-        IBundleProvider patientProvider = registry.getResourceDao("Patient").search(new SearchParameterMap());
-        List<IBaseResource> patientList = patientProvider.getResources(0, patientProvider.size());
-        patientList.forEach(x -> patients.add((Patient) x));
-        return patients;
+    /**
+     * The patients are loaded one batch at a time as they are evaluated, instead of all being
+     * held in memory for the duration of the evaluation
+     */
+    private IResourceBatches<Patient> getAllPatients() {
+        return resourceBatchSearchSvc.search(Patient.class, new SearchParameterMap());
     }
 
     public MeasureReport evaluatePopulationMeasure(Measure measure, Context context) {
         logger.info("Generating summary report");
 
         boolean isSingle = false;
-        return evaluate(measure, context, getAllPatients(), MeasureReport.MeasureReportType.SUMMARY, isSingle);
+        return evaluate(measure, context, getAllPatients(), null, MeasureReport.MeasureReportType.SUMMARY, isSingle);
+    }
+
+    /**
+     * Lets the retrieves for the patients be prefetched a block of patients at a time
+     */
+    private static Iterable<Patient> prefetchRetrieves(DataProvider provider, Iterable<Patient> patients) {
+        if (provider instanceof JpaFhirDataProvider) {
+            return ((JpaFhirDataProvider) provider).getJpaRetrieveProvider().prefetchInBlocks(patients);
+        }
+        return patients;
     }
 
     @SuppressWarnings("unchecked")
@@ -283,21 +325,19 @@ public class MeasureEvaluation {
         }
     }
 
-    private MeasureReport evaluate(Measure measure, Context context, List<Patient> patients,
+    private MeasureReport evaluate(Measure measure, Context context, IResourceBatches<Patient> patients, Patient subject,
             MeasureReport.MeasureReportType type, boolean isSingle) {
         MeasureReportBuilder reportBuilder = new MeasureReportBuilder();
         reportBuilder.buildStatus("complete");
         reportBuilder.buildType(type);
         reportBuilder.buildMeasureReference(measure.getIdElement().getValue());
-        if (type == MeasureReport.MeasureReportType.INDIVIDUAL && !patients.isEmpty()) {
-            reportBuilder.buildPatientReference(patients.get(0).getIdElement().getValue());
+        if (type == MeasureReport.MeasureReportType.INDIVIDUAL && subject != null) {
+            reportBuilder.buildPatientReference(subject.getIdElement().getValue());
         }
         reportBuilder.buildPeriod(measurementPeriod);
 
         MeasureReport report = reportBuilder.build();
 
-        HashMap<String, Resource> resources = new HashMap<>();
-        HashMap<String, HashSet<String>> codeToResourceMap = new HashMap<>();
         Set<String> evaluatedResourcesList = new HashSet<>();
 
         MeasureScoring measureScoring = MeasureScoring.fromCode(measure.getScoring().getCodingFirstRep().getCode());
@@ -305,261 +345,59 @@ public class MeasureEvaluation {
             throw new RuntimeException("Measure scoring is required in order to calculate.");
         }
 
-        List<Measure.MeasureSupplementalDataComponent> sde = new ArrayList<>();
-        HashMap<String, HashMap<String, Integer>> sdeAccumulators = null;
-        for (Measure.MeasureGroupComponent group : measure.getGroup()) {
+        EvaluationResults results = new EvaluationResults(measure, type);
+        // Continuous variable observations depend on the measure population found for the earlier patients
+        if (threadCount > 1 && workerSeedSupplier != null && type != MeasureReport.MeasureReportType.INDIVIDUAL
+                && measureScoring != MeasureScoring.CONTINUOUSVARIABLE) {
+            evaluateConcurrently(patients, measureScoring, type, results, report);
+        } else {
+            patients.forEachBatch(batch -> evaluatePatients(measure, context,
+                    type == MeasureReport.MeasureReportType.INDIVIDUAL ? batch : prefetchRetrieves(provider, batch),
+                    measureScoring, results, report));
+        }
+
+        for (GroupPopulations group : results.groups) {
             MeasureReport.MeasureReportGroupComponent reportGroup = new MeasureReport.MeasureReportGroupComponent();
-            reportGroup.setIdentifier(group.getIdentifier());
+            reportGroup.setIdentifier(group.group.getIdentifier());
             report.getGroup().add(reportGroup);
 
-            // Declare variables to avoid a hash lookup on every patient
-            // TODO: Isn't quite right, there may be multiple initial populations for a
-            // ratio measure...
-            Measure.MeasureGroupPopulationComponent initialPopulationCriteria = null;
-            Measure.MeasureGroupPopulationComponent numeratorCriteria = null;
-            Measure.MeasureGroupPopulationComponent numeratorExclusionCriteria = null;
-            Measure.MeasureGroupPopulationComponent denominatorCriteria = null;
-            Measure.MeasureGroupPopulationComponent denominatorExclusionCriteria = null;
-            Measure.MeasureGroupPopulationComponent denominatorExceptionCriteria = null;
-            Measure.MeasureGroupPopulationComponent measurePopulationCriteria = null;
-            Measure.MeasureGroupPopulationComponent measurePopulationExclusionCriteria = null;
-            // TODO: Isn't quite right, there may be multiple measure observations...
-            Measure.MeasureGroupPopulationComponent measureObservationCriteria = null;
-
-            HashMap<String, Resource> initialPopulation = null;
-            HashMap<String, Resource> numerator = null;
-            HashMap<String, Resource> numeratorExclusion = null;
-            HashMap<String, Resource> denominator = null;
-            HashMap<String, Resource> denominatorExclusion = null;
-            HashMap<String, Resource> denominatorException = null;
-            HashMap<String, Resource> measurePopulation = null;
-            HashMap<String, Resource> measurePopulationExclusion = null;
-            HashMap<String, Resource> measureObservation = null;
-
-            HashMap<String, Patient> initialPopulationPatients = null;
-            HashMap<String, Patient> numeratorPatients = null;
-            HashMap<String, Patient> numeratorExclusionPatients = null;
-            HashMap<String, Patient> denominatorPatients = null;
-            HashMap<String, Patient> denominatorExclusionPatients = null;
-            HashMap<String, Patient> denominatorExceptionPatients = null;
-            HashMap<String, Patient> measurePopulationPatients = null;
-            HashMap<String, Patient> measurePopulationExclusionPatients = null;
-
-            sdeAccumulators = new HashMap<>();
-            sde = measure.getSupplementalData();
-            for (Measure.MeasureGroupPopulationComponent pop : group.getPopulation()) {
-                MeasurePopulationType populationType = MeasurePopulationType
-                        .fromCode(pop.getCode().getCodingFirstRep().getCode());
-                if (populationType != null) {
-                    switch (populationType) {
-                        case INITIALPOPULATION:
-                            initialPopulationCriteria = pop;
-                            initialPopulation = new HashMap<String, Resource>();
-                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
-                                initialPopulationPatients = new HashMap<String, Patient>();
-                            }
-                            break;
-                        case NUMERATOR:
-                            numeratorCriteria = pop;
-                            numerator = new HashMap<String, Resource>();
-                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
-                                numeratorPatients = new HashMap<String, Patient>();
-                            }
-                            break;
-                        case NUMERATOREXCLUSION:
-                            numeratorExclusionCriteria = pop;
-                            numeratorExclusion = new HashMap<String, Resource>();
-                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
-                                numeratorExclusionPatients = new HashMap<String, Patient>();
-                            }
-                            break;
-                        case DENOMINATOR:
-                            denominatorCriteria = pop;
-                            denominator = new HashMap<String, Resource>();
-                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
-                                denominatorPatients = new HashMap<String, Patient>();
-                            }
-                            break;
-                        case DENOMINATOREXCLUSION:
-                            denominatorExclusionCriteria = pop;
-                            denominatorExclusion = new HashMap<String, Resource>();
-                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
-                                denominatorExclusionPatients = new HashMap<String, Patient>();
-                            }
-                            break;
-                        case DENOMINATOREXCEPTION:
-                            denominatorExceptionCriteria = pop;
-                            denominatorException = new HashMap<String, Resource>();
-                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
-                                denominatorExceptionPatients = new HashMap<String, Patient>();
-                            }
-                            break;
-                        case MEASUREPOPULATION:
-                            measurePopulationCriteria = pop;
-                            measurePopulation = new HashMap<String, Resource>();
-                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
-                                measurePopulationPatients = new HashMap<String, Patient>();
-                            }
-                            break;
-                        case MEASUREPOPULATIONEXCLUSION:
-                            measurePopulationExclusionCriteria = pop;
-                            measurePopulationExclusion = new HashMap<String, Resource>();
-                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
-                                measurePopulationExclusionPatients = new HashMap<String, Patient>();
-                            }
-                            break;
-                        case MEASUREOBSERVATION:
-                            measureObservationCriteria = pop;
-                            measureObservation = new HashMap<>();
-                            break;
-                    }
-                }
-            }
-
-            switch (measureScoring) {
-                case PROPORTION:
-                case RATIO: {
-
-                    // For each patient in the initial population
-                    for (Patient patient : patients) {
-
-                        // Are they in the initial population?
-                        boolean inInitialPopulation = evaluatePopulationCriteria(context, patient,
-                                initialPopulationCriteria, initialPopulation, initialPopulationPatients, null, null,
-                                null);
-                        populateResourceMap(context, MeasurePopulationType.INITIALPOPULATION, resources,
-                                codeToResourceMap);
-
-                        if (inInitialPopulation) {
-                            // Are they in the denominator?
-                            boolean inDenominator = evaluatePopulationCriteria(context, patient, denominatorCriteria,
-                                    denominator, denominatorPatients, denominatorExclusionCriteria,
-                                    denominatorExclusion, denominatorExclusionPatients);
-                            populateResourceMap(context, MeasurePopulationType.DENOMINATOR, resources,
-                                    codeToResourceMap);
-
-                            if (inDenominator) {
-                                // Are they in the numerator?
-                                boolean inNumerator = evaluatePopulationCriteria(context, patient, numeratorCriteria,
-                                        numerator, numeratorPatients, numeratorExclusionCriteria, numeratorExclusion,
-                                        numeratorExclusionPatients);
-                                populateResourceMap(context, MeasurePopulationType.NUMERATOR, resources,
-                                        codeToResourceMap);
-
-                                if (!inNumerator && inDenominator && (denominatorExceptionCriteria != null)) {
-                                    // Are they in the denominator exception?
-                                    boolean inException = false;
-                                    for (Resource resource : evaluateCriteria(context, patient,
-                                            denominatorExceptionCriteria)) {
-                                        inException = true;
-                                        denominatorException.put(resource.getIdElement().getIdPart(), resource);
-                                        denominator.remove(resource.getIdElement().getIdPart());
-                                        populateResourceMap(context, MeasurePopulationType.DENOMINATOREXCEPTION,
-                                                resources, codeToResourceMap);
-                                    }
-                                    if (inException) {
-                                        if (denominatorExceptionPatients != null) {
-                                            denominatorExceptionPatients.put(patient.getIdElement().getIdPart(),
-                                                    patient);
-                                        }
-                                        if (denominatorPatients != null) {
-                                            denominatorPatients.remove(patient.getIdElement().getIdPart());
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                        populateSDEAccumulators(measure, context, patient, sdeAccumulators, sde);
-                    }
-
-                    // Calculate actual measure score, Count(numerator) / Count(denominator)
-                    if (denominator != null && numerator != null && denominator.size() > 0) {
-                        reportGroup.setMeasureScore(numerator.size() / (double) denominator.size());
-                    }
-
-                    break;
-                }
-                case CONTINUOUSVARIABLE: {
-
-                    // For each patient in the patient list
-                    for (Patient patient : patients) {
-
-                        // Are they in the initial population?
-                        boolean inInitialPopulation = evaluatePopulationCriteria(context, patient,
-                                initialPopulationCriteria, initialPopulation, initialPopulationPatients, null, null,
-                                null);
-                        populateResourceMap(context, MeasurePopulationType.INITIALPOPULATION, resources,
-                                codeToResourceMap);
-
-                        if (inInitialPopulation) {
-                            // Are they in the measure population?
-                            boolean inMeasurePopulation = evaluatePopulationCriteria(context, patient,
-                                    measurePopulationCriteria, measurePopulation, measurePopulationPatients,
-                                    measurePopulationExclusionCriteria, measurePopulationExclusion,
-                                    measurePopulationExclusionPatients);
-
-                            if (inMeasurePopulation) {
-                                for (Resource resource : measurePopulation.values()) {
-                                    Resource observation = evaluateObservationCriteria(context, patient, resource, measureObservationCriteria, report);
-                                    measureObservation.put(resource.getIdElement().getIdPart(), observation);
-                                    report.addContained(observation);
-                                    // TODO: Add to the evaluatedResources bundle
-                                    //report.getEvaluatedResources().add(new Reference("#" + observation.getId()));
-                                }
-                            }
-                        }
-                        populateSDEAccumulators(measure, context, patient, sdeAccumulators,sde);
-                    }
-
-                    break;
-                }
-                case COHORT: {
-
-                    // For each patient in the patient list
-                    for (Patient patient : patients) {
-                        evaluatePopulationCriteria(context, patient,
-                                initialPopulationCriteria, initialPopulation, initialPopulationPatients, null, null,
-                                null);
-                        populateResourceMap(context, MeasurePopulationType.INITIALPOPULATION, resources,
-                                codeToResourceMap);
-                        populateSDEAccumulators(measure, context, patient, sdeAccumulators, sde);
-                    }
-
-                    break;
-                }
+            // Calculate actual measure score, Count(numerator) / Count(denominator)
+            if ((measureScoring == MeasureScoring.PROPORTION || measureScoring == MeasureScoring.RATIO)
+                    && group.denominator != null && group.numerator != null && group.denominator.size() > 0) {
+                reportGroup.setMeasureScore(group.numerator.size() / (double) group.denominator.size());
             }
 
             // Add population reports for each group
-            addPopulationCriteriaReport(report, reportGroup, initialPopulationCriteria,
-                    initialPopulation != null ? initialPopulation.size() : 0,
-                    initialPopulationPatients != null ? initialPopulationPatients.values() : null);
-            addPopulationCriteriaReport(report, reportGroup, numeratorCriteria,
-                    numerator != null ? numerator.size() : 0,
-                    numeratorPatients != null ? numeratorPatients.values() : null);
-            addPopulationCriteriaReport(report, reportGroup, numeratorExclusionCriteria,
-                    numeratorExclusion != null ? numeratorExclusion.size() : 0,
-                    numeratorExclusionPatients != null ? numeratorExclusionPatients.values() : null);
-            addPopulationCriteriaReport(report, reportGroup, denominatorCriteria,
-                    denominator != null ? denominator.size() : 0,
-                    denominatorPatients != null ? denominatorPatients.values() : null);
-            addPopulationCriteriaReport(report, reportGroup, denominatorExclusionCriteria,
-                    denominatorExclusion != null ? denominatorExclusion.size() : 0,
-                    denominatorExclusionPatients != null ? denominatorExclusionPatients.values() : null);
-            addPopulationCriteriaReport(report, reportGroup, denominatorExceptionCriteria,
-                    denominatorException != null ? denominatorException.size() : 0,
-                    denominatorExceptionPatients != null ? denominatorExceptionPatients.values() : null);
-            addPopulationCriteriaReport(report, reportGroup, measurePopulationCriteria,
-                    measurePopulation != null ? measurePopulation.size() : 0,
-                    measurePopulationPatients != null ? measurePopulationPatients.values() : null);
-            addPopulationCriteriaReport(report, reportGroup, measurePopulationExclusionCriteria,
-                    measurePopulationExclusion != null ? measurePopulationExclusion.size() : 0,
-                    measurePopulationExclusionPatients != null ? measurePopulationExclusionPatients.values() : null);
+            addPopulationCriteriaReport(report, reportGroup, group.initialPopulationCriteria,
+                    group.initialPopulation != null ? group.initialPopulation.size() : 0,
+                    group.initialPopulationPatients != null ? group.initialPopulationPatients.values() : null);
+            addPopulationCriteriaReport(report, reportGroup, group.numeratorCriteria,
+                    group.numerator != null ? group.numerator.size() : 0,
+                    group.numeratorPatients != null ? group.numeratorPatients.values() : null);
+            addPopulationCriteriaReport(report, reportGroup, group.numeratorExclusionCriteria,
+                    group.numeratorExclusion != null ? group.numeratorExclusion.size() : 0,
+                    group.numeratorExclusionPatients != null ? group.numeratorExclusionPatients.values() : null);
+            addPopulationCriteriaReport(report, reportGroup, group.denominatorCriteria,
+                    group.denominator != null ? group.denominator.size() : 0,
+                    group.denominatorPatients != null ? group.denominatorPatients.values() : null);
+            addPopulationCriteriaReport(report, reportGroup, group.denominatorExclusionCriteria,
+                    group.denominatorExclusion != null ? group.denominatorExclusion.size() : 0,
+                    group.denominatorExclusionPatients != null ? group.denominatorExclusionPatients.values() : null);
+            addPopulationCriteriaReport(report, reportGroup, group.denominatorExceptionCriteria,
+                    group.denominatorException != null ? group.denominatorException.size() : 0,
+                    group.denominatorExceptionPatients != null ? group.denominatorExceptionPatients.values() : null);
+            addPopulationCriteriaReport(report, reportGroup, group.measurePopulationCriteria,
+                    group.measurePopulation != null ? group.measurePopulation.size() : 0,
+                    group.measurePopulationPatients != null ? group.measurePopulationPatients.values() : null);
+            addPopulationCriteriaReport(report, reportGroup, group.measurePopulationExclusionCriteria,
+                    group.measurePopulationExclusion != null ? group.measurePopulationExclusion.size() : 0,
+                    group.measurePopulationExclusionPatients != null ? group.measurePopulationExclusionPatients.values() : null);
             // TODO: Measure Observations...
         }
 
-        for (String key : codeToResourceMap.keySet()) {
+        for (String key : results.codeToResourceMap.keySet()) {
             org.hl7.fhir.dstu3.model.ListResource list = new org.hl7.fhir.dstu3.model.ListResource();
-            for (String element : codeToResourceMap.get(key)) {
+            for (String element : results.codeToResourceMap.get(key)) {
                 org.hl7.fhir.dstu3.model.ListResource.ListEntryComponent comp = new org.hl7.fhir.dstu3.model.ListResource.ListEntryComponent();
                 comp.setItem(new Reference('#' + element));
                 list.addEntry(comp);
@@ -568,27 +406,199 @@ public class MeasureEvaluation {
             if (!list.isEmpty()) {
                 list.setId("List/" + UUID.randomUUID().toString());
                 list.setTitle(key);
-                resources.put(list.getId(), list);
+                results.resources.put(list.getId(), list);
                 list.getEntry().forEach(listResource -> evaluatedResourcesList.add(listResource.getItem().getReference()));
             }
         }
 
-        if (!resources.isEmpty()) {
+        if (!results.resources.isEmpty()) {
             List<Reference> evaluatedResourceIds = new ArrayList<>();
             evaluatedResourcesList.forEach((resource) -> {
                 evaluatedResourceIds.add(new Reference(resource));
             });
         }
 
-        if (sdeAccumulators.size() > 0) {
-            report = processAccumulators(report, sdeAccumulators, sde, isSingle, patients);
+        if (results.sdeAccumulators.size() > 0) {
+            processAccumulators(report, results.sdeAccumulators, measure.getSupplementalData(), isSingle, results.sdeCodings);
         }
 
         return report;
     }
 
+    /**
+     * Evaluates the patients in turn, adding them to the populations of every group of the measure
+     */
+    private void evaluatePatients(Measure measure, Context context, Iterable<Patient> patients,
+            MeasureScoring measureScoring, EvaluationResults results, MeasureReport report) {
+        for (Patient patient : patients) {
+            for (GroupPopulations group : results.groups) {
+                switch (measureScoring) {
+                    case PROPORTION:
+                    case RATIO:
+                        evaluateProportion(context, patient, group, results);
+                        break;
+                    case CONTINUOUSVARIABLE:
+                        evaluateContinuousVariable(context, patient, group, results, report);
+                        break;
+                    case COHORT:
+                        evaluatePopulationCriteria(context, patient,
+                                group.initialPopulationCriteria, group.initialPopulation, group.initialPopulationPatients, null, null,
+                                null);
+                        populateResourceMap(context, MeasurePopulationType.INITIALPOPULATION, results.resources,
+                                results.codeToResourceMap);
+                        break;
+                }
+            }
+
+            if (!results.groups.isEmpty()) {
+                populateSDEAccumulators(measure, context, patient, results.sdeAccumulators, measure.getSupplementalData(), results.sdeCodings);
+                // The resources evaluated for the supplemental data don't belong to any population
+                context.clearEvaluatedResources();
+            }
+        }
+    }
+
+    private void evaluateProportion(Context context, Patient patient, GroupPopulations group, EvaluationResults results) {
+        // Are they in the initial population?
+        boolean inInitialPopulation = evaluatePopulationCriteria(context, patient,
+                group.initialPopulationCriteria, group.initialPopulation, group.initialPopulationPatients, null, null,
+                null);
+        populateResourceMap(context, MeasurePopulationType.INITIALPOPULATION, results.resources,
+                results.codeToResourceMap);
+
+        if (inInitialPopulation) {
+            // Are they in the denominator?
+            boolean inDenominator = evaluatePopulationCriteria(context, patient, group.denominatorCriteria,
+                    group.denominator, group.denominatorPatients, group.denominatorExclusionCriteria,
+                    group.denominatorExclusion, group.denominatorExclusionPatients);
+            populateResourceMap(context, MeasurePopulationType.DENOMINATOR, results.resources,
+                    results.codeToResourceMap);
+
+            if (inDenominator) {
+                // Are they in the numerator?
+                boolean inNumerator = evaluatePopulationCriteria(context, patient, group.numeratorCriteria,
+                        group.numerator, group.numeratorPatients, group.numeratorExclusionCriteria, group.numeratorExclusion,
+                        group.numeratorExclusionPatients);
+                populateResourceMap(context, MeasurePopulationType.NUMERATOR, results.resources,
+                        results.codeToResourceMap);
+
+                if (!inNumerator && inDenominator && (group.denominatorExceptionCriteria != null)) {
+                    // Are they in the denominator exception?
+                    boolean inException = false;
+                    for (Resource resource : evaluateCriteria(context, patient,
+                            group.denominatorExceptionCriteria)) {
+                        inException = true;
+                        group.denominatorException.put(resource.getIdElement().getIdPart(), resource);
+                        group.denominator.remove(resource.getIdElement().getIdPart());
+                        populateResourceMap(context, MeasurePopulationType.DENOMINATOREXCEPTION,
+                                results.resources, results.codeToResourceMap);
+                    }
+                    if (inException) {
+                        if (group.denominatorExceptionPatients != null) {
+                            group.denominatorExceptionPatients.put(patient.getIdElement().getIdPart(),
+                                    patient);
+                        }
+                        if (group.denominatorPatients != null) {
+                            group.denominatorPatients.remove(patient.getIdElement().getIdPart());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void evaluateContinuousVariable(Context context, Patient patient, GroupPopulations group,
+            EvaluationResults results, MeasureReport report) {
+        // Are they in the initial population?
+        boolean inInitialPopulation = evaluatePopulationCriteria(context, patient,
+                group.initialPopulationCriteria, group.initialPopulation, group.initialPopulationPatients, null, null,
+                null);
+        populateResourceMap(context, MeasurePopulationType.INITIALPOPULATION, results.resources,
+                results.codeToResourceMap);
+
+        if (inInitialPopulation) {
+            // Are they in the measure population?
+            boolean inMeasurePopulation = evaluatePopulationCriteria(context, patient,
+                    group.measurePopulationCriteria, group.measurePopulation, group.measurePopulationPatients,
+                    group.measurePopulationExclusionCriteria, group.measurePopulationExclusion,
+                    group.measurePopulationExclusionPatients);
+
+            if (inMeasurePopulation) {
+                for (Resource resource : group.measurePopulation.values()) {
+                    Resource observation = evaluateObservationCriteria(context, patient, resource, group.measureObservationCriteria, report);
+                    group.measureObservation.put(resource.getIdElement().getIdPart(), observation);
+                    report.addContained(observation);
+                    // TODO: Add to the evaluatedResources bundle
+                    //report.getEvaluatedResources().add(new Reference("#" + observation.getId()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates the batches of patients on a pool of {@link #threadCount} threads, each of which uses the context of
+     * its own seed. Each batch is evaluated into its own results, which are merged in patient order, so the report is
+     * the same as it would be if the patients were evaluated one after another. Only a couple of batches per thread
+     * are held in memory at once.
+     */
+    private void evaluateConcurrently(IResourceBatches<Patient> patients, MeasureScoring measureScoring,
+            MeasureReport.MeasureReportType type, EvaluationResults results, MeasureReport report) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("cql_measure_evaluation_");
+        executor.setCorePoolSize(threadCount);
+        executor.setMaxPoolSize(threadCount);
+        executor.initialize();
+
+        // Seeds are set up as they are needed, and each is only used by one thread at a time
+        Queue<MeasureEvaluationSeed> idleSeeds = new ConcurrentLinkedQueue<>();
+        Deque<Future<EvaluationResults>> pending = new ArrayDeque<>();
+        try {
+            patients.forEachBatch(batch -> {
+                pending.add(executor.submit(() -> {
+                    MeasureEvaluationSeed seed = idleSeeds.poll();
+                    if (seed == null) {
+                        seed = workerSeedSupplier.get();
+                    }
+                    try {
+                        EvaluationResults batchResults = new EvaluationResults(seed.getMeasure(), type);
+                        evaluatePatients(seed.getMeasure(), seed.getContext(), prefetchRetrieves(seed.getDataProvider(), batch),
+                                measureScoring, batchResults, report);
+                        return batchResults;
+                    } finally {
+                        idleSeeds.add(seed);
+                    }
+                }));
+                while (pending.size() >= threadCount * 2) {
+                    awaitResults(pending.remove()).mergeInto(results);
+                }
+            });
+            while (!pending.isEmpty()) {
+                awaitResults(pending.remove()).mergeInto(results);
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+            executor.shutdown();
+        }
+    }
+
+    private static EvaluationResults awaitResults(Future<EvaluationResults> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalErrorException("Interrupted while evaluating measure", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new InternalErrorException("Failure while evaluating measure: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+
     private void populateSDEAccumulators(Measure measure, Context context, Patient patient,HashMap<String, HashMap<String, Integer>> sdeAccumulators,
-                                         List<Measure.MeasureSupplementalDataComponent> sde){
+                                         List<Measure.MeasureSupplementalDataComponent> sde, SupplementalDataCodings<Coding> sdeCodings){
+        sdeCodings.collect(patient, getSDEKeys(sde));
         context.setContextValue("Patient", patient.getIdElement().getIdPart());
         List<Object> sdeList = sde.stream().map(sdeItem -> context.resolveExpressionRef(sdeItem.getCriteria()).evaluate(context)).collect(Collectors.toList());
         if(!sdeList.isEmpty()) {
@@ -640,8 +650,20 @@ public class MeasureEvaluation {
         }
     }
 
+    private List<String> getSDEKeys(List<Measure.MeasureSupplementalDataComponent> sde) {
+        List<String> retVal = new ArrayList<>();
+        for (Measure.MeasureSupplementalDataComponent sdeItem : sde) {
+            String sdeKey = sdeItem.getId();
+            if (null == sdeKey || sdeKey.length() < 1) {
+                sdeKey = sdeItem.getCriteria();
+            }
+            retVal.add(sdeKey);
+        }
+        return retVal;
+    }
+
     private MeasureReport processAccumulators(MeasureReport report, HashMap<String, HashMap<String, Integer>> sdeAccumulators,
-                                              List<Measure.MeasureSupplementalDataComponent> sde, boolean isSingle, List<Patient> patients){
+                                              List<Measure.MeasureSupplementalDataComponent> sde, boolean isSingle, SupplementalDataCodings<Coding> sdeCodings){
         List<Reference> newRefList = new ArrayList<>();
         sdeAccumulators.forEach((sdeKey, sdeAccumulator) -> {
             sdeAccumulator.forEach((sdeAccumulatorKey, sdeAccumulatorValue)->{
@@ -652,19 +674,12 @@ public class MeasureEvaluation {
                 if(sdeKey.equalsIgnoreCase("sde-sex")){
                     valueCoding.setCode(sdeAccumulatorKey);
                 }else {
-						  String coreCategory = sdeKey.substring(sdeKey.lastIndexOf('-') >= 0 ? sdeKey.lastIndexOf('-') : 0);
-                    patients.forEach((pt)-> {
-                        pt.getExtension().forEach((ptExt) -> {
-                            if (ptExt.getUrl().contains(coreCategory)) {
-                                String code = ((Coding) ptExt.getExtension().get(0).getValue()).getCode();
-                                if(code.equalsIgnoreCase(sdeAccumulatorKey)) {
-                                    valueCoding.setSystem(((Coding) ptExt.getExtension().get(0).getValue()).getSystem());
-                                    valueCoding.setCode(code);
-                                    valueCoding.setDisplay(((Coding) ptExt.getExtension().get(0).getValue()).getDisplay());
-                                }
-                            }
-                        });
-                    });
+                    Coding patientCoding = sdeCodings.get(sdeKey, sdeAccumulatorKey);
+                    if (patientCoding != null) {
+                        valueCoding.setSystem(patientCoding.getSystem());
+                        valueCoding.setCode(patientCoding.getCode());
+                        valueCoding.setDisplay(patientCoding.getDisplay());
+                    }
                 }
                 CodeableConcept obsCodeableConcept = new CodeableConcept();
                 Extension obsExtension = new Extension().setUrl("http://hl7.org/fhir/StructureDefinition/cqf-measureInfo");
@@ -727,4 +742,175 @@ public class MeasureEvaluation {
 
         context.clearEvaluatedResources();
     }
+
+    /**
+     * The populations of one group of the measure
+     */
+    private static class GroupPopulations {
+        private final Measure.MeasureGroupComponent group;
+
+        // Declare variables to avoid a hash lookup on every patient
+        // TODO: Isn't quite right, there may be multiple initial populations for a
+        // ratio measure...
+        private Measure.MeasureGroupPopulationComponent initialPopulationCriteria = null;
+        private Measure.MeasureGroupPopulationComponent numeratorCriteria = null;
+        private Measure.MeasureGroupPopulationComponent numeratorExclusionCriteria = null;
+        private Measure.MeasureGroupPopulationComponent denominatorCriteria = null;
+        private Measure.MeasureGroupPopulationComponent denominatorExclusionCriteria = null;
+        private Measure.MeasureGroupPopulationComponent denominatorExceptionCriteria = null;
+        private Measure.MeasureGroupPopulationComponent measurePopulationCriteria = null;
+        private Measure.MeasureGroupPopulationComponent measurePopulationExclusionCriteria = null;
+        // TODO: Isn't quite right, there may be multiple measure observations...
+        private Measure.MeasureGroupPopulationComponent measureObservationCriteria = null;
+
+        private PopulationMap<Resource> initialPopulation = null;
+        private PopulationMap<Resource> numerator = null;
+        private PopulationMap<Resource> numeratorExclusion = null;
+        private PopulationMap<Resource> denominator = null;
+        private PopulationMap<Resource> denominatorExclusion = null;
+        private PopulationMap<Resource> denominatorException = null;
+        private PopulationMap<Resource> measurePopulation = null;
+        private PopulationMap<Resource> measurePopulationExclusion = null;
+        private PopulationMap<Resource> measureObservation = null;
+
+        private PopulationMap<Patient> initialPopulationPatients = null;
+        private PopulationMap<Patient> numeratorPatients = null;
+        private PopulationMap<Patient> numeratorExclusionPatients = null;
+        private PopulationMap<Patient> denominatorPatients = null;
+        private PopulationMap<Patient> denominatorExclusionPatients = null;
+        private PopulationMap<Patient> denominatorExceptionPatients = null;
+        private PopulationMap<Patient> measurePopulationPatients = null;
+        private PopulationMap<Patient> measurePopulationExclusionPatients = null;
+
+        private GroupPopulations(Measure.MeasureGroupComponent group, MeasureReport.MeasureReportType type) {
+            this.group = group;
+            for (Measure.MeasureGroupPopulationComponent pop : group.getPopulation()) {
+                MeasurePopulationType populationType = MeasurePopulationType
+                        .fromCode(pop.getCode().getCodingFirstRep().getCode());
+                if (populationType != null) {
+                    switch (populationType) {
+                        case INITIALPOPULATION:
+                            initialPopulationCriteria = pop;
+                            initialPopulation = new PopulationMap<>();
+                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
+                                initialPopulationPatients = new PopulationMap<>();
+                            }
+                            break;
+                        case NUMERATOR:
+                            numeratorCriteria = pop;
+                            numerator = new PopulationMap<>();
+                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
+                                numeratorPatients = new PopulationMap<>();
+                            }
+                            break;
+                        case NUMERATOREXCLUSION:
+                            numeratorExclusionCriteria = pop;
+                            numeratorExclusion = new PopulationMap<>();
+                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
+                                numeratorExclusionPatients = new PopulationMap<>();
+                            }
+                            break;
+                        case DENOMINATOR:
+                            denominatorCriteria = pop;
+                            denominator = new PopulationMap<>();
+                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
+                                denominatorPatients = new PopulationMap<>();
+                            }
+                            break;
+                        case DENOMINATOREXCLUSION:
+                            denominatorExclusionCriteria = pop;
+                            denominatorExclusion = new PopulationMap<>();
+                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
+                                denominatorExclusionPatients = new PopulationMap<>();
+                            }
+                            break;
+                        case DENOMINATOREXCEPTION:
+                            denominatorExceptionCriteria = pop;
+                            denominatorException = new PopulationMap<>();
+                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
+                                denominatorExceptionPatients = new PopulationMap<>();
+                            }
+                            break;
+                        case MEASUREPOPULATION:
+                            measurePopulationCriteria = pop;
+                            measurePopulation = new PopulationMap<>();
+                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
+                                measurePopulationPatients = new PopulationMap<>();
+                            }
+                            break;
+                        case MEASUREPOPULATIONEXCLUSION:
+                            measurePopulationExclusionCriteria = pop;
+                            measurePopulationExclusion = new PopulationMap<>();
+                            if (type == MeasureReport.MeasureReportType.PATIENTLIST) {
+                                measurePopulationExclusionPatients = new PopulationMap<>();
+                            }
+                            break;
+                        case MEASUREOBSERVATION:
+                            measureObservationCriteria = pop;
+                            measureObservation = new PopulationMap<>();
+                            break;
+                    }
+                }
+            }
+        }
+
+        private void mergeInto(GroupPopulations target) {
+            mergeInto(initialPopulation, target.initialPopulation);
+            mergeInto(numerator, target.numerator);
+            mergeInto(numeratorExclusion, target.numeratorExclusion);
+            mergeInto(denominator, target.denominator);
+            mergeInto(denominatorExclusion, target.denominatorExclusion);
+            mergeInto(denominatorException, target.denominatorException);
+            mergeInto(measurePopulation, target.measurePopulation);
+            mergeInto(measurePopulationExclusion, target.measurePopulationExclusion);
+            mergeInto(measureObservation, target.measureObservation);
+            mergeInto(initialPopulationPatients, target.initialPopulationPatients);
+            mergeInto(numeratorPatients, target.numeratorPatients);
+            mergeInto(numeratorExclusionPatients, target.numeratorExclusionPatients);
+            mergeInto(denominatorPatients, target.denominatorPatients);
+            mergeInto(denominatorExclusionPatients, target.denominatorExclusionPatients);
+            mergeInto(denominatorExceptionPatients, target.denominatorExceptionPatients);
+            mergeInto(measurePopulationPatients, target.measurePopulationPatients);
+            mergeInto(measurePopulationExclusionPatients, target.measurePopulationExclusionPatients);
+        }
+
+        private static <V> void mergeInto(PopulationMap<V> source, PopulationMap<V> target) {
+            if (source != null) {
+                source.mergeInto(target);
+            }
+        }
+    }
+
+    /**
+     * Everything found by evaluating all of the patients, or a batch of them
+     */
+    private static class EvaluationResults {
+        private final List<GroupPopulations> groups = new ArrayList<>();
+        private final HashMap<String, Resource> resources = new HashMap<>();
+        private final HashMap<String, HashSet<String>> codeToResourceMap = new HashMap<>();
+        private final HashMap<String, HashMap<String, Integer>> sdeAccumulators = new HashMap<>();
+        private final SupplementalDataCodings<Coding> sdeCodings = new SupplementalDataCodings<>(Coding.class);
+
+        private EvaluationResults(Measure measure, MeasureReport.MeasureReportType type) {
+            for (Measure.MeasureGroupComponent group : measure.getGroup()) {
+                groups.add(new GroupPopulations(group, type));
+            }
+        }
+
+        /**
+         * Merges these results into the results for the patients evaluated before the patients of these results
+         */
+        private void mergeInto(EvaluationResults target) {
+            for (int i = 0; i < groups.size(); i++) {
+                groups.get(i).mergeInto(target.groups.get(i));
+            }
+            resources.forEach(target.resources::putIfAbsent);
+            codeToResourceMap.forEach((code, ids) -> target.codeToResourceMap.computeIfAbsent(code, t -> new HashSet<>()).addAll(ids));
+            sdeAccumulators.forEach((sdeKey, counts) -> {
+                HashMap<String, Integer> targetCounts = target.sdeAccumulators.computeIfAbsent(sdeKey, t -> new HashMap<>());
+                counts.forEach((code, count) -> targetCounts.merge(code, count, Integer::sum));
+            });
+            target.sdeCodings.putAll(sdeCodings);
+        }
+    }
 }
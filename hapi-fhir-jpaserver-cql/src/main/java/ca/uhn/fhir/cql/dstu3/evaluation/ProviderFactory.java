@@ -22,9 +22,10 @@ package ca.uhn.fhir.cql.dstu3.evaluation;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.cql.common.provider.EvaluationProviderFactory;
+import ca.uhn.fhir.cql.common.retrieve.JpaFhirDataProvider;
 import ca.uhn.fhir.cql.common.retrieve.JpaFhirRetrieveProvider;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
-import org.opencds.cqf.cql.engine.data.CompositeDataProvider;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
 import org.opencds.cqf.cql.engine.data.DataProvider;
 import org.opencds.cqf.cql.engine.fhir.searchparam.SearchParameterResolver;
 import org.opencds.cqf.cql.engine.model.ModelResolver;
@@ -42,14 +43,17 @@ public class ProviderFactory implements EvaluationProviderFactory {
 	TerminologyProvider defaultTerminologyProvider;
 	FhirContext fhirContext;
 	ModelResolver fhirModelResolver;
+	ISearchParamExtractor searchParamExtractor;
 
 	@Autowired
 	public ProviderFactory(FhirContext fhirContext, DaoRegistry registry,
-			  TerminologyProvider defaultTerminologyProvider, ModelResolver fhirModelResolver) {
+			  TerminologyProvider defaultTerminologyProvider, ModelResolver fhirModelResolver,
+			  ISearchParamExtractor searchParamExtractor) {
 		 this.defaultTerminologyProvider = defaultTerminologyProvider;
 		 this.registry = registry;
 		 this.fhirContext = fhirContext;
 		 this.fhirModelResolver = fhirModelResolver;
+		 this.searchParamExtractor = searchParamExtractor;
 	}
 
     public DataProvider createDataProvider(String model, String version) {
@@ -64,11 +68,11 @@ public class ProviderFactory implements EvaluationProviderFactory {
     public DataProvider createDataProvider(String model, String version, TerminologyProvider terminologyProvider) {
         if (model.equals("FHIR") && version.startsWith("3")) {
             JpaFhirRetrieveProvider retrieveProvider = new JpaFhirRetrieveProvider(this.registry,
-                    new SearchParameterResolver(this.fhirContext));
+                    new SearchParameterResolver(this.fhirContext), this.searchParamExtractor);
             retrieveProvider.setTerminologyProvider(terminologyProvider);
             retrieveProvider.setExpandValueSets(true);
 
-            return new CompositeDataProvider(this.fhirModelResolver, retrieveProvider);
+            return new JpaFhirDataProvider(this.fhirModelResolver, retrieveProvider);
         }
 
         throw new IllegalArgumentException(
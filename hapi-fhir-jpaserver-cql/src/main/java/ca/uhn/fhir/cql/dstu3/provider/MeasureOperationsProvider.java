@@ -20,11 +20,13 @@ package ca.uhn.fhir.cql.dstu3.provider;
  * #L%
  */
 
+import ca.uhn.fhir.cql.common.evaluation.ResourceBatchSearchSvc;
 import ca.uhn.fhir.cql.common.provider.EvaluationProviderFactory;
 import ca.uhn.fhir.cql.common.provider.LibraryResolutionProvider;
 import ca.uhn.fhir.cql.dstu3.evaluation.MeasureEvaluation;
 import ca.uhn.fhir.cql.dstu3.evaluation.MeasureEvaluationSeed;
 import ca.uhn.fhir.cql.dstu3.helper.LibraryHelper;
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.rest.annotation.IdParam;
@@ -61,6 +63,10 @@ public class MeasureOperationsProvider {
 	@Autowired
 	private DaoRegistry registry;
 	@Autowired
+	private ResourceBatchSearchSvc myResourceBatchSearchSvc;
+	@Autowired
+	private DaoConfig myDaoConfig;
+	@Autowired
 	private IFhirResourceDao<Measure> myMeasureDao;
 	@Autowired
 	private EvaluationProviderFactory factory;
@@ -86,20 +92,18 @@ public class MeasureOperationsProvider {
 													 @OperationParam(name = "source") String source,
 													 @OperationParam(name = "user") String user,
 													 @OperationParam(name = "pass") String pass) throws InternalErrorException, FHIRException {
-		LibraryLoader libraryLoader = this.libraryHelper.createLibraryLoader(this.libraryResolutionProvider);
-		MeasureEvaluationSeed seed = new MeasureEvaluationSeed(this.factory, libraryLoader,
-			this.libraryResolutionProvider, this.libraryHelper);
 		Measure measure = myMeasureDao.read(theId);
 
 		if (measure == null) {
 			throw new RuntimeException("Could not find Measure/" + theId.getIdPart());
 		}
 
-		seed.setup(measure, periodStart, periodEnd, productLine, source, user, pass);
+		MeasureEvaluationSeed seed = setupSeed(measure, periodStart, periodEnd, productLine, source, user, pass);
 
 		// resolve report type
-		MeasureEvaluation evaluator = new MeasureEvaluation(this.registry,
-			seed.getMeasurementPeriod());
+		MeasureEvaluation evaluator = new MeasureEvaluation(seed.getDataProvider(), this.registry, myResourceBatchSearchSvc,
+			seed.getMeasurementPeriod(), myDaoConfig.getMeasureEvaluationThreadCount(),
+			() -> setupSeed(measure.copy(), periodStart, periodEnd, productLine, source, user, pass));
 		if (reportType != null) {
 			switch (reportType) {
 				case "patient":
@@ -124,4 +128,16 @@ public class MeasureOperationsProvider {
 
 		return report;
 	}
+
+	/**
+	 * Sets up a seed with its own library loader, context and data provider
+	 */
+	private MeasureEvaluationSeed setupSeed(Measure theMeasure, String periodStart, String periodEnd, String productLine,
+														 String source, String user, String pass) {
+		LibraryLoader libraryLoader = this.libraryHelper.createLibraryLoader(this.libraryResolutionProvider);
+		MeasureEvaluationSeed seed = new MeasureEvaluationSeed(this.factory, libraryLoader,
+			this.libraryResolutionProvider, this.libraryHelper);
+		seed.setup(theMeasure, periodStart, periodEnd, productLine, source, user, pass);
+		return seed;
+	}
 }
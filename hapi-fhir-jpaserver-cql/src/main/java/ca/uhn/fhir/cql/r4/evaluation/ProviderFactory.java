@@ -22,9 +22,10 @@ package ca.uhn.fhir.cql.r4.evaluation;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.cql.common.provider.EvaluationProviderFactory;
+import ca.uhn.fhir.cql.common.retrieve.JpaFhirDataProvider;
 import ca.uhn.fhir.cql.common.retrieve.JpaFhirRetrieveProvider;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
-import org.opencds.cqf.cql.engine.data.CompositeDataProvider;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
 import org.opencds.cqf.cql.engine.data.DataProvider;
 import org.opencds.cqf.cql.engine.fhir.searchparam.SearchParameterResolver;
 import org.opencds.cqf.cql.engine.model.ModelResolver;
@@ -42,13 +43,15 @@ public class ProviderFactory implements EvaluationProviderFactory {
 	private final TerminologyProvider myDefaultTerminologyProvider;
 	private final FhirContext myFhirContext;
 	private final ModelResolver myModelResolver;
+	private final ISearchParamExtractor mySearchParamExtractor;
 
 	@Autowired
-	public ProviderFactory(FhirContext theFhirContext, DaoRegistry theDaoRegistry, TerminologyProvider theDefaultTerminologyProvider, ModelResolver theFhirModelResolver) {
+	public ProviderFactory(FhirContext theFhirContext, DaoRegistry theDaoRegistry, TerminologyProvider theDefaultTerminologyProvider, ModelResolver theFhirModelResolver, ISearchParamExtractor theSearchParamExtractor) {
 		myDefaultTerminologyProvider = theDefaultTerminologyProvider;
 		myDaoRegistry = theDaoRegistry;
 		myFhirContext = theFhirContext;
 		myModelResolver = theFhirModelResolver;
+		mySearchParamExtractor = theSearchParamExtractor;
 	}
 
 	public DataProvider createDataProvider(String model, String version) {
@@ -63,11 +66,11 @@ public class ProviderFactory implements EvaluationProviderFactory {
 	public DataProvider createDataProvider(String model, String version, TerminologyProvider terminologyProvider) {
 		if (model.equals("FHIR") && version.startsWith("4")) {
 			JpaFhirRetrieveProvider retrieveProvider = new JpaFhirRetrieveProvider(myDaoRegistry,
-				new SearchParameterResolver(myFhirContext));
+				new SearchParameterResolver(myFhirContext), mySearchParamExtractor);
 			retrieveProvider.setTerminologyProvider(terminologyProvider);
 			retrieveProvider.setExpandValueSets(true);
 
-			return new CompositeDataProvider(myModelResolver, retrieveProvider);
+			return new JpaFhirDataProvider(myModelResolver, retrieveProvider);
 		}
 
 		throw new IllegalArgumentException(
@@ -0,0 +1,76 @@
+package ca.uhn.fhir.cql.common.evaluation;
+
+import ca.uhn.fhir.cql.BaseCqlR4Test;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResourceBatchSearchSvcTest extends BaseCqlR4Test {
+
+	@Autowired
+	ResourceBatchSearchSvc myResourceBatchSearchSvc;
+
+	@AfterEach
+	public void after() {
+		myResourceBatchSearchSvc.setBatchSizeForUnitTest(ResourceBatchSearchSvc.DEFAULT_BATCH_SIZE);
+	}
+
+	private void createPatients(String theFamily, int theCount) {
+		for (int i = 0; i < theCount; i++) {
+			Patient patient = new Patient();
+			patient.setId("Patient/" + theFamily + i);
+			patient.addName().setFamily(theFamily);
+			myDaoRegistry.getResourceDao(Patient.class).update(patient);
+		}
+	}
+
+	@Test
+	public void testSuppliesAllMatchesInBatches() {
+		createPatients("Batch", 7);
+		createPatients("Other", 2);
+		myResourceBatchSearchSvc.setBatchSizeForUnitTest(3);
+
+		SearchParameterMap map = new SearchParameterMap();
+		map.add(Patient.SP_FAMILY, new StringParam("Batch"));
+		IResourceBatches<Patient> batches = myResourceBatchSearchSvc.search(Patient.class, map);
+
+		List<Integer> batchSizes = new ArrayList<>();
+		Set<String> ids = new HashSet<>();
+		batches.forEachBatch(batch -> {
+			batchSizes.add(batch.size());
+			batch.forEach(patient -> assertTrue(ids.add(patient.getIdElement().getIdPart())));
+		});
+
+		assertThat(batchSizes, contains(3, 3, 1));
+		assertThat(ids, containsInAnyOrder("Batch0", "Batch1", "Batch2", "Batch3", "Batch4", "Batch5", "Batch6"));
+
+		// Each pass runs the search again
+		List<Integer> secondPass = new ArrayList<>();
+		batches.forEachBatch(batch -> secondPass.add(batch.size()));
+		assertThat(secondPass, contains(3, 3, 1));
+	}
+
+	@Test
+	public void testNoMatches() {
+		createPatients("Other", 2);
+
+		SearchParameterMap map = new SearchParameterMap();
+		map.add(Patient.SP_FAMILY, new StringParam("Batch"));
+		List<List<Patient>> batches = new ArrayList<>();
+		myResourceBatchSearchSvc.search(Patient.class, map).forEachBatch(batches::add);
+		assertTrue(batches.isEmpty());
+	}
+}
@@ -0,0 +1,142 @@
+package ca.uhn.fhir.cql.common.retrieve;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
+import ca.uhn.fhir.jpa.searchparam.extractor.PathAndRef;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.opencds.cqf.cql.engine.fhir.searchparam.SearchParameterMap;
+import org.opencds.cqf.cql.engine.fhir.searchparam.SearchParameterResolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JpaFhirRetrieveProviderTest {
+
+	private static final FhirContext ourCtx = FhirContext.forR4();
+
+	private IFhirResourceDao<Observation> myObservationDao;
+	private ISearchParamExtractor mySearchParamExtractor;
+	private JpaFhirRetrieveProvider mySvc;
+	private List<IBaseResource> myObservations;
+
+	@SuppressWarnings("unchecked")
+	@BeforeEach
+	public void before() {
+		myObservationDao = mock(IFhirResourceDao.class);
+		when(myObservationDao.getContext()).thenReturn(ourCtx);
+		DaoRegistry daoRegistry = mock(DaoRegistry.class);
+		when(daoRegistry.getResourceDao("Observation")).thenReturn((IFhirResourceDao) myObservationDao);
+
+		mySearchParamExtractor = mock(ISearchParamExtractor.class);
+		when(mySearchParamExtractor.extractResourceLinks(any(), any(Boolean.class))).thenAnswer(t -> {
+			Observation obs = t.getArgument(0);
+			ISearchParamExtractor.SearchParamSet<PathAndRef> retVal = new ISearchParamExtractor.SearchParamSet<>();
+			retVal.add(new PathAndRef("subject", "Observation.subject", obs.getSubject(), false));
+			return retVal;
+		});
+
+		myObservations = new ArrayList<>();
+		myObservations.add(createObservation("O1", "P1"));
+		myObservations.add(createObservation("O2", "P2"));
+		myObservations.add(createObservation("O3", "P1"));
+		when(myObservationDao.search(any())).thenAnswer(t -> new SimpleBundleProvider(myObservations));
+
+		mySvc = new JpaFhirRetrieveProvider(daoRegistry, mock(SearchParameterResolver.class), mySearchParamExtractor);
+	}
+
+	private Observation createObservation(String theId, String thePatientId) {
+		Observation retVal = new Observation();
+		retVal.setId("Observation/" + theId);
+		retVal.setSubject(new Reference("Patient/" + thePatientId));
+		return retVal;
+	}
+
+	private SearchParameterMap createQuery(String thePatientId) {
+		SearchParameterMap retVal = new SearchParameterMap();
+		retVal.add("subject", new ReferenceParam(thePatientId));
+		retVal.add("code", new TokenParam("http://loinc.org", "1234-5"));
+		return retVal;
+	}
+
+	private List<String> toIds(Collection<Object> theResources) {
+		List<String> retVal = new ArrayList<>();
+		for (Object next : theResources) {
+			retVal.add(((IBaseResource) next).getIdElement().getIdPart());
+		}
+		return retVal;
+	}
+
+	@Test
+	public void testRetrievesForBlockAreSearchedOnce() {
+		mySvc.startPatientBlock(Arrays.asList("P1", "P2", "P3"));
+
+		assertEquals(Arrays.asList("O1", "O3"), toIds(mySvc.executeQuery("Observation", createQuery("P1"))));
+		assertEquals(Collections.singletonList("O2"), toIds(mySvc.executeQuery("Observation", createQuery("P2"))));
+		assertTrue(mySvc.executeQuery("Observation", createQuery("P3")).isEmpty());
+
+		ArgumentCaptor<ca.uhn.fhir.jpa.searchparam.SearchParameterMap> captor = ArgumentCaptor.forClass(ca.uhn.fhir.jpa.searchparam.SearchParameterMap.class);
+		verify(myObservationDao, times(1)).search(captor.capture());
+		ca.uhn.fhir.jpa.searchparam.SearchParameterMap searched = captor.getValue();
+		assertEquals(3, searched.get("subject").get(0).size());
+		assertEquals(1, searched.get("code").get(0).size());
+	}
+
+	@Test
+	public void testRetrievesOutsideBlockAreSearchedIndividually() {
+		mySvc.startPatientBlock(Arrays.asList("P1", "P2"));
+		mySvc.executeQuery("Observation", createQuery("P1"));
+		mySvc.executeQuery("Observation", createQuery("P9"));
+		verify(myObservationDao, times(2)).search(any());
+
+		mySvc.clearPrefetchedResources();
+		mySvc.executeQuery("Observation", createQuery("P2"));
+		verify(myObservationDao, times(3)).search(any());
+	}
+
+	@Test
+	public void testPrefetchInBlocks() {
+		List<Patient> patients = new ArrayList<>();
+		for (int i = 1; i <= 5; i++) {
+			Patient patient = new Patient();
+			patient.setId("Patient/P" + i);
+			patients.add(patient);
+		}
+
+		List<Patient> iterated = new ArrayList<>();
+		for (Patient next : mySvc.prefetchInBlocks(patients, 2)) {
+			iterated.add(next);
+			mySvc.executeQuery("Observation", createQuery(next.getIdElement().getIdPart()));
+		}
+
+		assertEquals(5, iterated.size());
+		for (int i = 0; i < 5; i++) {
+			assertSame(patients.get(i), iterated.get(i));
+		}
+		// One search per block of 2 patients
+		verify(myObservationDao, times(3)).search(any());
+	}
+
+}
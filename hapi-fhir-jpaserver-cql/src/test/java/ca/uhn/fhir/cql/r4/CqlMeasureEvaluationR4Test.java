@@ -8,10 +8,13 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.hamcrest.Matchers;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.DateTimeType;
 import org.hl7.fhir.r4.model.IdType;
@@ -19,13 +22,17 @@ import org.hl7.fhir.r4.model.Measure;
 import org.hl7.fhir.r4.model.MeasureReport;
 import org.hl7.fhir.r4.model.MeasureReport.MeasureReportGroupComponent;
 import org.hl7.fhir.r4.model.Quantity;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import ca.uhn.fhir.cql.BaseCqlR4Test;
+import ca.uhn.fhir.cql.common.evaluation.ResourceBatchSearchSvc;
 import ca.uhn.fhir.cql.r4.provider.MeasureOperationsProvider;
+import ca.uhn.fhir.jpa.api.config.DaoConfig;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.util.BundleUtil;
 
 public class CqlMeasureEvaluationR4Test extends BaseCqlR4Test {
@@ -33,6 +40,16 @@ public class CqlMeasureEvaluationR4Test extends BaseCqlR4Test {
 
 	@Autowired
 	MeasureOperationsProvider myMeasureOperationsProvider;
+	@Autowired
+	DaoConfig myDaoConfig;
+	@Autowired
+	ResourceBatchSearchSvc myResourceBatchSearchSvc;
+
+	@AfterEach
+	public void after() {
+		myDaoConfig.setMeasureEvaluationThreadCount(new DaoConfig().getMeasureEvaluationThreadCount());
+		myResourceBatchSearchSvc.setBatchSizeForUnitTest(ResourceBatchSearchSvc.DEFAULT_BATCH_SIZE);
+	}
 
 	protected void testMeasureBundle(String theLocation) throws IOException {
 		Bundle bundle = parseBundle(theLocation);
@@ -103,6 +120,47 @@ public class CqlMeasureEvaluationR4Test extends BaseCqlR4Test {
 		}
 	}
 
+	/**
+	 * Population reports prefetch the retrieves for blocks of patients, so check they count the
+	 * same patients as reports for each individual patient, which are evaluated without prefetching
+	 */
+	protected void testPopulationMatchesIndividualReports(String theLocation) throws IOException {
+		Bundle bundle = parseBundle(theLocation);
+		loadBundle(bundle);
+
+		MeasureReport expected = BundleUtil.toListOfResourcesOfType(myFhirContext, bundle, MeasureReport.class).get(0);
+		String measureId = getMeasureId(expected);
+		String periodStart = getPeriodStart(expected);
+		String periodEnd = getPeriodEnd(expected);
+
+		Map<String, Integer> individualCounts = new HashMap<>();
+		List<IBaseResource> patients = myDaoRegistry.getResourceDao("Patient").search(SearchParameterMap.newSynchronous()).getResources(0, Integer.MAX_VALUE);
+		assertThat(patients.size(), Matchers.greaterThan(1));
+		for (IBaseResource patient : patients) {
+			MeasureReport individual = myMeasureOperationsProvider.evaluateMeasure(new IdType("Measure", measureId),
+				periodStart, periodEnd, null, "patient", patient.getIdElement().getIdPart(),
+				null, null, null, null, null, null);
+			for (MeasureReportGroupComponent group : individual.getGroup()) {
+				for (MeasureReport.MeasureReportGroupPopulationComponent population : group.getPopulation()) {
+					individualCounts.merge(group.getId() + "|" + population.getCode().getCodingFirstRep().getCode(), population.getCount(), Integer::sum);
+				}
+			}
+		}
+
+		MeasureReport actual = myMeasureOperationsProvider.evaluateMeasure(new IdType("Measure", measureId),
+			periodStart, periodEnd, null, "population", null,
+			null, null, null, null, null, null);
+		Map<String, Integer> populationCounts = new HashMap<>();
+		for (MeasureReportGroupComponent group : actual.getGroup()) {
+			for (MeasureReport.MeasureReportGroupPopulationComponent population : group.getPopulation()) {
+				populationCounts.put(group.getId() + "|" + population.getCode().getCodingFirstRep().getCode(), population.getCount());
+			}
+		}
+
+		assertThat(populationCounts.values(), Matchers.hasItem(Matchers.greaterThan(0)));
+		assertEquals(individualCounts, populationCounts);
+	}
+
 	// TODO: In R4 the Subject will not necessarily be a Patient.
 	public String getPatientId(MeasureReport measureReport) {
 		String[] subjectRefParts = measureReport.getSubject().getReference().split("/");
@@ -166,6 +224,18 @@ public class CqlMeasureEvaluationR4Test extends BaseCqlR4Test {
 		this.testMeasureBundle("r4/connectathon/EXM124-9.0.000-bundle.json");
 	}
 
+	@Test
+	public void test_EXM124_90000_Population() throws IOException {
+		this.testPopulationMatchesIndividualReports("r4/connectathon/EXM124-9.0.000-bundle.json");
+	}
+
+	@Test
+	public void test_EXM124_90000_PopulationConcurrently() throws IOException {
+		myDaoConfig.setMeasureEvaluationThreadCount(3);
+		myResourceBatchSearchSvc.setBatchSizeForUnitTest(1);
+		this.testPopulationMatchesIndividualReports("r4/connectathon/EXM124-9.0.000-bundle.json");
+	}
+
 	@Test
 	public void test_EXM125_73000() throws IOException {
 		this.testMeasureBundle("r4/connectathon/EXM125-7.3.000-bundle.json");
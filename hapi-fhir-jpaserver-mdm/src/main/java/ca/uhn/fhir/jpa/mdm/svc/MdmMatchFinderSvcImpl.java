@@ -23,6 +23,7 @@ package ca.uhn.fhir.jpa.mdm.svc;
 import ca.uhn.fhir.mdm.api.IMdmMatchFinderSvc;
 import ca.uhn.fhir.mdm.api.MatchedTarget;
 import ca.uhn.fhir.mdm.log.Logs;
+import ca.uhn.fhir.mdm.rules.svc.MdmResourceFeatures;
 import ca.uhn.fhir.mdm.rules.svc.MdmResourceMatcherSvc;
 import ca.uhn.fhir.jpa.mdm.svc.candidate.MdmCandidateSearchSvc;
 import org.hl7.fhir.instance.model.api.IAnyResource;
@@ -50,8 +51,10 @@ public class MdmMatchFinderSvcImpl implements IMdmMatchFinderSvc {
 	public List<MatchedTarget> getMatchedTargets(String theResourceType, IAnyResource theResource) {
 		Collection<IAnyResource> targetCandidates = myMdmCandidateSearchSvc.findCandidates(theResourceType, theResource);
 
+		// Extract the fields of the incoming resource once, instead of once per candidate
+		MdmResourceFeatures resourceFeatures = myMdmResourceMatcherSvc.extractFeatures(theResource);
 		List<MatchedTarget> matches = targetCandidates.stream()
-			.map(candidate -> new MatchedTarget(candidate, myMdmResourceMatcherSvc.getMatchResult(theResource, candidate)))
+			.map(candidate -> new MatchedTarget(candidate, myMdmResourceMatcherSvc.getMatchResult(resourceFeatures, candidate)))
 			.collect(Collectors.toList());
 
 		ourLog.info("Found {} matched targets for {}", matches.size(), theResourceType);
@@ -24,24 +24,32 @@ import ca.uhn.fhir.mdm.api.IMdmSettings;
 import ca.uhn.fhir.mdm.log.Logs;
 import ca.uhn.fhir.mdm.rules.json.MdmFilterSearchParamJson;
 import ca.uhn.fhir.mdm.rules.json.MdmResourceSearchParamJson;
-import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
-import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.dao.IResultIterator;
+import ca.uhn.fhir.jpa.dao.ISearchBuilder;
 import ca.uhn.fhir.jpa.dao.index.IdHelperService;
 import ca.uhn.fhir.jpa.mdm.svc.MdmSearchParamSvc;
+import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
+import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
-import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.storage.ResourcePersistentId;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import static ca.uhn.fhir.mdm.api.MdmConstants.ALL_RESOURCE_SEARCH_PARAM_TYPE;
@@ -56,7 +64,7 @@ public class MdmCandidateSearchSvc {
 	@Autowired
 	private MdmSearchParamSvc myMdmSearchParamSvc;
 	@Autowired
-	private DaoRegistry myDaoRegistry;
+	private IRequestPartitionHelperSvc myRequestPartitionHelperSvc;
 	@Autowired
 	private IdHelperService myIdHelperService;
 	@Autowired
@@ -67,23 +75,30 @@ public class MdmCandidateSearchSvc {
 
 	/**
 	 * Given a source resource, search for all resources that are considered an MDM match based on defined MDM rules.
-	 *
+	 * <p>
+	 * The candidate searches only collect resource PIDs. If they find more than
+	 * {@link IMdmSettings#getCandidateSearchLimit()} resources, the ones returned by the most candidate searches are kept.
+	 * Only the kept resources are loaded. Each candidate search query is also limited, so that it returns at most
+	 * the candidate search limit multiplied by the number of candidate searches.
+	 * </p>
 	 *
 	 * @param theResourceType
 	 * @param theResource the {@link IBaseResource} we are attempting to match.
 	 *
 	 * @return the list of candidate {@link IBaseResource} which could be matches to theResource
 	 */
+	@Transactional
 	public Collection<IAnyResource> findCandidates(String theResourceType, IAnyResource theResource) {
-		Map<Long, IAnyResource> matchedPidsToResources = new HashMap<>();
+		Map<ResourcePersistentId, Integer> matchedPidsToSearchCounts = new LinkedHashMap<>();
 		List<MdmFilterSearchParamJson> filterSearchParams = myMdmSettings.getMdmRules().getCandidateFilterSearchParams();
 		List<String> filterCriteria = buildFilterQuery(filterSearchParams, theResourceType);
 		List<MdmResourceSearchParamJson> candidateSearchParams = myMdmSettings.getMdmRules().getCandidateSearchParams();
 
 		//If there are zero MdmResourceSearchParamJson, we end up only making a single search, otherwise we
 		//must perform one search per MdmResourceSearchParamJson.
+		List<String> resourceCriteria = new ArrayList<>();
 		if (candidateSearchParams.isEmpty()) {
-			searchForIdsAndAddToMap(theResourceType, theResource, matchedPidsToResources, filterCriteria, null);
+			myMdmCandidateSearchCriteriaBuilderSvc.buildResourceQueryString(theResourceType, theResource, filterCriteria, null).ifPresent(resourceCriteria::add);
 		} else {
 			for (MdmResourceSearchParamJson resourceSearchParam : candidateSearchParams) {
 
@@ -91,18 +106,59 @@ public class MdmCandidateSearchSvc {
 					continue;
 				}
 
-				searchForIdsAndAddToMap(theResourceType, theResource, matchedPidsToResources, filterCriteria, resourceSearchParam);
+				myMdmCandidateSearchCriteriaBuilderSvc.buildResourceQueryString(theResourceType, theResource, filterCriteria, resourceSearchParam).ifPresent(resourceCriteria::add);
 			}
 		}
+
+		// Each search may return a different subset of the candidates, so each one is allowed to return more
+		// than the limit, which leaves room to rank the candidates that several searches have in common
+		int maxPidsPerSearch = myMdmSettings.getCandidateSearchLimit() * Math.max(resourceCriteria.size(), 1);
+		for (String nextResourceCriteria : resourceCriteria) {
+			searchForIdsAndAddToMap(theResourceType, nextResourceCriteria, matchedPidsToSearchCounts, maxPidsPerSearch);
+		}
 		//Obviously we don't want to consider the freshly added resource as a potential candidate.
 		//Sometimes, we are running this function on a resource that has not yet been persisted,
 		//so it may not have an ID yet, precluding the need to remove it.
 		if (theResource.getIdElement().getIdPart() != null) {
-			matchedPidsToResources.remove(myIdHelperService.getPidOrNull(theResource));
+			Long pid = myIdHelperService.getPidOrNull(theResource);
+			if (pid != null) {
+				matchedPidsToSearchCounts.remove(new ResourcePersistentId(pid));
+			}
 		}
 
-		ourLog.info("Found {} resources for {}", matchedPidsToResources.size(), theResourceType);
-		return matchedPidsToResources.values();
+		List<ResourcePersistentId> candidatePids = selectCandidatePids(theResourceType, matchedPidsToSearchCounts);
+		Collection<IAnyResource> retVal = loadCandidates(theResourceType, candidatePids);
+
+		ourLog.info("Found {} resources for {}", retVal.size(), theResourceType);
+		return retVal;
+	}
+
+	/**
+	 * Keeps at most {@link IMdmSettings#getCandidateSearchLimit()} candidates, preferring the ones that were
+	 * found by the most candidate searches, since those share the most blocking values with the incoming resource
+	 */
+	private List<ResourcePersistentId> selectCandidatePids(String theResourceType, Map<ResourcePersistentId, Integer> theMatchedPidsToSearchCounts) {
+		List<ResourcePersistentId> retVal = new ArrayList<>(theMatchedPidsToSearchCounts.keySet());
+		int limit = myMdmSettings.getCandidateSearchLimit();
+		if (retVal.size() > limit) {
+			ourLog.warn("Candidate search found {} {} candidates, only the {} best candidates will be scored", retVal.size(), theResourceType, limit);
+			// The PIDs of each search come back unordered, so candidates found by the same number of searches are
+			// ordered by PID to keep the selection deterministic
+			Comparator<ResourcePersistentId> bySearchCount = Comparator.comparing(theMatchedPidsToSearchCounts::get, Comparator.reverseOrder());
+			retVal.sort(bySearchCount.thenComparing(ResourcePersistentId::getIdAsLong));
+			retVal = retVal.subList(0, limit);
+		}
+		return retVal;
+	}
+
+	private Collection<IAnyResource> loadCandidates(String theResourceType, List<ResourcePersistentId> theCandidatePids) {
+		if (theCandidatePids.isEmpty()) {
+			return Collections.emptyList();
+		}
+		ISearchBuilder searchBuilder = myMdmSearchParamSvc.generateSearchBuilderForType(theResourceType);
+		List<IBaseResource> resources = new ArrayList<>(theCandidatePids.size());
+		searchBuilder.loadResourcesByPid(theCandidatePids, Collections.emptyList(), resources, false, null);
+		return resources.stream().map(t -> (IAnyResource) t).collect(Collectors.toList());
 	}
 
 	private boolean isSearchParamForResource(String theResourceType, MdmResourceSearchParamJson resourceSearchParam) {
@@ -112,38 +168,39 @@ public class MdmCandidateSearchSvc {
 
 	/*
 	 * Helper method which performs too much work currently.
-	 * 1. Build a full query string for the given filter and resource criteria.
-	 * 2. Convert that URL to a SearchParameterMap.
-	 * 3. Execute a Synchronous search on the DAO using that parameter map.
-	 * 4. Store all results in `theMatchedPidsToResources`
+	 * 1. Convert the full query string for the given filter and resource criteria to a SearchParameterMap.
+	 * 2. Execute a search for at most `theMaxPids` matching resource PIDs using that parameter map.
+	 * 3. Count each PID in `theMatchedPidsToSearchCounts`
 	 */
-	@SuppressWarnings("rawtypes")
-	private void searchForIdsAndAddToMap(String theResourceType, IAnyResource theResource, Map<Long, IAnyResource> theMatchedPidsToResources, List<String> theFilterCriteria, MdmResourceSearchParamJson resourceSearchParam) {
-		//1.
-		Optional<String> oResourceCriteria = myMdmCandidateSearchCriteriaBuilderSvc.buildResourceQueryString(theResourceType, theResource, theFilterCriteria, resourceSearchParam);
-		if (!oResourceCriteria.isPresent()) {
-			return;
-		}
-		String resourceCriteria = oResourceCriteria.get();
+	private void searchForIdsAndAddToMap(String theResourceType, String resourceCriteria, Map<ResourcePersistentId, Integer> theMatchedPidsToSearchCounts, int theMaxPids) {
 		ourLog.debug("Searching for {} candidates with {}", theResourceType, resourceCriteria);
 
-		//2.
+		//1.
 		SearchParameterMap searchParameterMap = myMdmSearchParamSvc.mapFromCriteria(theResourceType, resourceCriteria);
 
-		searchParameterMap.setLoadSynchronous(true);
-
-		//TODO MDM this will blow up under large scale i think.
-		//3.
-		IFhirResourceDao<?> resourceDao = myDaoRegistry.getResourceDao(theResourceType);
-		IBundleProvider search = resourceDao.search(searchParameterMap);
-		List<IBaseResource> resources = search.getResources(0, search.size());
+		int initialSize = theMatchedPidsToSearchCounts.size();
 
-		int initialSize = theMatchedPidsToResources.size();
-
-		//4.
-		resources.forEach(resource -> theMatchedPidsToResources.put(myIdHelperService.getPidOrNull(resource), (IAnyResource) resource));
+		//2.
+		ISearchBuilder searchBuilder = myMdmSearchParamSvc.generateSearchBuilderForType(theResourceType);
+		// One more than the maximum is fetched, so that we can tell when the search was cut short
+		searchBuilder.setMaxResultsToFetch(theMaxPids + 1);
+		SearchRuntimeDetails searchRuntimeDetails = new SearchRuntimeDetails(null, UUID.randomUUID().toString());
+		RequestPartitionId requestPartitionId = myRequestPartitionHelperSvc.determineReadPartitionForRequest(null, theResourceType);
+		try (IResultIterator query = searchBuilder.createQuery(searchParameterMap, searchRuntimeDetails, null, requestPartitionId)) {
+			int count = 0;
+			while (count < theMaxPids && query.hasNext()) {
+				//3.
+				theMatchedPidsToSearchCounts.merge(query.next(), 1, Integer::sum);
+				count++;
+			}
+			if (query.hasNext()) {
+				ourLog.warn("Candidate search {} for {} matched more than {} resources, only the first {} were kept", resourceCriteria, theResourceType, theMaxPids, theMaxPids);
+			}
+		} catch (IOException e) {
+			throw new InternalErrorException("Failure while searching for " + theResourceType + " MDM candidates", e);
+		}
 
-		int newSize = theMatchedPidsToResources.size();
+		int newSize = theMatchedPidsToSearchCounts.size();
 
 		if (ourLog.isDebugEnabled()) {
 			ourLog.debug("Candidate search added {} {}s", newSize - initialSize, theResourceType);
@@ -2,6 +2,8 @@ package ca.uhn.fhir.jpa.mdm.svc;
 
 import ca.uhn.fhir.jpa.mdm.BaseMdmR4Test;
 import ca.uhn.fhir.jpa.mdm.svc.candidate.MdmCandidateSearchSvc;
+import ca.uhn.fhir.mdm.api.IMdmSettings;
+import ca.uhn.fhir.mdm.rules.config.MdmSettings;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.Practitioner;
@@ -48,6 +50,45 @@ public class MdmCandidateSearchSvcTest extends BaseMdmR4Test {
 		assertEquals(1, result.size());
 	}
 
+	@Test
+	public void testFindCandidatesLimitKeepsCandidatesFoundByMostSearches() {
+		Date today = new Date();
+		// Only shares the birthdate with the incoming patient
+		createPatient(buildPatientWithNameIdAndBirthday(NAME_GIVEN_PAUL, PAUL_ID, today));
+		// Shares both the birthdate and the identifier
+		Patient jane = createPatient(buildJaneWithBirthday(today));
+
+		Patient newJane = buildJaneWithBirthday(today);
+		assertThat(myMdmCandidateSearchSvc.findCandidates("Patient", newJane), hasSize(2));
+
+		((MdmSettings) myMdmSettings).setCandidateSearchLimit(1);
+		try {
+			Collection<IAnyResource> result = myMdmCandidateSearchSvc.findCandidates("Patient", newJane);
+			assertThat(result, hasSize(1));
+			assertEquals(jane.getIdElement().toUnqualifiedVersionless().getValue(), result.iterator().next().getIdElement().toUnqualifiedVersionless().getValue());
+		} finally {
+			((MdmSettings) myMdmSettings).setCandidateSearchLimit(IMdmSettings.DEFAULT_CANDIDATE_SEARCH_LIMIT);
+		}
+	}
+
+	@Test
+	public void testFindCandidatesLimitAppliesToEachSearch() {
+		Date today = new Date();
+		for (int i = 0; i < 5; i++) {
+			createPatient(buildPatientWithNameIdAndBirthday(NAME_GIVEN_PAUL, PAUL_ID + i, today));
+		}
+		createPatient(buildJaneWithBirthday(today));
+
+		((MdmSettings) myMdmSettings).setCandidateSearchLimit(1);
+		try {
+			// The birthdate search matches all 6 patients, but only reads 2 of them
+			Collection<IAnyResource> result = myMdmCandidateSearchSvc.findCandidates("Patient", buildJaneWithBirthday(today));
+			assertThat(result, hasSize(1));
+		} finally {
+			((MdmSettings) myMdmSettings).setCandidateSearchLimit(IMdmSettings.DEFAULT_CANDIDATE_SEARCH_LIMIT);
+		}
+	}
+
 	@Test
 	public void testFindCandidatesCorrectlySearchesWithReferenceParams() {
 		Practitioner practitioner = new Practitioner();
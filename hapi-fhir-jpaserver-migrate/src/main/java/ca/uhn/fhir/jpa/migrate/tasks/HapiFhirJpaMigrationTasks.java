@@ -119,6 +119,28 @@ public class HapiFhirJpaMigrationTasks extends BaseMigrationTasks<VersionEnum> {
 		blkImportJobFileTable.addForeignKey("20210410.6", "FK_BLKIMJOBFILE_JOB").toColumn("JOB_PID").references("HFJ_BLK_IMPORT_JOB", "PID");
 		version.addIdGenerator("20210410.7", "SEQ_BLKIMJOBFILE_PID");
 
+		// Resource encoding dictionaries
+		Builder.BuilderAddTableByColumns resEncDictTable = version.addTableByColumns("20210415.1", "HFJ_RES_ENC_DICT", "PID");
+		resEncDictTable.addColumn("PID").nonNullable().type(ColumnTypeEnum.LONG);
+		resEncDictTable.addColumn("RES_TYPE").nonNullable().type(ColumnTypeEnum.STRING, 40);
+		resEncDictTable.addColumn("DICT_BYTES").nonNullable().type(ColumnTypeEnum.BLOB);
+		resEncDictTable.addColumn("CREATED_TIME").nonNullable().type(ColumnTypeEnum.DATE_TIMESTAMP);
+		resEncDictTable.addIndex("20210415.2", "IDX_RES_ENC_DICT_TYPE").unique(false).withColumns("RES_TYPE");
+		version.addIdGenerator("20210415.3", "SEQ_RES_ENC_DICT");
+
+		// Bulk Export files streamed to binary storage
+		Builder.BuilderWithTableName bulkExportColFile = version.onTable("HFJ_BLK_EXPORT_COLFILE");
+		bulkExportColFile.modifyColumn("20210420.1", "RES_ID").nullable().withType(ColumnTypeEnum.STRING, 100);
+		bulkExportColFile.addColumn("20210420.2", "BLOB_ID").nullable().type(ColumnTypeEnum.STRING, 200);
+		bulkExportColFile.addColumn("20210420.3", "BLOB_SIZE").nullable().type(ColumnTypeEnum.LONG);
+		bulkExportColFile.addColumn("20210420.4", "BLOB_GZIPPED").nullable().type(ColumnTypeEnum.BOOLEAN);
+
+		// ValueSet pre-expansion claims
+		version.onTable("TRM_VALUESET").addColumn("20210422.1", "EXPANSION_STATUS_TIME").nullable().type(ColumnTypeEnum.DATE_TIMESTAMP);
+
+		// Code system hierarchy closure staleness
+		version.onTable("TRM_CODESYSTEM_VER").addColumn("20210425.1", "LINKS_CHANGE_COUNT").nullable().type(ColumnTypeEnum.LONG);
+
 	}
 
 	private void init530() {
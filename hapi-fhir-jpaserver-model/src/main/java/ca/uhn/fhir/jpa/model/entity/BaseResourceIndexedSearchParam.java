@@ -26,12 +26,6 @@ import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
-import ca.uhn.fhir.util.UrlUtil;
-import com.google.common.base.Charsets;
-import com.google.common.hash.HashCode;
-import com.google.common.hash.HashFunction;
-import com.google.common.hash.Hasher;
-import com.google.common.hash.Hashing;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.FullTextField;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.GenericField;
 
@@ -45,6 +39,8 @@ import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 import javax.persistence.Transient;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @MappedSuperclass
 public abstract class BaseResourceIndexedSearchParam extends BaseResourceIndex {
@@ -52,13 +48,17 @@ public abstract class BaseResourceIndexedSearchParam extends BaseResourceIndex {
 	/**
 	 * Don't change this without careful consideration. You will break existing hashes!
 	 */
-	private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128(0);
-
+	private static final byte DELIMITER_BYTE = '|';
+	private static final long serialVersionUID = 1L;
 	/**
-	 * Don't make this public 'cause nobody better be able to modify it!
+	 * Upper bound on the number of entries in {@link #ourHashIdentityCache}, which
+	 * only protects against unbounded growth if arbitrary names are ever hashed
 	 */
-	private static final byte[] DELIMITER_BYTES = "|".getBytes(Charsets.UTF_8);
-	private static final long serialVersionUID = 1L;
+	private static final int MAX_HASH_IDENTITY_CACHE_SIZE = 10000;
+	/**
+	 * Hash identities which don't include a partition ID, keyed by resource type and then parameter name
+	 */
+	private static final Map<String, Map<String, Long>> ourHashIdentityCache = new ConcurrentHashMap<>();
 
 	@GenericField
 	@Column(name = "SP_MISSING", nullable = false)
@@ -185,38 +185,61 @@ public abstract class BaseResourceIndexedSearchParam extends BaseResourceIndex {
 		return calculateHashIdentity(thePartitionSettings, requestPartitionId, theResourceType, theParamName);
 	}
 
+	/**
+	 * The identity hash only depends on the resource type, parameter name and (if partitions
+	 * are included in hashes) the partition, so it is only calculated once for each combination
+	 * that doesn't include a partition ID.
+	 */
 	public static long calculateHashIdentity(PartitionSettings thePartitionSettings, RequestPartitionId theRequestPartitionId, String theResourceType, String theParamName) {
-		return hash(thePartitionSettings, theRequestPartitionId, theResourceType, theParamName);
+		if (theResourceType == null || theParamName == null || getPartitionIdToHash(thePartitionSettings, theRequestPartitionId) != null) {
+			return hash(thePartitionSettings, theRequestPartitionId, theResourceType, theParamName);
+		}
+
+		Map<String, Long> paramNameToHash = ourHashIdentityCache.get(theResourceType);
+		if (paramNameToHash == null) {
+			paramNameToHash = ourHashIdentityCache.computeIfAbsent(theResourceType, t -> new ConcurrentHashMap<>());
+		}
+		Long retVal = paramNameToHash.get(theParamName);
+		if (retVal == null) {
+			retVal = hash(thePartitionSettings, theRequestPartitionId, theResourceType, theParamName);
+			if (paramNameToHash.size() < MAX_HASH_IDENTITY_CACHE_SIZE) {
+				paramNameToHash.put(theParamName, retVal);
+			}
+		}
+		return retVal;
 	}
 
 	/**
 	 * Applies a fast and consistent hashing algorithm to a set of strings
 	 */
 	static long hash(PartitionSettings thePartitionSettings, RequestPartitionId theRequestPartitionId, String... theValues) {
-		Hasher hasher = HASH_FUNCTION.newHasher();
+		SearchParamHasher hasher = new SearchParamHasher();
 
-		if (thePartitionSettings.isPartitioningEnabled() && thePartitionSettings.isIncludePartitionInSearchHashes() && theRequestPartitionId != null) {
-			if (theRequestPartitionId.getPartitionIds().size() > 1) {
-				throw new InternalErrorException("Can not search multiple partitions when partitions are included in search hashes");
-			}
-			Integer partitionId = theRequestPartitionId.getFirstPartitionIdOrNull();
-			if (partitionId != null) {
-				hasher.putInt(partitionId);
-			}
+		Integer partitionId = getPartitionIdToHash(thePartitionSettings, theRequestPartitionId);
+		if (partitionId != null) {
+			hasher.putInt(partitionId);
 		}
 
 		for (String next : theValues) {
 			if (next == null) {
 				hasher.putByte((byte) 0);
 			} else {
-				next = UrlUtil.escapeUrlParam(next);
-				byte[] bytes = next.getBytes(Charsets.UTF_8);
-				hasher.putBytes(bytes);
+				hasher.putEscapedString(next);
 			}
-			hasher.putBytes(DELIMITER_BYTES);
+			hasher.putByte(DELIMITER_BYTE);
 		}
 
-		HashCode hashCode = hasher.hash();
-		return hashCode.asLong();
+		return hasher.hash();
+	}
+
+	@Nullable
+	private static Integer getPartitionIdToHash(PartitionSettings thePartitionSettings, RequestPartitionId theRequestPartitionId) {
+		if (thePartitionSettings.isPartitioningEnabled() && thePartitionSettings.isIncludePartitionInSearchHashes() && theRequestPartitionId != null) {
+			if (theRequestPartitionId.getPartitionIds().size() > 1) {
+				throw new InternalErrorException("Can not search multiple partitions when partitions are included in search hashes");
+			}
+			return theRequestPartitionId.getFirstPartitionIdOrNull();
+		}
+		return null;
 	}
 }
@@ -44,6 +44,14 @@ public enum ResourceEncodingEnum {
 	 */
 	JSONC,
 
+	/**
+	 * Json Compressed using a preset dictionary trained on previously stored
+	 * resources of the same type
+	 *
+	 * @since 5.4.0
+	 */
+	JSONZ,
+
 	/**
 	 * Resource was deleted - No contents expected
 	 */
@@ -0,0 +1,166 @@
+package ca.uhn.fhir.jpa.model.entity;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Model
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.util.UrlUtil;
+
+/**
+ * A streaming implementation of the 128 bit x64 variant of MurmurHash3 (seed 0), used to calculate
+ * the hashes stored in the search parameter index tables.
+ * <p>
+ * This produces exactly the same values as Guava's <code>Hashing.murmur3_128(0)</code> followed by
+ * <code>HashCode#asLong()</code>, but without allocating a buffer, a byte array per value or a
+ * <code>HashCode</code> for every hash calculated. Don't change this without careful consideration,
+ * you will break existing hashes!
+ * </p>
+ */
+final class SearchParamHasher {
+
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	private long myH1;
+	private long myH2;
+	private long myK1;
+	private long myK2;
+	private int myBufferedBytes;
+	private int myLength;
+
+	void putByte(byte theByte) {
+		long value = theByte & 0xFFL;
+		if (myBufferedBytes < 8) {
+			myK1 |= value << (myBufferedBytes * 8);
+		} else {
+			myK2 |= value << ((myBufferedBytes - 8) * 8);
+		}
+		myBufferedBytes++;
+		myLength++;
+
+		if (myBufferedBytes == 16) {
+			bmix64(myK1, myK2);
+			myK1 = 0;
+			myK2 = 0;
+			myBufferedBytes = 0;
+		}
+	}
+
+	/**
+	 * Adds the 4 bytes of an int, in little endian order
+	 */
+	void putInt(int theInt) {
+		putByte((byte) theInt);
+		putByte((byte) (theInt >>> 8));
+		putByte((byte) (theInt >>> 16));
+		putByte((byte) (theInt >>> 24));
+	}
+
+	/**
+	 * Adds the UTF-8 bytes of the given value after it has been escaped using
+	 * {@link UrlUtil#escapeUrlParam(String)}. Since the escaped form is always
+	 * plain ASCII, it can be added one character at a time.
+	 */
+	void putEscapedString(String theValue) {
+		String escaped = theValue;
+		for (int i = 0; i < theValue.length(); i++) {
+			if (!isUrlParamSafe(theValue.charAt(i))) {
+				escaped = UrlUtil.escapeUrlParam(theValue);
+				break;
+			}
+		}
+
+		for (int i = 0; i < escaped.length(); i++) {
+			putByte((byte) escaped.charAt(i));
+		}
+	}
+
+	long hash() {
+		long h1 = myH1;
+		long h2 = myH2;
+
+		if (myBufferedBytes > 0) {
+			h1 ^= mixK1(myK1);
+			h2 ^= mixK2(myK2);
+		}
+
+		h1 ^= myLength;
+		h2 ^= myLength;
+
+		h1 += h2;
+		h2 += h1;
+
+		h1 = fmix64(h1);
+		h2 = fmix64(h2);
+
+		h1 += h2;
+		return h1;
+	}
+
+	private void bmix64(long theK1, long theK2) {
+		myH1 ^= mixK1(theK1);
+
+		myH1 = Long.rotateLeft(myH1, 27);
+		myH1 += myH2;
+		myH1 = myH1 * 5 + 0x52dce729;
+
+		myH2 ^= mixK2(theK2);
+
+		myH2 = Long.rotateLeft(myH2, 31);
+		myH2 += myH1;
+		myH2 = myH2 * 5 + 0x38495ab5;
+	}
+
+	/**
+	 * These are the characters left untouched by {@link UrlUtil#escapeUrlParam(String)}
+	 */
+	private static boolean isUrlParamSafe(char theChar) {
+		return (theChar >= 'a' && theChar <= 'z')
+			|| (theChar >= 'A' && theChar <= 'Z')
+			|| (theChar >= '0' && theChar <= '9')
+			|| theChar == '-' || theChar == '_' || theChar == '.' || theChar == '*';
+	}
+
+	private static long fmix64(long theK) {
+		long k = theK;
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+	private static long mixK1(long theK1) {
+		long k1 = theK1;
+		k1 *= C1;
+		k1 = Long.rotateLeft(k1, 31);
+		k1 *= C2;
+		return k1;
+	}
+
+	private static long mixK2(long theK2) {
+		long k2 = theK2;
+		k2 *= C2;
+		k2 = Long.rotateLeft(k2, 33);
+		k2 *= C1;
+		return k2;
+	}
+
+}
@@ -158,6 +158,13 @@ public class JpaConstants {
 	 * Operation name for the "$export-poll-status" operation
 	 */
 	public static final String OPERATION_EXPORT_POLL_STATUS = "$export-poll-status";
+	/**
+	 * Operation name for the "$export-download" operation, which serves Bulk Export
+	 * files that were streamed to binary storage
+	 *
+	 * @since 5.4.0
+	 */
+	public static final String OPERATION_EXPORT_DOWNLOAD = "$export-download";
 	/**
 	 * Operation name for the "$lastn" operation
 	 */
@@ -194,6 +201,13 @@ public class JpaConstants {
 	 */
 	public static final String PARAM_EXPORT_MDM = "_mdm";
 
+	/**
+	 * Parameter for the $export-download operation: the ID of the file to download
+	 *
+	 * @since 5.4.0
+	 */
+	public static final String PARAM_EXPORT_DOWNLOAD_FILE_ID = "_fileId";
+
 	/**
 	 * Parameter for delete to indicate the deleted resources should also be expunged
 	 */
@@ -0,0 +1,70 @@
+package ca.uhn.fhir.jpa.model.entity;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.util.UrlUtil;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SearchParamHasherTest {
+
+	private static final String CHARS = "abcXYZ019-_.*|/:?&= %éü中";
+
+	@Test
+	public void testMatchesGuavaMurmur3() {
+		Random random = new Random(0);
+		for (int i = 0; i < 5000; i++) {
+			SearchParamHasher hasher = new SearchParamHasher();
+			Hasher expected = Hashing.murmur3_128(0).newHasher();
+
+			if (random.nextBoolean()) {
+				int partitionId = random.nextInt();
+				hasher.putInt(partitionId);
+				expected.putInt(partitionId);
+			}
+
+			int valueCount = random.nextInt(5);
+			for (int valueIndex = 0; valueIndex < valueCount; valueIndex++) {
+				String value = randomString(random);
+				hasher.putEscapedString(value);
+				expected.putBytes(UrlUtil.escapeUrlParam(value).getBytes(StandardCharsets.UTF_8));
+				hasher.putByte((byte) '|');
+				expected.putByte((byte) '|');
+			}
+
+			assertEquals(expected.hash().asLong(), hasher.hash(), "Iteration " + i);
+		}
+	}
+
+	@Test
+	public void testHashIdentityIsStable() {
+		PartitionSettings partitionSettings = new PartitionSettings();
+		long first = BaseResourceIndexedSearchParam.calculateHashIdentity(partitionSettings, (RequestPartitionId) null, "Patient", "name");
+		long second = BaseResourceIndexedSearchParam.calculateHashIdentity(partitionSettings, (RequestPartitionId) null, "Patient", "name");
+		assertEquals(first, second);
+		assertEquals(BaseResourceIndexedSearchParam.hash(partitionSettings, null, "Patient", "name"), first);
+
+		// Partitions are only included when configured to do so
+		partitionSettings.setPartitioningEnabled(true);
+		partitionSettings.setIncludePartitionInSearchHashes(true);
+		long partitioned = BaseResourceIndexedSearchParam.calculateHashIdentity(partitionSettings, RequestPartitionId.fromPartitionId(1), "Patient", "name");
+		assertEquals(BaseResourceIndexedSearchParam.hash(partitionSettings, RequestPartitionId.fromPartitionId(1), "Patient", "name"), partitioned);
+		assertEquals(first, BaseResourceIndexedSearchParam.calculateHashIdentity(partitionSettings, RequestPartitionId.defaultPartition(), "Patient", "name"));
+	}
+
+	private static String randomString(Random theRandom) {
+		int length = theRandom.nextInt(40);
+		StringBuilder b = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			b.append(CHARS.charAt(theRandom.nextInt(CHARS.length())));
+		}
+		return b.toString();
+	}
+
+}
@@ -0,0 +1,114 @@
+package ca.uhn.fhir.jpa.searchparam;
+
+/*-
+ * #%L
+ * HAPI FHIR Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Identifies the position of the last result of a page of a keyset (seek) paged search, i.e.
+ * the sort key of that result. Searches using keyset paging are always ordered by resource PID
+ * (optionally preceded by the last updated timestamp), so the next page consists of the
+ * results which sort after this position.
+ * <p>
+ * The token is passed to clients as an opaque string in the
+ * {@value Constants#PARAM_PAGE_TOKEN} parameter.
+ * </p>
+ *
+ * @since 5.4.0
+ */
+public class KeysetPageToken implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private static final String VERSION_PREFIX = "1:";
+
+	private final Long myLastUpdated;
+	private final long myResourcePid;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theLastUpdated The last updated timestamp of the last result, or <code>null</code> if the search is
+	 *                       not sorted by <code>_lastUpdated</code>
+	 * @param theResourcePid The PID of the last result
+	 */
+	public KeysetPageToken(@Nullable Date theLastUpdated, long theResourcePid) {
+		myLastUpdated = theLastUpdated != null ? theLastUpdated.getTime() : null;
+		myResourcePid = theResourcePid;
+	}
+
+	@Nullable
+	public Date getLastUpdated() {
+		return myLastUpdated != null ? new Date(myLastUpdated) : null;
+	}
+
+	public long getResourcePid() {
+		return myResourcePid;
+	}
+
+	/**
+	 * Returns the opaque form of this token
+	 */
+	public String encode() {
+		String value = VERSION_PREFIX + (myLastUpdated != null ? myLastUpdated.toString() : "") + ":" + myResourcePid;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+			.append("lastUpdated", myLastUpdated)
+			.append("resourcePid", myResourcePid)
+			.toString();
+	}
+
+	/**
+	 * Parses a token previously created by {@link #encode()}
+	 *
+	 * @throws InvalidRequestException If the token is not valid
+	 */
+	@Nonnull
+	public static KeysetPageToken decode(String theToken) {
+		try {
+			String value = new String(Base64.getUrlDecoder().decode(theToken), StandardCharsets.UTF_8);
+			if (value.startsWith(VERSION_PREFIX)) {
+				String[] parts = value.substring(VERSION_PREFIX.length()).split(":", -1);
+				if (parts.length == 2) {
+					Date lastUpdated = parts[0].isEmpty() ? null : new Date(Long.parseLong(parts[0]));
+					return new KeysetPageToken(lastUpdated, Long.parseLong(parts[1]));
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			// fall through
+		}
+		throw new InvalidRequestException("Invalid " + Constants.PARAM_PAGE_TOKEN + " value: " + theToken);
+	}
+
+}
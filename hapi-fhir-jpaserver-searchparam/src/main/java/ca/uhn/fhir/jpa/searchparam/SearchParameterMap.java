@@ -81,6 +81,8 @@ public class SearchParameterMap implements Serializable {
 	private Integer myLastNMax;
 	private boolean myDeleteExpunge;
 	private SearchContainedModeEnum mySearchContainedMode = SearchContainedModeEnum.FALSE;
+	private boolean myKeysetPaging;
+	private KeysetPageToken myKeysetPageToken;
 	
 	/**
 	 * Constructor
@@ -225,6 +227,50 @@ public class SearchParameterMap implements Serializable {
 		myOffset = theOffset;
 	}
 
+	/**
+	 * If set, the search is paged using keyset (seek) paging, meaning that results are ordered by
+	 * resource PID (after the <code>_lastUpdated</code> sort, if any) and each page is a separate
+	 * synchronous query which starts after the {@link #getKeysetPageToken() page token}
+	 *
+	 * @since 5.4.0
+	 */
+	public boolean isKeysetPaging() {
+		return myKeysetPaging;
+	}
+
+	/**
+	 * If set, the search is paged using keyset (seek) paging, meaning that results are ordered by
+	 * resource PID (after the <code>_lastUpdated</code> sort, if any) and each page is a separate
+	 * synchronous query which starts after the {@link #getKeysetPageToken() page token}
+	 *
+	 * @since 5.4.0
+	 */
+	public SearchParameterMap setKeysetPaging(boolean theKeysetPaging) {
+		myKeysetPaging = theKeysetPaging;
+		return this;
+	}
+
+	/**
+	 * For keyset paged searches, the position of the last result of the previous page, or
+	 * <code>null</code> if this is the first page
+	 *
+	 * @since 5.4.0
+	 */
+	public KeysetPageToken getKeysetPageToken() {
+		return myKeysetPageToken;
+	}
+
+	/**
+	 * For keyset paged searches, the position of the last result of the previous page, or
+	 * <code>null</code> if this is the first page
+	 *
+	 * @since 5.4.0
+	 */
+	public SearchParameterMap setKeysetPageToken(KeysetPageToken theKeysetPageToken) {
+		myKeysetPageToken = theKeysetPageToken;
+		return this;
+	}
+
 	public EverythingModeEnum getEverythingMode() {
 		return myEverythingMode;
 	}
@@ -491,6 +537,13 @@ public class SearchParameterMap implements Serializable {
 			b.append(getOffset());
 		}
 
+		if (getKeysetPageToken() != null) {
+			addUrlParamSeparator(b);
+			b.append(Constants.PARAM_PAGE_TOKEN);
+			b.append('=');
+			b.append(getKeysetPageToken().encode());
+		}
+
 		// Summary mode (_summary)
 		if (getSummaryMode() != null) {
 			addUrlParamSeparator(b);
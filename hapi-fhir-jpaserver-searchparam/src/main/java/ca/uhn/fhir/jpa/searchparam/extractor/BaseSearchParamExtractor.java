@@ -65,6 +65,7 @@ import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 
+import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.measure.quantity.Quantity;
 import javax.measure.unit.NonSI;
@@ -75,8 +76,11 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
@@ -91,6 +95,10 @@ import static org.apache.commons.lang3.StringUtils.trim;
 public abstract class BaseSearchParamExtractor implements ISearchParamExtractor {
 
 	public static final Set<String> COORDS_INDEX_PATHS;
+	/**
+	 * Maximum number of parsed FHIRPath expressions retained by the version specific subclasses
+	 */
+	protected static final int MAX_PARSED_PATH_CACHE_SIZE = 10000;
 	private static final Pattern SPLIT = Pattern.compile("\\||( or )");
 	private static final Pattern SPLIT_R4 = Pattern.compile("\\|");
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseSearchParamExtractor.class);
@@ -535,6 +543,15 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 
 	protected abstract IValueExtractor getPathValueExtractor(IBaseResource theResource, String theSinglePath);
 
+	/**
+	 * Subclasses that cache anything derived from search parameter paths should
+	 * override this method (and call the super implementation)
+	 */
+	@Override
+	public void clearCaches() {
+		// nothing by default
+	}
+
 	@VisibleForTesting
 	public void setContext(FhirContext theContext) {
 		myContext = theContext;
@@ -952,6 +969,59 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 
 	}
 
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	@Override
+	public SearchParamSet<BaseResourceIndexedSearchParam> extractAllSearchParams(IBaseResource theResource) {
+		SearchParamSet<BaseResourceIndexedSearchParam> retVal = new SearchParamSet<>();
+
+		Collection<RuntimeSearchParam> searchParams = getSearchParams(theResource);
+
+		cleanUpContainedResourceReferences(theResource, null, searchParams);
+
+		Map<RestSearchParameterTypeEnum, IExtractor<?>> extractors = createExtractorsForSinglePass(theResource);
+
+		/*
+		 * Many search parameters share an identical path (e.g. Observation:patient and
+		 * Observation:subject), and some parameters of different types share one as well,
+		 * so we only evaluate each distinct path once per resource
+		 */
+		Map<String, List<IBase>> pathToValues = new HashMap<>();
+
+		for (RuntimeSearchParam nextSpDef : searchParams) {
+			IExtractor extractor = extractors.get(nextSpDef.getParamType());
+			if (extractor == null) {
+				continue;
+			}
+
+			extractSearchParam(nextSpDef, theResource, extractor, (SearchParamSet) retVal, false, pathToValues);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Creates one extractor for each search parameter type handled by {@link #extractAllSearchParams(IBaseResource)}
+	 */
+	private Map<RestSearchParameterTypeEnum, IExtractor<?>> createExtractorsForSinglePass(IBaseResource theResource) {
+		Map<RestSearchParameterTypeEnum, IExtractor<?>> retVal = new EnumMap<>(RestSearchParameterTypeEnum.class);
+		retVal.put(RestSearchParameterTypeEnum.STRING, createStringExtractor(theResource));
+		retVal.put(RestSearchParameterTypeEnum.NUMBER, createNumberExtractor(theResource));
+		retVal.put(RestSearchParameterTypeEnum.DATE, createDateExtractor(theResource));
+		retVal.put(RestSearchParameterTypeEnum.URI, createUriExtractor(theResource));
+		retVal.put(RestSearchParameterTypeEnum.TOKEN, createTokenExtractor(theResource));
+		retVal.put(RestSearchParameterTypeEnum.SPECIAL, createSpecialExtractor(toRootTypeName(theResource)));
+
+		NormalizedQuantitySearchLevel quantitySearchLevel = myModelConfig.getNormalizedQuantitySearchLevel();
+		if (quantitySearchLevel.equals(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_STORAGE_SUPPORTED) || quantitySearchLevel.equals(NormalizedQuantitySearchLevel.NORMALIZED_QUANTITY_SEARCH_SUPPORTED)) {
+			IExtractor quantityExtractor = createQuantityExtractor(theResource);
+			IExtractor quantityNormalizedExtractor = createQuantityNormalizedExtractor(theResource);
+			retVal.put(RestSearchParameterTypeEnum.QUANTITY, new CompositeExtractor<>(quantityExtractor, quantityNormalizedExtractor));
+		} else {
+			retVal.put(RestSearchParameterTypeEnum.QUANTITY, createQuantityExtractor(theResource));
+		}
+
+		return retVal;
+	}
+
 	private <T> SearchParamSet<T> extractSearchParams(IBaseResource theResource, IExtractor<T> theExtractor, RestSearchParameterTypeEnum theSearchParamType, boolean theWantLocalReferences) {
 		SearchParamSet<T> retVal = new SearchParamSet<>();
 
@@ -964,7 +1034,7 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 				continue;
 			}
 
-			extractSearchParam(nextSpDef, theResource, theExtractor, retVal, theWantLocalReferences);
+			extractSearchParam(nextSpDef, theResource, theExtractor, retVal, theWantLocalReferences, null);
 		}
 		return retVal;
 	}
@@ -977,11 +1047,13 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 	 *
 	 * Doing this cleanup isn't hugely expensive, but it's not completely free either so we only do it
 	 * if we think there's actually a chance
+	 *
+	 * @param theSearchParamType The search parameter type being extracted, or <code>null</code> if all types are
 	 */
 	private void cleanUpContainedResourceReferences(IBaseResource theResource, RestSearchParameterTypeEnum theSearchParamType, Collection<RuntimeSearchParam> searchParams) {
 		boolean havePathWithResolveExpression = myModelConfig.isIndexOnContainedResources();
 		for (RuntimeSearchParam nextSpDef : searchParams) {
-			if (nextSpDef.getParamType() != theSearchParamType) {
+			if (theSearchParamType != null && nextSpDef.getParamType() != theSearchParamType) {
 				continue;
 			}
 			if (defaultString(nextSpDef.getPath()).contains("resolve")) {
@@ -995,6 +1067,14 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 	}
 
 	private <T> void extractSearchParam(RuntimeSearchParam theSearchParameterDef, IBaseResource theResource, IExtractor<T> theExtractor, SearchParamSet<T> theSetToPopulate, boolean theWantLocalReferences) {
+		extractSearchParam(theSearchParameterDef, theResource, theExtractor, theSetToPopulate, theWantLocalReferences, null);
+	}
+
+	/**
+	 * @param thePathToValues If not <code>null</code>, values already extracted for a given path are reused from (and
+	 *                        newly extracted values are stored in) this map
+	 */
+	private <T> void extractSearchParam(RuntimeSearchParam theSearchParameterDef, IBaseResource theResource, IExtractor<T> theExtractor, SearchParamSet<T> theSetToPopulate, boolean theWantLocalReferences, @Nullable Map<String, List<IBase>> thePathToValues) {
 		String nextPathUnsplit = theSearchParameterDef.getPath();
 		if (isBlank(nextPathUnsplit)) {
 			return;
@@ -1003,7 +1083,13 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 		String[] splitPaths = split(nextPathUnsplit);
 		for (String nextPath : splitPaths) {
 			nextPath = trim(nextPath);
-			for (IBase nextObject : extractValues(nextPath, theResource)) {
+			List<IBase> values;
+			if (thePathToValues != null) {
+				values = thePathToValues.computeIfAbsent(nextPath, path -> extractValues(path, theResource));
+			} else {
+				values = extractValues(nextPath, theResource);
+			}
+			for (IBase nextObject : values) {
 				if (nextObject != null) {
 					String typeName = toRootTypeName(nextObject);
 					if (!myIgnoredForSearchDatatypes.contains(typeName)) {
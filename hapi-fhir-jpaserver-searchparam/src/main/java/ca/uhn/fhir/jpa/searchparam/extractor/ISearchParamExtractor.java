@@ -61,6 +61,13 @@ public interface ISearchParamExtractor {
 
 	SearchParamSet<ResourceIndexedSearchParamUri> extractSearchParamUri(IBaseResource theResource);
 
+	/**
+	 * Extracts the indexes for all active search parameters of every type except
+	 * references in a single pass, evaluating each distinct path only once. The
+	 * returned set contains a mix of index entity types.
+	 */
+	SearchParamSet<BaseResourceIndexedSearchParam> extractAllSearchParams(IBaseResource theResource);
+
 	SearchParamSet<PathAndRef> extractResourceLinks(IBaseResource theResource, boolean theWantLocalReferences);
 
 	String[] split(String theExpression);
@@ -85,6 +92,13 @@ public interface ISearchParamExtractor {
 
 	String getDisplayTextFromCodeableConcept(IBase theValue);
 
+	/**
+	 * Discards any state that has been cached from previously seen search parameter
+	 * paths (e.g. pre-parsed FHIRPath expressions). This is invoked by the search
+	 * parameter registry whenever the set of active search parameters is rebuilt.
+	 */
+	void clearCaches();
+
 	class SearchParamSet<T> extends HashSet<T> {
 
 		private List<String> myWarnings;
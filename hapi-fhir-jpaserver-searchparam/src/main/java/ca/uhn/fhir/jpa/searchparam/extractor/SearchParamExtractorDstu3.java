@@ -24,10 +24,13 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.model.entity.ModelConfig;
 import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.annotations.VisibleForTesting;
 import org.hl7.fhir.dstu3.context.IWorkerContext;
 import org.hl7.fhir.dstu3.hapi.ctx.HapiWorkerContext;
 import org.hl7.fhir.dstu3.model.Base;
+import org.hl7.fhir.dstu3.model.ExpressionNode;
 import org.hl7.fhir.dstu3.utils.FHIRPathEngine;
 import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -38,6 +41,7 @@ import java.util.List;
 
 public class SearchParamExtractorDstu3 extends BaseSearchParamExtractor implements ISearchParamExtractor {
 
+	private Cache<String, ExpressionNode> myParsedFhirPathCache;
 	private FHIRPathEngine myFhirPathEngine;
 
 	/**
@@ -59,7 +63,8 @@ public class SearchParamExtractorDstu3 extends BaseSearchParamExtractor implemen
 	protected IValueExtractor getPathValueExtractor(IBaseResource theResource, String theSinglePath) {
 		return () -> {
 			List<IBase> values = new ArrayList<>();
-			List<Base> allValues = myFhirPathEngine.evaluate((Base) theResource, theSinglePath);
+			ExpressionNode parsed = myParsedFhirPathCache.get(theSinglePath, path -> myFhirPathEngine.parse(path));
+			List<Base> allValues = myFhirPathEngine.evaluate((Base) theResource, parsed);
 			if (allValues.isEmpty() == false) {
 				values.addAll(allValues);
 			}
@@ -68,6 +73,14 @@ public class SearchParamExtractorDstu3 extends BaseSearchParamExtractor implemen
 		};
 	}
 
+	@Override
+	public void clearCaches() {
+		super.clearCaches();
+		if (myParsedFhirPathCache != null) {
+			myParsedFhirPathCache.invalidateAll();
+		}
+	}
+
 
 	@Override
 	@PostConstruct
@@ -81,6 +94,11 @@ public class SearchParamExtractorDstu3 extends BaseSearchParamExtractor implemen
 	public void initFhirPathEngine() {
 		IWorkerContext worker = new HapiWorkerContext(getContext(), getContext().getValidationSupport());
 		myFhirPathEngine = new FHIRPathEngine(worker);
+
+		myParsedFhirPathCache = Caffeine
+			.newBuilder()
+			.maximumSize(MAX_PARSED_PATH_CACHE_SIZE)
+			.build();
 	}
 
 }
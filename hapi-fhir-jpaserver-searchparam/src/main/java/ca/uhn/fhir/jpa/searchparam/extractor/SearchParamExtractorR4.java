@@ -24,6 +24,8 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.model.entity.ModelConfig;
 import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.annotations.VisibleForTesting;
 import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.exceptions.PathEngineException;
@@ -32,6 +34,7 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.context.IWorkerContext;
 import org.hl7.fhir.r4.hapi.ctx.HapiWorkerContext;
 import org.hl7.fhir.r4.model.Base;
+import org.hl7.fhir.r4.model.ExpressionNode;
 import org.hl7.fhir.r4.model.IdType;
 import org.hl7.fhir.r4.model.Resource;
 import org.hl7.fhir.r4.model.ResourceType;
@@ -50,6 +53,7 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public class SearchParamExtractorR4 extends BaseSearchParamExtractor implements ISearchParamExtractor {
 
+	private Cache<String, ExpressionNode> myParsedFhirPathCache;
 	private FHIRPathEngine myFhirPathEngine;
 
 	/**
@@ -70,11 +74,20 @@ public class SearchParamExtractorR4 extends BaseSearchParamExtractor implements
 	@Override
 	protected IValueExtractor getPathValueExtractor(IBaseResource theResource, String theSinglePath) {
 		return () -> {
-			List<Base> allValues = myFhirPathEngine.evaluate((Base) theResource, theSinglePath);
+			ExpressionNode parsed = myParsedFhirPathCache.get(theSinglePath, path -> myFhirPathEngine.parse(path));
+			List<Base> allValues = myFhirPathEngine.evaluate((Base) theResource, parsed);
 			return (List<IBase>) new ArrayList<IBase>(allValues);
 		};
 	}
 
+	@Override
+	public void clearCaches() {
+		super.clearCaches();
+		if (myParsedFhirPathCache != null) {
+			myParsedFhirPathCache.invalidateAll();
+		}
+	}
+
 
 	@Override
 	@PostConstruct
@@ -89,6 +102,11 @@ public class SearchParamExtractorR4 extends BaseSearchParamExtractor implements
 		IWorkerContext worker = new HapiWorkerContext(getContext(), getContext().getValidationSupport());
 		myFhirPathEngine = new FHIRPathEngine(worker);
 		myFhirPathEngine.setHostServices(new SearchParamExtractorR4HostServices());
+
+		myParsedFhirPathCache = Caffeine
+			.newBuilder()
+			.maximumSize(MAX_PARSED_PATH_CACHE_SIZE)
+			.build();
 	}
 
 
@@ -24,12 +24,15 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.model.entity.ModelConfig;
 import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.exceptions.PathEngineException;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r5.context.IWorkerContext;
 import org.hl7.fhir.r5.hapi.ctx.HapiWorkerContext;
 import org.hl7.fhir.r5.model.Base;
+import org.hl7.fhir.r5.model.ExpressionNode;
 import org.hl7.fhir.r5.model.IdType;
 import org.hl7.fhir.r5.model.Resource;
 import org.hl7.fhir.r5.model.ResourceType;
@@ -47,6 +50,7 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public class SearchParamExtractorR5 extends BaseSearchParamExtractor implements ISearchParamExtractor {
 
+	private Cache<String, ExpressionNode> myParsedFhirPathCache;
 	private FHIRPathEngine myFhirPathEngine;
 
 	public SearchParamExtractorR5() {
@@ -75,11 +79,27 @@ public class SearchParamExtractorR5 extends BaseSearchParamExtractor implements
 		IWorkerContext worker = new HapiWorkerContext(getContext(), getContext().getValidationSupport());
 		myFhirPathEngine = new FHIRPathEngine(worker);
 		myFhirPathEngine.setHostServices(new SearchParamExtractorR5HostServices());
+
+		myParsedFhirPathCache = Caffeine
+			.newBuilder()
+			.maximumSize(MAX_PARSED_PATH_CACHE_SIZE)
+			.build();
 	}
 
 	@Override
 	protected IValueExtractor getPathValueExtractor(IBaseResource theResource, String nextPath) {
-		return () -> myFhirPathEngine.evaluate((Base) theResource, nextPath);
+		return () -> {
+			ExpressionNode parsed = myParsedFhirPathCache.get(nextPath, path -> myFhirPathEngine.parse(path));
+			return myFhirPathEngine.evaluate((Base) theResource, parsed);
+		};
+	}
+
+	@Override
+	public void clearCaches() {
+		super.clearCaches();
+		if (myParsedFhirPathCache != null) {
+			myParsedFhirPathCache.invalidateAll();
+		}
 	}
 
 
@@ -185,6 +185,10 @@ public class SearchParamExtractorService {
 	}
 	
 	private void extractSearchIndexParameters(RequestDetails theRequestDetails, ResourceIndexedSearchParams theParams, IBaseResource theResource, ResourceTable theEntity) {
+		if (myModelConfig.isExtractSearchParamsInSinglePass()) {
+			extractSearchIndexParametersInSinglePass(theRequestDetails, theParams, theResource);
+			return;
+		}
 
 		// Strings
 		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamString> strings = extractSearchParamStrings(theResource);
@@ -238,6 +242,31 @@ public class SearchParamExtractorService {
 
 	}
 		
+	private void extractSearchIndexParametersInSinglePass(RequestDetails theRequestDetails, ResourceIndexedSearchParams theParams, IBaseResource theResource) {
+		ISearchParamExtractor.SearchParamSet<BaseResourceIndexedSearchParam> allParams = mySearchParamExtractor.extractAllSearchParams(theResource);
+		handleWarnings(theRequestDetails, myInterceptorBroadcaster, allParams);
+
+		for (BaseResourceIndexedSearchParam next : allParams) {
+			if (next instanceof ResourceIndexedSearchParamString) {
+				theParams.myStringParams.add((ResourceIndexedSearchParamString) next);
+			} else if (next instanceof ResourceIndexedSearchParamToken) {
+				theParams.myTokenParams.add((ResourceIndexedSearchParamToken) next);
+			} else if (next instanceof ResourceIndexedSearchParamNumber) {
+				theParams.myNumberParams.add((ResourceIndexedSearchParamNumber) next);
+			} else if (next instanceof ResourceIndexedSearchParamQuantity) {
+				theParams.myQuantityParams.add((ResourceIndexedSearchParamQuantity) next);
+			} else if (next instanceof ResourceIndexedSearchParamQuantityNormalized) {
+				theParams.myQuantityNormalizedParams.add((ResourceIndexedSearchParamQuantityNormalized) next);
+			} else if (next instanceof ResourceIndexedSearchParamDate) {
+				theParams.myDateParams.add((ResourceIndexedSearchParamDate) next);
+			} else if (next instanceof ResourceIndexedSearchParamUri) {
+				theParams.myUriParams.add((ResourceIndexedSearchParamUri) next);
+			} else if (next instanceof ResourceIndexedSearchParamCoords) {
+				theParams.myCoordsParams.add((ResourceIndexedSearchParamCoords) next);
+			}
+		}
+	}
+
 	private void populateResourceTables(ResourceIndexedSearchParams theParams, ResourceTable theEntity) {
 		
 		populateResourceTable(theParams.myNumberParams, theEntity);
@@ -48,7 +48,20 @@ public class SearchParamMatcher {
 			return InMemoryMatchResult.successfulMatch();
 		}
 		ResourceIndexedSearchParams resourceIndexedSearchParams = myIndexedSearchParamExtractor.extractIndexedSearchParams(theResource, null);
+		return match(theSearchParameterMap, theResource, resourceIndexedSearchParams);
+	}
+
+	/**
+	 * Matches using search parameters which were already extracted from the resource, so that a resource
+	 * which is checked against several search parameter maps only needs to be extracted once
+	 *
+	 * @since 5.4.0
+	 */
+	public InMemoryMatchResult match(SearchParameterMap theSearchParameterMap, IBaseResource theResource, ResourceIndexedSearchParams theResourceIndexedSearchParams) {
+		if (theSearchParameterMap.isEmpty()) {
+			return InMemoryMatchResult.successfulMatch();
+		}
 		RuntimeResourceDefinition resourceDefinition = myFhirContext.getResourceDefinition(theResource);
-		return myInMemoryResourceMatcher.match(theSearchParameterMap, theResource, resourceDefinition, resourceIndexedSearchParams);
+		return myInMemoryResourceMatcher.match(theSearchParameterMap, theResource, resourceDefinition, theResourceIndexedSearchParams);
 	}
 }
@@ -31,6 +31,7 @@ import ca.uhn.fhir.jpa.cache.IResourceChangeListenerRegistry;
 import ca.uhn.fhir.jpa.cache.ResourceChangeResult;
 import ca.uhn.fhir.jpa.model.entity.ModelConfig;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
@@ -81,6 +82,8 @@ public class SearchParamRegistryImpl implements ISearchParamRegistry, IResourceC
 
 	@Autowired
 	private IInterceptorService myInterceptorBroadcaster;
+	@Autowired(required = false)
+	private ISearchParamExtractor mySearchParamExtractor;
 	private IResourceChangeListenerCache myResourceChangeListenerCache;
 
 	@Override
@@ -157,6 +160,11 @@ public class SearchParamRegistryImpl implements ISearchParamRegistry, IResourceC
 		myActiveSearchParams = searchParams;
 
 		myJpaSearchParamCache.populateActiveSearchParams(myInterceptorBroadcaster, myPhoneticEncoder, myActiveSearchParams);
+
+		// Any expressions the extractor has parsed may belong to parameters that have now changed
+		if (mySearchParamExtractor != null) {
+			mySearchParamExtractor.clearCaches();
+		}
 		ourLog.debug("Refreshed search parameter cache in {}ms", sw.getMillis());
 	}
 
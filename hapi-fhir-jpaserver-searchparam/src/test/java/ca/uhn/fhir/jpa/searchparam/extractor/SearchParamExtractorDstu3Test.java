@@ -25,11 +25,13 @@ import ca.uhn.fhir.util.StringUtil;
 import ca.uhn.fhir.util.TestUtil;
 import com.google.common.collect.Sets;
 import org.hamcrest.Matchers;
+import org.hl7.fhir.dstu3.model.DateTimeType;
 import org.hl7.fhir.dstu3.model.Duration;
 import org.hl7.fhir.dstu3.model.Encounter;
 import org.hl7.fhir.dstu3.model.Location;
 import org.hl7.fhir.dstu3.model.Observation;
 import org.hl7.fhir.dstu3.model.Patient;
+import org.hl7.fhir.dstu3.model.Quantity;
 import org.hl7.fhir.dstu3.model.Questionnaire;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
@@ -38,6 +40,7 @@ import javax.annotation.Nullable;
 import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -222,6 +225,35 @@ public class SearchParamExtractorDstu3Test {
 		assertEquals(longitude, coord.getLongitude(), 0.0);
 	}
 
+	@Test
+	public void testExtractAllSearchParamsMatchesPerTypeExtraction() {
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode("1234-5").setDisplay("Some Code");
+		obs.getSubject().setReference("Patient/123");
+		obs.setEffective(new DateTimeType("2021-01-01T12:00:00Z"));
+		obs.setValue(new Quantity().setValue(123).setSystem(SearchParamConstants.UCUM_NS).setCode("mg"));
+		obs.addIdentifier().setSystem("http://foo").setValue("bar");
+
+		ISearchParamRegistry searchParamRegistry = new MySearchParamRegistry();
+		SearchParamExtractorDstu3 extractor = new SearchParamExtractorDstu3(new ModelConfig(), new PartitionSettings(), ourCtx, searchParamRegistry);
+		extractor.start();
+
+		Set<BaseResourceIndexedSearchParam> expected = new HashSet<>();
+		expected.addAll(extractor.extractSearchParamStrings(obs));
+		expected.addAll(extractor.extractSearchParamNumber(obs));
+		expected.addAll(extractor.extractSearchParamQuantity(obs));
+		expected.addAll(extractor.extractSearchParamDates(obs));
+		expected.addAll(extractor.extractSearchParamUri(obs));
+		expected.addAll(extractor.extractSearchParamTokens(obs));
+		expected.addAll(extractor.extractSearchParamSpecial(obs));
+
+		ISearchParamExtractor.SearchParamSet<BaseResourceIndexedSearchParam> actual = extractor.extractAllSearchParams(obs);
+		assertEquals(0, actual.getWarnings().size());
+		assertEquals(expected, actual);
+		assertThat(actual.stream().map(BaseResourceIndexedSearchParam::getParamName).collect(Collectors.toSet()), Matchers.hasItems("code", "date", "value-quantity", "identifier", "status"));
+	}
+
 	private static class MySearchParamRegistry implements ISearchParamRegistry, ISearchParamRegistryController {
 
 		// TODO: JA remove unused?
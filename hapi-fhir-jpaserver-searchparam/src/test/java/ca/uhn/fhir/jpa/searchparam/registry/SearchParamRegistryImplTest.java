@@ -14,6 +14,7 @@ import ca.uhn.fhir.jpa.model.entity.ModelConfig;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
 import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryResourceMatcher;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
@@ -99,6 +100,8 @@ public class SearchParamRegistryImplTest {
 	private SearchParamMatcher mySearchParamMatcher;
 	@MockBean
 	private MatchUrlService myMatchUrlService;
+	@MockBean
+	private ISearchParamExtractor mySearchParamExtractor;
 
 	@Configuration
 	@Import(RegisteredResourceListenerFactoryConfig.class)
@@ -265,6 +268,17 @@ public class SearchParamRegistryImplTest {
 		assertPatientSearchParamSize(ourBuiltinPatientSearchParamCount + 1);
 	}
 
+	@Test
+	public void testRefreshClearsExtractorCaches() {
+		reset(mySearchParamExtractor);
+
+		resetDatabaseToOrigSearchParamsPlusNewOneWithStatus(Enumerations.PublicationStatus.ACTIVE);
+		mySearchParamRegistry.requestRefresh();
+		assertResult(mySearchParamRegistry.refreshCacheIfNecessary(), 1, 0, 0);
+
+		verify(mySearchParamExtractor, times(1)).clearCaches();
+	}
+
 	private void assertPatientSearchParamSize(int theExpectedSize) {
 		assertEquals(theExpectedSize, mySearchParamRegistry.getActiveSearchParams("Patient").size());
 	}
@@ -21,13 +21,18 @@ package ca.uhn.fhir.jpa.subscription.match.matcher.matching;
  */
 
 import ca.uhn.fhir.jpa.api.config.DaoConfig;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
 import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import javax.annotation.Nullable;
+import java.util.function.Supplier;
+
 public class CompositeInMemoryDaoSubscriptionMatcher implements ISubscriptionMatcher {
 	private Logger ourLog = LoggerFactory.getLogger(CompositeInMemoryDaoSubscriptionMatcher.class);
 
@@ -43,9 +48,18 @@ public class CompositeInMemoryDaoSubscriptionMatcher implements ISubscriptionMat
 
 	@Override
 	public InMemoryMatchResult match(CanonicalSubscription theSubscription, ResourceModifiedMessage theMsg) {
+		return match(theSubscription, theMsg, () -> myInMemorySubscriptionMatcher.match(theSubscription, theMsg));
+	}
+
+	@Override
+	public InMemoryMatchResult match(ActiveSubscription theActiveSubscription, ResourceModifiedMessage theMsg, @Nullable ResourceIndexedSearchParams theSearchParams) {
+		return match(theActiveSubscription.getSubscription(), theMsg, () -> myInMemorySubscriptionMatcher.match(theActiveSubscription, theMsg, theSearchParams));
+	}
+
+	private InMemoryMatchResult match(CanonicalSubscription theSubscription, ResourceModifiedMessage theMsg, Supplier<InMemoryMatchResult> theInMemoryMatch) {
 		InMemoryMatchResult result;
 		if (myDaoConfig.isEnableInMemorySubscriptionMatching()) {
-			result = myInMemorySubscriptionMatcher.match(theSubscription, theMsg);
+			result = theInMemoryMatch.get();
 			if (result.supported()) {
 				result.setInMemory(true);
 			} else {
@@ -20,10 +20,27 @@ package ca.uhn.fhir.jpa.subscription.match.matcher.matching;
  * #L%
  */
 
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
 import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedMessage;
 
+import javax.annotation.Nullable;
+
 public interface ISubscriptionMatcher {
 	InMemoryMatchResult match(CanonicalSubscription subscription, ResourceModifiedMessage msg);
+
+	/**
+	 * Matches an active subscription, which may carry criteria that were already parsed when
+	 * the subscription was registered
+	 *
+	 * @param theSearchParams The search parameters already extracted from the resource in the message, so that
+	 *                        they don't need to be extracted again for every subscription. If this is
+	 *                        <code>null</code>, they are extracted if needed.
+	 * @since 5.4.0
+	 */
+	default InMemoryMatchResult match(ActiveSubscription theActiveSubscription, ResourceModifiedMessage theMsg, @Nullable ResourceIndexedSearchParams theSearchParams) {
+		return match(theActiveSubscription.getSubscription(), theMsg);
+	}
 }
@@ -21,15 +21,22 @@ package ca.uhn.fhir.jpa.subscription.match.matcher.matching;
  */
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
+import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
+import ca.uhn.fhir.jpa.subscription.match.registry.SubscriptionCriteria;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
 import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedMessage;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import javax.annotation.Nullable;
+
 public class InMemorySubscriptionMatcher implements ISubscriptionMatcher {
 	private static final Logger ourLog = LoggerFactory.getLogger(InMemorySubscriptionMatcher.class);
 
@@ -38,6 +45,26 @@ public class InMemorySubscriptionMatcher implements ISubscriptionMatcher {
 	@Autowired
 	private SearchParamMatcher mySearchParamMatcher;
 
+	@Override
+	public InMemoryMatchResult match(ActiveSubscription theActiveSubscription, ResourceModifiedMessage theMsg, @Nullable ResourceIndexedSearchParams theSearchParams) {
+		SubscriptionCriteria criteria = theActiveSubscription.getCriteria();
+		SearchParameterMap searchParameterMap = criteria != null ? criteria.getSearchParameterMap() : null;
+		if (searchParameterMap == null) {
+			return match(theActiveSubscription.getSubscription(), theMsg);
+		}
+
+		try {
+			IBaseResource payload = theMsg.getNewPayload(myContext);
+			if (theSearchParams != null) {
+				return mySearchParamMatcher.match(searchParameterMap, payload, theSearchParams);
+			}
+			return mySearchParamMatcher.match(searchParameterMap, payload);
+		} catch (Exception e) {
+			ourLog.error("Failure in in-memory matcher", e);
+			throw new InternalErrorException("Failure performing memory-match for resource ID[" + theMsg.getId(myContext) + "] for subscription ID[" + theActiveSubscription.getSubscription().getIdElementString() + "]: " + e.getMessage(), e);
+		}
+	}
+
 	@Override
 	public InMemoryMatchResult match(CanonicalSubscription theSubscription, ResourceModifiedMessage theMsg) {
 		try {
@@ -4,7 +4,9 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.interceptor.api.HookParams;
 import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.searchparam.matcher.IndexedSearchParamExtractor;
 import ca.uhn.fhir.jpa.subscription.channel.subscription.SubscriptionChannelRegistry;
 import ca.uhn.fhir.jpa.subscription.match.matcher.matching.ISubscriptionMatcher;
 import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
@@ -27,9 +29,12 @@ import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.MessagingException;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Collection;
+import java.util.Collections;
 
 import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 /*-
@@ -66,6 +71,8 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 	private IInterceptorBroadcaster myInterceptorBroadcaster;
 	@Autowired
 	private SubscriptionChannelRegistry mySubscriptionChannelRegistry;
+	@Autowired
+	private IndexedSearchParamExtractor myIndexedSearchParamExtractor;
 
 	/**
 	 * Constructor
@@ -119,7 +126,19 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 	private void doMatchActiveSubscriptionsAndDeliver(ResourceModifiedMessage theMsg) {
 		IIdType resourceId = theMsg.getId(myFhirContext);
 
-		Collection<ActiveSubscription> subscriptions = mySubscriptionRegistry.getAll();
+		// The resource's search parameters are extracted at most once, and are used both to look up
+		// the candidate subscriptions in the index and to match the resource against each of them
+		ResourceIndexedSearchParams searchParams = null;
+		boolean searchParamsExtracted = false;
+		if (isBlank(theMsg.getSubscriptionId()) && isNotBlank(resourceId.getResourceType()) && mySubscriptionRegistry.hasIndexedSubscriptions(resourceId.getResourceType())) {
+			searchParams = extractSearchParams(theMsg, resourceId);
+			searchParamsExtracted = true;
+		}
+
+		Collection<ActiveSubscription> subscriptions = getCandidateSubscriptions(theMsg, resourceId, searchParams);
+		if (!searchParamsExtracted && !subscriptions.isEmpty()) {
+			searchParams = extractSearchParams(theMsg, resourceId);
+		}
 
 		ourLog.trace("Testing {} subscriptions for applicability", subscriptions.size());
 		boolean resourceMatched = false;
@@ -128,19 +147,11 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 
 			String nextSubscriptionId = getId(nextActiveSubscription);
 
-			if (isNotBlank(theMsg.getSubscriptionId())) {
-				if (!theMsg.getSubscriptionId().equals(nextSubscriptionId)) {
-					// TODO KHS we should use a hash to look it up instead of this full table scan
-					ourLog.debug("Ignoring subscription {} because it is not {}", nextSubscriptionId, theMsg.getSubscriptionId());
-					continue;
-				}
-			}
-
 			if (!validCriteria(nextActiveSubscription, resourceId)) {
 				continue;
 			}
 
-			InMemoryMatchResult matchResult = mySubscriptionMatcher.match(nextActiveSubscription.getSubscription(), theMsg);
+			InMemoryMatchResult matchResult = mySubscriptionMatcher.match(nextActiveSubscription, theMsg, searchParams);
 			if (!matchResult.matched()) {
 				continue;
 			}
@@ -186,6 +197,47 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 		}
 	}
 
+	/**
+	 * Returns the subscriptions which need to be checked against the resource. This uses the
+	 * index maintained by the {@link SubscriptionRegistry} so that only the subscriptions whose
+	 * criteria could match the resource's token values and reference targets are evaluated.
+	 */
+	private Collection<ActiveSubscription> getCandidateSubscriptions(ResourceModifiedMessage theMsg, IIdType theResourceId, @Nullable ResourceIndexedSearchParams theSearchParams) {
+		if (isNotBlank(theMsg.getSubscriptionId())) {
+			ActiveSubscription activeSubscription = mySubscriptionRegistry.get(theMsg.getSubscriptionId());
+			if (activeSubscription == null) {
+				ourLog.debug("Ignoring message because subscription {} is not registered", theMsg.getSubscriptionId());
+				return Collections.emptyList();
+			}
+			return Collections.singletonList(activeSubscription);
+		}
+
+		String resourceType = theResourceId.getResourceType();
+		if (isBlank(resourceType)) {
+			return mySubscriptionRegistry.getAll();
+		}
+
+		return mySubscriptionRegistry.getCandidates(resourceType, theSearchParams);
+	}
+
+	/**
+	 * @return <code>null</code> if the search parameters can't be extracted, in which case the resource is checked
+	 * against all subscriptions of its type, and each matcher tries to extract them itself if it needs them
+	 */
+	@Nullable
+	private ResourceIndexedSearchParams extractSearchParams(ResourceModifiedMessage theMsg, IIdType theResourceId) {
+		IBaseResource payload = theMsg.getNewPayload(myFhirContext);
+		if (payload == null) {
+			return null;
+		}
+		try {
+			return myIndexedSearchParamExtractor.extractIndexedSearchParams(payload, null);
+		} catch (Exception e) {
+			ourLog.warn("Failed to extract search parameters from {}: {}", theResourceId.toUnqualifiedVersionless().getValue(), e.toString());
+			return null;
+		}
+	}
+
 	private boolean sendToDeliveryChannel(ActiveSubscription nextActiveSubscription, ResourceDeliveryMessage theDeliveryMsg) {
 		boolean retVal = false;
 		ResourceDeliveryJsonMessage wrappedMsg = new ResourceDeliveryJsonMessage(theDeliveryMsg);
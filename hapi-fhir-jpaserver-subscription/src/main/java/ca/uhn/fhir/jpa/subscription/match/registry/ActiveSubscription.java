@@ -32,6 +32,7 @@ public class ActiveSubscription {
 	private final String myChannelName;
 	private final String myId;
 	private boolean flagForDeletion;
+	private SubscriptionCriteria myCriteria;
 
 	public ActiveSubscription(CanonicalSubscription theSubscription, String theChannelName) {
 		mySubscription = theSubscription;
@@ -55,6 +56,22 @@ public class ActiveSubscription {
 		mySubscription = theCanonicalizedSubscription;
 	}
 
+	/**
+	 * Returns the parsed criteria of this subscription, or <code>null</code> if they have not been parsed
+	 *
+	 * @since 5.4.0
+	 */
+	public SubscriptionCriteria getCriteria() {
+		return myCriteria;
+	}
+
+	/**
+	 * @since 5.4.0
+	 */
+	public void setCriteria(SubscriptionCriteria theCriteria) {
+		myCriteria = theCriteria;
+	}
+
 	public boolean isFlagForDeletion() {
 		return flagForDeletion;
 	}
@@ -0,0 +1,78 @@
+package ca.uhn.fhir.jpa.subscription.match.registry;
+
+/*-
+ * #%L
+ * HAPI FHIR Subscription Server
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The criteria of an {@link ActiveSubscription}, parsed once when the subscription is registered
+ * so that they don't need to be parsed again for every resource that is checked against them.
+ *
+ * @since 5.4.0
+ */
+public class SubscriptionCriteria {
+
+	private final String myResourceType;
+	private final SearchParameterMap mySearchParameterMap;
+	private final Set<String> myIndexKeys;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theResourceType       The resource type the criteria apply to, or <code>null</code> if it could not be determined
+	 * @param theSearchParameterMap The parsed criteria, or <code>null</code> if they could not be parsed
+	 * @param theIndexKeys          The keys under which the subscription is indexed (see {@link SubscriptionCriteriaIndex})
+	 */
+	public SubscriptionCriteria(@Nullable String theResourceType, @Nullable SearchParameterMap theSearchParameterMap, @Nonnull Set<String> theIndexKeys) {
+		myResourceType = theResourceType;
+		mySearchParameterMap = theSearchParameterMap;
+		myIndexKeys = Collections.unmodifiableSet(theIndexKeys);
+	}
+
+	@Nullable
+	public String getResourceType() {
+		return myResourceType;
+	}
+
+	/**
+	 * Returns the parsed criteria, or <code>null</code> if they could not be parsed (in which case
+	 * the criteria string must be used for matching)
+	 */
+	@Nullable
+	public SearchParameterMap getSearchParameterMap() {
+		return mySearchParameterMap;
+	}
+
+	/**
+	 * Returns the keys under which the subscription is indexed. If this is empty, the subscription
+	 * must be checked against every resource of its type.
+	 */
+	@Nonnull
+	public Set<String> getIndexKeys() {
+		return myIndexKeys;
+	}
+
+}
@@ -0,0 +1,254 @@
+package ca.uhn.fhir.jpa.subscription.match.registry;
+
+/*-
+ * #%L
+ * HAPI FHIR Subscription Server
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.entity.ResourceLink;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Index of active subscriptions used to find the subscriptions whose criteria a resource could
+ * possibly match, without evaluating the criteria of every registered subscription.
+ * <p>
+ * Subscriptions are grouped by the resource type of their criteria. Within a resource type, a
+ * subscription whose criteria require a token parameter to equal a given value (e.g. <code>code=Y</code>)
+ * or a reference parameter to point to a given resource ID (e.g. <code>patient=X</code>) is indexed under
+ * a key built from that value. A resource is then only checked against the subscriptions indexed
+ * under the keys built from its own token values and reference targets, plus the subscriptions
+ * whose criteria could not be indexed. Keys are deliberately coarse (reference keys ignore the
+ * parameter name and token keys ignore the system), so the candidates are always a superset of
+ * the subscriptions which actually match.
+ * </p>
+ */
+class SubscriptionCriteriaIndex {
+
+	private final Map<String, ResourceTypeIndex> myResourceTypeIndexes = new ConcurrentHashMap<>();
+	private final Set<ActiveSubscription> myUntypedSubscriptions = ConcurrentHashMap.newKeySet();
+
+	synchronized void add(ActiveSubscription theActiveSubscription) {
+		SubscriptionCriteria criteria = theActiveSubscription.getCriteria();
+		if (criteria == null || isBlank(criteria.getResourceType())) {
+			myUntypedSubscriptions.add(theActiveSubscription);
+			return;
+		}
+
+		ResourceTypeIndex index = myResourceTypeIndexes.computeIfAbsent(criteria.getResourceType(), t -> new ResourceTypeIndex());
+		if (criteria.getIndexKeys().isEmpty()) {
+			index.myUnindexedSubscriptions.add(theActiveSubscription);
+		} else {
+			for (String next : criteria.getIndexKeys()) {
+				index.mySubscriptionsByKey.computeIfAbsent(next, t -> ConcurrentHashMap.newKeySet()).add(theActiveSubscription);
+			}
+		}
+	}
+
+	synchronized void remove(ActiveSubscription theActiveSubscription) {
+		SubscriptionCriteria criteria = theActiveSubscription.getCriteria();
+		if (criteria == null || isBlank(criteria.getResourceType())) {
+			myUntypedSubscriptions.remove(theActiveSubscription);
+			return;
+		}
+
+		ResourceTypeIndex index = myResourceTypeIndexes.get(criteria.getResourceType());
+		if (index == null) {
+			return;
+		}
+		index.myUnindexedSubscriptions.remove(theActiveSubscription);
+		for (String next : criteria.getIndexKeys()) {
+			Set<ActiveSubscription> subscriptions = index.mySubscriptionsByKey.get(next);
+			if (subscriptions != null) {
+				subscriptions.remove(theActiveSubscription);
+				if (subscriptions.isEmpty()) {
+					index.mySubscriptionsByKey.remove(next);
+				}
+			}
+		}
+	}
+
+	synchronized void clear() {
+		myResourceTypeIndexes.clear();
+		myUntypedSubscriptions.clear();
+	}
+
+	/**
+	 * Returns <code>true</code> if any subscriptions for the given resource type are indexed by key,
+	 * meaning that the resource's search parameters are needed to find the candidate subscriptions
+	 */
+	boolean hasIndexedSubscriptions(String theResourceType) {
+		ResourceTypeIndex index = myResourceTypeIndexes.get(theResourceType);
+		return index != null && !index.mySubscriptionsByKey.isEmpty();
+	}
+
+	/**
+	 * Returns the subscriptions which could possibly match a resource of the given type
+	 *
+	 * @param theResourceType The resource type
+	 * @param theSearchParams The search parameters extracted from the resource, or <code>null</code> to return
+	 *                        every subscription for the resource type
+	 */
+	Collection<ActiveSubscription> getCandidates(String theResourceType, @Nullable ResourceIndexedSearchParams theSearchParams) {
+		ResourceTypeIndex index = myResourceTypeIndexes.get(theResourceType);
+		if (index == null) {
+			return new ArrayList<>(myUntypedSubscriptions);
+		}
+
+		Set<ActiveSubscription> retVal = new LinkedHashSet<>(myUntypedSubscriptions);
+		retVal.addAll(index.myUnindexedSubscriptions);
+		if (theSearchParams == null) {
+			index.mySubscriptionsByKey.values().forEach(retVal::addAll);
+			return retVal;
+		}
+
+		for (ResourceIndexedSearchParamToken next : theSearchParams.myTokenParams) {
+			if (next.getValue() != null) {
+				addSubscriptionsForKey(index, tokenKey(next.getParamName(), next.getValue()), retVal);
+			}
+		}
+		for (ResourceLink next : theSearchParams.myLinks) {
+			if (next.getTargetResourceId() != null) {
+				addSubscriptionsForKey(index, referenceKey(next.getTargetResourceId()), retVal);
+			}
+		}
+		return retVal;
+	}
+
+	private static void addSubscriptionsForKey(ResourceTypeIndex theIndex, String theKey, Set<ActiveSubscription> theCandidates) {
+		Set<ActiveSubscription> subscriptions = theIndex.mySubscriptionsByKey.get(theKey);
+		if (subscriptions != null) {
+			theCandidates.addAll(subscriptions);
+		}
+	}
+
+	/**
+	 * Determines the keys a subscription with the given criteria should be indexed under. The
+	 * criteria are a conjunction of parameters, so a resource can only match if it matches every
+	 * one of them. It is therefore enough to index the subscription under the values of a single
+	 * parameter; the one with the fewest alternatives is picked.
+	 *
+	 * @return The keys, or an empty set if the criteria can not be indexed
+	 */
+	@Nonnull
+	static Set<String> determineIndexKeys(String theResourceType, SearchParameterMap theSearchParameterMap, ISearchParamRegistry theSearchParamRegistry) {
+		Set<String> retVal = Collections.emptySet();
+		for (Map.Entry<String, List<List<IQueryParameterType>>> nextParam : theSearchParameterMap.entrySet()) {
+			if (nextParam.getKey().startsWith("_")) {
+				// Parameters like _id and _tag are not matched against the extracted search parameters
+				continue;
+			}
+			RuntimeSearchParam paramDef = theSearchParamRegistry.getActiveSearchParam(theResourceType, nextParam.getKey());
+			if (paramDef == null) {
+				continue;
+			}
+			for (List<IQueryParameterType> nextAnd : nextParam.getValue()) {
+				Set<String> keys = determineIndexKeys(nextParam.getKey(), paramDef, nextAnd);
+				if (keys != null && (retVal.isEmpty() || keys.size() < retVal.size())) {
+					retVal = keys;
+				}
+			}
+		}
+		return retVal;
+	}
+
+	@Nullable
+	private static Set<String> determineIndexKeys(String theParamName, RuntimeSearchParam theParamDef, List<IQueryParameterType> theOrParams) {
+		if (theOrParams.isEmpty()) {
+			return null;
+		}
+
+		Set<String> retVal = new HashSet<>();
+		for (IQueryParameterType next : theOrParams) {
+			if (next.getMissing() != null || next.getQueryParameterQualifier() != null) {
+				return null;
+			}
+			switch (theParamDef.getParamType()) {
+				case TOKEN:
+					if (!(next instanceof TokenParam) || ((TokenParam) next).getModifier() != null || isBlank(((TokenParam) next).getValue())) {
+						return null;
+					}
+					retVal.add(tokenKey(theParamName, ((TokenParam) next).getValue()));
+					break;
+				case REFERENCE:
+					if (!(next instanceof ReferenceParam)) {
+						return null;
+					}
+					ReferenceParam reference = (ReferenceParam) next;
+					if (isNotBlank(reference.getChain()) || isNotBlank(reference.getBaseUrl()) || isBlank(reference.getIdPart())) {
+						return null;
+					}
+					retVal.add(referenceKey(reference.getIdPart()));
+					break;
+				default:
+					return null;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Tokens are matched case-insensitively, so the key is normalized in the same way as
+	 * {@link String#equalsIgnoreCase(String)}
+	 */
+	static String tokenKey(String theParamName, String theValue) {
+		return "T:" + normalize(theParamName) + "=" + normalize(theValue);
+	}
+
+	/**
+	 * References are matched on the ID of the target, regardless of which parameter they belong to
+	 */
+	static String referenceKey(String theTargetId) {
+		return "R:" + theTargetId;
+	}
+
+	private static String normalize(String theValue) {
+		StringBuilder b = new StringBuilder(theValue.length());
+		for (int i = 0; i < theValue.length(); i++) {
+			b.append(Character.toLowerCase(Character.toUpperCase(theValue.charAt(i))));
+		}
+		return b.toString();
+	}
+
+	private static class ResourceTypeIndex {
+		private final Set<ActiveSubscription> myUnindexedSubscriptions = ConcurrentHashMap.newKeySet();
+		private final Map<String, Set<ActiveSubscription>> mySubscriptionsByKey = new ConcurrentHashMap<>();
+	}
+
+}
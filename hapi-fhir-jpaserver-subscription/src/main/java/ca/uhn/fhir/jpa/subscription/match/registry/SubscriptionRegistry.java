@@ -20,12 +20,18 @@ package ca.uhn.fhir.jpa.subscription.match.registry;
  * #L%
  */
 
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.interceptor.api.HookParams;
 import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
 import ca.uhn.fhir.jpa.subscription.channel.subscription.ISubscriptionDeliveryChannelNamer;
 import ca.uhn.fhir.jpa.subscription.channel.subscription.SubscriptionChannelRegistry;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
@@ -34,11 +40,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import javax.annotation.Nullable;
 import javax.annotation.PreDestroy;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
 
 /**
  * Cache of active subscriptions.  When a new subscription is added to the cache, a new Spring Channel is created
@@ -49,6 +59,7 @@ import java.util.Optional;
 public class SubscriptionRegistry {
 	private static final Logger ourLog = LoggerFactory.getLogger(SubscriptionRegistry.class);
 	private final ActiveSubscriptionCache myActiveSubscriptionCache = new ActiveSubscriptionCache();
+	private final SubscriptionCriteriaIndex mySubscriptionCriteriaIndex = new SubscriptionCriteriaIndex();
 	@Autowired
 	private SubscriptionCanonicalizer mySubscriptionCanonicalizer;
 	@Autowired
@@ -57,6 +68,12 @@ public class SubscriptionRegistry {
 	private SubscriptionChannelRegistry mySubscriptionChannelRegistry;
 	@Autowired
 	private IInterceptorBroadcaster myInterceptorBroadcaster;
+	@Autowired
+	private FhirContext myFhirContext;
+	@Autowired
+	private MatchUrlService myMatchUrlService;
+	@Autowired
+	private ISearchParamRegistry mySearchParamRegistry;
 
 	/**
 	 * Constructor
@@ -73,6 +90,31 @@ public class SubscriptionRegistry {
 		return myActiveSubscriptionCache.getAll();
 	}
 
+	/**
+	 * Returns <code>true</code> if the criteria of any registered subscriptions for the given resource
+	 * type have been indexed, meaning that {@link #getCandidates(String, ResourceIndexedSearchParams)}
+	 * can narrow down the subscriptions if the search parameters of the resource are supplied.
+	 *
+	 * @since 5.4.0
+	 */
+	public boolean hasIndexedSubscriptions(String theResourceType) {
+		return mySubscriptionCriteriaIndex.hasIndexedSubscriptions(theResourceType);
+	}
+
+	/**
+	 * Returns the registered subscriptions whose criteria could match a resource of the given type.
+	 * This is a superset of the subscriptions which actually match, so the criteria of each candidate
+	 * must still be evaluated.
+	 *
+	 * @param theResourceType The resource type
+	 * @param theSearchParams The search parameters extracted from the resource. If <code>null</code>, all subscriptions
+	 *                        for the resource type are returned.
+	 * @since 5.4.0
+	 */
+	public Collection<ActiveSubscription> getCandidates(String theResourceType, @Nullable ResourceIndexedSearchParams theSearchParams) {
+		return mySubscriptionCriteriaIndex.getCandidates(theResourceType, theSearchParams);
+	}
+
 	private Optional<CanonicalSubscription> hasSubscription(IIdType theId) {
 		Validate.notNull(theId);
 		Validate.notBlank(theId.getIdPart());
@@ -91,8 +133,10 @@ public class SubscriptionRegistry {
 		String channelName = mySubscriptionDeliveryChannelNamer.nameFromSubscription(canonicalized);
 
 		ActiveSubscription activeSubscription = new ActiveSubscription(canonicalized, channelName);
+		activeSubscription.setCriteria(parseCriteria(canonicalized));
 		mySubscriptionChannelRegistry.add(activeSubscription);
 		myActiveSubscriptionCache.put(subscriptionId, activeSubscription);
+		mySubscriptionCriteriaIndex.add(activeSubscription);
 
 		ourLog.info("Registered active subscription Subscription/{} - Have {} registered", subscriptionId, myActiveSubscriptionCache.size());
 
@@ -108,6 +152,7 @@ public class SubscriptionRegistry {
 
 		ActiveSubscription activeSubscription = myActiveSubscriptionCache.remove(theSubscriptionId);
 		if (activeSubscription != null) {
+			mySubscriptionCriteriaIndex.remove(activeSubscription);
 			mySubscriptionChannelRegistry.remove(activeSubscription);
 			ourLog.info("Unregistered active subscription {} - Have {} registered", theSubscriptionId, myActiveSubscriptionCache.size());
 
@@ -166,7 +211,10 @@ public class SubscriptionRegistry {
 		ActiveSubscription activeSubscription = myActiveSubscriptionCache.get(theId.getIdPart());
 		Validate.notNull(activeSubscription);
 		CanonicalSubscription canonicalized = mySubscriptionCanonicalizer.canonicalize(theSubscription);
+		mySubscriptionCriteriaIndex.remove(activeSubscription);
 		activeSubscription.setSubscription(canonicalized);
+		activeSubscription.setCriteria(parseCriteria(canonicalized));
+		mySubscriptionCriteriaIndex.add(activeSubscription);
 
 		// Interceptor call: SUBSCRIPTION_AFTER_ACTIVE_SUBSCRIPTION_REGISTERED
 		HookParams params = new HookParams()
@@ -174,6 +222,30 @@ public class SubscriptionRegistry {
 		myInterceptorBroadcaster.callHooks(Pointcut.SUBSCRIPTION_AFTER_ACTIVE_SUBSCRIPTION_REGISTERED, params);
 	}
 
+	private SubscriptionCriteria parseCriteria(CanonicalSubscription theSubscription) {
+		String criteria = theSubscription.getCriteriaString();
+		if (isBlank(criteria)) {
+			return new SubscriptionCriteria(null, null, Collections.emptySet());
+		}
+
+		String resourceType = criteria;
+		int index = resourceType.indexOf('?');
+		if (index != -1) {
+			resourceType = resourceType.substring(0, index);
+		}
+
+		try {
+			RuntimeResourceDefinition resourceDefinition = myFhirContext.getResourceDefinition(resourceType);
+			SearchParameterMap searchParameterMap = myMatchUrlService.translateMatchUrl(criteria, resourceDefinition);
+			searchParameterMap.clean();
+			Set<String> indexKeys = SubscriptionCriteriaIndex.determineIndexKeys(resourceType, searchParameterMap, mySearchParamRegistry);
+			return new SubscriptionCriteria(resourceType, searchParameterMap, indexKeys);
+		} catch (Exception e) {
+			ourLog.debug("Unable to parse criteria {} for subscription {}, it will be checked against every {} resource: {}", criteria, theSubscription.getIdElementString(), resourceType, e.toString());
+			return new SubscriptionCriteria(resourceType, null, Collections.emptySet());
+		}
+	}
+
 	private boolean channelTypeSame(CanonicalSubscription theExistingSubscription, CanonicalSubscription theNewSubscription) {
 		return theExistingSubscription.getChannelType().equals(theNewSubscription.getChannelType());
 	}
@@ -1,12 +1,25 @@
 package ca.uhn.fhir.jpa.subscription.module.cache;
 
+import ca.uhn.fhir.jpa.searchparam.matcher.IndexedSearchParamExtractor;
 import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
+import org.hl7.fhir.dstu3.model.Observation;
 import org.hl7.fhir.dstu3.model.Subscription;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class SubscriptionRegistryTest extends BaseSubscriptionRegistryTest {
+	@Autowired
+	private IndexedSearchParamExtractor myIndexedSearchParamExtractor;
+
 	@Test
 	public void updateSubscriptionReusesActiveSubscription() {
 		Subscription subscription = createSubscription();
@@ -57,4 +70,67 @@ public class SubscriptionRegistryTest extends BaseSubscriptionRegistryTest {
 		assertRegistrySize(0);
 	}
 
+	@Test
+	public void getCandidatesUsesCriteriaIndex() {
+		registerSubscription("code", "Observation?code=http://loinc.org|1234-5");
+		registerSubscription("codeOr", "Observation?code=9999,1234-5");
+		registerSubscription("otherCode", "Observation?code=http://loinc.org|5555-5");
+		registerSubscription("subject", "Observation?subject=Patient/123&status=final");
+		registerSubscription("otherSubject", "Observation?subject=Patient/456");
+		registerSubscription("unindexed", "Observation?date=gt2020-01-01");
+		registerSubscription("patient", "Patient?_id=123");
+
+		assertTrue(mySubscriptionRegistry.hasIndexedSubscriptions("Observation"));
+		assertFalse(mySubscriptionRegistry.hasIndexedSubscriptions("Patient"));
+		assertNotNull(mySubscriptionRegistry.get("subject").getCriteria().getSearchParameterMap());
+
+		Observation observation = new Observation();
+		observation.getCode().addCoding().setSystem("http://loinc.org").setCode("1234-5");
+		observation.getSubject().setReference("Patient/123");
+		observation.setStatus(Observation.ObservationStatus.FINAL);
+		assertThat(getCandidateIds(observation), contains("code", "codeOr", "subject", "unindexed"));
+
+		observation = new Observation();
+		observation.getCode().addCoding().setSystem("http://loinc.org").setCode("5555-5");
+		assertThat(getCandidateIds(observation), contains("otherCode", "unindexed"));
+
+		assertThat(getCandidateIds("Observation", null), containsInAnyOrder("code", "codeOr", "otherCode", "subject", "otherSubject", "unindexed"));
+		assertThat(getCandidateIds("Patient", null), contains("patient"));
+	}
+
+	@Test
+	public void getCandidatesReflectsUpdatesAndRemovals() {
+		registerSubscription("1", "Observation?code=1234-5");
+
+		Observation observation = new Observation();
+		observation.getCode().addCoding().setCode("5555-5");
+		assertThat(getCandidateIds(observation), empty());
+
+		registerSubscription("1", "Observation?code=5555-5");
+		assertThat(getCandidateIds(observation), contains("1"));
+
+		mySubscriptionRegistry.unregisterSubscriptionIfRegistered("1");
+		assertThat(getCandidateIds(observation), empty());
+		assertFalse(mySubscriptionRegistry.hasIndexedSubscriptions("Observation"));
+	}
+
+	private void registerSubscription(String theId, String theCriteria) {
+		Subscription subscription = createSubscription();
+		subscription.setId(theId);
+		subscription.setCriteria(theCriteria);
+		mySubscriptionRegistry.registerSubscriptionUnlessAlreadyRegistered(subscription);
+	}
+
+	private Set<String> getCandidateIds(Observation theObservation) {
+		return getCandidateIds("Observation", theObservation);
+	}
+
+	private Set<String> getCandidateIds(String theResourceType, Observation theObservation) {
+		Set<String> retVal = new TreeSet<>();
+		mySubscriptionRegistry
+			.getCandidates(theResourceType, theObservation != null ? myIndexedSearchParamExtractor.extractIndexedSearchParams(theObservation, null) : null)
+			.forEach(t -> retVal.add(t.getId()));
+		return retVal;
+	}
+
 }
@@ -10,6 +10,7 @@ import ca.uhn.fhir.jpa.model.entity.ModelConfig;
 import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
 import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryResourceMatcher;
+import ca.uhn.fhir.jpa.searchparam.matcher.IndexedSearchParamExtractor;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
 import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
 import ca.uhn.fhir.jpa.subscription.channel.config.SubscriptionChannelConfig;
@@ -55,6 +56,8 @@ public class WebsocketConnectionValidatorTest {
 	@MockBean
 	SearchParamMatcher mySearchParamMatcher;
 	@MockBean
+	IndexedSearchParamExtractor myIndexedSearchParamExtractor;
+	@MockBean
 	SubscriptionChannelConfig mySubscriptionChannelConfig;
 	@MockBean
 	SubscriptionChannelFactory mySubscriptionChannelFactory;
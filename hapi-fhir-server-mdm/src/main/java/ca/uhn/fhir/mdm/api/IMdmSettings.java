@@ -31,6 +31,13 @@ public interface IMdmSettings {
 	// Parallel processing of MDM can result in missed matches.  Best to single-thread.
 	int MDM_DEFAULT_CONCURRENT_CONSUMERS = 1;
 
+	/**
+	 * Default value for {@link #getCandidateSearchLimit()}
+	 *
+	 * @since 5.4.0
+	 */
+	int DEFAULT_CANDIDATE_SEARCH_LIMIT = 1000;
+
 	boolean isEnabled();
 
 	int getConcurrentConsumers();
@@ -45,6 +52,17 @@ public interface IMdmSettings {
 
 	String getSurvivorshipRules();
 
+	/**
+	 * The maximum number of candidate resources which are loaded and scored against an incoming resource. If
+	 * the candidate searches find more than this, the candidates found by the most candidate searches are kept.
+	 * Each candidate search query returns at most this number multiplied by the number of candidate searches.
+	 *
+	 * @since 5.4.0
+	 */
+	default int getCandidateSearchLimit() {
+		return DEFAULT_CANDIDATE_SEARCH_LIMIT;
+	}
+
 	default boolean isSupportedMdmType(String theResourceName) {
 		return getMdmRules().getMdmTypes().contains(theResourceName);
 	}
@@ -24,6 +24,7 @@ import ca.uhn.fhir.mdm.api.IMdmRuleValidator;
 import ca.uhn.fhir.mdm.api.IMdmSettings;
 import ca.uhn.fhir.mdm.rules.json.MdmRulesJson;
 import ca.uhn.fhir.util.JsonUtil;
+import org.apache.commons.lang3.Validate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -39,6 +40,7 @@ public class MdmSettings implements IMdmSettings {
 	private String mySurvivorshipRules;
 	private MdmRulesJson myMdmRules;
 	private boolean myPreventEidUpdates;
+	private int myCandidateSearchLimit = DEFAULT_CANDIDATE_SEARCH_LIMIT;
 
 	/**
 	 * If disabled, the underlying MDM system will operate under the following assumptions:
@@ -121,4 +123,21 @@ public class MdmSettings implements IMdmSettings {
 	public void setSurvivorshipRules(String theSurvivorshipRules) {
 		mySurvivorshipRules = theSurvivorshipRules;
 	}
+
+	@Override
+	public int getCandidateSearchLimit() {
+		return myCandidateSearchLimit;
+	}
+
+	/**
+	 * The maximum number of candidate resources which are loaded and scored against an incoming resource.
+	 * Default is {@link #DEFAULT_CANDIDATE_SEARCH_LIMIT}.
+	 *
+	 * @since 5.4.0
+	 */
+	public MdmSettings setCandidateSearchLimit(int theCandidateSearchLimit) {
+		Validate.isTrue(theCandidateSearchLimit > 0, "theCandidateSearchLimit must be greater than 0");
+		myCandidateSearchLimit = theCandidateSearchLimit;
+		return this;
+	}
 }
@@ -0,0 +1,96 @@
+package ca.uhn.fhir.mdm.rules.svc;
+
+/*-
+ * #%L
+ * HAPI FHIR - Master Data Management
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.fhirpath.IFhirPath;
+import ca.uhn.fhir.util.FhirTerser;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the values that the MDM field matchers have extracted from a single resource, so that
+ * a resource which is compared against many candidates only has its fields evaluated once.
+ * Instances are created by {@link MdmResourceMatcherSvc#extractFeatures(IBaseResource)}, and
+ * values are extracted the first time a field matcher needs them.
+ * <p>
+ * The extracted values are only valid for the state of the resource at the time they were
+ * extracted. This class is not thread safe.
+ * </p>
+ *
+ * @since 5.4.0
+ */
+public final class MdmResourceFeatures {
+
+	private final IBaseResource myResource;
+	private final String myResourceType;
+	private final List<List<IBase>> myFieldValues = new ArrayList<>();
+	private IFhirPath myFhirPath;
+	private FhirTerser myTerser;
+
+	MdmResourceFeatures(IBaseResource theResource, String theResourceType) {
+		myResource = theResource;
+		myResourceType = theResourceType;
+	}
+
+	public IBaseResource getResource() {
+		return myResource;
+	}
+
+	public String getResourceType() {
+		return myResourceType;
+	}
+
+	/**
+	 * Returns the values for the field matcher at the given index, or <code>null</code> if they
+	 * haven't been extracted yet
+	 */
+	List<IBase> getFieldValues(int theFieldMatcherIndex) {
+		if (theFieldMatcherIndex < myFieldValues.size()) {
+			return myFieldValues.get(theFieldMatcherIndex);
+		}
+		return null;
+	}
+
+	void setFieldValues(int theFieldMatcherIndex, List<IBase> theValues) {
+		while (myFieldValues.size() <= theFieldMatcherIndex) {
+			myFieldValues.add(null);
+		}
+		myFieldValues.set(theFieldMatcherIndex, theValues);
+	}
+
+	IFhirPath getFhirPath(FhirContext theFhirContext) {
+		if (myFhirPath == null) {
+			myFhirPath = theFhirContext.newFhirPath();
+		}
+		return myFhirPath;
+	}
+
+	FhirTerser getTerser(FhirContext theFhirContext) {
+		if (myTerser == null) {
+			myTerser = theFhirContext.newTerser();
+		}
+		return myTerser;
+	}
+}
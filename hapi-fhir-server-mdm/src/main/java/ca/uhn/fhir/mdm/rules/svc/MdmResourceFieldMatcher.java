@@ -21,11 +21,9 @@ package ca.uhn.fhir.mdm.rules.svc;
  */
 
 import ca.uhn.fhir.context.FhirContext;
-import ca.uhn.fhir.fhirpath.IFhirPath;
 import ca.uhn.fhir.mdm.api.MdmMatchEvaluation;
 import ca.uhn.fhir.mdm.rules.json.MdmFieldMatchJson;
 import ca.uhn.fhir.mdm.rules.json.MdmRulesJson;
-import ca.uhn.fhir.util.FhirTerser;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -71,28 +69,31 @@ public class MdmResourceFieldMatcher {
 	 * @param theRightResource the second {@link IBaseResource}
 	 * @return A boolean indicating whether they match.
 	 */
-	@SuppressWarnings("rawtypes")
 	public MdmMatchEvaluation match(IBaseResource theLeftResource, IBaseResource theRightResource) {
-		validate(theLeftResource);
-		validate(theRightResource);
+		MdmResourceFeatures left = new MdmResourceFeatures(theLeftResource, myFhirContext.getResourceType(theLeftResource));
+		MdmResourceFeatures right = new MdmResourceFeatures(theRightResource, myFhirContext.getResourceType(theRightResource));
+		return match(extractValues(left), extractValues(right));
+	}
 
-		List<IBase> leftValues;
-		List<IBase> rightValues;
+	/**
+	 * Extracts the values of this field from the resource, using FhirPath if this field is defined
+	 * with a FhirPath expression, or the resource path otherwise
+	 */
+	List<IBase> extractValues(MdmResourceFeatures theFeatures) {
+		IBaseResource resource = theFeatures.getResource();
+		validate(theFeatures.getResourceType());
 
 		if (myIsFhirPathExpression) {
-			IFhirPath fhirPath = myFhirContext.newFhirPath();
-			leftValues = fhirPath.evaluate(theLeftResource, myFhirPath, IBase.class);
-			rightValues = fhirPath.evaluate(theRightResource, myFhirPath, IBase.class);
+			return theFeatures.getFhirPath(myFhirContext).evaluate(resource, myFhirPath, IBase.class);
 		} else {
-			FhirTerser fhirTerser = myFhirContext.newTerser();
-			leftValues = fhirTerser.getValues(theLeftResource, myResourcePath, IBase.class);
-			rightValues = fhirTerser.getValues(theRightResource, myResourcePath, IBase.class);
+			return theFeatures.getTerser(myFhirContext).getValues(resource, myResourcePath, IBase.class);
 		}
-		return match(leftValues, rightValues);
 	}
 
-	@SuppressWarnings("rawtypes")
-	private MdmMatchEvaluation match(List<IBase> theLeftValues, List<IBase> theRightValues) {
+	/**
+	 * Compares values previously extracted using {@link #extractValues(MdmResourceFeatures)}
+	 */
+	MdmMatchEvaluation match(List<IBase> theLeftValues, List<IBase> theRightValues) {
 		MdmMatchEvaluation retval = new MdmMatchEvaluation(false, 0.0);
 
 		boolean isMatchingEmptyFieldValues = (theLeftValues.isEmpty() && theRightValues.isEmpty());
@@ -114,15 +115,14 @@ public class MdmResourceFieldMatcher {
 		return myMdmFieldMatchJson.match(myFhirContext, theLeftValue, theRightValue);
 	}
 
-	private void validate(IBaseResource theResource) {
-		String resourceType = myFhirContext.getResourceType(theResource);
-		Validate.notNull(resourceType, "Resource type may not be null");
+	private void validate(String theResourceType) {
+		Validate.notNull(theResourceType, "Resource type may not be null");
 
 		if (ALL_RESOURCE_SEARCH_PARAM_TYPE.equals(myResourceType)) {
-			boolean isMdmType = myMdmRulesJson.getMdmTypes().stream().anyMatch(mdmType -> mdmType.equalsIgnoreCase(resourceType));
-			Validate.isTrue(isMdmType, "Expecting resource type %s, got resource type %s", myMdmRulesJson.getMdmTypes().stream().collect(Collectors.joining(",")), resourceType);
+			boolean isMdmType = myMdmRulesJson.getMdmTypes().stream().anyMatch(mdmType -> mdmType.equalsIgnoreCase(theResourceType));
+			Validate.isTrue(isMdmType, "Expecting resource type %s, got resource type %s", myMdmRulesJson.getMdmTypes().stream().collect(Collectors.joining(",")), theResourceType);
 		} else {
-			Validate.isTrue(myResourceType.equals(resourceType), "Expecting resource type %s got resource type %s", myResourceType, resourceType);
+			Validate.isTrue(myResourceType.equals(theResourceType), "Expecting resource type %s got resource type %s", myResourceType, theResourceType);
 		}
 	}
 
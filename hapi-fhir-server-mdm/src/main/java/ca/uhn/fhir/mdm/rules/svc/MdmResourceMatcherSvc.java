@@ -30,6 +30,7 @@ import ca.uhn.fhir.mdm.api.IMdmSettings;
 import ca.uhn.fhir.mdm.log.Logs;
 import ca.uhn.fhir.mdm.rules.json.MdmFieldMatchJson;
 import ca.uhn.fhir.mdm.rules.json.MdmRulesJson;
+import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -38,6 +39,8 @@ import org.springframework.stereotype.Service;
 import javax.annotation.PostConstruct;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The MdmResourceComparator is in charge of performing actual comparisons between left and right records.
@@ -53,6 +56,7 @@ public class MdmResourceMatcherSvc {
 	private final IMdmSettings myMdmSettings;
 	private MdmRulesJson myMdmRulesJson;
 	private final List<MdmResourceFieldMatcher> myFieldMatchers = new ArrayList<>();
+	private final Map<String, int[]> myFieldMatcherIndexesByResourceType = new ConcurrentHashMap<>();
 
 	@Autowired
 	public MdmResourceMatcherSvc(FhirContext theFhirContext, IMdmSettings theMdmRules) {
@@ -67,6 +71,7 @@ public class MdmResourceMatcherSvc {
 			throw new ConfigurationException("Failed to load MDM Rules.  If MDM is enabled, then MDM rules must be available in context.");
 		}
 		myFieldMatchers.clear();
+		myFieldMatcherIndexesByResourceType.clear();
 		for (MdmFieldMatchJson matchFieldJson : myMdmRulesJson.getMatchFields()) {
 			myFieldMatchers.add(new MdmResourceFieldMatcher( myFhirContext, matchFieldJson, myMdmRulesJson));
 		}
@@ -86,15 +91,42 @@ public class MdmResourceMatcherSvc {
 		return match(theLeftResource, theRightResource);
 	}
 
+	/**
+	 * Same as {@link #getMatchResult(IBaseResource, IBaseResource)}, but reuses the field values that have already been
+	 * extracted from the left resource. Use this when comparing one resource against many candidates.
+	 *
+	 * @param theLeftFeatures The features of the first resource, as returned by {@link #extractFeatures(IBaseResource)}
+	 * @param theRightResource The second {@link IBaseResource}
+	 * @since 5.4.0
+	 */
+	public MdmMatchOutcome getMatchResult(MdmResourceFeatures theLeftFeatures, IBaseResource theRightResource) {
+		return match(theLeftFeatures, extractFeatures(theRightResource));
+	}
+
+	/**
+	 * Creates a holder for the values that the MDM rules compare on the given resource. The values are
+	 * extracted once, the first time a comparison needs them.
+	 *
+	 * @since 5.4.0
+	 */
+	public MdmResourceFeatures extractFeatures(IBaseResource theResource) {
+		return new MdmResourceFeatures(theResource, myFhirContext.getResourceType(theResource));
+	}
+
 	MdmMatchOutcome match(IBaseResource theLeftResource, IBaseResource theRightResource) {
-		MdmMatchOutcome matchResult = getMatchOutcome(theLeftResource, theRightResource);
+		return match(extractFeatures(theLeftResource), extractFeatures(theRightResource));
+	}
+
+	private MdmMatchOutcome match(MdmResourceFeatures theLeftFeatures, MdmResourceFeatures theRightFeatures) {
+		IBaseResource rightResource = theRightFeatures.getResource();
+		MdmMatchOutcome matchResult = getMatchOutcome(theLeftFeatures, theRightFeatures);
 		MdmMatchResultEnum matchResultEnum = myMdmRulesJson.getMatchResult(matchResult.vector);
 		matchResult.setMatchResultEnum(matchResultEnum);
 		if (ourLog.isDebugEnabled()) {
 			if (matchResult.isMatch() || matchResult.isPossibleMatch()) {
-				ourLog.debug("{} {} with field matchers {}", matchResult, theRightResource.getIdElement().toUnqualifiedVersionless(), myMdmRulesJson.getFieldMatchNamesForVector(matchResult.vector));
+				ourLog.debug("{} {} with field matchers {}", matchResult, rightResource.getIdElement().toUnqualifiedVersionless(), myMdmRulesJson.getFieldMatchNamesForVector(matchResult.vector));
 			} else if (ourLog.isTraceEnabled()) {
-				ourLog.trace("{} {}.  Field matcher results: {}", matchResult, theRightResource.getIdElement().toUnqualifiedVersionless(), myMdmRulesJson.getDetailedFieldMatchResultForUnmatchedVector(matchResult.vector));
+				ourLog.trace("{} {}.  Field matcher results: {}", matchResult, rightResource.getIdElement().toUnqualifiedVersionless(), myMdmRulesJson.getDetailedFieldMatchResultForUnmatchedVector(matchResult.vector));
 			}
 		}
 		return matchResult;
@@ -115,23 +147,17 @@ public class MdmResourceMatcherSvc {
 	 * 0001|0010 = 0011
 	 * The binary string is now `0011`, which when you return it as a long becomes `3`.
 	 */
-	private MdmMatchOutcome getMatchOutcome(IBaseResource theLeftResource, IBaseResource theRightResource) {
+	private MdmMatchOutcome getMatchOutcome(MdmResourceFeatures theLeftFeatures, MdmResourceFeatures theRightFeatures) {
 		long vector = 0;
 		double score = 0.0;
 		int appliedRuleCount = 0;
 
-		//TODO GGG MDM: This grabs ALL comparators, not just the ones we care about (e.g. the ones for Medication)
-		String resourceType = myFhirContext.getResourceType(theLeftResource);
-
-		for (int i = 0; i < myFieldMatchers.size(); ++i) {
-			//any that are not for the resourceType in question.
+		for (int i : getFieldMatcherIndexes(theLeftFeatures.getResourceType())) {
 			MdmResourceFieldMatcher fieldComparator = myFieldMatchers.get(i);
-			if (!isValidResourceType(resourceType, fieldComparator.getResourceType())) {
-				ourLog.debug("Matcher {} is not valid for resource type: {}. Skipping it.", fieldComparator.getName(), resourceType);
-				continue;
-			}
-			ourLog.debug("Matcher {} is valid for resource type: {}. Evaluating match.", fieldComparator.getName(), resourceType);
-			MdmMatchEvaluation matchEvaluation = fieldComparator.match(theLeftResource, theRightResource);
+			ourLog.debug("Matcher {} is valid for resource type: {}. Evaluating match.", fieldComparator.getName(), theLeftFeatures.getResourceType());
+			List<IBase> leftValues = getFieldValues(theLeftFeatures, i);
+			List<IBase> rightValues = getFieldValues(theRightFeatures, i);
+			MdmMatchEvaluation matchEvaluation = fieldComparator.match(leftValues, rightValues);
 			if (matchEvaluation.match) {
 				vector |= (1 << i);
 			}
@@ -144,8 +170,35 @@ public class MdmResourceMatcherSvc {
 		return retVal;
 	}
 
+	private List<IBase> getFieldValues(MdmResourceFeatures theFeatures, int theFieldMatcherIndex) {
+		List<IBase> retVal = theFeatures.getFieldValues(theFieldMatcherIndex);
+		if (retVal == null) {
+			retVal = myFieldMatchers.get(theFieldMatcherIndex).extractValues(theFeatures);
+			theFeatures.setFieldValues(theFieldMatcherIndex, retVal);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the indexes of the field matchers which apply to the given resource type. The index of a
+	 * field matcher is also its position in the match vector.
+	 */
+	private int[] getFieldMatcherIndexes(String theResourceType) {
+		return myFieldMatcherIndexesByResourceType.computeIfAbsent(theResourceType, t -> {
+			List<Integer> indexes = new ArrayList<>();
+			for (int i = 0; i < myFieldMatchers.size(); ++i) {
+				MdmResourceFieldMatcher fieldComparator = myFieldMatchers.get(i);
+				if (isValidResourceType(t, fieldComparator.getResourceType())) {
+					indexes.add(i);
+				} else {
+					ourLog.debug("Matcher {} is not valid for resource type: {}. Skipping it.", fieldComparator.getName(), t);
+				}
+			}
+			return indexes.stream().mapToInt(Integer::intValue).toArray();
+		});
+	}
 
-		private boolean isValidResourceType(String theResourceType, String theFieldComparatorType) {
+	private boolean isValidResourceType(String theResourceType, String theFieldComparatorType) {
 		return (
 			theFieldComparatorType.equalsIgnoreCase(MdmConstants.ALL_RESOURCE_SEARCH_PARAM_TYPE)
 			|| theFieldComparatorType.equalsIgnoreCase(theResourceType)
@@ -4,9 +4,11 @@ import ca.uhn.fhir.context.RuntimeSearchParam;
 import ca.uhn.fhir.mdm.api.MdmMatchOutcome;
 import ca.uhn.fhir.mdm.api.MdmMatchResultEnum;
 import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -58,4 +60,36 @@ public class MdmResourceMatcherSvcR4Test extends BaseMdmRulesR4Test {
 		patient3.addName().addGiven("Henry");
 		assertMatchResult(MdmMatchResultEnum.NO_MATCH, 0L, 0.0, false, false, myMdmResourceMatcherSvc.getMatchResult(myJohn, patient3));
 	}
+
+	@Test
+	public void testMatchResultWithExtractedFeatures() {
+		myJohn.addName().setFamily("Smith");
+		myJohny.addName().setFamily("Smith");
+		Patient patient3 = new Patient();
+		patient3.setId("Patient/3");
+		patient3.addName().addGiven("Henry");
+
+		// The same features are reused for every candidate
+		MdmResourceFeatures johnFeatures = myMdmResourceMatcherSvc.extractFeatures(myJohn);
+		MdmMatchOutcome result = myMdmResourceMatcherSvc.getMatchResult(johnFeatures, myJohny);
+		assertMatchResult(MdmMatchResultEnum.MATCH, 3L, 1.816, false, false, result);
+		assertEquals(2, result.getMdmRuleCount());
+		assertMatchResult(MdmMatchResultEnum.NO_MATCH, 0L, 0.0, false, false, myMdmResourceMatcherSvc.getMatchResult(johnFeatures, patient3));
+		assertMatchResult(MdmMatchResultEnum.MATCH, 3L, 1.816, false, false, myMdmResourceMatcherSvc.getMatchResult(johnFeatures, myJohny));
+	}
+
+	@Test
+	public void testOnlyMatchersForResourceTypeAreApplied() {
+		Practitioner left = new Practitioner();
+		left.setId("Practitioner/1");
+		left.addName().addGiven("John");
+		Practitioner right = new Practitioner();
+		right.setId("Practitioner/2");
+		right.addName().addGiven("John");
+
+		// Both match fields in the rules are for Patient
+		MdmMatchOutcome result = myMdmResourceMatcherSvc.getMatchResult(left, right);
+		assertMatchResult(MdmMatchResultEnum.NO_MATCH, 0L, 0.0, false, false, result);
+		assertEquals(0, result.getMdmRuleCount());
+	}
 }
@@ -86,6 +86,24 @@ public interface IBundleProvider {
 		return null;
 	}
 
+	/**
+	 * If this method is implemented, provides an opaque token which identifies the
+	 * position immediately after the last result of the current page, for servers
+	 * which use keyset (seek) paging. If this returns a value, the server will not
+	 * store the result list in the paging provider, and the <code>next</code> link
+	 * will repeat the original search with the token in the
+	 * {@value ca.uhn.fhir.rest.api.Constants#PARAM_PAGE_TOKEN} parameter.
+	 * <p>
+	 * This should return {@literal null} on the last page.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	@Nullable
+	default String getNextPageToken() {
+		return null;
+	}
+
 	/**
 	 * Returns the instant as of which this result was created. The
 	 * result of this value is used to populate the <code>lastUpdated</code>
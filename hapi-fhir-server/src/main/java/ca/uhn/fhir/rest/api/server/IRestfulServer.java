@@ -36,4 +36,16 @@ public interface IRestfulServer<T extends RequestDetails> extends IRestfulServer
 	default boolean canStoreSearchResults() {
 		return getPagingProvider() != null && getPagingProvider().canStoreSearchResults();
 	}
+
+	/**
+	 * If this returns a positive number, search and history Bundle responses are streamed to the
+	 * client: the Bundle is written up to and including its first chunk of entries, and then the
+	 * remaining entries of the page are loaded, encoded and flushed this many at a time. Returns
+	 * <code>null</code> (the default) if Bundle responses should be fully built before being written.
+	 *
+	 * @since 5.4.0
+	 */
+	default Integer getStreamingBundleChunkSize() {
+		return null;
+	}
 }
@@ -48,8 +48,17 @@ import java.util.function.Supplier;
  */
 public class TransactionDetails {
 
+	/**
+	 * Placeholder stored as the {@link #addResolvedMatchUrl(String, ResourcePersistentId) resolved match URL}
+	 * for a conditional URL which is known to match no resources
+	 *
+	 * @since 5.4.0
+	 */
+	public static final ResourcePersistentId NOT_FOUND = new ResourcePersistentId(-1L);
+
 	private final Date myTransactionDate;
 	private Map<String, ResourcePersistentId> myResolvedResourceIds = Collections.emptyMap();
+	private Map<String, ResourcePersistentId> myResolvedMatchUrls = Collections.emptyMap();
 	private Map<String, Object> myUserData;
 	private ListMultimap<Pointcut, HookParams> myDeferredInterceptorBroadcasts;
 	private EnumSet<Pointcut> myDeferredInterceptorBroadcastPointcuts;
@@ -94,6 +103,37 @@ public class TransactionDetails {
 		myResolvedResourceIds.put(theResourceId.toVersionless().getValue(), thePersistentId);
 	}
 
+	/**
+	 * A <b>Resolved Match URL</b> is a mapping between a conditional URL (e.g.
+	 * "<code>Patient?identifier=http://foo|123</code>") and the storage ID of the single resource it
+	 * matches, or {@link #NOT_FOUND} if it is known to match no resources. Conditional URLs which
+	 * match more than one resource should not be placed within the TransactionDetails.
+	 *
+	 * @since 5.4.0
+	 */
+	@Nullable
+	public ResourcePersistentId getResolvedMatchUrl(String theConditionalUrl) {
+		return myResolvedMatchUrls.get(theConditionalUrl);
+	}
+
+	/**
+	 * A <b>Resolved Match URL</b> is a mapping between a conditional URL (e.g.
+	 * "<code>Patient?identifier=http://foo|123</code>") and the storage ID of the single resource it
+	 * matches, or {@link #NOT_FOUND} if it is known to match no resources. Conditional URLs which
+	 * match more than one resource should not be placed within the TransactionDetails.
+	 *
+	 * @since 5.4.0
+	 */
+	public void addResolvedMatchUrl(String theConditionalUrl, ResourcePersistentId thePersistentId) {
+		assert theConditionalUrl != null;
+		assert thePersistentId != null;
+
+		if (myResolvedMatchUrls.isEmpty()) {
+			myResolvedMatchUrls = new HashMap<>();
+		}
+		myResolvedMatchUrls.put(theConditionalUrl, thePersistentId);
+	}
+
 	/**
 	 * This is the wall-clock time that a given transaction started.
 	 */
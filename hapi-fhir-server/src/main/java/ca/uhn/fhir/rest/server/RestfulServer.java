@@ -151,6 +151,7 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 	private IPagingProvider myPagingProvider;
 	private Integer myDefaultPageSize;
 	private Integer myMaximumPageSize;
+	private Integer myStreamingBundleChunkSize;
 	private boolean myStatelessPagingDefault = false;
 	private Lock myProviderRegistrationMutex = new ReentrantLock();
 	private Map<String, ResourceBinding> myResourceNameToBinding = new HashMap<>();
@@ -738,6 +739,33 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 		myMaximumPageSize = theMaximumPageSize;
 	}
 
+	@Override
+	public Integer getStreamingBundleChunkSize() {
+		return myStreamingBundleChunkSize;
+	}
+
+	/**
+	 * If set to a positive number, search and history Bundle responses are streamed to the client
+	 * instead of being fully built in memory first. The Bundle envelope, its links and the first
+	 * chunk of entries are written, and then the remaining entries of the page are loaded from the
+	 * {@link ca.uhn.fhir.rest.api.server.IBundleProvider}, encoded and flushed this many at a time.
+	 * <p>
+	 * Streaming is skipped automatically for requests which need the complete Bundle, such as
+	 * when an interceptor is registered against {@link Pointcut#SERVER_OUTGOING_RESPONSE}
+	 * (e.g. the <code>ResponseHighlighterInterceptor</code>) or when <code>_include</code> is used.
+	 * Note that once streaming has started, a failure while loading a later chunk can no longer
+	 * be reported to the client as a normal error response.
+	 * </p>
+	 * <p>
+	 * The default is <code>null</code>, meaning that responses are not streamed.
+	 * </p>
+	 *
+	 * @since 5.4.0
+	 */
+	public void setStreamingBundleChunkSize(Integer theStreamingBundleChunkSize) {
+		myStreamingBundleChunkSize = theStreamingBundleChunkSize;
+	}
+
 	/**
 	 * Provides the non-resource specific providers which implement method calls on this server
 	 *
@@ -45,6 +45,7 @@ import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.method.ElementsParameter;
+import ca.uhn.fhir.rest.server.method.StreamingBundleWriter;
 import ca.uhn.fhir.rest.server.method.SummaryEnumParameter;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
 import ca.uhn.fhir.util.BinaryUtil;
@@ -283,6 +284,28 @@ public class RestfulServerUtils {
 	}
 
 	public static String createOffsetPagingLink(BundleLinks theBundleLinks, String requestPath, String tenantId, Integer theOffset, Integer theCount, Map<String, String[]> theRequestParameters) {
+		Map<String, String[]> params = Maps.newLinkedHashMap(theRequestParameters);
+		params.put(Constants.PARAM_OFFSET, new String[]{String.valueOf(theOffset)});
+		params.put(Constants.PARAM_COUNT, new String[]{String.valueOf(theCount)});
+		return createSearchLink(theBundleLinks, requestPath, tenantId, params);
+	}
+
+	/**
+	 * Creates a link which repeats the search with the given keyset page token. If
+	 * <code>theCount</code> is null, any <code>_count</code> in the original request is kept.
+	 *
+	 * @since 5.4.0
+	 */
+	public static String createKeysetPagingLink(BundleLinks theBundleLinks, String requestPath, String tenantId, String thePageToken, Integer theCount, Map<String, String[]> theRequestParameters) {
+		Map<String, String[]> params = Maps.newLinkedHashMap(theRequestParameters);
+		params.put(Constants.PARAM_PAGE_TOKEN, new String[]{thePageToken});
+		if (theCount != null) {
+			params.put(Constants.PARAM_COUNT, new String[]{String.valueOf(theCount)});
+		}
+		return createSearchLink(theBundleLinks, requestPath, tenantId, params);
+	}
+
+	private static String createSearchLink(BundleLinks theBundleLinks, String requestPath, String tenantId, Map<String, String[]> theParams) {
 		StringBuilder b = new StringBuilder();
 		b.append(theBundleLinks.serverBase);
 
@@ -295,13 +318,9 @@ public class RestfulServerUtils {
 			}
 		}
 
-		Map<String, String[]> params = Maps.newLinkedHashMap(theRequestParameters);
-		params.put(Constants.PARAM_OFFSET, new String[]{String.valueOf(theOffset)});
-		params.put(Constants.PARAM_COUNT, new String[]{String.valueOf(theCount)});
-
 		boolean first = true;
-		for (String nextParamName : new TreeSet<>(params.keySet())) {
-			for (String nextParamValue : params.get(nextParamName)) {
+		for (String nextParamName : new TreeSet<>(theParams.keySet())) {
+			for (String nextParamValue : theParams.get(nextParamName)) {
 				if (first) {
 					b.append('?');
 					first = false;
@@ -1020,7 +1039,12 @@ public class RestfulServerUtils {
 		} else {
 			FhirVersionEnum forVersion = theResource.getStructureFhirVersionEnum();
 			IParser parser = getNewParser(theServer.getFhirContext(), forVersion, theRequestDetails);
-			parser.encodeResourceToWriter(theResource, writer);
+			StreamingBundleWriter streamingBundleWriter = (StreamingBundleWriter) theRequestDetails.getUserData().remove(StreamingBundleWriter.USER_DATA_KEY);
+			if (streamingBundleWriter != null && streamingBundleWriter.getBundle() == theResource) {
+				streamingBundleWriter.encode(parser, writer);
+			} else {
+				parser.encodeResourceToWriter(theResource, writer);
+			}
 		}
 
 		return response.sendWriterResponse(theStatusCode, contentType, charset, writer);
@@ -36,6 +36,7 @@ public class SimpleBundleProvider implements IBundleProvider {
 	private final String myUuid;
 	private Integer myPreferredPageSize;
 	private Integer mySize;
+	private String myNextPageToken;
 	private IPrimitiveType<Date> myPublished = InstantDt.withCurrentTime();
 
 	/**
@@ -136,4 +137,20 @@ public class SimpleBundleProvider implements IBundleProvider {
 		return mySize;
 	}
 
+	@Override
+	public String getNextPageToken() {
+		return myNextPageToken;
+	}
+
+	/**
+	 * Sets the token to be returned by {@link #getNextPageToken()}.
+	 * Default is <code>null</code>.
+	 *
+	 * @since 5.4.0
+	 */
+	public SimpleBundleProvider setNextPageToken(String theNextPageToken) {
+		myNextPageToken = theNextPageToken;
+		return this;
+	}
+
 }
@@ -3,6 +3,7 @@ package ca.uhn.fhir.rest.server.method;
 import ca.uhn.fhir.context.ConfigurationException;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.context.api.BundleInclusionRule;
 import ca.uhn.fhir.interceptor.api.HookParams;
 import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.model.api.IResource;
@@ -70,6 +71,7 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public abstract class BaseResourceReturningMethodBinding extends BaseMethodBinding<Object> {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseResourceReturningMethodBinding.class);
+	private static final String STREAMING_CHUNK_SIZE_KEY = BaseResourceReturningMethodBinding.class.getName() + "_STREAMING_CHUNK_SIZE";
 
 	private MethodReturnTypeEnum myMethodReturnType;
 	private String myResourceName;
@@ -127,13 +129,27 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 																IBundleProvider theResult, int theOffset, BundleTypeEnum theBundleType, EncodingEnum theLinkEncoding, String theSearchId) {
 		IVersionSpecificBundleFactory bundleFactory = theServer.getFhirContext().newBundleFactory();
 		final Integer requestOffset = RestfulServerUtils.tryToExtractNamedParameter(theRequest, Constants.PARAM_OFFSET);
+		final String nextPageToken = theResult.getNextPageToken();
+		final boolean keysetPaging = isNotBlank(nextPageToken) || theRequest.getParameters().containsKey(Constants.PARAM_PAGE_TOKEN);
 
 		int numToReturn;
 		String searchId = null;
 		List<IBaseResource> resourceList;
 		Integer numTotalResults = theResult.size();
 
-		if (requestOffset != null || !theServer.canStoreSearchResults()) {
+		/*
+		 * If the response is being streamed, only the first chunk of the page is
+		 * loaded here, and the rest is loaded while the response is being written
+		 */
+		Integer streamingChunkSize = (Integer) theRequest.getUserData().get(STREAMING_CHUNK_SIZE_KEY);
+		if ((theIncludes != null && !theIncludes.isEmpty()) || hasRevIncludes(theRequest) || theServer.getBundleInclusionRule() == BundleInclusionRule.BASED_ON_RESOURCE_PRESENCE || theResult.getCurrentPageId() != null) {
+			// Included resources are only de-duplicated within a single call to the provider
+			streamingChunkSize = null;
+		}
+		int fromIndex = 0;
+		int toIndex = 0;
+
+		if (requestOffset != null || keysetPaging || !theServer.canStoreSearchResults()) {
 			if (theLimit != null) {
 				numToReturn = theLimit;
 			} else {
@@ -144,7 +160,9 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 				}
 			}
 			if (numToReturn > 0) {
-				resourceList = theResult.getResources(0, numToReturn);
+				fromIndex = 0;
+				toIndex = numToReturn;
+				resourceList = theResult.getResources(fromIndex, firstChunkEnd(streamingChunkSize, fromIndex, toIndex));
 			} else {
 				resourceList = Collections.emptyList();
 			}
@@ -163,7 +181,9 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 			}
 
 			if (numToReturn > 0 || theResult.getCurrentPageId() != null) {
-				resourceList = theResult.getResources(theOffset, numToReturn + theOffset);
+				fromIndex = theOffset;
+				toIndex = numToReturn + theOffset;
+				resourceList = theResult.getResources(fromIndex, firstChunkEnd(streamingChunkSize, fromIndex, toIndex));
 			} else {
 				resourceList = Collections.emptyList();
 			}
@@ -186,37 +206,17 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 			}
 		}
 
-		/*
-		 * Remove any null entries in the list - This generally shouldn't happen but can if
-		 * data has been manually purged from the JPA database
-		 */
-		boolean hasNull = false;
-		for (IBaseResource next : resourceList) {
-			if (next == null) {
-				hasNull = true;
-				break;
-			}
-		}
-		if (hasNull) {
-			resourceList.removeIf(Objects::isNull);
-		}
-
-		/*
-		 * Make sure all returned resources have an ID (if not, this is a bug
-		 * in the user server code)
-		 */
-		for (IBaseResource next : resourceList) {
-			if (next.getIdElement() == null || next.getIdElement().isEmpty()) {
-				if (!(next instanceof IBaseOperationOutcome)) {
-					throw new InternalErrorException("Server method returned resource of type[" + next.getClass().getSimpleName() + "] with no ID specified (IResource#setId(IdDt) must be called)");
-				}
-			}
-		}
+		cleanUpResourceList(resourceList);
 
 		BundleLinks links = new BundleLinks(theRequest.getFhirServerBase(), theIncludes, RestfulServerUtils.prettyPrintResponse(theServer, theRequest), theBundleType);
 		links.setSelf(theLinkSelf);
 
-		if (requestOffset != null || !theServer.canStoreSearchResults()) {
+		if (keysetPaging) {
+			// Keyset paging - The next page repeats the search, starting after the last result of this one
+			if (isNotBlank(nextPageToken)) {
+				links.setNext(RestfulServerUtils.createKeysetPagingLink(links, theRequest.getRequestPath(), theRequest.getTenantId(), nextPageToken, theLimit, theRequest.getParameters()));
+			}
+		} else if (requestOffset != null || !theServer.canStoreSearchResults()) {
 			int offset = requestOffset != null ? requestOffset : 0;
 			// Paging without caching
 			// We're doing requestOffset pages
@@ -261,9 +261,73 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 
 		bundleFactory.addRootPropertiesToBundle(theResult.getUuid(), links, theResult.size(), theResult.getPublished());
 		bundleFactory.addResourcesToBundle(new ArrayList<>(resourceList), theBundleType, links.serverBase, theServer.getBundleInclusionRule(), theIncludes);
+		IBaseResource retVal = bundleFactory.getResourceBundle();
 
-		return bundleFactory.getResourceBundle();
+		/*
+		 * The remaining chunks start at the end of the range requested from the provider for the
+		 * first chunk, no matter how many resources it actually returned, since providers may
+		 * filter resources out of a range or add included resources to it. If neither the page
+		 * nor the provider has a known end, the first chunk already contains everything.
+		 */
+		if (streamingChunkSize != null && toIndex != Integer.MAX_VALUE) {
+			int streamingFromIndex = firstChunkEnd(streamingChunkSize, fromIndex, toIndex);
+			int streamingToIndex = numTotalResults != null ? Math.min(toIndex, numTotalResults) : toIndex;
+			if (streamingFromIndex < streamingToIndex) {
+				StreamingBundleWriter streamingBundleWriter = new StreamingBundleWriter(theServer, retVal, theResult, streamingFromIndex, streamingToIndex, streamingChunkSize, theBundleType, links.serverBase, theIncludes);
+				theRequest.getUserData().put(StreamingBundleWriter.USER_DATA_KEY, streamingBundleWriter);
+			}
+		}
 
+		return retVal;
+	}
+
+	private static boolean hasRevIncludes(RequestDetails theRequest) {
+		for (String next : theRequest.getParameters().keySet()) {
+			if (next.startsWith(Constants.PARAM_REVINCLUDE)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int firstChunkEnd(Integer theStreamingChunkSize, int theFromIndex, int theToIndex) {
+		if (theStreamingChunkSize == null) {
+			return theToIndex;
+		}
+		return (int) Math.min((long) theFromIndex + theStreamingChunkSize, theToIndex);
+	}
+
+	/**
+	 * Removes any null entries from a list of resources returned by an {@link IBundleProvider},
+	 * and makes sure that all of the remaining resources have an ID
+	 */
+	static void cleanUpResourceList(List<IBaseResource> theResourceList) {
+		/*
+		 * Remove any null entries in the list - This generally shouldn't happen but can if
+		 * data has been manually purged from the JPA database
+		 */
+		boolean hasNull = false;
+		for (IBaseResource next : theResourceList) {
+			if (next == null) {
+				hasNull = true;
+				break;
+			}
+		}
+		if (hasNull) {
+			theResourceList.removeIf(Objects::isNull);
+		}
+
+		/*
+		 * Make sure all returned resources have an ID (if not, this is a bug
+		 * in the user server code)
+		 */
+		for (IBaseResource next : theResourceList) {
+			if (next.getIdElement() == null || next.getIdElement().isEmpty()) {
+				if (!(next instanceof IBaseOperationOutcome)) {
+					throw new InternalErrorException("Server method returned resource of type[" + next.getClass().getSimpleName() + "] with no ID specified (IResource#setId(IdDt) must be called)");
+				}
+			}
+		}
 	}
 
 	public IBaseResource doInvokeServer(IRestfulServer<?> theServer, RequestDetails theRequest) {
@@ -377,7 +441,18 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 	@Override
 	public Object invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest) throws BaseServerResponseException, IOException {
 
-		IBaseResource response = doInvokeServer(theServer, theRequest);
+		IBaseResource response;
+		Integer streamingChunkSize = theServer.getStreamingBundleChunkSize();
+		if (getReturnType() == ReturnTypeEnum.BUNDLE && streamingChunkSize != null && streamingChunkSize > 0 && !hasOutgoingResponseHooks(theRequest)) {
+			theRequest.getUserData().put(STREAMING_CHUNK_SIZE_KEY, streamingChunkSize);
+			try {
+				response = doInvokeServer(theServer, theRequest);
+			} finally {
+				theRequest.getUserData().remove(STREAMING_CHUNK_SIZE_KEY);
+			}
+		} else {
+			response = doInvokeServer(theServer, theRequest);
+		}
 		if (response == null) {
 			return null;
 		}
@@ -422,6 +497,14 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 		RESOURCE
 	}
 
+	/**
+	 * Interceptors which are registered against {@link Pointcut#SERVER_OUTGOING_RESPONSE} expect to see
+	 * (and may replace) the complete response, so responses are never streamed when any are present
+	 */
+	private static boolean hasOutgoingResponseHooks(RequestDetails theRequest) {
+		return theRequest.getInterceptorBroadcaster() != null && theRequest.getInterceptorBroadcaster().hasHooks(Pointcut.SERVER_OUTGOING_RESPONSE);
+	}
+
 	public static boolean callOutgoingResponseHook(RequestDetails theRequest, ResponseDetails theResponseDetails) {
 		HttpServletRequest servletRequest = null;
 		HttpServletResponse servletResponse = null;
@@ -0,0 +1,292 @@
+package ca.uhn.fhir.rest.server.method;
+
+/*
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2021 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.model.valueset.BundleTypeEnum;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.BundleLinks;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.IVersionSpecificBundleFactory;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.IRestfulServer;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes a search or history Bundle response whose entries are loaded from an
+ * {@link IBundleProvider} while the response is being written. The Bundle passed in
+ * only contains the first chunk of entries for the page. It is written up to the end of
+ * those entries, and then each remaining chunk is loaded, encoded and flushed to the
+ * client before the next one is loaded, so only one chunk of the page is held in memory
+ * at a time.
+ * <p>
+ * Chunks are ranges of the provider's own indexes, so a provider returning fewer resources
+ * than requested for a range (e.g. because some were filtered out) or more (e.g. because
+ * it adds included resources) doesn't affect which ranges are requested afterwards. Chunks
+ * are requested until the end of the page, or the end of the results if the provider
+ * {@link IBundleProvider#size() knows it}.
+ * </p>
+ * <p>
+ * An instance is placed in the {@link ca.uhn.fhir.rest.api.server.RequestDetails#getUserData() request user data}
+ * under the key {@link #USER_DATA_KEY} when a response is eligible for streaming.
+ * </p>
+ *
+ * @see IRestfulServer#getStreamingBundleChunkSize()
+ * @since 5.4.0
+ */
+public class StreamingBundleWriter {
+
+	public static final String USER_DATA_KEY = StreamingBundleWriter.class.getName();
+	private static final String JSON_ENTRY_KEY = "\"entry\"";
+	private static final String XML_ENTRY_START = "<entry>";
+	private static final String XML_ENTRY_END = "</entry>";
+
+	private final IRestfulServer<?> myServer;
+	private final IBaseResource myBundle;
+	private final IBundleProvider myBundleProvider;
+	private final int myFromIndex;
+	private final int myToIndex;
+	private final int myChunkSize;
+	private final BundleTypeEnum myBundleType;
+	private final String myServerBase;
+	private final Set<Include> myIncludes;
+
+	StreamingBundleWriter(IRestfulServer<?> theServer, IBaseResource theBundle, IBundleProvider theBundleProvider, int theFromIndex, int theToIndex, int theChunkSize, BundleTypeEnum theBundleType, String theServerBase, Set<Include> theIncludes) {
+		myServer = theServer;
+		myBundle = theBundle;
+		myBundleProvider = theBundleProvider;
+		myFromIndex = theFromIndex;
+		myToIndex = theToIndex;
+		myChunkSize = theChunkSize;
+		myBundleType = theBundleType;
+		myServerBase = theServerBase;
+		myIncludes = theIncludes;
+	}
+
+	/**
+	 * Returns the Bundle containing the first chunk of entries
+	 */
+	public IBaseResource getBundle() {
+		return myBundle;
+	}
+
+	/**
+	 * Encodes the complete Bundle, including the entries which have not been loaded yet
+	 */
+	public void encode(IParser theParser, Writer theWriter) throws IOException {
+		EncodingEnum encoding = theParser.getEncoding();
+		if (encoding != EncodingEnum.JSON && encoding != EncodingEnum.XML) {
+			// We only know how to splice entries into JSON and XML, so load everything
+			IVersionSpecificBundleFactory bundleFactory = newBundleFactory();
+			bundleFactory.initializeWithBundleResource(myBundle);
+			bundleFactory.addRootPropertiesToBundle(null, new BundleLinks(myServerBase, null, false, myBundleType), null, null);
+			for (int from = myFromIndex; from < getToIndex(); from += myChunkSize) {
+				bundleFactory.addResourcesToBundle(loadResources(from), myBundleType, myServerBase, myServer.getBundleInclusionRule(), myIncludes);
+			}
+			theParser.encodeResourceToWriter(myBundle, theWriter);
+			return;
+		}
+
+		/*
+		 * Each chunk of entries, including the one already in the Bundle, is encoded in a Bundle
+		 * which contains nothing but those entries, so that they can be cut out of it without having
+		 * to look through any other content. They are then written just before the end of the Bundle
+		 * encoded without its entries, since Bundle.entry is its last child (Bundle.signature is never
+		 * populated on search and history responses).
+		 */
+		BaseRuntimeChildDefinition entryChild = myServer.getFhirContext().getResourceDefinition(myBundle).getChildByName("entry");
+		List<IBase> firstEntries = new ArrayList<>(entryChild.getAccessor().getValues(myBundle));
+		String firstChunkEntries = null;
+		if (!firstEntries.isEmpty()) {
+			IVersionSpecificBundleFactory bundleFactory = newBundleFactory();
+			bundleFactory.addRootPropertiesToBundle(null, new BundleLinks(myServerBase, null, false, myBundleType), null, null);
+			IBaseResource firstChunk = bundleFactory.getResourceBundle();
+			firstEntries.forEach(t -> entryChild.getMutator().addValue(firstChunk, t));
+			firstChunkEntries = encodeEntries(theParser, firstChunk);
+			if (firstChunkEntries == null) {
+				// The entries were suppressed by the encoder (e.g. _summary=count)
+				theParser.encodeResourceToWriter(myBundle, theWriter);
+				return;
+			}
+		}
+
+		String encoded;
+		entryChild.getMutator().setValue(myBundle, null);
+		try {
+			encoded = theParser.encodeResourceToString(myBundle);
+		} finally {
+			firstEntries.forEach(t -> entryChild.getMutator().addValue(myBundle, t));
+		}
+		int bundleEnd = findBundleEnd(encoding, encoded);
+
+		theWriter.write(encoded, 0, bundleEnd);
+		boolean entriesOpen = false;
+		if (firstChunkEntries != null) {
+			entriesOpen = writeEntries(encoding, theWriter, firstChunkEntries, false);
+		}
+		theWriter.flush();
+
+		for (int from = myFromIndex; from < getToIndex(); from += myChunkSize) {
+			List<IBaseResource> resources = loadResources(from);
+			if (!resources.isEmpty()) {
+				IVersionSpecificBundleFactory bundleFactory = newBundleFactory();
+				bundleFactory.addRootPropertiesToBundle(null, new BundleLinks(myServerBase, null, false, myBundleType), null, null);
+				bundleFactory.addResourcesToBundle(resources, myBundleType, myServerBase, myServer.getBundleInclusionRule(), myIncludes);
+				String chunkEntries = encodeEntries(theParser, bundleFactory.getResourceBundle());
+				if (chunkEntries != null) {
+					entriesOpen = writeEntries(encoding, theWriter, chunkEntries, entriesOpen);
+					theWriter.flush();
+				}
+			}
+		}
+
+		if (entriesOpen && encoding == EncodingEnum.JSON) {
+			theWriter.write(']');
+		}
+		theWriter.write(encoded, bundleEnd, encoded.length() - bundleEnd);
+	}
+
+	/**
+	 * Writes a chunk of encoded entries, starting the Bundle.entry list first if it hasn't been started yet
+	 *
+	 * @return Always <code>true</code>, since the list has been started
+	 */
+	private static boolean writeEntries(EncodingEnum theEncoding, Writer theWriter, String theEntries, boolean theEntriesOpen) throws IOException {
+		if (theEncoding == EncodingEnum.JSON) {
+			theWriter.write(theEntriesOpen ? "," : ",\"entry\":[");
+		}
+		theWriter.write(theEntries);
+		return true;
+	}
+
+	/**
+	 * Returns the encoded entries of a Bundle which contains nothing but entries, or <code>null</code> if the
+	 * encoder didn't write them
+	 */
+	private static String encodeEntries(IParser theParser, IBaseResource theChunk) {
+		String encodedChunk = theParser.encodeResourceToString(theChunk);
+		int entriesStart = findEntriesStart(theParser.getEncoding(), encodedChunk);
+		int entriesEnd = findEntriesEnd(theParser.getEncoding(), encodedChunk);
+		if (entriesStart == -1 || entriesEnd == -1) {
+			return null;
+		}
+		return encodedChunk.substring(entriesStart, entriesEnd);
+	}
+
+	/**
+	 * The index following the last one to load, which may be lowered while the page is being
+	 * written if the provider finds out how many results there are
+	 */
+	private int getToIndex() {
+		Integer size = myBundleProvider.size();
+		return size != null ? Math.min(size, myToIndex) : myToIndex;
+	}
+
+	private List<IBaseResource> loadResources(int theFrom) {
+		int to = (int) Math.min((long) theFrom + myChunkSize, getToIndex());
+		List<IBaseResource> resources = myBundleProvider.getResources(theFrom, to);
+		RestfulServerUtils.validateResourceListNotNull(resources);
+		resources = new ArrayList<>(resources);
+		BaseResourceReturningMethodBinding.cleanUpResourceList(resources);
+		return resources;
+	}
+
+	private IVersionSpecificBundleFactory newBundleFactory() {
+		return myServer.getFhirContext().newBundleFactory();
+	}
+
+	/**
+	 * Returns the index of the first character following the opening of the Bundle.entry
+	 * list, or -1 if the Bundle has no entries. This must only be used on Bundles containing
+	 * nothing but entries, so that the first occurrence is the Bundle's own.
+	 */
+	static int findEntriesStart(EncodingEnum theEncoding, String theEncoded) {
+		if (theEncoding == EncodingEnum.JSON) {
+			int key = theEncoded.indexOf(JSON_ENTRY_KEY);
+			if (key == -1) {
+				return -1;
+			}
+			int open = theEncoded.indexOf('[', key);
+			return open == -1 ? -1 : open + 1;
+		}
+
+		int start = theEncoded.indexOf(XML_ENTRY_START);
+		if (start == -1) {
+			return -1;
+		}
+		while (start > 0 && Character.isWhitespace(theEncoded.charAt(start - 1))) {
+			start--;
+		}
+		return start;
+	}
+
+	/**
+	 * Returns the index at which a Bundle.entry list can be added to a Bundle which has no entries,
+	 * i.e. the start of the Bundle's closing token. Bundle.entry is the last child of the Bundle, so
+	 * the list belongs at the very end.
+	 */
+	static int findBundleEnd(EncodingEnum theEncoding, String theEncoded) {
+		int retVal = theEncoding == EncodingEnum.JSON ? theEncoded.lastIndexOf('}') : theEncoded.lastIndexOf("</Bundle>");
+		if (retVal == -1) {
+			throw new InternalErrorException("Unable to stream Bundle response, the end of the Bundle was not found");
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the index of the first character following the last Bundle.entry, or -1 if
+	 * the Bundle has no entries. Bundle.entry is the last child of the Bundle, so the encoded
+	 * Bundle must end immediately afterwards.
+	 */
+	static int findEntriesEnd(EncodingEnum theEncoding, String theEncoded) {
+		if (findEntriesStart(theEncoding, theEncoded) == -1) {
+			return -1;
+		}
+
+		int retVal;
+		String expectedTail;
+		if (theEncoding == EncodingEnum.JSON) {
+			int close = theEncoded.lastIndexOf(']');
+			retVal = theEncoded.lastIndexOf('}', close) + 1;
+			expectedTail = "]}";
+		} else {
+			retVal = theEncoded.lastIndexOf(XML_ENTRY_END) + XML_ENTRY_END.length();
+			expectedTail = "</Bundle>";
+		}
+
+		String tail = theEncoded.substring(retVal).replaceAll("\\s", "");
+		if (!tail.equals(expectedTail)) {
+			throw new InternalErrorException("Unable to stream Bundle response, unexpected content after Bundle.entry: " + tail);
+		}
+		return retVal;
+	}
+
+}
@@ -17,6 +17,7 @@ import org.hl7.fhir.r4.model.Binary;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Composition;
 import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DecimalType;
 import org.hl7.fhir.r4.model.Device;
 import org.hl7.fhir.r4.model.DocumentReference;
 import org.hl7.fhir.r4.model.Encounter;
@@ -27,6 +28,7 @@ import org.hl7.fhir.r4.model.MedicationRequest;
 import org.hl7.fhir.r4.model.MessageHeader;
 import org.hl7.fhir.r4.model.Narrative;
 import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Organization;
 import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.Practitioner;
 import org.hl7.fhir.r4.model.PrimitiveType;
@@ -73,6 +75,59 @@ public class JsonParserR4Test extends BaseTest {
 		return b;
 	}
 
+	@Test
+	public void testParseStreamingMatchesTreeParse() throws IOException {
+		String input = "{" +
+			"\"resourceType\": \"Bundle\"," +
+			"\"id\": \"BUNDLEID\"," +
+			"\"type\": \"collection\"," +
+			"\"entry\": [" +
+			"  {\"fullUrl\": \"http://example.com/Patient/P1\", \"resource\": {" +
+			"    \"resourceType\": \"Patient\", \"id\": \"P1\"," +
+			"    \"_active\": {\"extension\": [{\"url\": \"http://foo\", \"valueString\": \"ACTIVE\"}]}," +
+			"    \"active\": true," +
+			"    \"name\": [{\"family\": \"FAMILY\", \"given\": [\"G1\", null, \"G3\"], \"_given\": [null, {\"id\": \"G2ID\"}, null]}]," +
+			"    \"extension\": [" +
+			"      {\"url\": \"http://ext1\", \"valueCodeableConcept\": {\"coding\": [{\"system\": \"http://sys\", \"code\": \"CODE\"}]}}," +
+			"      {\"valueDecimal\": 1.50, \"url\": \"http://ext2\"}" +
+			"    ]," +
+			"    \"contained\": [{\"id\": \"org\", \"name\": \"ORG\", \"resourceType\": \"Organization\"}]," +
+			"    \"managingOrganization\": {\"reference\": \"#org\"}" +
+			"  }}," +
+			"  {\"fullUrl\": \"http://example.com/Observation/O1\", \"resource\": {" +
+			"    \"status\": \"final\", \"resourceType\": \"Observation\", \"id\": \"O1\"," +
+			"    \"valueQuantity\": {\"value\": 12.300, \"unit\": \"mg\"}" +
+			"  }}" +
+			"]" +
+			"}";
+
+		FhirContext ctx = FhirContext.forR4();
+		ctx.getParserOptions().setStreamingJsonParsing(true);
+		Bundle streamed = ctx.newJsonParser().parseResource(Bundle.class, input);
+		Bundle tree = ourCtx.newJsonParser().parseResource(Bundle.class, input);
+
+		String streamedEncoded = ourCtx.newJsonParser().encodeResourceToString(streamed);
+		String treeEncoded = ourCtx.newJsonParser().encodeResourceToString(tree);
+		ourLog.info(streamedEncoded);
+		assertEquals(treeEncoded, streamedEncoded);
+
+		Patient patient = (Patient) streamed.getEntry().get(0).getResource();
+		assertEquals("ACTIVE", patient.getActiveElement().getExtensionString("http://foo"));
+		assertEquals("G2ID", patient.getNameFirstRep().getGiven().get(1).getId());
+		assertEquals("1.50", ((DecimalType) patient.getExtensionByUrl("http://ext2").getValue()).getValueAsString());
+		assertEquals("ORG", ((Organization) patient.getManagingOrganization().getResource()).getName());
+
+		Observation observation = (Observation) streamed.getEntry().get(1).getResource();
+		assertEquals("12.300", observation.getValueQuantity().getValueElement().getValueAsString());
+
+		try {
+			ctx.newJsonParser().parseResource(Bundle.class, input + "{}");
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("Failed to parse JSON encoded FHIR content"));
+		}
+	}
+
 	@Test
 	public void testEntitiesNotConverted() throws IOException {
 		Device input = loadResource(ourCtx, Device.class, "/entities-from-cerner.json");
@@ -0,0 +1,270 @@
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.annotation.IncludeParam;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.interceptor.ResponseHighlighterInterceptor;
+import ca.uhn.fhir.test.utilities.HttpClientExtension;
+import ca.uhn.fhir.test.utilities.server.RestfulServerExtension;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Organization;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class StreamingBundleResponseR4Test {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(StreamingBundleResponseR4Test.class);
+	private static final FhirContext ourCtx = FhirContext.forR4();
+	private final MyPatientProvider myPatientProvider = new MyPatientProvider();
+	@RegisterExtension
+	public HttpClientExtension myHttpClientExtension = new HttpClientExtension();
+	@RegisterExtension
+	public RestfulServerExtension myServerExtension = new RestfulServerExtension(ourCtx, myPatientProvider);
+
+	@BeforeEach
+	public void before() {
+		myPatientProvider.myRequestedRanges.clear();
+		myPatientProvider.myPurgedIndexes.clear();
+		myPatientProvider.myFilteredIndexes.clear();
+		myPatientProvider.myIncludedIndexes.clear();
+		myServerExtension.getRestfulServer().getInterceptorService().unregisterAllInterceptors();
+		myServerExtension.getRestfulServer().setPagingProvider(null);
+		myServerExtension.getRestfulServer().setDefaultPageSize(null);
+		myServerExtension.getRestfulServer().setStreamingBundleChunkSize(10);
+	}
+
+	@Test
+	public void testSearchIsStreamedInChunks_Json() throws IOException {
+		Bundle bundle = search("_count=25&_format=json");
+
+		assertEntries(bundle, 0, 25);
+		assertEquals(30, bundle.getTotal());
+		assertEquals("[0-10, 10-20, 20-25]", myPatientProvider.myRequestedRanges.toString());
+	}
+
+	@Test
+	public void testSearchIsStreamedInChunks_JsonPretty() throws IOException {
+		Bundle bundle = search("_count=25&_format=json&_pretty=true");
+
+		assertEntries(bundle, 0, 25);
+		assertEquals("[0-10, 10-20, 20-25]", myPatientProvider.myRequestedRanges.toString());
+	}
+
+	@Test
+	public void testSearchIsStreamedInChunks_Xml() throws IOException {
+		Bundle bundle = search("_count=25&_format=xml&_pretty=true");
+
+		assertEntries(bundle, 0, 25);
+		assertEquals("[0-10, 10-20, 20-25]", myPatientProvider.myRequestedRanges.toString());
+	}
+
+	@Test
+	public void testSearchWithPagingProviderIsStreamedInChunks() throws IOException {
+		myServerExtension.getRestfulServer().setPagingProvider(new FifoMemoryPagingProvider(10).setDefaultPageSize(25).setMaximumPageSize(25));
+
+		Bundle bundle = search("_format=json");
+
+		assertEntries(bundle, 0, 25);
+		assertEquals("[0-10, 10-20, 20-25]", myPatientProvider.myRequestedRanges.toString());
+		assertNotNull(bundle.getLink(Constants.LINK_NEXT));
+	}
+
+	@Test
+	public void testSearchIsNotStreamedWhenInterceptorNeedsCompleteBundle() throws IOException {
+		myServerExtension.getRestfulServer().registerInterceptor(new ResponseHighlighterInterceptor());
+
+		Bundle bundle = search("_count=25&_format=json");
+
+		assertEntries(bundle, 0, 25);
+		assertEquals("[0-25]", myPatientProvider.myRequestedRanges.toString());
+	}
+
+	@Test
+	public void testSearchIsNotStreamedWhenDisabled() throws IOException {
+		myServerExtension.getRestfulServer().setStreamingBundleChunkSize(null);
+
+		Bundle bundle = search("_count=25&_format=json");
+
+		assertEntries(bundle, 0, 25);
+		assertEquals("[0-25]", myPatientProvider.myRequestedRanges.toString());
+	}
+
+	@Test
+	public void testSearchWithSummaryCount() throws IOException {
+		Bundle bundle = search("_count=25&_format=json&_summary=count");
+
+		assertEquals(0, bundle.getEntry().size());
+		assertEquals(30, bundle.getTotal());
+	}
+
+	@Test
+	public void testSearchWithPurgedResourceIsNotTruncated() throws IOException {
+		myPatientProvider.myPurgedIndexes.add(12);
+
+		Bundle bundle = search("_count=25&_format=json");
+
+		assertEquals(24, bundle.getEntry().size());
+		assertEntries(bundle.getEntry().subList(0, 12), 0);
+		assertEntries(bundle.getEntry().subList(12, 24), 13);
+		assertEquals("[0-10, 10-20, 20-25]", myPatientProvider.myRequestedRanges.toString());
+	}
+
+	@Test
+	public void testSearchWithPurgedFirstChunk_Json() throws IOException {
+		for (int i = 0; i < 10; i++) {
+			myPatientProvider.myPurgedIndexes.add(i);
+		}
+
+		Bundle bundle = search("_count=25&_format=json&_pretty=true");
+
+		assertEquals(15, bundle.getEntry().size());
+		assertEntries(bundle.getEntry(), 10);
+		assertEquals("[0-10, 10-20, 20-25]", myPatientProvider.myRequestedRanges.toString());
+	}
+
+	@Test
+	public void testSearchWithPurgedFirstChunk_Xml() throws IOException {
+		for (int i = 0; i < 10; i++) {
+			myPatientProvider.myPurgedIndexes.add(i);
+		}
+
+		Bundle bundle = search("_count=25&_format=xml");
+
+		assertEquals(15, bundle.getEntry().size());
+		assertEntries(bundle.getEntry(), 10);
+		assertEquals("[0-10, 10-20, 20-25]", myPatientProvider.myRequestedRanges.toString());
+	}
+
+	@Test
+	public void testSearchWithFilteredResourcesIsNotTruncated() throws IOException {
+		for (int i = 5; i < 10; i++) {
+			myPatientProvider.myFilteredIndexes.add(i);
+		}
+		myPatientProvider.myFilteredIndexes.add(15);
+
+		Bundle bundle = search("_count=25&_format=json");
+
+		assertEquals(19, bundle.getEntry().size());
+		assertEntries(bundle.getEntry().subList(0, 5), 0);
+		assertEntries(bundle.getEntry().subList(5, 10), 10);
+		assertEntries(bundle.getEntry().subList(10, 19), 16);
+		assertEquals("[0-10, 10-20, 20-25]", myPatientProvider.myRequestedRanges.toString());
+	}
+
+	@Test
+	public void testSearchWithAdditionalResourcesIsNotMisChunked() throws IOException {
+		myPatientProvider.myIncludedIndexes.add(3);
+		myPatientProvider.myIncludedIndexes.add(14);
+
+		Bundle bundle = search("_count=25&_format=xml");
+
+		List<Bundle.BundleEntryComponent> patientEntries = new ArrayList<>();
+		List<String> otherIds = new ArrayList<>();
+		for (Bundle.BundleEntryComponent next : bundle.getEntry()) {
+			if (next.getResource() instanceof Patient) {
+				patientEntries.add(next);
+			} else {
+				otherIds.add(next.getResource().getIdElement().toUnqualifiedVersionless().getValue());
+			}
+		}
+		assertEquals(25, patientEntries.size());
+		assertEntries(patientEntries, 0);
+		assertEquals("[Organization/3, Organization/14]", otherIds.toString());
+		assertEquals("[0-10, 10-20, 20-25]", myPatientProvider.myRequestedRanges.toString());
+	}
+
+	@Test
+	public void testSearchWithRevIncludeIsNotStreamed() throws IOException {
+		Bundle bundle = search("_count=25&_format=json&_revinclude=Observation:subject");
+
+		assertEntries(bundle, 0, 25);
+		assertEquals("[0-25]", myPatientProvider.myRequestedRanges.toString());
+	}
+
+	private Bundle search(String theParams) throws IOException {
+		HttpGet get = new HttpGet("http://localhost:" + myServerExtension.getPort() + "/Patient?" + theParams);
+		try (CloseableHttpResponse status = myHttpClientExtension.getClient().execute(get)) {
+			String responseContent = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+			ourLog.info(responseContent);
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			return (Bundle) EncodingEnum.detectEncoding(responseContent).newParser(ourCtx).parseResource(responseContent);
+		}
+	}
+
+	private void assertEntries(Bundle theBundle, int theFrom, int theTo) {
+		assertEquals(theTo - theFrom, theBundle.getEntry().size());
+		assertEntries(theBundle.getEntry(), theFrom);
+	}
+
+	private void assertEntries(List<Bundle.BundleEntryComponent> theEntries, int theFrom) {
+		for (int i = theFrom; i < theFrom + theEntries.size(); i++) {
+			Bundle.BundleEntryComponent entry = theEntries.get(i - theFrom);
+			assertEquals("Patient/" + i, entry.getResource().getIdElement().toUnqualifiedVersionless().getValue());
+			assertEquals(myServerExtension.getFhirClient().getServerBase() + "/Patient/" + i, entry.getFullUrl());
+			assertEquals("FAMILY" + i, ((Patient) entry.getResource()).getNameFirstRep().getFamily());
+		}
+	}
+
+	public static class MyPatientProvider {
+
+		private final List<String> myRequestedRanges = Collections.synchronizedList(new ArrayList<>());
+		private final Set<Integer> myPurgedIndexes = Collections.synchronizedSet(new HashSet<>());
+		private final Set<Integer> myFilteredIndexes = Collections.synchronizedSet(new HashSet<>());
+		private final Set<Integer> myIncludedIndexes = Collections.synchronizedSet(new HashSet<>());
+
+		@Search(type = Patient.class)
+		public IBundleProvider search(@IncludeParam(reverse = true) Set<Include> theRevIncludes) {
+			return new SimpleBundleProvider(30) {
+				@Override
+				public List<IBaseResource> getResources(int theFromIndex, int theToIndex) {
+					myRequestedRanges.add(theFromIndex + "-" + theToIndex);
+					List<IBaseResource> retVal = new ArrayList<>();
+					for (int i = theFromIndex; i < Math.min(theToIndex, 30); i++) {
+						if (myPurgedIndexes.contains(i)) {
+							retVal.add(null);
+							continue;
+						}
+						if (myFilteredIndexes.contains(i)) {
+							continue;
+						}
+						Patient patient = new Patient();
+						patient.setId("Patient/" + i);
+						patient.addName().setFamily("FAMILY" + i);
+						retVal.add(patient);
+						if (myIncludedIndexes.contains(i)) {
+							Organization organization = new Organization();
+							organization.setId("Organization/" + i);
+							retVal.add(organization);
+						}
+					}
+					return retVal;
+				}
+			};
+		}
+
+	}
+
+}